@@ -0,0 +1,19 @@
+package cs540.checkers;
+
+/**
+ * An interface for static board evaluators which can score many board 
+ * states in one call. Search algorithms that collect their leaves before 
+ * scoring them may use this interface to amortize per-call overhead.
+ */
+public interface BatchEvaluator extends Evaluator
+{
+    /**
+     * Evaluates the first <code>count</code> board states of <code>bss</code>
+     * from RED's position. The score of <code>bss[i]</code> is stored in 
+     * <code>scores[i]</code>.
+     * @param bss       the board states to evaluate
+     * @param count     the number of board states to evaluate
+     * @param scores    the array receiving the values of the board states
+     */
+    public void evalBatch(int[][] bss, int count, int[] scores);
+}
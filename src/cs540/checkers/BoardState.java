@@ -157,7 +157,7 @@ public class BoardState
      */
     public boolean isLoser()
     {
-        return getAllPossibleMoves().size() == 0;
+        return !Utils.hasAnyMove(D, side);
     }
 
     /**
@@ -191,24 +191,7 @@ public class BoardState
      */
     protected List<Move> findWalkMoves()
     {
-        List<Move> moveList = new ArrayList<Move>();
-
-        for (int a = 1; a < 64; a += 2 + (a%16==7?-1:0) + (a%16==14?1:0) )
-        {
-            if (D[a] % 4 != side)
-                continue;
-
-            for (int d : Utils.DIAG)
-            {
-                int b = a + d;
-                if ( !canWalk(a, b) )
-                    continue;
-
-                moveList.add(new Move( Arrays.asList(a, b) ));
-            }
-        }
-
-        return moveList;
+        return Utils.findWalkMoves(D, side);
     }
 
     /**
@@ -222,55 +205,24 @@ public class BoardState
      */
     protected List<Move> findJumpMoves()
     {
-        List<Move> moveList = new ArrayList<Move>();
-        for (int a = 1; a < 64; a += 2 + (a%16==7?-1:0) + (a%16==14?1:0) )
-        {
-            if (D[a] % 4 != side)
-                continue;
-
-            MutableMove pmove = new MutableMove();
-            pmove.add(a);
-
-            findJumpMovesHelper(moveList, pmove);
-        }
-        return moveList;
+        return Utils.findJumpMoves(D, side);
     }
     
     /**
      * Adds to <code>moveList</code> all jump moves that begin with the 
      * partial move <code>pmove</code>. 
-     * This helper method recursively calls itself while updating this
-     * board state as the partial board state resulting from performing
-     * <code>pmove</code> on the original board state. 
+     * <code>pmove</code> must already have been performed on this board
+     * state's array, which is modified during the search and restored
+     * before this method returns, without passing through
+     * {@link #squareChanged squareChanged}.
      * @param pmove     the partial move to search from
      * @param moveList  the list of moves to add newly found jump moves to
      * @see #findJumpMoves findJumpMoves
+     * @see Utils#findJumpMovesHelper Utils.findJumpMovesHelper
      */
     protected void findJumpMovesHelper(List<Move> moveList, MutableMove pmove)
     {
-        int a = pmove.get(pmove.size() - 1);
-        boolean canJumpAgain = false;
-
-        for (int d : Utils.DIAG)
-        {
-            int b = a + 2 * d;
-            if ( !canJump(a, b) )
-                continue;
-
-            canJumpAgain = true;
-
-            pmove.add(b);
-
-            int rvTar = rv.size();
-            jump(a, b);
-            findJumpMovesHelper(moveList, pmove);
-            revert(rvTar);
-
-            pmove.remove(pmove.size() - 1);
-        }
-        
-        if (!canJumpAgain && pmove.size() >= 2)
-            moveList.add( new Move(pmove) );
+        Utils.findJumpMovesHelper(D, pmove, moveList);
     }
 
     /**
@@ -315,18 +267,7 @@ public class BoardState
      */
     public boolean hasJump(int src)
     {
-        int a = src;
-
-        /* The checkers piece at source location must belong to side */
-        if (D[a] % 4 != side)
-            return false;
-
-        /* Test jumps along each of four diagonals */
-        for (int d : Utils.DIAG)
-            if (canJump(a, a + 2 * d))
-                return true;
-
-        return false;
+        return Utils.hasJump(D, side, src);
     }
 
     /**
@@ -341,13 +282,7 @@ public class BoardState
         if (!forcedJumpKnown)
         {
             forcedJumpKnown = true;
-            forcedJump = false;
-            for (int a = 1; a < 64; a += 2 + (a%16==7?-1:0) + (a%16==14?1:0) )
-                if (hasJump(a))
-                {
-                    forcedJump = true;
-                    break;
-                }
+            forcedJump = Utils.isForcedJump(D, side);
         }
 
         return forcedJump;
@@ -432,6 +367,9 @@ public class BoardState
         rv.push(a);   rv.push(D[a]);
         rv.push(b);   rv.push(D[b]);
 
+        squareChanged(b, D[b], D[a]);
+        squareChanged(a, D[a], BLANK);
+
         D[b] = D[a]; 
         D[a] = BLANK; 
     }
@@ -459,6 +397,10 @@ public class BoardState
         rv.push(b);   rv.push(D[b]);
         rv.push(c);   rv.push(D[c]);
 
+        squareChanged(b, D[b], D[a]);
+        squareChanged(a, D[a], BLANK);
+        squareChanged(c, D[c], BLANK);
+
         D[b] = D[a];
         D[a] = BLANK;
         D[c] = BLANK;
@@ -473,18 +415,20 @@ public class BoardState
     protected void crownKings()
     {
         /* Crown red pawns on top row */
-        for (int j = 0 * W + 1; j < 1 * W; j += 2)
+        for (int j : Utils.CROWNING_ROW[RED])
             if (D[j] == RED_PAWN)
             {
                 rv.push(j);   rv.push(D[j]);
+                squareChanged(j, RED_PAWN, RED_KING);
                 D[j] = RED_KING;
             }
 
         /* Crown black pawns on bottom row */
-        for (int j = 7 * W; j < H * W; j += 2)
+        for (int j : Utils.CROWNING_ROW[BLK])
             if (D[j] == BLK_PAWN)
             {
                 rv.push(j);   rv.push(D[j]);
+                squareChanged(j, BLK_PAWN, BLK_KING);
                 D[j] = BLK_KING;
             }
     }
@@ -513,10 +457,28 @@ public class BoardState
             else if (x == SQ_MOVE_RVTAR)
                 ;
             else
+            {
+                squareChanged(x, D[x], y);
                 D[x] = y;
+            }
         }
     }
 
+    /**
+     * Invoked immediately before the contents of location <code>loc</code>
+     * change from <code>oldPiece</code> to <code>newPiece</code>. This 
+     * includes modifications made by {@link #walk walk}, {@link #jump jump}, 
+     * {@link #crownKings crownKings}, and {@link #revert(int) revert}.
+     * <p>
+     * Subclasses may override this method to maintain data that is updated 
+     * incrementally with the board, such as hash keys or evaluator 
+     * accumulators. The default implementation does nothing.
+     * @param loc       the location being modified
+     * @param oldPiece  the piece at <code>loc</code> before the modification
+     * @param newPiece  the piece at <code>loc</code> after the modification
+     */
+    protected void squareChanged(int loc, int oldPiece, int newPiece) { }
+
     /**
      * Undoes the most recent move made by <code>execute</code> on this board 
      * state. The top of the revert stack must be a move mde by <code>execute</code>.
@@ -0,0 +1,75 @@
+package cs540.checkers;
+import static cs540.checkers.CheckersConsts.*;
+
+/**
+ * This board state keeps the {@link Zobrist Zobrist} hash of its position,
+ * and the hash of the position's mirror, up to date as moves are executed
+ * and reverted, so that the canonical hash of each position reached costs
+ * two exclusive ors per square changed rather than mirroring the board.
+ * @see Symmetry Symmetry
+ */
+public class CanonicalBoardState extends BoardState
+{
+    /** The hash of the pieces, without the key of the side to move. */
+    protected long pieceHash;
+    /** The hash of the pieces of the mirror, without the key of the side to move. */
+    protected long flippedPieceHash;
+
+    /**
+     * Constructs a <code>CanonicalBoardState</code> given a board state as
+     * an array and an integer specifying the active side.
+     * @param D         an array representing a board state
+     * @param side      an integer signifying the active side
+     */
+    public CanonicalBoardState(int[] D, int side)
+    {
+        super(D, side);
+        pieceHash = Zobrist.hash(this.D, RED);
+        flippedPieceHash = Symmetry.flippedHash(this.D, BLK);
+    }
+
+    /**
+     * Gets the hash of this position, including the side to move.
+     * @return          the hash, equal to <code>Zobrist.hash(D, side)</code>
+     */
+    public long hash()
+    {
+        return side == BLK ? pieceHash ^ Zobrist.SIDE : pieceHash;
+    }
+
+    /**
+     * Gets the hash of the mirror of this position.
+     * @return          the hash, equal to
+     *                  <code>Symmetry.flippedHash(D, side)</code>
+     */
+    public long flippedHash()
+    {
+        return side == RED ? flippedPieceHash ^ Zobrist.SIDE : flippedPieceHash;
+    }
+
+    /**
+     * Gets the canonical hash of this position, which is the same for the
+     * position and its mirror.
+     * @return          the canonical hash, equal to
+     *                  <code>Symmetry.canonicalHash(D, side)</code>
+     */
+    public long canonicalHash()
+    {
+        return Math.min(hash(), flippedHash());
+    }
+
+    /**
+     * Returns whether this position is stored as its mirror.
+     * @return          true if the canonical hash is the hash of the mirror
+     */
+    public boolean isFlipped()
+    {
+        return Symmetry.isFlipped(hash(), flippedHash());
+    }
+
+    protected void squareChanged(int loc, int oldPiece, int newPiece)
+    {
+        pieceHash ^= Zobrist.key(loc, oldPiece) ^ Zobrist.key(loc, newPiece);
+        flippedPieceHash ^= Symmetry.key(loc, oldPiece) ^ Symmetry.key(loc, newPiece);
+    }
+}
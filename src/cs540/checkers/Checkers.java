@@ -3,6 +3,11 @@ import static cs540.checkers.CheckersConsts.*;
 
 import cs540.checkers.ui.*;
 import cs540.checkers.cli.*;
+import cs540.checkers.engine.*;
+import cs540.checkers.metrics.*;
+import cs540.checkers.pdn.*;
+import cs540.checkers.store.*;
+import cs540.checkers.variant.*;
 
 import java.io.*;
 import java.util.*;
@@ -21,14 +26,27 @@ public class Checkers
     public CheckersPlayer[] cp;
     public boolean[] moveOnClick;
     public long[] turnLimit;
+    public boolean turnLimitSet;
+    public long gameLimit;
+    public long increment;
+    public long byoYomi;
+    public int byoYomiPeriods;
+    public boolean cpuClock;
     public boolean verbose;
     public boolean nogui;
     public boolean turnDelay;
     public OutputStream logFile;
+    public AsyncCheckersLogger.Format logFormat;
     public int[] depthLimit;
+    public int metricsPort;
+    public String storeDir;
+    public boolean ponder;
+    public boolean isolate;
+    public int heapLimit;
 
     public int[] bs;
     public int side;
+    public Variant variant;
 
     /**
      * Constructs a new Checkers with default values for all options.
@@ -39,13 +57,17 @@ public class Checkers
         moveOnClick = new boolean[] { false, false };
         verbose = false;
         turnLimit = new long[] {3000, 3000};
+        gameLimit = -1;
         nogui = false;
         turnDelay = true;
         logFile = System.out;
+        logFormat = AsyncCheckersLogger.Format.TEXT;
         depthLimit = new int[] {-1, -1};
+        metricsPort = -1;
 
         bs = Utils.INITIAL_BOARDSTATE;
         side = Utils.INITIAL_SIDE;
+        variant = Variant.AMERICAN;
     }
 
     public static CheckersPlayer createCheckersPlayer(String fqClassName, String playerName, int side)
@@ -84,6 +106,22 @@ public class Checkers
         return player;
     }
 
+    /**
+     * Gets the fully qualified class name of a player given by its
+     * abbreviated name, as on the command line: <code>bpayne.Bpayne</code>
+     * denotes <code>cs540.checkers.bpayne.BpaynePlayer</code>, and a name
+     * prepended with <code>'.'</code> is already fully qualified.
+     * @param name      the abbreviated class name
+     * @return          the fully qualified class name
+     */
+    public static String playerClassName(String name)
+    {
+        /* Use fqcn if prepend '.' */
+        if (name.charAt(0) == '.')
+            return name.substring(1);
+        return "cs540.checkers." + name + "Player";
+    }
+
     protected int parseOptionsHelper(String[] args) throws IllegalArgumentException
     {
         if (args[0].equals("--turntime"))
@@ -91,9 +129,35 @@ public class Checkers
             long _turnLimit = Integer.parseInt(args[1]);
             turnLimit[RED] = _turnLimit;
             turnLimit[BLK] = _turnLimit;
+            turnLimitSet = true;
+            return 1;
+        }
+
+        if (args[0].equals("--gametime"))
+        {
+            gameLimit = Long.parseLong(args[1]);
             return 1;
         }
 
+        if (args[0].equals("--increment"))
+        {
+            increment = Long.parseLong(args[1]);
+            return 1;
+        }
+
+        if (args[0].equals("--byoyomi"))
+        {
+            byoYomi = Long.parseLong(args[1]);
+            byoYomiPeriods = Integer.parseInt(args[2]);
+            return 2;
+        }
+
+        if (args[0].equals("--cpuclock"))
+        {
+            cpuClock = true;
+            return 0;
+        }
+
         if (args[0].equals("--step"))
         {
             moveOnClick[RED] = true;
@@ -133,6 +197,24 @@ public class Checkers
             return 1;
         }
 
+        if (args[0].equals("--initfen"))
+        {
+            try {
+                bs = new int[W * H];
+                side = Pdn.parseFen(args[1], bs);
+            } catch (FormatException e) {
+                System.out.println(e);
+                throw new IllegalArgumentException("Cannot parse FEN");
+            }
+            return 1;
+        }
+
+        if (args[0].equals("--variant"))
+        {
+            variant = Variant.forName(args[1]);
+            return 1;
+        }
+
         if (args[0].equals("--initside"))
         {
             side = Integer.parseInt(args[1]);
@@ -162,6 +244,46 @@ public class Checkers
             return 0;
         }
 
+        if (args[0].equals("--logformat"))
+        {
+            try {
+                logFormat = AsyncCheckersLogger.Format.valueOf(args[1].toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown log format " + args[1]);
+            }
+            return 1;
+        }
+
+        if (args[0].equals("--store"))
+        {
+            storeDir = args[1];
+            return 1;
+        }
+
+        if (args[0].equals("--ponder"))
+        {
+            ponder = true;
+            return 0;
+        }
+
+        if (args[0].equals("--isolate"))
+        {
+            isolate = true;
+            return 0;
+        }
+
+        if (args[0].equals("--heaplimit"))
+        {
+            heapLimit = Integer.parseInt(args[1]);
+            return 1;
+        }
+
+        if (args[0].equals("--metrics"))
+        {
+            metricsPort = Integer.parseInt(args[1]);
+            return 1;
+        }
+
         return -1;
     }
     /**
@@ -178,25 +300,24 @@ public class Checkers
         if (args.length < 2)
             throw new IllegalArgumentException("");
 
+        String[] fqClassNames = new String[2];
+        String[] playerNames = new String[2];
         for (int i = 0; i < 2; i++)
         {
             String fqClassName, playerName;
 
-            /* Use fqcn if prepend '.' */
+            fqClassName = playerClassName(args[i]);
             if (args[i].charAt(0) == '.')
             {
-                fqClassName = args[i].substring(1);
                 playerName = fqClassName
                     .replace("cs540\\.checkers\\.", "")
                     .replace("Player\\z", "");
             }
             else
-            {
-                fqClassName = "cs540.checkers." + args[i] + "Player";
                 playerName = args[i];
-            }
 
-            cp[i] = createCheckersPlayer(fqClassName, playerName, i);
+            fqClassNames[i] = fqClassName;
+            playerNames[i] = playerName;
         }
 
         List<String> argslist = new ArrayList<String>();
@@ -210,6 +331,63 @@ public class Checkers
                 throw new IllegalArgumentException("Unrecognized option " + args[i]);
             i += d;
         }
+
+        /* Other variants start from their own position, and are only
+         * played headless, by players which know their rules */
+        if (variant != Variant.AMERICAN)
+        {
+            if (bs != Utils.INITIAL_BOARDSTATE)
+                throw new IllegalArgumentException("--initbs and --initfen are only for american checkers");
+            if (!nogui || isolate || storeDir != null
+                    || logFormat != AsyncCheckersLogger.Format.TEXT)
+                throw new IllegalArgumentException(
+                        "The " + variant + " variant needs --nogui, and a text log without --isolate or --store");
+            bs = variant.getInitialBoardState();
+            side = variant.getInitialSide();
+        }
+
+        /* The CPU clock measures the computation thread, which only waits
+         * for an isolated player's process */
+        if (cpuClock && isolate)
+            throw new IllegalArgumentException("--cpuclock cannot measure players run with --isolate");
+
+        /* Without a turn limit, the game clock budgets each move */
+        if (gameLimit >= 0 && !turnLimitSet)
+        {
+            turnLimit[RED] = -1;
+            turnLimit[BLK] = -1;
+        }
+
+        for (int i = 0; i < 2; i++)
+        {
+            /* Run computer players in a JVM of their own, without loading
+             * them in this one */
+            if (isolate && !isHumanPlayer(fqClassNames[i]))
+                cp[i] = new RemoteEnginePlayer(playerNames[i], i, null, "." + fqClassNames[i],
+                        RemoteEnginePlayer.DEFAULT_MARGIN, heapLimit);
+            else
+                cp[i] = createCheckersPlayer(fqClassNames[i], playerNames[i], i);
+
+            if (cp[i] instanceof VariantAwareCheckersPlayer)
+                ((VariantAwareCheckersPlayer)cp[i]).setVariant(variant);
+            else if (variant != Variant.AMERICAN)
+                throw new IllegalArgumentException(playerNames[i] + " cannot play " + variant);
+        }
+    }
+
+    /**
+     * Returns whether a player class is an interactive player, without
+     * initializing it.
+     */
+    private static boolean isHumanPlayer(String fqClassName)
+    {
+        try {
+            return HumanPlayer.class.isAssignableFrom(
+                    Class.forName(fqClassName, false, Checkers.class.getClassLoader()));
+        } catch (ClassNotFoundException e) {
+            System.out.println(e);
+            throw new IllegalArgumentException("Cannot load " + fqClassName);
+        }
     }
 
     private static String help_str = 
@@ -221,16 +399,32 @@ public class Checkers
             "Optional parameters include:\n" +
             "\n" +
             "--turntime <turnLimit>      Sets how long computer players are allowed to think. (milliseconds)\n" + 
+            "--gametime <gameLimit>      Sets how long each player has for the whole game; players which\n" +
+            "                            run out of time lose. Without --turntime, computer players\n" +
+            "                            think for a share of the time they have left. (milliseconds)\n" +
+            "--increment <ms>            Adds <ms> to a player's game time after each of its moves\n" +
+            "--byoyomi <ms> <periods>    Gives each player <periods> periods of <ms> once its game time is used\n" +
+            "--cpuclock                  Charge players for the CPU time they compute, not elapsed time;\n" +
+            "                            not with --isolate\n" +
             "--step                      Require a mouse click before the start of each turn.\n" +
             "--verbose                   Print output loquaciously.\n" +
             "--quiet                     Disable output.\n" +
             "--disable-turn-delay        Disable the READY -> WAITING turn delay.\n" +
             "--initbs <filename>         Read the initial board state from <filename>.\n" +
             "--initside <side>           Sets side to be the first to move.\n" +
+            "--initfen <fen>             Sets the initial board state and side from a PDN FEN, e.g. B:W21-32:B1-12\n" +
+            "--variant <name>            Play a variant: american (default), international, russian or italian.\n" +
+            "                            Only players which know the variant, such as demo.Random, can play it\n" +
             "--depthlimit <redDepthLimit> <blkDephLimit>\n" +
             "                            Sets the maximum iterative depth of iterative deepening for each player\n" +
             "--nogui                     Do not launch a GUI\n" +
             "--logfile                   Append to the specified log file\n" +
+            "--logformat <format>        Log as text (default) or binary; see cs540.checkers.cli.LogConverter\n" +
+            "--store <dir>               Add the finished game to the game store in <dir>\n" +
+            "--metrics <port>            Serve Prometheus metrics on http://localhost:<port>/metrics\n" +
+            "--ponder                    Let players which support it think during their opponent's turn\n" +
+            "--isolate                   Run each computer player in a JVM of its own\n" +
+            "--heaplimit <MB>            Limit the heap of each isolated player to <MB> megabytes\n" +
             "--help                      Show this message.\n" +
             "";
 
@@ -273,8 +467,13 @@ public class Checkers
             if (depthLimit[i] != -1)
                 cp[i].setDepthLimit(depthLimit[i]);
 
+        /* Start isolated players now, so their first move is not slowed */
+        for (int i : new int[] {RED, BLK} )
+            if (cp[i] instanceof RemoteEnginePlayer)
+                ((RemoteEnginePlayer)cp[i]).start();
+
         /* Create game model */
-        CheckersModel cm = new CheckersModel(cp, bs, side);
+        CheckersModel cm = new CheckersModel(cp, bs, side, variant);
 
         CheckersController ctl;
 
@@ -310,17 +509,64 @@ public class Checkers
         for (int i : new int[] {RED, BLK} )
             ctl.setTurnLimit(i, turnLimit[i]);
 
-        /* Create game clock object (max 2 hr) */
-        GameClock clock = new DefaultGameClock(
-                new long[] {7200 * 1000, 7200 * 1000}, side);
+        /* Pass ponder to the controller */
+        ctl.setPonder(ponder);
+
+        /* Measure CPU time rather than elapsed time */
+        if (cpuClock)
+        {
+            try {
+                ctl.setCpuTime(true);
+            } catch (IllegalArgumentException e) {
+                System.out.println(e);
+            }
+        }
+
+        /* Create game clock object, on the controller's time source */
+        GameClock clock = new NanoGameClock(new long[] {gameLimit, gameLimit},
+                increment, byoYomi, byoYomiPeriods, side, ctl.getTimeSource());
 
         /* Pass the clock to the model */
         cm.setClock(clock);
 
         /* Load logger */
-        CheckersLogger logger = null;
+        AsyncCheckersLogger logger = null;
         if (logFile != null)
-            logger = new CheckersLogger(cm, logFile);
+        {
+            logger = new AsyncCheckersLogger(logFile, logFormat);
+            logger.attach(cm);
+        }
+
+        /* Record the game in a store */
+        if (storeDir != null)
+        {
+            try {
+                final GameStore store = new GameStore(new File(storeDir));
+                new GameRecorder(store).attach(cm);
+                Runtime.getRuntime().addShutdownHook(new Thread() {
+                    public void run()
+                    {
+                        try { store.close(); } catch (IOException e) {}
+                    }
+                });
+            } catch (IOException e) {
+                System.out.println(e);
+            }
+        }
+
+        /* Serve metrics */
+        if (metricsPort != -1)
+        {
+            MetricsRegistry registry = new MetricsRegistry();
+            new GameMetrics(registry).attach(cm);
+            try {
+                MetricsServer server = new MetricsServer(registry, metricsPort);
+                if (verbose)
+                    System.out.println("Serving metrics on port " + server.getPort());
+            } catch (IOException e) {
+                System.out.println(e);
+            }
+        }
 
         /* Automatically start controller loop (after short delay) */
         ctl.loopLater(500);
@@ -1,6 +1,8 @@
 package cs540.checkers;
 
-import java.util.*;
+import cs540.checkers.jfr.*;
+
+import java.util.concurrent.*;
 
 /**
  * This controller progresses a checkers game by acting on an instance of 
@@ -14,6 +16,13 @@ import java.util.*;
  * these stimuli are expected to occur. <code>loop</code> will then use this 
  * return value to resume looping at the indicated time. 
  * <p>
+ * The controller is event driven: <code>loop</code> runs on a single game
+ * thread, to which each stimulus is delivered as a task. When a player
+ * selects its move, its {@link TurnAgent TurnAgent} wakes the game thread
+ * at once with {@link #loopNow loopNow}, and the expiry of a turn clock is
+ * a single wakeup scheduled to the nanosecond, which is cancelled if the
+ * move comes first. Nothing polls.
+ * <p>
  * By default, the transition between <code>WAITING</code> to 
  * <code>READY</code> occurs after the active player selects a move. However, 
  * if the <i>turn limit</i> option <code>turnLimit</code> is non-negative, the 
@@ -37,15 +46,46 @@ public class CheckersController
     protected TurnAgent turnAgent;
 
     /**
-     * The timer used to wake up <code>loop</code> to process events in the future.
+     * The game thread, on which <code>loop</code> processes events now and
+     * in the future.
      */
-    protected Timer timer;
+    protected ScheduledThreadPoolExecutor executor;
+
+    /** The wakeup scheduled by the last <code>loop</code>, or <code>null</code>. */
+    protected ScheduledFuture<?> wakeup;
+
+    /** The task which calls <code>loop</code>. */
+    protected final Runnable loopTask = new Runnable()
+    {
+        public void run() { loop(); }
+    };
 
     /**
      * The {@link CountdownClock CountdownClock} used to enforce turn limits. 
      * Each side has its own timer.
      */
-    protected CountdownClock[] turnClock;
+    protected NanoCountdownClock[] turnClock;
+
+    /** The time, in milliseconds, the sides have to make a move, or <code>-1</code>. */
+    protected long[] turnLimit;
+
+    /** The time source of the turn clocks. */
+    protected TimeSource timeSource = TimeSource.WALL;
+
+    /** 
+     * Whether the current step forcefully obtained a move because the turn
+     * clock expired. This is recorded in the step's Flight Recorder event.
+     */
+    protected boolean forcedMove;
+
+    /**
+     * The <code>PonderAgent</code>s which control the pondering threads of
+     * each side.
+     */
+    protected PonderAgent[] ponderAgent;
+
+    /** Whether players which support it ponder during their opponent's turn. */
+    protected boolean ponder;
 
     protected static final int BREAK_LOOP = -1;
     protected static final int CONTINUE_LOOP = 0;
@@ -72,28 +112,50 @@ public class CheckersController
         
         /* Create the turn clock, which enforces for how long each player can
          * think per turn */
-        turnClock = new CountdownClock[2];
+        this.turnLimit = turnLimit.clone();
+        turnClock = new NanoCountdownClock[2];
         for (int i = 0; i < 2; i++)
-            turnClock[i] = new DefaultCountdownClock(turnLimit[i]);
+            turnClock[i] = new NanoCountdownClock(turnLimit[i], timeSource);
 
         turnAgent = new TurnAgent();
         turnAgent.setCallbackController(this);
-        timer = new Timer(true);
+        ponderAgent = new PonderAgent[] { new PonderAgent(), new PonderAgent() };
+
+        /* The game thread lets itself die when the game has been idle for a
+         * while, so finished games do not keep threads */
+        executor = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+            public Thread newThread(Runnable r)
+            {
+                Thread t = new Thread(r, "checkers-controller");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        executor.setRemoveOnCancelPolicy(true);
+        executor.setKeepAliveTime(10, TimeUnit.SECONDS);
+        executor.allowCoreThreadTimeOut(true);
     }
 
     /**
-     * Starts a timer which invokes <code>loop(false)</code> at
+     * Schedules a call to <code>loop</code> on the game thread at
      * <code>delayTime</code> milliseconds in the future.
      * @param delayTime    the number of milliseconds to wait before calling run.
      * @see #loop loop
      */
     public void loopLater(long delayTime)
     {
-        TimerTask task = new TimerTask()
-        {
-            public void run() { loop(); }
-        };
-        timer.schedule(task, delayTime);
+        executor.schedule(loopTask, delayTime, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Calls <code>loop</code> on the game thread as soon as it is free. This
+     * is how the {@link TurnAgent TurnAgent} reports that a player has
+     * selected its move.
+     * @see #loop loop
+     */
+    public void loopNow()
+    {
+        executor.execute(loopTask);
     }
 
     /**
@@ -101,7 +163,8 @@ public class CheckersController
      * until the game cannot be progressed further from its present state. 
      * If the return value of <code>step</code> indicates that the game may
      * progress at a specific time in the future, this method schedules a 
-     * timer which calls <code>loop</code> at that time.
+     * wakeup which calls <code>loop</code> at that time, in place of any
+     * wakeup an earlier call scheduled.
      * <p>
      * This method is idempotent.
      * @see #step step
@@ -118,8 +181,11 @@ public class CheckersController
             }
         }
 
+        if (wakeup != null)
+            wakeup.cancel(false);
+        wakeup = null;
         if (sleepTime > 0)
-            loopLater(sleepTime);
+            wakeup = executor.schedule(loopTask, sleepTime, TimeUnit.NANOSECONDS);
     }
 
     /**
@@ -129,7 +195,7 @@ public class CheckersController
      * <code>CONTINUE_LOOP == 0</code>. Otherwise, if the game cannot progress 
      * from its current state without some external stimulus (such as a mouse 
      * click, move selection, or countdown timer completion), this method 
-     * returns an integer specifying how many milliseconds in the future the 
+     * returns an integer specifying how many nanoseconds in the future the 
      * caller can expect one of these stimuli to occur; the caller should 
      * re-invoke this method at the specified time in the future. However, if 
      * game progression depends on an external stimulus that occurs 
@@ -141,7 +207,7 @@ public class CheckersController
      * <p>
      * Please note that a return value of <code>0</code> does not necessarily 
      * imply that a state transition in <code>CheckerModel</code> was induced. 
-     * @return              an integer specifying how many milliseconds in the
+     * @return              an integer specifying how many nanoseconds in the
      *                      future the caller should re-invoke this method;
      *                      <code>CONTINUE_LOOP</code> if this method should be 
      *                      re-invoked right away; and <code>BREAK_LOOP</code> 
@@ -149,15 +215,34 @@ public class CheckersController
      */
     protected long step()
     {
-        switch (model.getState())
+        ControllerStepEvent event = new ControllerStepEvent();
+        event.begin();
+
+        CheckersModel.State state = model.getState();
+        int side = model.getSide();
+        long result;
+        switch (state)
+        {
+            case ANTE:     result = stepAnte();    break;
+            case READY:    result = stepReady();   break;
+            case WAITING:  result = stepWaiting(); break;
+            case FINISHED: result = BREAK_LOOP;    break;
+            case INVALID:  result = BREAK_LOOP;    break;
+            default:       result = BREAK_LOOP;    break;
+        }
+
+        if (event.shouldCommit())
         {
-            case ANTE:     return stepAnte();
-            case READY:    return stepReady();
-            case WAITING:  return stepWaiting();
-            case FINISHED: return BREAK_LOOP;
-            case INVALID:  return BREAK_LOOP;
-            default:       return BREAK_LOOP;
+            event.state = state.name();
+            event.nextState = model.getState().name();
+            event.side = Utils.reprSide(side);
+            event.result = result;
+            event.forced = forcedMove;
+            event.commit();
         }
+        forcedMove = false;
+
+        return result;
     }
 
     /**
@@ -180,35 +265,113 @@ public class CheckersController
         /* If a player has chosen a move, use it. */
         if (turnAgent.hasMove())
         {
+            reportSearch(player);
+            reportUsage(player);
+
             /* Execute the move, and continue loop */
             try {
                 model.makeMove(turnAgent.getMove());
             } catch (InvalidMoveException e) {
                 model.forfeit("invalid move " + turnAgent.getMove());
             }
+            moveMade(side);
             return CONTINUE_LOOP;
         }
 
         /* 
          * If the player has used up the allocalated per-turn time,
          * forcefully obtain a move from the player and execute it. 
-         * Otherwise sleep for timeRemain milliseconds and and check 
+         * Otherwise sleep for timeRemain nanoseconds and and check 
          * this condition again after waking up. 
          */
         if (turnClock[side].getState() == CountdownClock.FINISHED)
         {
             /* Stop calculation and forcefully obtain a move */
             turnAgent.stopCalculate();
+            forcedMove = true;
+            model.reportTimeout();
+            reportSearch(player);
+            reportUsage(player);
 
             try { 
                 model.makeMove(turnAgent.getForcedMove());
             } catch (InvalidMoveException e) {
                 model.forfeit("invalid move " + turnAgent.getMove());
             }
+            moveMade(side);
             return CONTINUE_LOOP;
         }
         else
-            return turnClock[side].getTimeRemain();
+            return turnClock[side].getTimeRemainNanos();
+    }
+
+    /**
+     * Invoked by {@link #stepWaiting stepWaiting} after <code>side</code>
+     * has moved or forfeited. If the game goes on and pondering is enabled,
+     * the player of <code>side</code> is told the positions of the game, if
+     * it wants to know, and starts pondering; if the game is over, all
+     * pondering stops.
+     * @param side          the side which moved
+     */
+    protected void moveMade(int side)
+    {
+        if (model.getState() != CheckersModel.State.READY)
+        {
+            stopPondering();
+            return;
+        }
+
+        CheckersPlayer player = model.getPlayer(side);
+        if (!ponder || !(player instanceof PonderingCheckersPlayer))
+            return;
+
+        if (player instanceof RepetitionAwareCheckersPlayer)
+            ((RepetitionAwareCheckersPlayer)player).setPositionHistory(model.getPositionHistory());
+        ponderAgent[side].startPonder((PonderingCheckersPlayer)player, model.getBoardState());
+    }
+
+    /**
+     * Stops the pondering of both sides.
+     */
+    protected void stopPondering()
+    {
+        for (PonderAgent agent : ponderAgent)
+            agent.stopPonder();
+    }
+
+    /**
+     * Passes the search report of <code>player</code>, if it provides one,
+     * to the model. This is called just before the player's move is made.
+     * @param player        the active player
+     * @see InstrumentedCheckersPlayer InstrumentedCheckersPlayer
+     */
+    protected void reportSearch(CheckersPlayer player)
+    {
+        if (!(player instanceof InstrumentedCheckersPlayer))
+            return;
+
+        SearchReport report = ((InstrumentedCheckersPlayer)player).getSearchReport();
+        if (report != null)
+            model.reportSearch(report);
+    }
+
+    /**
+     * Passes the resources <code>player</code> used to select its move to the
+     * model: the usage the player reports itself, if it is a
+     * {@link MeteredCheckersPlayer MeteredCheckersPlayer}, and otherwise the
+     * usage of its computation thread. This is called just before the
+     * player's move is made, after the calculation has ended.
+     * @param player        the active player
+     */
+    protected void reportUsage(CheckersPlayer player)
+    {
+        ResourceUsage usage;
+        if (player instanceof MeteredCheckersPlayer)
+            usage = ((MeteredCheckersPlayer)player).getResourceUsage();
+        else
+            usage = turnAgent.getUsage();
+        if (usage != null)
+            model.reportUsage(usage);
     }
 
     /**
@@ -223,8 +386,23 @@ public class CheckersController
         model.startWaiting();
 
         /* Start the turn clock that enforces term limits */
-        turnClock[side].reset();
-        turnClock[side].resume();
+        if (!startTurnClock(side))
+        {
+            model.forfeit("out of time");
+            moveMade(side);
+            return CONTINUE_LOOP;
+        }
+
+        /* Stop pondering on the turn clock, so the player pays for a slow stop */
+        ponderAgent[side].stopPonder();
+
+        /* Tell the player how long it has, if it wants to know */
+        if (player instanceof TimedCheckersPlayer)
+            ((TimedCheckersPlayer)player).setTurnTime(turnClock[side].getDelay());
+
+        /* Tell the player which positions have occurred, if it wants to know */
+        if (player instanceof RepetitionAwareCheckersPlayer)
+            ((RepetitionAwareCheckersPlayer)player).setPositionHistory(model.getPositionHistory());
 
         /* Begin calculations with a TurnAgent */
         turnAgent.startCalculate(player, model.getBoardState());
@@ -232,6 +410,40 @@ public class CheckersController
         return CONTINUE_LOOP;
     }
 
+    /**
+     * Starts the turn clock of <code>side</code>, which is about to move. If
+     * the game clock is a {@link NanoGameClock NanoGameClock}, which limits
+     * the time of the game, the side may think for its turn limit or the
+     * time it has left on the game clock, whichever is shorter, or without a
+     * turn limit, for the {@link NanoGameClock#getMoveBudgetNanos budget}
+     * of the move. Otherwise it may think for its turn limit.
+     * @param side          the side to move
+     * @return              false if the side has run out of time on the game
+     *                      clock, true otherwise
+     */
+    protected boolean startTurnClock(int side)
+    {
+        long delay = turnLimit[side] < 0 ? -1 : turnLimit[side] * 1000000;
+
+        GameClock clock = model.getClock();
+        if (clock instanceof NanoGameClock)
+        {
+            NanoGameClock nanoClock = (NanoGameClock)clock;
+            long remain = nanoClock.getGameTimeRemainNanos(side);
+            if (remain == 0)
+                return false;
+            if (remain > 0 && delay < 0)
+                delay = nanoClock.getMoveBudgetNanos(side);
+            else if (remain > 0 && remain < delay)
+                delay = remain;
+        }
+
+        turnClock[side].setDelayNanos(delay);
+        turnClock[side].reset();
+        turnClock[side].resume();
+        return true;
+    }
+
     /**
      * Terminates the checkers game. This method crashes the game if it is ongoing. 
      * Otherwise, this method does nothing. This is called when the UI exits, 
@@ -241,6 +453,7 @@ public class CheckersController
     public synchronized void terminateGame(String reason)
     {
         turnAgent.stopCalculate();
+        stopPondering();
 
         if (model.getState() == CheckersModel.State.READY ||
             model.getState() == CheckersModel.State.WAITING )
@@ -257,6 +470,7 @@ public class CheckersController
      */
     public void setTurnLimit(int side, long limit)
     { 
+        turnLimit[side] = limit;
         turnClock[side].setDelay(limit);
     }
 
@@ -267,5 +481,58 @@ public class CheckersController
      *                      in selecting a move each turn; or <code>-1</code>
      *                      if no limit
      */
-    public long getTurnLimit(int side) { return turnClock[side].getDelay(); }
+    public long getTurnLimit(int side) { return turnLimit[side]; }
+
+    /**
+     * Sets whether the turn clocks measure the CPU time of the computation
+     * thread rather than elapsed real time. Measured in CPU time, a player
+     * is not charged for garbage collection pauses, or for time the thread
+     * waits for a processor while other threads run, but neither is it
+     * charged for threads it starts itself, nor for the computation of a
+     * player which runs in another process, such as a
+     * {@link cs540.checkers.engine.RemoteEnginePlayer RemoteEnginePlayer},
+     * while the thread waits for it. This should be set before the
+     * game starts, and the game clock should measure the same
+     * {@link #getTimeSource time source}.
+     * @param cpuTime       whether to measure CPU time
+     * @throws IllegalArgumentException     if the JVM cannot measure the CPU
+     *                      time of threads
+     */
+    public void setCpuTime(boolean cpuTime)
+    {
+        if (cpuTime && turnAgent.getCpuTime() < 0)
+            throw new IllegalArgumentException("Thread CPU time is not supported");
+
+        if (cpuTime)
+            timeSource = new TimeSource() {
+                public long nanoTime() { return turnAgent.getCpuTime(); }
+            };
+        else
+            timeSource = TimeSource.WALL;
+
+        for (int i = 0; i < 2; i++)
+            turnClock[i] = new NanoCountdownClock(turnLimit[i], timeSource);
+    }
+
+    /**
+     * Gets the time source of the turn clocks, which measures either elapsed
+     * real time or the CPU time of the computation thread.
+     * @return              the time source
+     * @see #setCpuTime setCpuTime
+     */
+    public TimeSource getTimeSource() { return timeSource; }
+
+    /**
+     * Sets whether players which implement {@link PonderingCheckersPlayer
+     * PonderingCheckersPlayer} ponder during their opponent's turn. This
+     * should be set before the game starts. 
+     * @param ponder        whether pondering is enabled
+     */
+    public void setPonder(boolean ponder) { this.ponder = ponder; }
+
+    /**
+     * Gets whether pondering is enabled.
+     * @return              whether pondering is enabled
+     */
+    public boolean getPonder() { return ponder; }
 }
@@ -1,6 +1,9 @@
 package cs540.checkers;
 import static cs540.checkers.CheckersConsts.*;
 
+import cs540.checkers.jfr.MakeMoveEvent;
+import cs540.checkers.variant.*;
+
 import java.io.*;
 
 import java.awt.event.*;
@@ -91,6 +94,15 @@ public class CheckersModel
     /** This many moves without a capture result in a draw */
     protected int drawCaptureCondition = 100;
 
+    /** A position occurring this many times results in a draw */
+    protected int drawRepetitionCondition = 3;
+
+    /** The hashes of the positions of the game, for detecting repetitions */
+    protected PositionHistory history;
+
+    /** The rules of the game */
+    protected final Variant variant;
+
     /** The values the state variable takes on */
     public static enum State
     {
@@ -126,6 +138,24 @@ public class CheckersModel
      */
     public CheckersModel(CheckersPlayer[] cp, int[] bs, int side)
     {
+        this(cp, bs, side, Variant.AMERICAN);
+    }
+
+    /**
+     * Constructs a <code>CheckersModel</code> with the specified checkers 
+     * players and board state, playing a variant of checkers.
+     * <p>
+     * The initial state of the CheckerModel is ANTE.
+     *
+     * @param cp        an array of the two checkers players
+     * @param bs        an array represeting the initial board state, on the
+     *                  board of the variant
+     * @param side      the side to make the first move
+     * @param variant   the variant played
+     */
+    public CheckersModel(CheckersPlayer[] cp, int[] bs, int side, Variant variant)
+    {
+        this.variant = variant;
         this.cp = cp.clone();
         this.bs = bs.clone();
         this.side = side;
@@ -133,6 +163,8 @@ public class CheckersModel
         this.clock = new DefaultGameClock();
         ply = 0;
         lastCapturePly = 0;
+        history = new PositionHistory();
+        history.push(Zobrist.hash(this.bs, side), true);
         state = State.ANTE;
     }
 
@@ -154,7 +186,7 @@ public class CheckersModel
                 cp[RED].getName() + " " + cp[BLK].getName());
         fireGameChanged(e);
 
-        if (Utils.isLoser(bs, side))
+        if (!variant.hasAnyMove(bs, side))
             declareWinner(Utils.otherSide(side));
         else
             state = State.READY;
@@ -185,19 +217,35 @@ public class CheckersModel
         if (state != State.WAITING)
             throw new IllegalStateException();
 
-        if (!Utils.isValidMove(bs, side, move))
+        MakeMoveEvent event = new MakeMoveEvent();
+        event.begin();
+
+        if (!variant.isValidMove(bs, side, move))
+        {
+            if (event.shouldCommit())
+            {
+                event.side = Utils.reprSide(side);
+                event.move = variant.reprMove(bs, move);
+                event.ply = ply;
+                event.valid = false;
+                event.commit();
+            }
             throw new InvalidMoveException();
+        }
 
-        String detail = String.format("%s %s (%d ms)", Utils.reprSide(side), 
-                move, clock.getTurnTime(side));
-        GameEvent e = new GameEvent(this, "MOVE", detail);
+        String repr = variant.reprMove(bs, move);
+        GameEvent e = new MoveMadeEvent(this, side, new Move(move), repr,
+                clock.getTurnTime(side), ply);
 
         /* Update state */
-        Utils.execute(bs, move);
+        boolean capture = variant.isCapture(bs, move);
+        boolean irreversible = variant.isIrreversible(bs, move);
+        variant.execute(bs, move);
         side = Utils.otherSide(side);
         ply += 1;
-        if (!Utils.isWalk(move))
+        if (capture)
             lastCapturePly = ply;
+        history.push(Zobrist.hash(bs, side), irreversible);
         state = State.READY;
 
         /* Update clock */
@@ -207,12 +255,84 @@ public class CheckersModel
         fireGameChanged(e);
 
         /* End if lose or tie */
-        if (Utils.isLoser(bs, side))
+        if (!variant.hasAnyMove(bs, side))
             declareWinner(Utils.otherSide(side));
         if (lastCapturePly + drawCaptureCondition == ply)
             declareWinner(NEITHER);
+        if (state != State.FINISHED && history.count() >= drawRepetitionCondition)
+            declareWinner(NEITHER);
 
         fireStateChanged();
+
+        if (event.shouldCommit())
+        {
+            event.side = Utils.reprSide(Utils.otherSide(side));
+            event.move = repr;
+            event.ply = ply - 1;
+            event.valid = true;
+            event.turnTime = clock.getTurnTime(Utils.otherSide(side));
+            event.commit();
+        }
+    }
+
+    /**
+     * Notifies listeners of the search the active player performed to select
+     * its move, by firing a {@link SearchEvent SearchEvent}. This method does
+     * not change the state of the game.
+     * <p>
+     * This method may only called when <code>state</code> is 
+     * <code>WAITING</code>. An <code>IllegalStateException</code> is thrown 
+     * when called under any other state.
+     *
+     * @param report    the report of the active player's search
+     * @throws IllegalStateException        if the state is not <code>WAITING</code>
+     */
+    public synchronized void reportSearch(SearchReport report)
+    {
+        if (state != State.WAITING)
+            throw new IllegalStateException();
+
+        fireGameChanged(new SearchEvent(this, side, report));
+    }
+
+    /**
+     * Notifies listeners of the resources the active player used to select
+     * its move, by firing a {@link UsageEvent UsageEvent}. This method does
+     * not change the state of the game.
+     * <p>
+     * This method may only called when <code>state</code> is 
+     * <code>WAITING</code>. An <code>IllegalStateException</code> is thrown 
+     * when called under any other state.
+     *
+     * @param usage     the resources used by the active player
+     * @throws IllegalStateException        if the state is not <code>WAITING</code>
+     */
+    public synchronized void reportUsage(ResourceUsage usage)
+    {
+        if (state != State.WAITING)
+            throw new IllegalStateException();
+
+        fireGameChanged(new UsageEvent(this, side, usage));
+    }
+
+    /**
+     * Notifies listeners that the active player used up its turn time, by
+     * firing a <code>"TIMEOUT"</code> game event. The controller then makes 
+     * the best move the player had selected so far. This method does not 
+     * change the state of the game.
+     * <p>
+     * This method may only called when <code>state</code> is 
+     * <code>WAITING</code>. An <code>IllegalStateException</code> is thrown 
+     * when called under any other state.
+     *
+     * @throws IllegalStateException        if the state is not <code>WAITING</code>
+     */
+    public synchronized void reportTimeout()
+    {
+        if (state != State.WAITING)
+            throw new IllegalStateException();
+
+        fireGameChanged(new GameEvent(this, "TIMEOUT", Utils.reprSide(side)));
     }
 
     /**
@@ -342,6 +462,24 @@ public class CheckersModel
      */
     public CheckersPlayer getPlayer(int side) { return cp[side]; }
 
+    /**
+     * Gets the variant of checkers played.
+     * @return          the variant
+     */
+    public Variant getVariant() { return variant; }
+
+    /**
+     * Gets the positions of the game since it started, for players which
+     * want to recognize repetitions. The game is drawn when a position
+     * occurs for the third time.
+     * @return          a copy of the history of positions, the latest being
+     *                  the current position
+     */
+    public synchronized PositionHistory getPositionHistory()
+    {
+        return new PositionHistory(history);
+    }
+
     /**
      * Gets the clock used by this model for time accounting.
      * @return          the game clock used for time accounting
@@ -0,0 +1,147 @@
+package cs540.checkers;
+
+import java.util.*;
+import java.util.concurrent.*;
+import javax.swing.event.*;
+
+/**
+ * This program measures the overhead per move of {@link CheckersController
+ * CheckersController} in headless games. Two players which think for a fixed
+ * time, by default one millisecond so that the game runs at close to 1000
+ * moves per second, play random games until the given number of moves has
+ * been made. The <i>gap</i> of a move is the time from the end of one
+ * player's calculation to the start of the next player's: the time the
+ * controller takes to notice the move, make it on the model, and start the
+ * next turn. The overhead is the time per move not spent calculating,
+ * which also includes starting and finishing each calculation.
+ * <p>
+ * Usage: <code>java cs540.checkers.ControllerBenchmark [moves] [think
+ * &micro;s]</code>
+ */
+public class ControllerBenchmark
+{
+    public static void main(String[] args) throws InterruptedException
+    {
+        int moves = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+        long think = (args.length > 1 ? Long.parseLong(args[1]) : 1000) * 1000;
+
+        /* The first pass warms up */
+        for (int pass = 0; pass < 2; pass++)
+        {
+            Timing timing = new Timing(moves);
+            Random random = new Random(1);
+            long start = System.nanoTime();
+            while (timing.moves < moves)
+                play(timing, random, think);
+            long elapsed = System.nanoTime() - start;
+
+            if (pass == 0)
+                continue;
+            long[] gaps = Arrays.copyOf(timing.gaps, timing.gapCount);
+            Arrays.sort(gaps);
+            System.out.printf("%d moves in %.0f ms: %.0f moves/s%n", timing.moves,
+                    elapsed / 1e6, timing.moves * 1e9 / elapsed);
+            System.out.printf("overhead per move  %8.1f us%n",
+                    (elapsed - timing.thinking) / 1e3 / timing.moves);
+            System.out.printf("gap mean           %8.1f us%n", mean(gaps) / 1e3);
+            System.out.printf("gap median         %8.1f us%n", gaps[gaps.length / 2] / 1e3);
+            System.out.printf("gap p90            %8.1f us%n", gaps[gaps.length * 90 / 100] / 1e3);
+            System.out.printf("gap p99            %8.1f us%n", gaps[gaps.length * 99 / 100] / 1e3);
+            System.out.printf("gap max            %8.1f us%n", gaps[gaps.length - 1] / 1e3);
+        }
+        System.exit(0);
+    }
+
+    /** Plays a game to its end, or until enough moves have been made. */
+    static void play(Timing timing, Random random, long think) throws InterruptedException
+    {
+        CheckersPlayer[] cp = {
+            new FixedTimePlayer(CheckersConsts.RED, think, random, timing),
+            new FixedTimePlayer(CheckersConsts.BLK, think, random, timing),
+        };
+        final CheckersModel model = new CheckersModel(cp, Utils.INITIAL_BOARDSTATE, Utils.INITIAL_SIDE);
+        CheckersController ctl = new CheckersController(model, new long[] {1000, 1000});
+
+        final CountDownLatch over = new CountDownLatch(1);
+        model.addChangeListener(new ChangeListener() {
+            public void stateChanged(ChangeEvent e)
+            {
+                CheckersModel.State state = model.getState();
+                if (state == CheckersModel.State.FINISHED || state == CheckersModel.State.INVALID)
+                    over.countDown();
+            }
+        });
+
+        timing.last = -1;
+        ctl.loopLater(0);
+        while (!over.await(10, TimeUnit.MILLISECONDS))
+            if (timing.moves >= timing.gaps.length)
+            {
+                ctl.terminateGame("enough moves");
+                break;
+            }
+    }
+
+    static double mean(long[] values)
+    {
+        double total = 0;
+        for (long v : values)
+            total += v;
+        return total / values.length;
+    }
+
+    /** The times recorded by the players of a run. */
+    static class Timing
+    {
+        final long[] gaps;
+        int gapCount;
+        volatile int moves;
+        long thinking;
+        long last;
+
+        Timing(int moves) { gaps = new long[moves]; }
+    }
+
+    /**
+     * This checkers player thinks for a fixed time, by spinning, and then
+     * selects a move at random.
+     */
+    static class FixedTimePlayer extends CheckersPlayer
+    {
+        final long think;
+        final Random random;
+        final Timing timing;
+
+        FixedTimePlayer(int side, long think, Random random, Timing timing)
+        {
+            super("fixed", side);
+            this.think = think;
+            this.random = random;
+            this.timing = timing;
+        }
+
+        public void calculateMove(int[] bs)
+        {
+            long start = System.nanoTime();
+            synchronized (timing)
+            {
+                if (timing.last >= 0 && timing.gapCount < timing.gaps.length)
+                    timing.gaps[timing.gapCount++] = start - timing.last;
+            }
+
+            List<Move> moves = Utils.getAllPossibleMoves(bs, side);
+            if (!moves.isEmpty())
+                setMove(moves.get(random.nextInt(moves.size())));
+            while (System.nanoTime() - start < think)
+                ;
+
+            long end = System.nanoTime();
+            synchronized (timing)
+            {
+                timing.thinking += end - start;
+                timing.last = end;
+                timing.moves++;
+            }
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package cs540.checkers;
+
+/**
+ * This interface is implemented by checkers players which report statistics
+ * about the search they perform to select each move. After a move is
+ * obtained from such a player, {@link CheckersController CheckersController}
+ * emits its report as a {@link SearchEvent SearchEvent}.
+ */
+public interface InstrumentedCheckersPlayer
+{
+    /**
+     * Returns the report of the search for the most recent move. Players 
+     * should publish a new report whenever a deepening iteration completes,
+     * so that a report is available even if the move is forcefully obtained.
+     * This method may be called from any thread.
+     * @return      the most recent search report, or <code>null</code> if 
+     *              no report is available for the current move
+     */
+    public SearchReport getSearchReport();
+}
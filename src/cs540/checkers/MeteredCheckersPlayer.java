@@ -0,0 +1,18 @@
+package cs540.checkers;
+
+/**
+ * This interface is implemented by checkers players which measure the
+ * resources they use themselves, such as players which run in another
+ * process. For other players, {@link CheckersController CheckersController}
+ * reports the usage of the computation thread measured by
+ * {@link TurnAgent TurnAgent}.
+ */
+public interface MeteredCheckersPlayer
+{
+    /**
+     * Returns the resources used to select the most recent move. This method
+     * may be called from any thread.
+     * @return      the usage, or <code>null</code> if it is not known
+     */
+    public ResourceUsage getResourceUsage();
+}
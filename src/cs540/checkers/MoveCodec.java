@@ -0,0 +1,153 @@
+package cs540.checkers;
+import static cs540.checkers.CheckersConsts.*;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * This class packs moves into compact integer codes for storage, and
+ * provides the variable-length integer encoding used by binary formats.
+ * <p>
+ * Only the 32 dark squares of a board are playable. They are numbered
+ * <code>0</code> to <code>31</code> in location order, so the square of a
+ * location is <code>loc / 2</code>. A move code consists of
+ * <ul>
+ * <li>bits 0-4, the square of the starting location;
+ * <li>bit 5, set if the move is a jump;
+ * <li>two bits per step, each an index into {@link Utils#DIAG Utils.DIAG};
+ * <li>a single set bit following the last step.
+ * </ul>
+ * A walk therefore has a 9 bit code, which is written as a two byte varint,
+ * and each additional jump adds two bits.
+ *
+ * @see #writeVarLong writeVarLong
+ */
+public class MoveCodec
+{
+    /** The number of playable squares. */
+    public static final int SQUARES = W * H / 2;
+
+    /** The largest number of steps a move code can hold. */
+    public static final int MAX_STEPS = 28;
+
+    private MoveCodec() {}
+
+    /**
+     * Gets the playable square of a location.
+     * @param loc       a dark location of the board
+     * @return          the square, from <code>0</code> to <code>31</code>
+     */
+    public static int squareOf(int loc)
+    {
+        return loc >> 1;
+    }
+
+    /**
+     * Gets the location of a playable square.
+     * @param sq        a square, from <code>0</code> to <code>31</code>
+     * @return          the location of the square
+     */
+    public static int locationOf(int sq)
+    {
+        int row = sq >> 2;
+        return row * W + 2 * (sq & 3) + ((row & 1) == 0 ? 1 : 0);
+    }
+
+    /**
+     * Packs a move into a move code.
+     * @param move      the move to encode
+     * @return          the move code
+     * @throws IllegalArgumentException     if a step of the move is not a
+     *                                      diagonal walk or jump
+     */
+    public static long encode(List<Integer> move)
+    {
+        int n = move.size() - 1;
+        if (n < 1 || n > MAX_STEPS)
+            throw new IllegalArgumentException("Cannot encode move " + Utils.reprMove(move));
+
+        boolean jump = n > 1 || !Utils.isWalk(move);
+        int dist = jump ? 2 : 1;
+
+        long code = squareOf(move.get(0)) | (jump ? 1 << 5 : 0);
+        int shift = 6;
+        for (int i = 0; i < n; i++)
+        {
+            int delta = move.get(i + 1) - move.get(i);
+            int d = 0;
+            while (d < 4 && Utils.DIAG[d] * dist != delta)
+                d++;
+            if (d == 4)
+                throw new IllegalArgumentException("Cannot encode move " + Utils.reprMove(move));
+            code |= (long)d << shift;
+            shift += 2;
+        }
+        return code | (1L << shift);
+    }
+
+    /**
+     * Unpacks a move code created by {@link #encode encode}.
+     * @param code      the move code
+     * @return          the move
+     * @throws IllegalArgumentException     if the code is malformed
+     */
+    public static Move decode(long code)
+    {
+        if (code < 64)
+            throw new IllegalArgumentException("Invalid move code " + code);
+
+        int loc = locationOf((int)(code & 31));
+        int dist = (code & 32) != 0 ? 2 : 1;
+        List<Integer> move = new ArrayList<Integer>();
+        move.add(loc);
+
+        /* Steps follow until only the terminating bit is left */
+        for (code >>>= 6; code > 1; code >>>= 2)
+        {
+            loc += Utils.DIAG[(int)(code & 3)] * dist;
+            if (loc < 0 || loc >= W * H)
+                throw new IllegalArgumentException("Invalid move code");
+            move.add(loc);
+        }
+        return new Move(move);
+    }
+
+    /**
+     * Writes a non-negative integer as a varint: seven bits per byte, least
+     * significant first, with the high bit of each byte set if more follow.
+     * @param out       the stream to write to
+     * @param v         the value, which must not be negative
+     * @throws IOException      if an I/O error occurs
+     */
+    public static void writeVarLong(OutputStream out, long v) throws IOException
+    {
+        while ((v & ~0x7FL) != 0)
+        {
+            out.write((int)(v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        out.write((int)v);
+    }
+
+    /**
+     * Reads a varint written by {@link #writeVarLong writeVarLong}.
+     * @param in        the stream to read from
+     * @return          the value
+     * @throws EOFException     if the stream ends before the value
+     * @throws IOException      if an I/O error occurs or the value is malformed
+     */
+    public static long readVarLong(InputStream in) throws IOException
+    {
+        long v = 0;
+        for (int shift = 0; shift < 64; shift += 7)
+        {
+            int b = in.read();
+            if (b < 0)
+                throw new EOFException();
+            v |= (long)(b & 0x7F) << shift;
+            if ((b & 0x80) == 0)
+                return v;
+        }
+        throw new IOException("Malformed varint");
+    }
+}
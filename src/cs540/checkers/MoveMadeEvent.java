@@ -0,0 +1,83 @@
+package cs540.checkers;
+
+/**
+ * MoveMadeEvent notifies interested parties that a player made a move. The 
+ * action is <code>"MOVE"</code>, and the details are the side, the move, and
+ * the turn time, e.g. <code>"RED f4-d6 (51 ms)"</code>.
+ */
+public class MoveMadeEvent extends GameEvent
+{
+    protected int side;
+    protected Move move;
+    protected long turnTime;
+    protected int ply;
+
+    /**
+     * Constructs a MoveMadeEvent for a move of the specified side.
+     * @param source        the object on which the event occurred
+     * @param side          the side which made the move
+     * @param move          the move
+     * @param turnTime      the time, in milliseconds, the side took for its turn
+     * @param ply           the ply of the move, counting from <code>0</code>
+     */
+    public MoveMadeEvent(Object source, int side, Move move, long turnTime, int ply)
+    {
+        this(source, side, move, Utils.reprMove(move), turnTime, ply);
+    }
+
+    /**
+     * Constructs a MoveMadeEvent for a move of the specified side, written
+     * in the details as given, e.g. in the notation of a variant.
+     * @param source        the object on which the event occurred
+     * @param side          the side which made the move
+     * @param move          the move
+     * @param repr          the move as written in the details
+     * @param turnTime      the time, in milliseconds, the side took for its turn
+     * @param ply           the ply of the move, counting from <code>0</code>
+     */
+    public MoveMadeEvent(Object source, int side, Move move, String repr, long turnTime, int ply)
+    {
+        super(source, "MOVE", String.format("%s %s (%d ms)", 
+                    Utils.reprSide(side), repr, turnTime));
+        this.side = side;
+        this.move = move;
+        this.turnTime = turnTime;
+        this.ply = ply;
+    }
+
+    /**
+     * Gets the side which made the move.
+     * @return the side
+     */
+    public int getSide()
+    {
+        return side;
+    }
+
+    /**
+     * Gets the move.
+     * @return the move
+     */
+    public Move getMove()
+    {
+        return move;
+    }
+
+    /**
+     * Gets the time, in milliseconds, the side took for its turn.
+     * @return the turn time
+     */
+    public long getTurnTime()
+    {
+        return turnTime;
+    }
+
+    /**
+     * Gets the ply of the move, counting from <code>0</code>.
+     * @return the ply
+     */
+    public int getPly()
+    {
+        return ply;
+    }
+}
@@ -0,0 +1,140 @@
+package cs540.checkers;
+
+/**
+ * This class implements a countdown clock which conforms to the
+ * <code>CountdownClock</code> interface, and keeps time in nanoseconds from a
+ * {@link TimeSource TimeSource}. Unlike {@link DefaultCountdownClock
+ * DefaultCountdownClock}, it is not affected by changes to the system time
+ * or by the coarse resolution of <code>System.currentTimeMillis</code> on
+ * some systems, so it can enforce short turn limits precisely. With a time
+ * source which measures CPU time, it counts down only while a player
+ * computes.
+ * <p>
+ * The methods of <code>CountdownClock</code> report times in milliseconds;
+ * {@link #getTimeRemain getTimeRemain} rounds up, so a caller which sleeps
+ * for the time remaining does not wake before the clock finishes.
+ * @see CountdownClock CountdownClock
+ */
+public class NanoCountdownClock implements CountdownClock
+{
+    protected final TimeSource source;
+    protected long delay;
+    protected int state;
+    protected long remain;
+    protected long resumeTime;
+
+    /**
+     * Creates a countdown clock which counts down from <code>delay</code>
+     * milliseconds of elapsed real time.
+     * @param delay     the time, in milliseconds, that this clock will count
+     *                  down from
+     */
+    public NanoCountdownClock(long delay)
+    {
+        this(delay, TimeSource.WALL);
+    }
+
+    /**
+     * Creates a countdown clock which counts down from <code>delay</code>
+     * milliseconds of the given time source.
+     * @param delay     the time, in milliseconds, that this clock will count
+     *                  down from
+     * @param source    the time source to count down
+     */
+    public NanoCountdownClock(long delay, TimeSource source)
+    {
+        this.source = source;
+        this.delay = delay < 0 ? -1 : delay * 1000000;
+        state = PAUSED;
+        reset();
+    }
+
+    public void reset()
+    {
+        touch();
+        state = PAUSED;
+        remain = delay;
+    }
+
+    public void resume()
+    {
+        touch();
+        if (delay >= 0 && state == PAUSED)
+            state = RUNNING;
+    }
+
+    public void pause()
+    {
+        touch();
+        if (state == RUNNING)
+            state = PAUSED;
+    }
+
+    /**
+     * Maintains the state of the clock by computing the difference in
+     * time since the last call to this method.
+     */
+    protected void touch()
+    {
+        long currentTime = source.nanoTime();
+        if (state == RUNNING)
+            remain -= (currentTime - resumeTime);
+        resumeTime = currentTime;
+
+        if (delay >= 0 && remain <= 0)
+            state = FINISHED;
+    }
+
+    public long getTimeRemain()
+    {
+        long nanos = getTimeRemainNanos();
+        if (nanos < 0)
+            return -1;
+        return (nanos + 999999) / 1000000;
+    }
+
+    /**
+     * Returns how much time, in nanoseconds, remains in this countdown.
+     * The return value is non-negative if this timer is enabled, and negative
+     * if disabled.
+     * @return          how much time remains in this countdown, in nanoseconds
+     */
+    public long getTimeRemainNanos()
+    {
+        touch();
+        if (delay < 0)
+            return -1;
+        if (remain < 0)
+            return 0;
+        return remain;
+    }
+
+    public int getState()
+    {
+        touch();
+        return state;
+    }
+
+    public long getDelay() { return delay < 0 ? -1 : delay / 1000000; }
+    public void setDelay(long delay) { setDelayNanos(delay < 0 ? -1 : delay * 1000000); }
+
+    /**
+     * Gets the time, in nanoseconds, that this clock counts down from.
+     * @return          the time this clock counts down from, in nanoseconds,
+     *                  or a negative value if disabled
+     */
+    public long getDelayNanos() { return delay; }
+
+    /**
+     * Sets the time, in nanoseconds, that this clock counts down from. If
+     * <code>delay</code> is negative, this clock is disabled.
+     * @param delay     the time this clock counts down from, in nanoseconds
+     */
+    public void setDelayNanos(long delay) { this.delay = delay < 0 ? -1 : delay; }
+
+    /**
+     * Gets the time source this clock counts down.
+     * @return          the time source
+     */
+    public TimeSource getTimeSource() { return source; }
+}
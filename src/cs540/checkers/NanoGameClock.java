@@ -0,0 +1,265 @@
+package cs540.checkers;
+
+/**
+ * This class implements a game clock which conforms to the
+ * <code>GameClock</code> interface, keeps time in nanoseconds from a
+ * {@link TimeSource TimeSource}, and supports the common time controls of
+ * tournament play:
+ * <ul>
+ * <li><i>Sudden death</i>: each side has a fixed time for the whole game.
+ * <li><i>Fischer increment</i>: each side is credited with the increment
+ *     after each of its moves, so time saved on easy moves may be spent on
+ *     hard ones, and every move has at least the increment.
+ * <li><i>Byo-yomi</i>: once a side has used its game time, it has the
+ *     byo-yomi period for each move. A move which takes longer uses up one
+ *     period for each whole period it takes, and the side has run out of
+ *     time when it has no periods left.
+ * </ul>
+ * Increment and byo-yomi may be combined. A negative game limit leaves a
+ * side's time unlimited, in which case the clock only accounts for the time
+ * the side has used.
+ * <p>
+ * With a time source of elapsed real time, this clock is not affected by
+ * changes to the system time. With a time source which measures the CPU
+ * time of the computation thread, a side is charged only for the time its
+ * player spends computing, not for garbage collection pauses or the
+ * threads of other programs, which makes games on a loaded machine fairer.
+ * <p>
+ * The methods of <code>GameClock</code> report times in milliseconds;
+ * methods with the suffix <code>Nanos</code> report them in nanoseconds.
+ * Unlike <code>DefaultGameClock</code>, this clock is thread safe, since the
+ * model presses it while the controller and user interface read it.
+ * @see GameClock GameClock
+ */
+public class NanoGameClock implements GameClock
+{
+    /**
+     * The number of moves a side is assumed to have left to play on its game
+     * time, by {@link #getMoveBudgetNanos getMoveBudgetNanos}.
+     */
+    public static final int MOVES_TO_GO = 30;
+
+    protected final TimeSource source;
+    protected long[] gameLimit;
+    protected long increment;
+    protected long byoYomi;
+
+    /** The game time remaining, which is negative while a side is in byo-yomi. */
+    protected long[] gameRemain;
+    protected int[] periodsRemain;
+    protected long[] gameTime;
+    protected long[] turnTime;
+
+    protected int side;
+    protected boolean running;
+    protected long resumeTime;
+
+    /**
+     * Creates a game clock which measures elapsed real time, without
+     * increment or byo-yomi. The initial state will be PAUSED.
+     * @param gameLimit     how much time each player has for the game, in
+     *                      milliseconds, or a negative value if unlimited
+     * @param side          the side to move first
+     */
+    public NanoGameClock(long[] gameLimit, int side)
+    {
+        this(gameLimit, 0, 0, 0, side, TimeSource.WALL);
+    }
+
+    /**
+     * Creates a game clock with the specified time control. The initial
+     * state will be PAUSED.
+     * @param gameLimit     how much time each player has for the game, in
+     *                      milliseconds, or a negative value if unlimited
+     * @param increment     the time added after each move, in milliseconds
+     * @param byoYomi       the byo-yomi period, in milliseconds, or
+     *                      <code>0</code> for none
+     * @param periods       the number of byo-yomi periods of each side
+     * @param side          the side to move first
+     * @param source        the time source to measure
+     */
+    public NanoGameClock(long[] gameLimit, long increment, long byoYomi, int periods,
+            int side, TimeSource source)
+    {
+        this.source = source;
+        this.gameLimit = new long[2];
+        this.gameRemain = new long[2];
+        this.periodsRemain = new int[2];
+        for (int i = 0; i < 2; i++)
+        {
+            this.gameLimit[i] = gameLimit[i] < 0 ? -1 : gameLimit[i] * 1000000;
+            this.gameRemain[i] = this.gameLimit[i];
+            this.periodsRemain[i] = byoYomi > 0 ? periods : 0;
+        }
+        this.increment = increment * 1000000;
+        this.byoYomi = byoYomi * 1000000;
+        this.gameTime = new long[2];
+        this.turnTime = new long[2];
+        this.side = side;
+    }
+
+    public synchronized long getGameTime(int _side)
+    {
+        touch();
+        return gameTime[_side] / 1000000;
+    }
+
+    /**
+     * Returns how much time, in milliseconds, the specified side has
+     * remaining in the game, including its byo-yomi periods.
+     * @param _side     the side to query
+     * @return          how much time <code>_side</code> has remaining, in
+     *                  milliseconds, or <code>-1</code> if unlimited
+     */
+    public long getGameTimeRemain(int _side)
+    {
+        long nanos = getGameTimeRemainNanos(_side);
+        return nanos < 0 ? -1 : nanos / 1000000;
+    }
+
+    /**
+     * Returns how much time, in nanoseconds, the specified side has
+     * remaining in the game, including its byo-yomi periods. When it is the
+     * side's turn, this is the longest the side may think about its move.
+     * @param _side     the side to query
+     * @return          how much time <code>_side</code> has remaining, in
+     *                  nanoseconds, or <code>-1</code> if unlimited
+     */
+    public synchronized long getGameTimeRemainNanos(int _side)
+    {
+        touch();
+        return remain(_side);
+    }
+
+    /**
+     * Returns how long, in nanoseconds, the specified side should think
+     * about its next move: its share of the game time it has left, over
+     * {@link #MOVES_TO_GO MOVES_TO_GO} moves, plus the increment. Once its
+     * game time is nearly used and it has byo-yomi periods left, it may also
+     * think for three quarters of one period, which leaves the move time to
+     * be made without using up the period. The budget leaves a tenth of the
+     * time remaining, so that a move made when the budget is used is not out
+     * of time.
+     * @param _side     the side to query
+     * @return          the budget of the next move of <code>_side</code>, in
+     *                  nanoseconds, or <code>-1</code> if unlimited
+     */
+    public synchronized long getMoveBudgetNanos(int _side)
+    {
+        touch();
+        long remain = remain(_side);
+        if (remain < 0)
+            return -1;
+
+        long main = Math.max(0, gameRemain[_side]);
+        long budget = main / MOVES_TO_GO + increment;
+        if (periodsRemain[_side] > 0 && main < byoYomi)
+            budget = Math.max(budget, main + byoYomi - byoYomi / 4);
+        return Math.min(budget, remain - remain / 10);
+    }
+
+    public synchronized long getTurnTime(int _side)
+    {
+        touch();
+        return turnTime[_side] / 1000000;
+    }
+
+    /**
+     * Returns how many byo-yomi periods the specified side has left.
+     * @param _side     the side to query
+     * @return          the number of periods left
+     */
+    public synchronized int getPeriodsRemain(int _side)
+    {
+        return periodsRemain[_side];
+    }
+
+    /**
+     * Returns whether the time of the specified side is limited.
+     * @param _side     the side to query
+     * @return          true if <code>_side</code> can run out of time
+     */
+    public boolean isLimited(int _side)
+    {
+        return gameLimit[_side] >= 0;
+    }
+
+    public synchronized void press()
+    {
+        pause();
+
+        /* Settle the turn of the side which moved */
+        if (gameLimit[side] >= 0)
+        {
+            if (gameRemain[side] < 0 && byoYomi > 0)
+            {
+                long lost = -gameRemain[side] / byoYomi;
+                periodsRemain[side] = (int)Math.max(0, periodsRemain[side] - lost);
+                gameRemain[side] = 0;
+            }
+            gameRemain[side] += increment;
+        }
+
+        side = Utils.otherSide(side);
+        turnTime[side] = 0;
+        resume();
+    }
+
+    public synchronized void pause()
+    {
+        touch();
+        running = false;
+    }
+
+    public synchronized void resume()
+    {
+        touch();
+        running = true;
+    }
+
+    /**
+     * Maintains the state of the clock by computing the difference in
+     * time since the last call to this method.
+     */
+    protected void touch()
+    {
+        long currentTime = source.nanoTime();
+        if (running)
+        {
+            long elapsed = currentTime - resumeTime;
+            gameRemain[side] -= elapsed;
+            gameTime[side] += elapsed;
+            turnTime[side] += elapsed;
+        }
+        resumeTime = currentTime;
+    }
+
+    /** Returns the time remaining of a side without touching the clock. */
+    protected long remain(int _side)
+    {
+        if (gameLimit[_side] < 0)
+            return -1;
+        return Math.max(0, gameRemain[_side] + periodsRemain[_side] * byoYomi);
+    }
+
+    /**
+     * Gets the state of this game clock, which is FINISHED once the active
+     * side has run out of time.
+     * @return          the integer specifying the state of this clock
+     */
+    public synchronized int getState()
+    {
+        touch();
+        if (remain(side) == 0)
+            return FINISHED;
+        return running ? RUNNING : PAUSED;
+    }
+
+    public synchronized int getSide() { return side; }
+
+    /**
+     * Gets the time source this clock measures.
+     * @return          the time source
+     */
+    public TimeSource getTimeSource() { return source; }
+}
@@ -0,0 +1,172 @@
+package cs540.checkers;
+import static cs540.checkers.CheckersConsts.*;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * This class is an immutable board state packed into three 32-bit masks of
+ * the playable squares, numbered as by {@link MoveCodec#squareOf
+ * MoveCodec.squareOf}: the squares of red pieces, of black pieces, and of
+ * kings of either side. It takes {@link #BYTES BYTES} bytes where an
+ * <code>int[]</code> board state takes over 256, and is compared and hashed
+ * by three <code>int</code>s, so it suits positions which are kept in
+ * quantity, such as those of game records and position databases.
+ * <p>
+ * Only the playable squares are packed; the other locations of a board
+ * state are always <code>BLANK</code> in play and are ignored.
+ * @see Utils Utils
+ */
+public final class PackedBoard
+{
+    /** The number of bytes written by {@link #write write}. */
+    public static final int BYTES = 12;
+
+    /** The initial board state, packed. */
+    public static final PackedBoard INITIAL = new PackedBoard(Utils.INITIAL_BOARDSTATE);
+
+    private final int red, black, kings;
+
+    /**
+     * Packs a board state.
+     * @param bs        the board state
+     */
+    public PackedBoard(int[] bs)
+    {
+        int r = 0, b = 0, k = 0;
+        for (int sq = 0; sq < MoveCodec.SQUARES; sq++)
+        {
+            int piece = bs[Utils.SQUARES[sq]];
+            if (piece == BLANK)
+                continue;
+            if (piece % 4 == RED)
+                r |= 1 << sq;
+            else
+                b |= 1 << sq;
+            if (piece >= RED_KING)
+                k |= 1 << sq;
+        }
+        this.red = r;
+        this.black = b;
+        this.kings = k;
+    }
+
+    /**
+     * Constructs a packed board state from its masks.
+     * @param red       the squares of red pieces
+     * @param black     the squares of black pieces
+     * @param kings     the squares of kings
+     * @throws IllegalArgumentException     if a square holds pieces of both
+     *                  sides, or a king of neither
+     */
+    public PackedBoard(int red, int black, int kings)
+    {
+        if ((red & black) != 0 || (kings & ~(red | black)) != 0)
+            throw new IllegalArgumentException("Inconsistent board masks");
+        this.red = red;
+        this.black = black;
+        this.kings = kings;
+    }
+
+    public int getRed() { return red; }
+    public int getBlack() { return black; }
+    public int getKings() { return kings; }
+
+    /**
+     * Gets the checkers piece on a location.
+     * @param loc       the location
+     * @return          the piece, or <code>BLANK</code> for an empty or
+     *                  unplayable location
+     */
+    public int get(int loc)
+    {
+        if ((loc / W + loc % W) % 2 == 0)
+            return BLANK;
+        int bit = 1 << MoveCodec.squareOf(loc);
+        int king = (kings & bit) != 0 ? RED_KING : RED_PAWN;
+        if ((red & bit) != 0)
+            return king;
+        if ((black & bit) != 0)
+            return king + BLK;
+        return BLANK;
+    }
+
+    /**
+     * Unpacks this board state into an existing array.
+     * @param bs        the array to fill, of <code>W * H</code> locations
+     */
+    public void unpack(int[] bs)
+    {
+        Arrays.fill(bs, BLANK);
+        for (int m = red | black; m != 0; m &= m - 1)
+        {
+            int sq = Integer.numberOfTrailingZeros(m);
+            int bit = 1 << sq;
+            bs[Utils.SQUARES[sq]] = ((kings & bit) != 0 ? RED_KING : RED_PAWN)
+                                  + ((black & bit) != 0 ? BLK : RED);
+        }
+    }
+
+    /**
+     * Unpacks this board state.
+     * @return          a new board state
+     */
+    public int[] toBoardState()
+    {
+        int[] bs = new int[W * H];
+        unpack(bs);
+        return bs;
+    }
+
+    /**
+     * Writes this board state as its three masks.
+     * @param out       the output to write to
+     * @throws IOException      if an I/O error occurs
+     */
+    public void write(DataOutput out) throws IOException
+    {
+        out.writeInt(red);
+        out.writeInt(black);
+        out.writeInt(kings);
+    }
+
+    /**
+     * Reads a board state written by {@link #write write}.
+     * @param in        the input to read from
+     * @return          the board state
+     * @throws IOException      if an I/O error occurs or the masks are
+     *                          inconsistent
+     */
+    public static PackedBoard read(DataInput in) throws IOException
+    {
+        int r = in.readInt(), b = in.readInt(), k = in.readInt();
+        try {
+            return new PackedBoard(r, b, k);
+        } catch (IllegalArgumentException e) {
+            throw new IOException(e.getMessage());
+        }
+    }
+
+    public boolean equals(Object o)
+    {
+        if (!(o instanceof PackedBoard))
+            return false;
+        PackedBoard p = (PackedBoard)o;
+        return red == p.red && black == p.black && kings == p.kings;
+    }
+
+    public int hashCode()
+    {
+        return (red * 31 + black) * 31 + kings;
+    }
+
+    /**
+     * Returns this board state formatted as by
+     * {@link Utils#reprBoardState Utils.reprBoardState}.
+     * @return          this board state formatted as a string
+     */
+    public String toString()
+    {
+        return Utils.reprBoardState(toBoardState());
+    }
+}
@@ -0,0 +1,95 @@
+package cs540.checkers;
+
+/**
+ * This class controls the thread on which a {@link PonderingCheckersPlayer
+ * PonderingCheckersPlayer} ponders during its opponent's turn. It is the
+ * counterpart of {@link TurnAgent TurnAgent}, which controls the thread of
+ * the side to move.
+ * <p>
+ * The pondering thread holds the lock of the player, as the computation
+ * thread of <code>TurnAgent</code> does, so a player never ponders and
+ * calculates its move at the same time.
+ * @see CheckersController CheckersController
+ */
+@SuppressWarnings("deprecation")
+public class PonderAgent
+{
+    /**
+     * The number of milliseconds {@link #stopPonder stopPonder} waits for the
+     * player to stop pondering on its own before stopping the thread.
+     */
+    public static final long STOP_TIMEOUT = 50;
+
+    /** The current pondering thread, or <code>null</code> if there is none. */
+    protected Thread thread;
+
+    /** The checkers player currently associated with the thread. */
+    protected PonderingCheckersPlayer cp;
+
+    /**
+     * Constructs a <code>PonderAgent</code>.
+     */
+    public PonderAgent() { }
+
+    /**
+     * Starts a thread on which the specified player ponders the given board
+     * state. Any pondering already in progress is stopped first.
+     * @param cp        the checkers player to ponder
+     * @param bs        the board state after the player's move
+     */
+    public synchronized void startPonder(final PonderingCheckersPlayer cp, final int[] bs)
+    {
+        stopPonder();
+        this.cp = cp;
+
+        thread = new Thread() {
+            public void run()
+            {
+                synchronized(cp)
+                {
+                    try {
+                        cp.ponder(bs);
+                    } catch (Exception e) {
+                        e.printStackTrace();
+                    }
+                }
+            }
+        };
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stops the pondering thread, if any, and waits for it to finish. The
+     * player is asked to stop, and the thread is stopped forcefully if it
+     * has not finished within {@link #STOP_TIMEOUT STOP_TIMEOUT}
+     * milliseconds.
+     */
+    public synchronized void stopPonder()
+    {
+        if (thread == null)
+            return;
+
+        cp.stopPondering();
+        try {
+            thread.join(STOP_TIMEOUT);
+            if (thread.isAlive())
+            {
+                thread.stop();
+                thread.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        thread = null;
+    }
+
+    /**
+     * Returns whether a player is pondering.
+     * @return          true if the pondering thread is running; false otherwise
+     */
+    public synchronized boolean isPondering()
+    {
+        return thread != null && thread.isAlive();
+    }
+}
@@ -0,0 +1,34 @@
+package cs540.checkers;
+
+/**
+ * This interface is implemented by checkers players which can search during
+ * their opponent's turn, and reuse that work when their own turn comes.
+ * <p>
+ * If pondering is enabled, {@link CheckersController CheckersController}
+ * calls {@link #ponder ponder} on a separate thread after each move of the
+ * player, and calls {@link #stopPondering stopPondering} once the opponent
+ * has moved, before the player's next
+ * {@link CheckersPlayer#calculateMove calculateMove}. Time spent stopping
+ * counts against the player's turn, so players should stop promptly.
+ * <code>ponder</code> and <code>calculateMove</code> never run at the same
+ * time.
+ */
+public interface PonderingCheckersPlayer
+{
+    /**
+     * Searches the opponent's replies to this player's last move until
+     * {@link #stopPondering stopPondering} is called or the search is
+     * exhausted.
+     * @param bs        the board state after this player's move, with the
+     *                  opponent to move
+     */
+    public void ponder(int[] bs);
+
+    /**
+     * Asks {@link #ponder ponder} to return. This method may be called from
+     * any thread, before <code>ponder</code> has begun or after it has
+     * returned, in which case the next <code>ponder</code> of the same turn
+     * must return at once.
+     */
+    public void stopPondering();
+}
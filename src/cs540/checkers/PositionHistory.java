@@ -0,0 +1,151 @@
+package cs540.checkers;
+import static cs540.checkers.CheckersConsts.*;
+
+import java.util.*;
+
+/**
+ * This class is a stack of the {@link Zobrist Zobrist} hashes of the
+ * positions of a game, or of a line of play in a search, used to detect
+ * repeated positions.
+ * <p>
+ * A position can only recur until the next <i>irreversible</i> move: a
+ * capture, or a move of a pawn, since pawns never move backwards. The stack
+ * keeps, for each position, where the run of positions since the last
+ * irreversible move began, and only that run is searched for repetitions.
+ * In front of the stack is a small table counting the hashes on the stack
+ * by their top bits, so that a position which has not occurred before,
+ * nearly always the case in a search, is recognized without searching at
+ * all. Pushing and popping are constant time.
+ * <p>
+ * The hashes include the side to move, so a position with the other side
+ * to move is a different position.
+ */
+public class PositionHistory
+{
+    /** The number of bits of a hash which index the table of counts. */
+    protected static final int FILTER_BITS = 12;
+
+    protected long[] hashes;
+    /** The index of the first position of the run each position is part of. */
+    protected int[] starts;
+    protected int size;
+    /** The number of hashes on the stack, by their top bits. */
+    protected final int[] filter = new int[1 << FILTER_BITS];
+
+    /**
+     * Constructs an empty history.
+     */
+    public PositionHistory()
+    {
+        hashes = new long[128];
+        starts = new int[128];
+    }
+
+    /**
+     * Constructs a copy of a history.
+     * @param history   the history to copy
+     */
+    public PositionHistory(PositionHistory history)
+    {
+        hashes = history.hashes.clone();
+        starts = history.starts.clone();
+        size = history.size;
+        System.arraycopy(history.filter, 0, filter, 0, filter.length);
+    }
+
+    /**
+     * Returns whether a move cannot be undone by later moves, so that no
+     * position before it can recur after it.
+     * @param D         the board state before the move
+     * @param move      a legal move on <code>D</code>
+     * @return          true if <code>move</code> is a jump or a pawn move
+     */
+    public static boolean isIrreversible(int[] D, Move move)
+    {
+        return !Utils.isWalk(move) || D[move.get(0)] < BLANK;
+    }
+
+    /**
+     * Adds a position to the top of the history.
+     * @param hash      the hash of the position
+     * @param irreversible  whether the move which led to the position was
+     *                  irreversible, or the position is the first one known
+     */
+    public void push(long hash, boolean irreversible)
+    {
+        if (size == hashes.length)
+        {
+            hashes = Arrays.copyOf(hashes, size * 2);
+            starts = Arrays.copyOf(starts, size * 2);
+        }
+        hashes[size] = hash;
+        starts[size] = irreversible || size == 0 ? size : starts[size - 1];
+        size++;
+        filter[(int)(hash >>> (64 - FILTER_BITS))]++;
+    }
+
+    /**
+     * Removes the position on the top of the history.
+     */
+    public void pop()
+    {
+        size--;
+        filter[(int)(hashes[size] >>> (64 - FILTER_BITS))]--;
+    }
+
+    /**
+     * Removes every position from the history.
+     */
+    public void clear()
+    {
+        while (size > 0)
+            pop();
+    }
+
+    /**
+     * Gets the number of positions in the history.
+     * @return          the number of positions
+     */
+    public int size() { return size; }
+
+    /**
+     * Gets the hash of the position on the top of the history.
+     * @return          the hash of the latest position
+     */
+    public long top() { return hashes[size - 1]; }
+
+    /**
+     * Returns whether the position on the top of the history occurred
+     * earlier, since the last irreversible move.
+     * @return          true if the latest position is a repetition
+     */
+    public boolean isRepetition()
+    {
+        return count(2) >= 2;
+    }
+
+    /**
+     * Counts how many times the position on the top of the history has
+     * occurred since the last irreversible move, including this time.
+     * @return          the number of occurrences, at least <code>1</code>
+     */
+    public int count()
+    {
+        return count(Integer.MAX_VALUE);
+    }
+
+    /** Counts the occurrences of the top position, stopping at <code>max</code>. */
+    protected int count(int max)
+    {
+        long h = hashes[size - 1];
+        if (filter[(int)(h >>> (64 - FILTER_BITS))] < 2)
+            return 1;
+
+        /* The side to move alternates, so only every other position can match */
+        int n = 1;
+        for (int i = size - 3, start = starts[size - 1]; i >= start && n < max; i -= 2)
+            if (hashes[i] == h)
+                n++;
+        return n;
+    }
+}
@@ -0,0 +1,25 @@
+package cs540.checkers;
+
+/**
+ * This interface is implemented by checkers players which want to know the
+ * positions that have occurred in the game, so that their search can
+ * recognize repetitions of positions before the one they move in.
+ * <p>
+ * {@link CheckersController CheckersController} calls
+ * {@link #setPositionHistory setPositionHistory} at the start of each of the
+ * player's turns, just before {@link CheckersPlayer#calculateMove
+ * calculateMove}, and, if the player is a {@link PonderingCheckersPlayer
+ * PonderingCheckersPlayer}, just before each {@link
+ * PonderingCheckersPlayer#ponder ponder}.
+ * @see CheckersModel#getPositionHistory CheckersModel.getPositionHistory
+ */
+public interface RepetitionAwareCheckersPlayer
+{
+    /**
+     * Tells this player which positions have occurred in the game.
+     * @param history   the positions of the game, the latest being the one
+     *                  the player is about to move or ponder in; the player
+     *                  may modify it
+     */
+    public void setPositionHistory(PositionHistory history);
+}
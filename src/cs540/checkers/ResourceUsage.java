@@ -0,0 +1,97 @@
+package cs540.checkers;
+
+/**
+ * This class is an immutable record of the resources a player used to
+ * select a move. Usage is measured by {@link TurnAgent TurnAgent} for players
+ * in this process, and reported by players implementing
+ * {@link MeteredCheckersPlayer MeteredCheckersPlayer} for players which
+ * measure it elsewhere, such as in another process.
+ * <p>
+ * Times are in nanoseconds, and a quantity which was not measured is
+ * <code>-1</code>.
+ * @see UsageEvent UsageEvent
+ */
+public class ResourceUsage
+{
+    protected final long wallTime;
+    protected final long cpuTime;
+    protected final long allocatedBytes;
+    protected final long processCpuTime;
+    protected final long offTurnCpuTime;
+
+    /**
+     * Constructs a record of resource usage.
+     * @param wallTime          the elapsed time of the turn
+     * @param cpuTime           the CPU time of the thread which calculated the move
+     * @param allocatedBytes    the memory that thread allocated
+     * @param processCpuTime    the CPU time of all the threads of the process 
+     *                          the player runs in, during the turn
+     * @param offTurnCpuTime    the CPU time that process used since the
+     *                          player's previous turn ended
+     */
+    public ResourceUsage(long wallTime, long cpuTime, long allocatedBytes,
+            long processCpuTime, long offTurnCpuTime)
+    {
+        this.wallTime = wallTime;
+        this.cpuTime = cpuTime;
+        this.allocatedBytes = allocatedBytes;
+        this.processCpuTime = processCpuTime;
+        this.offTurnCpuTime = offTurnCpuTime;
+    }
+
+    /**
+     * Gets the elapsed time of the turn.
+     * @return          the wall time, in nanoseconds
+     */
+    public long getWallTime() { return wallTime; }
+
+    /**
+     * Gets the CPU time of the thread which calculated the move. Threads the
+     * player started itself are not included.
+     * @return          the CPU time, in nanoseconds, or <code>-1</code>
+     */
+    public long getCpuTime() { return cpuTime; }
+
+    /**
+     * Gets the memory allocated by the thread which calculated the move.
+     * @return          the number of bytes, or <code>-1</code>
+     */
+    public long getAllocatedBytes() { return allocatedBytes; }
+
+    /**
+     * Gets the CPU time of every thread of the player's process during the
+     * turn. This is only measured for players with a process of their own,
+     * and includes threads the player started; a value greater than the wall
+     * time shows the player used more than one processor.
+     * @return          the CPU time, in nanoseconds, or <code>-1</code>
+     */
+    public long getProcessCpuTime() { return processCpuTime; }
+
+    /**
+     * Gets the CPU time the player's process used between the end of its
+     * previous turn and the start of this one, when it was competing with
+     * its opponent for the processor.
+     * @return          the CPU time, in nanoseconds, or <code>-1</code>
+     */
+    public long getOffTurnCpuTime() { return offTurnCpuTime; }
+
+    /**
+     * Returns this record formatted as a single line of
+     * <code>key=value</code> pairs, omitting quantities not measured.
+     * @return          this record formatted as a string
+     */
+    public String toString()
+    {
+        StringBuilder s = new StringBuilder();
+        s.append(String.format("wall_ms=%.1f", wallTime / 1e6));
+        if (cpuTime >= 0)
+            s.append(String.format(" cpu_ms=%.1f", cpuTime / 1e6));
+        if (allocatedBytes >= 0)
+            s.append(" alloc_kb=").append(allocatedBytes / 1024);
+        if (processCpuTime >= 0)
+            s.append(String.format(" process_cpu_ms=%.1f", processCpuTime / 1e6));
+        if (offTurnCpuTime >= 0)
+            s.append(String.format(" off_turn_cpu_ms=%.1f", offTurnCpuTime / 1e6));
+        return s.toString();
+    }
+}
@@ -0,0 +1,45 @@
+package cs540.checkers;
+
+/**
+ * SearchEvent notifies interested parties of the search a player performed
+ * to select its move. The action is <code>"SEARCH"</code>, and the details 
+ * are the side followed by the report formatted by 
+ * {@link SearchReport#toString SearchReport.toString}.
+ * @see InstrumentedCheckersPlayer InstrumentedCheckersPlayer
+ */
+public class SearchEvent extends GameEvent
+{
+    protected int side;
+    protected SearchReport report;
+
+    /**
+     * Constructs a SearchEvent for a report of the specified side.
+     * @param source        the object on which the event occurred
+     * @param side          the side which performed the search
+     * @param report        the search report
+     */
+    public SearchEvent(Object source, int side, SearchReport report)
+    {
+        super(source, "SEARCH", Utils.reprSide(side) + " " + report);
+        this.side = side;
+        this.report = report;
+    }
+
+    /**
+     * Gets the side which performed the search.
+     * @return the side
+     */
+    public int getSide()
+    {
+        return side;
+    }
+
+    /**
+     * Gets the search report.
+     * @return the search report
+     */
+    public SearchReport getReport()
+    {
+        return report;
+    }
+}
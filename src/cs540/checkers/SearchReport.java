@@ -0,0 +1,214 @@
+package cs540.checkers;
+
+import java.util.*;
+
+/**
+ * This class is an immutable summary of the search a player performed to
+ * select a move. Reports are created by {@link SearchStats#toReport
+ * SearchStats.toReport} and published by players implementing
+ * {@link InstrumentedCheckersPlayer InstrumentedCheckersPlayer}.
+ * <p>
+ * Counters cover the search up to the time the report was created. Players 
+ * usually create reports when a deepening iteration completes, so work done 
+ * by an iteration which was interrupted by the turn limit is not included.
+ *
+ * @see SearchStats SearchStats
+ * @see SearchEvent SearchEvent
+ */
+public class SearchReport
+{
+    /** The number of iteration times included by {@link #toString toString}. */
+    protected static final int MAX_ITERATIONS_SHOWN = 8;
+
+    protected final long nodes;
+    protected final long leafEvals;
+    protected final long[] cutoffs;
+    protected final long ttProbes;
+    protected final long ttHits;
+    protected final int[] iterDepth;
+    protected final long[] iterNodes;
+    protected final long[] iterTime;
+    protected final long elapsed;
+    protected final int score;
+    protected final List<Move> pv;
+
+    /**
+     * Constructs a report from the counters of a search.
+     * @param stats     the counters of the search
+     * @param elapsed   the time, in nanoseconds, the search has run
+     */
+    protected SearchReport(SearchStats stats, long elapsed)
+    {
+        int n = stats.iterations;
+        this.nodes = stats.nodes;
+        this.leafEvals = stats.leafEvals;
+        this.cutoffs = stats.cutoffs.clone();
+        this.ttProbes = stats.ttProbes;
+        this.ttHits = stats.ttHits;
+        this.iterDepth = Arrays.copyOf(stats.iterDepth, n);
+        this.iterNodes = Arrays.copyOf(stats.iterNodes, n);
+        this.iterTime = Arrays.copyOf(stats.iterTime, n);
+        this.elapsed = elapsed;
+        this.score = stats.score;
+        this.pv = Collections.unmodifiableList(new ArrayList<Move>(stats.pv));
+    }
+
+    /**
+     * Gets the number of nodes visited.
+     * @return          the number of nodes visited
+     */
+    public long getNodes() { return nodes; }
+
+    /**
+     * Gets the number of leaves scored by a static board evaluator.
+     * @return          the number of leaf evaluations
+     */
+    public long getLeafEvals() { return leafEvals; }
+
+    /**
+     * Gets the number of beta cutoffs indexed by the position of the cutting
+     * move in its move list. The last element also counts all later positions.
+     * @return          a copy of the cutoff counts
+     */
+    public long[] getCutoffs() { return cutoffs.clone(); }
+
+    /**
+     * Gets the fraction of beta cutoffs caused by the first move searched,
+     * which measures the quality of move ordering.
+     * @return          the first-move cutoff rate, or <code>NaN</code> if
+     *                  there were no cutoffs
+     */
+    public double getFirstMoveCutoffRate()
+    {
+        long total = 0;
+        for (long c : cutoffs)
+            total += c;
+        return total == 0 ? Double.NaN : (double)cutoffs[0] / total;
+    }
+
+    /**
+     * Gets the number of transposition table probes.
+     * @return          the number of probes
+     */
+    public long getTTProbes() { return ttProbes; }
+
+    /**
+     * Gets the fraction of transposition table probes which found an entry.
+     * @return          the hit rate, or <code>NaN</code> if the search did
+     *                  not probe a transposition table
+     */
+    public double getTTHitRate()
+    {
+        return ttProbes == 0 ? Double.NaN : (double)ttHits / ttProbes;
+    }
+
+    /**
+     * Gets the depth of the deepest completed iteration.
+     * @return          the depth reached, or <code>0</code> if no iteration
+     *                  completed
+     */
+    public int getDepth()
+    {
+        return iterDepth.length == 0 ? 0 : iterDepth[iterDepth.length - 1];
+    }
+
+    /**
+     * Gets the depth of each completed iteration.
+     * @return          a copy of the iteration depths
+     */
+    public int[] getIterationDepths() { return iterDepth.clone(); }
+
+    /**
+     * Gets the time, in nanoseconds, each completed iteration took.
+     * @return          a copy of the iteration times
+     */
+    public long[] getIterationTimes() { return iterTime.clone(); }
+
+    /**
+     * Gets the effective branching factor, the per-ply growth of the node
+     * count between the last two completed iterations. With a single
+     * iteration, the growth from the root is used instead.
+     * @return          the effective branching factor, or <code>NaN</code> if
+     *                  no iteration completed
+     */
+    public double getEffectiveBranchingFactor()
+    {
+        int n = iterDepth.length;
+        if (n == 0)
+            return Double.NaN;
+        if (n == 1)
+            return Math.pow(iterNodes[0], 1.0 / Math.max(1, iterDepth[0]));
+
+        long prev = iterNodes[n - 2] - (n > 2 ? iterNodes[n - 3] : 0);
+        long last = iterNodes[n - 1] - iterNodes[n - 2];
+        int plies = Math.max(1, iterDepth[n - 1] - iterDepth[n - 2]);
+        return Math.pow((double)last / Math.max(1, prev), 1.0 / plies);
+    }
+
+    /**
+     * Gets the time, in nanoseconds, the search ran before this report was
+     * created.
+     * @return          the elapsed time
+     */
+    public long getElapsedTime() { return elapsed; }
+
+    /**
+     * Gets the search speed in nodes per second.
+     * @return          the number of nodes visited per second
+     */
+    public long getNodesPerSecond()
+    {
+        return elapsed == 0 ? 0 : nodes * 1000000000L / elapsed;
+    }
+
+    /**
+     * Gets the score of the best move found by the deepest completed
+     * iteration, from the searching side's position.
+     * @return          the score of the best move
+     */
+    public int getScore() { return score; }
+
+    /**
+     * Gets the principal variation, the sequence of moves the search expects
+     * to be played, beginning with the selected move.
+     * @return          an unmodifiable list of moves
+     */
+    public List<Move> getPrincipalVariation() { return pv; }
+
+    /**
+     * Returns this report formatted as a single line of
+     * <code>key=value</code> pairs.
+     * @return          this report formatted as a string
+     */
+    public String toString()
+    {
+        StringBuilder s = new StringBuilder();
+        s.append(String.format("depth=%d score=%d nodes=%d evals=%d nps=%d ebf=%.2f",
+                getDepth(), score, nodes, leafEvals, getNodesPerSecond(),
+                getEffectiveBranchingFactor()));
+        s.append(String.format(" first_cut=%.3f", getFirstMoveCutoffRate()));
+        if (ttProbes > 0)
+            s.append(String.format(" tt_hit=%.3f", getTTHitRate()));
+
+        /* Only the last iterations are shown; a search of a tree which ends
+         * early may complete hundreds of trivial iterations */
+        s.append(" iter_ms=");
+        int first = Math.max(0, iterTime.length - MAX_ITERATIONS_SHOWN);
+        if (first > 0)
+            s.append("...");
+        for (int i = first; i < iterTime.length; i++)
+            s.append(i == first ? "" : ",").append(iterTime[i] / 1000000);
+
+        s.append(" cutoffs=");
+        int last = cutoffs.length - 1;
+        while (last > 0 && cutoffs[last] == 0)
+            last--;
+        for (int i = 0; i <= last; i++)
+            s.append(i == 0 ? "" : ",").append(cutoffs[i]);
+
+        s.append(" pv=");
+        for (int i = 0; i < pv.size(); i++)
+            s.append(i == 0 ? "" : " ").append(pv.get(i));
+        return s.toString();
+    }
+}
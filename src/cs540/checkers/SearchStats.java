@@ -0,0 +1,130 @@
+package cs540.checkers;
+
+import java.util.*;
+
+/**
+ * This class collects counters for one search, such as the search a player
+ * performs in {@link CheckersPlayer#calculateMove calculateMove}.
+ * <p>
+ * The counters are plain fields that the searching thread increments
+ * directly; no synchronization or atomic operations are involved, so the
+ * collection is cheap enough to leave enabled. A search that uses several
+ * threads should give each thread its own <code>SearchStats</code> and
+ * combine them with {@link #merge merge} when the move is finished.
+ * <p>
+ * Other threads must not read the counters. Instead, the searching thread
+ * publishes an immutable {@link SearchReport SearchReport} with
+ * {@link #toReport toReport}, typically after each deepening iteration.
+ *
+ * @see SearchReport SearchReport
+ */
+public class SearchStats
+{
+    /** The number of distinct cutoff move indices that are counted. */
+    public static final int CUTOFF_SLOTS = 32;
+
+    /** The number of nodes visited, including leaves. */
+    public long nodes;
+
+    /** The number of leaves scored by a static board evaluator. */
+    public long leafEvals;
+
+    /**
+     * The number of beta cutoffs, indexed by the position of the cutting
+     * move in its move list. The last slot also counts all later positions.
+     */
+    public final long[] cutoffs = new long[CUTOFF_SLOTS];
+
+    /** The number of transposition table probes. */
+    public long ttProbes;
+
+    /** The number of transposition table probes which found an entry. */
+    public long ttHits;
+
+    /** The time, from {@link System#nanoTime System.nanoTime}, of {@link #start start}. */
+    protected long startTime;
+
+    /** The time the previous iteration finished. */
+    protected long lastIterationTime;
+
+    protected int[] iterDepth = new int[16];
+    protected long[] iterNodes = new long[16];
+    protected long[] iterTime = new long[16];
+    protected int iterations;
+
+    protected int score;
+    protected List<Move> pv = Collections.emptyList();
+
+    /**
+     * Clears all counters and starts timing a new search.
+     */
+    public void start()
+    {
+        nodes = leafEvals = ttProbes = ttHits = 0;
+        Arrays.fill(cutoffs, 0);
+        iterations = 0;
+        score = 0;
+        pv = Collections.emptyList();
+        startTime = lastIterationTime = System.nanoTime();
+    }
+
+    /**
+     * Records a beta cutoff caused by the move at index <code>i</code> of
+     * its move list.
+     * @param i         the index of the cutting move
+     */
+    public void cutoff(int i)
+    {
+        cutoffs[i < CUTOFF_SLOTS ? i : CUTOFF_SLOTS - 1]++;
+    }
+
+    /**
+     * Records the completion of a deepening iteration.
+     * @param depth     the depth of the completed iteration
+     * @param score     the score of the best move, from the searching side's position
+     * @param pv        the principal variation found by the iteration
+     */
+    public void iterationDone(int depth, int score, List<Move> pv)
+    {
+        if (iterations == iterDepth.length)
+        {
+            iterDepth = Arrays.copyOf(iterDepth, 2 * iterations);
+            iterNodes = Arrays.copyOf(iterNodes, 2 * iterations);
+            iterTime = Arrays.copyOf(iterTime, 2 * iterations);
+        }
+
+        long now = System.nanoTime();
+        iterDepth[iterations] = depth;
+        iterNodes[iterations] = nodes;
+        iterTime[iterations] = now - lastIterationTime;
+        iterations++;
+        lastIterationTime = now;
+
+        this.score = score;
+        this.pv = pv;
+    }
+
+    /**
+     * Adds the counters of another search, such as one performed by a helper
+     * thread, to this one. Iterations are taken from this object only.
+     * @param other     the counters to add
+     */
+    public void merge(SearchStats other)
+    {
+        nodes += other.nodes;
+        leafEvals += other.leafEvals;
+        ttProbes += other.ttProbes;
+        ttHits += other.ttHits;
+        for (int i = 0; i < CUTOFF_SLOTS; i++)
+            cutoffs[i] += other.cutoffs[i];
+    }
+
+    /**
+     * Returns a snapshot of the counters as a <code>SearchReport</code>.
+     * @return          an immutable report of this search so far
+     */
+    public SearchReport toReport()
+    {
+        return new SearchReport(this, System.nanoTime() - startTime);
+    }
+}
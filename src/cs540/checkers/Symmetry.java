@@ -0,0 +1,138 @@
+package cs540.checkers;
+import static cs540.checkers.CheckersConsts.*;
+
+import java.util.*;
+
+/**
+ * This class maps positions to their <i>mirror</i>: the position with the
+ * colors of the pieces and the side to move swapped, and the board rotated
+ * by 180 degrees, so that each side's pawns still move toward the other
+ * side. A position and its mirror have the same value for the side to
+ * move and the same moves, mirrored, so caches of analysis need only store
+ * one of them.
+ * <p>
+ * The <i>canonical hash</i> of a position is the smaller of its
+ * {@link Zobrist Zobrist} hash and the hash of its mirror, and is the same
+ * for both. The hash of the mirror can be updated incrementally like the
+ * Zobrist hash, with the keys of {@link #key key}; see
+ * {@link CanonicalBoardState CanonicalBoardState}. A position is stored
+ * <i>flipped</i> when the hash of its mirror is the smaller, in which case
+ * its moves are mirrored before they are looked up or stored, and the
+ * moves found are mirrored back.
+ */
+public class Symmetry
+{
+    /** The key of each piece on each location of the mirror. */
+    private static final long[][] KEYS = new long[PIECES_MAX][W * H];
+
+    static
+    {
+        for (int piece = 0; piece < PIECES_MAX; piece++)
+            for (int loc = 0; loc < W * H; loc++)
+                KEYS[piece][loc] = Zobrist.key(flipLocation(loc), flipPiece(piece));
+    }
+
+    private Symmetry() {}
+
+    /**
+     * Gets the location a location maps to in the mirror.
+     * @param loc       the location
+     * @return          the location rotated by 180 degrees
+     */
+    public static int flipLocation(int loc)
+    {
+        return W * H - 1 - loc;
+    }
+
+    /**
+     * Gets the piece a piece maps to in the mirror.
+     * @param piece     the checkers piece
+     * @return          the piece of the same kind and the other color, or
+     *                  <code>BLANK</code> for <code>BLANK</code>
+     */
+    public static int flipPiece(int piece)
+    {
+        return piece == BLANK ? BLANK : piece ^ 1;
+    }
+
+    /**
+     * Gets the key, in the hash of the mirror, of a piece on a location.
+     * @param loc       the location
+     * @param piece     the checkers piece
+     * @return          the Zobrist key of the mirrored piece on the
+     *                  mirrored location
+     */
+    public static long key(int loc, int piece)
+    {
+        return KEYS[piece][loc];
+    }
+
+    /**
+     * Creates the mirror of a board state.
+     * @param bs        the board state
+     * @return          a new board state, the mirror of <code>bs</code>
+     */
+    public static int[] flip(int[] bs)
+    {
+        int[] D = new int[W * H];
+        for (int loc = 0; loc < W * H; loc++)
+            D[flipLocation(loc)] = flipPiece(bs[loc]);
+        return D;
+    }
+
+    /**
+     * Creates the mirror of a move.
+     * @param move      the move, or <code>null</code>
+     * @return          the move with every location mirrored, or
+     *                  <code>null</code> if <code>move</code> is
+     *                  <code>null</code>
+     */
+    public static Move flip(Move move)
+    {
+        if (move == null)
+            return null;
+        List<Integer> m = new ArrayList<Integer>(move.size());
+        for (int loc : move)
+            m.add(flipLocation(loc));
+        return new Move(m);
+    }
+
+    /**
+     * Computes the Zobrist hash of the mirror of a position, without
+     * creating the mirror.
+     * @param bs        the board state
+     * @param side      the side to move
+     * @return          the hash of the mirror, equal to
+     *                  <code>Zobrist.hash(flip(bs), Utils.otherSide(side))</code>
+     */
+    public static long flippedHash(int[] bs, int side)
+    {
+        long h = side == RED ? Zobrist.SIDE : 0;
+        for (int loc = 0; loc < W * H; loc++)
+            h ^= KEYS[bs[loc]][loc];
+        return h;
+    }
+
+    /**
+     * Computes the canonical hash of a position, which is the same for the
+     * position and its mirror.
+     * @param bs        the board state
+     * @param side      the side to move
+     * @return          the canonical hash
+     */
+    public static long canonicalHash(int[] bs, int side)
+    {
+        return Math.min(Zobrist.hash(bs, side), flippedHash(bs, side));
+    }
+
+    /**
+     * Returns whether a position is stored as its mirror.
+     * @param hash      the Zobrist hash of the position
+     * @param flippedHash   the hash of its mirror
+     * @return          true if the canonical hash is the hash of the mirror
+     */
+    public static boolean isFlipped(long hash, long flippedHash)
+    {
+        return flippedHash < hash;
+    }
+}
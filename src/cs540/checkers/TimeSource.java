@@ -0,0 +1,25 @@
+package cs540.checkers;
+
+/**
+ * This interface defines a source of time for clocks, such as
+ * {@link NanoCountdownClock NanoCountdownClock} and
+ * {@link NanoGameClock NanoGameClock}. A time source need only be monotonic:
+ * its values mean nothing on their own, and only the differences between
+ * them are used.
+ */
+public interface TimeSource
+{
+    /**
+     * The time source of elapsed real time, from {@link System#nanoTime
+     * System.nanoTime}.
+     */
+    public static final TimeSource WALL = new TimeSource() {
+        public long nanoTime() { return System.nanoTime(); }
+    };
+
+    /**
+     * Returns the current value of this time source.
+     * @return          the current time, in nanoseconds
+     */
+    public long nanoTime();
+}
@@ -0,0 +1,21 @@
+package cs540.checkers;
+
+/**
+ * This interface is implemented by checkers players which want to know how
+ * long they may think each turn, such as players which pass the limit on to
+ * another process. Other players are simply stopped when their time is up.
+ * <p>
+ * {@link CheckersController CheckersController} calls
+ * {@link #setTurnTime setTurnTime} at the start of each of the player's
+ * turns, just before {@link CheckersPlayer#calculateMove calculateMove}.
+ */
+public interface TimedCheckersPlayer
+{
+    /**
+     * Tells this player how long it has to select its move this turn.
+     * @param millis    the time, in milliseconds, after which the player 
+     *                  will be stopped, or a negative value if there is no 
+     *                  limit
+     */
+    public void setTurnTime(long millis);
+}
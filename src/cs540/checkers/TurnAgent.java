@@ -1,5 +1,10 @@
 package cs540.checkers;
 
+import cs540.checkers.jfr.Events;
+import cs540.checkers.jfr.TurnCalculationEvent;
+
+import java.lang.management.*;
+
 /** 
  * This class provides an easy interface for controlling when a 
  * <code>CheckersPlayer</code> calculates its move. <code>TurnAgent</code> 
@@ -13,6 +18,12 @@ package cs540.checkers;
  * TurnAgent provides an abstraction of this move acquisition process. 
  * In the event that this mechanism is changed, only the implementation of 
  * this class needs to be modified.
+ * <p>
+ * The computation thread is kept from one calculation to the next, since
+ * starting a thread costs more than the rest of a turn's bookkeeping; it is
+ * replaced only after a calculation is stopped, which kills it, and it ends
+ * by itself once it has been idle for {@link #IDLE_TIMEOUT IDLE_TIMEOUT}
+ * milliseconds.
  *
  * @see CheckersController CheckersController
  * @see CheckersPlayer CheckersPlayer
@@ -22,21 +33,56 @@ package cs540.checkers;
 @SuppressWarnings("deprecation")
 public class TurnAgent
 {
-    /** The current computation thread. */
+    /** How long the computation thread waits for another calculation before it ends. */
+    public static final long IDLE_TIMEOUT = 10000;
+
+    /** The current computation thread, or <code>null</code> if there is none. */
     protected Thread thread;
 
+    /** The board state of the calculation the thread has yet to begin, or <code>null</code>. */
+    protected int[] pending;
+
+    /** The number of the current calculation. */
+    protected long calculation;
+
     /** The checkers player currently associated with the thread. */
     protected CheckersPlayer cp;
 
     /** True if the checkers player is thinking; false otherwise */
     protected volatile boolean running;
 
+    /** 
+     * The Flight Recorder event spanning the current calculation, or 
+     * <code>null</code> once it has been committed.
+     */
+    protected TurnCalculationEvent event;
+
+    /** The thread CPU time and allocation counters of the JVM. */
+    protected static final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+    /** When the current calculation started, from <code>System.nanoTime</code>. */
+    protected long startTime;
+
+    /** 
+     * The resources used by the last calculation, or <code>null</code> until
+     * it ends.
+     */
+    protected ResourceUsage usage;
+
+    /** The CPU time of the computation threads of finished calculations. */
+    protected long cpuTime;
+
+    /** The CPU time and allocated bytes of the thread when the calculation started. */
+    protected long cpuStart, allocStart;
+
     /** 
      * If not <code>null</code>, this <code>CheckersController</code> will be 
      * notified when a checkers player decides on a move. 
      */
     protected CheckersController callback_controller = null;
 
+    static { Events.initialize(); }
+
     /**
      * Constructs a <code>TurnAgent</code>.
      */
@@ -49,31 +95,103 @@ public class TurnAgent
      * @param cp        the checkers player to solicit for the best move
      * @param bs        the board state to compute the move on
      */
-    public synchronized void startCalculate(final CheckersPlayer cp, final int[] bs)
+    public synchronized void startCalculate(CheckersPlayer cp, int[] bs)
     {
         this.cp = cp;
 
-        thread = new Thread() {
+        event = new TurnCalculationEvent();
+        event.begin();
+        startTime = System.nanoTime();
+        usage = null;
+        calculation++;
+        pending = bs;
+        running = true;
+
+        /* Hand the calculation to the idle thread, or start one */
+        if (thread != null)
+        {
+            cpuStart = threadCpuTime(thread);
+            allocStart = threadAllocatedBytes(thread);
+            notifyAll();
+            return;
+        }
+
+        cpuStart = 0;
+        allocStart = 0;
+        thread = new Thread("turn-agent") {
             public void run()
             {
-                synchronized(cp)
+                while (calculate(this))
+                    ;
+            }
+        };
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Carries out the next calculation on the computation thread, once
+     * {@link #startCalculate startCalculate} gives it one.
+     * @param t         the computation thread
+     * @return          false if the thread has been idle too long, and
+     *                  should end
+     */
+    protected boolean calculate(Thread t)
+    {
+        CheckersPlayer cp;
+        int[] bs;
+        long n;
+        synchronized (this)
+        {
+            long idle = System.currentTimeMillis() + IDLE_TIMEOUT;
+            while (pending == null)
+            {
+                long wait = idle - System.currentTimeMillis();
+                if (wait <= 0)
                 {
-                    try {
-                        cp.calculateMove(bs);
-                    } catch (Exception e) {
-                        e.printStackTrace();
-                    }
-                    running = false;
+                    thread = null;
+                    return false;
                 }
+                try {
+                    wait(wait);
+                } catch (InterruptedException e) {
+                }
+            }
+            cp = this.cp;
+            bs = pending;
+            n = calculation;
+            pending = null;
+        }
 
-                /* Invoke the callback, if enabled */
-                if (callback_controller != null)
-                    callback_controller.loopLater(1);
+        synchronized(cp)
+        {
+            String outcome = TurnCalculationEvent.FINISHED;
+            try {
+                cp.calculateMove(bs);
+            } catch (Exception e) {
+                e.printStackTrace();
+                outcome = TurnCalculationEvent.FAILED;
             }
-        } ;
+            finish(t, n, outcome);
+        }
 
-        running = true;
-        thread.start();
+        /* Invoke the callback, if enabled */
+        if (callback_controller != null)
+            callback_controller.loopNow();
+        return true;
+    }
+
+    /**
+     * Ends calculation <code>n</code>, unless it has been stopped.
+     */
+    protected synchronized void finish(Thread t, long n, String outcome)
+    {
+        if (n != calculation || !running)
+            return;
+        measureUsage(t);
+        running = false;
+        endEvent(outcome);
+        notifyAll();
     }
 
     /**
@@ -82,8 +200,111 @@ public class TurnAgent
     public synchronized void stopCalculate()
     {
         //thread.interrupt();
-        thread.stop();
+        if (running && thread != null)
+        {
+            measureUsage(thread);
+
+            /* A stopped thread cannot be trusted again */
+            thread.stop();
+            thread = null;
+        }
+        pending = null;
         running = false;
+        endEvent(TurnCalculationEvent.STOPPED);
+        notifyAll();
+    }
+
+    /**
+     * Ends and, if recording is enabled, commits the Flight Recorder event 
+     * for the current calculation. Only the first call for each calculation 
+     * has an effect.
+     * @param outcome   how the calculation ended
+     */
+    protected synchronized void endEvent(String outcome)
+    {
+        if (event == null)
+            return;
+
+        if (event.shouldCommit())
+        {
+            Move move = cp.getMove();
+            event.player = cp.getName();
+            event.side = Utils.reprSide(cp.side);
+            event.outcome = outcome;
+            event.move = Utils.reprMove(move);
+            event.commit();
+        }
+        event = null;
+    }
+
+    /**
+     * Records the resources used by the computation thread so far in the
+     * current calculation. Only the first call for each calculation has an
+     * effect.
+     * @param t         the computation thread, which must be alive
+     */
+    protected synchronized void measureUsage(Thread t)
+    {
+        if (usage != null)
+            return;
+
+        long cpu = threadCpuTime(t);
+        if (cpu >= 0)
+            cpu -= cpuStart;
+        long alloc = threadAllocatedBytes(t);
+        if (alloc >= 0)
+            alloc -= allocStart;
+        usage = new ResourceUsage(System.nanoTime() - startTime, cpu, alloc, -1, -1);
+        if (cpu > 0)
+            cpuTime += cpu;
+    }
+
+    /** Returns the CPU time of a thread, or <code>-1</code> if unknown. */
+    protected static long threadCpuTime(Thread t)
+    {
+        if (!threads.isThreadCpuTimeSupported())
+            return -1;
+        return threads.getThreadCpuTime(t.getId());
+    }
+
+    /** Returns the bytes a thread has allocated, or <code>-1</code> if unknown. */
+    protected static long threadAllocatedBytes(Thread t)
+    {
+        if (!(threads instanceof com.sun.management.ThreadMXBean))
+            return -1;
+        return ((com.sun.management.ThreadMXBean)threads).getThreadAllocatedBytes(t.getId());
+    }
+
+    /**
+     * Gets the CPU time used by the computation threads of this agent, over
+     * all its calculations so far, including the current one. The time does
+     * not decrease, so it may serve as a {@link TimeSource TimeSource} which
+     * advances only while a player computes.
+     * @return          the CPU time, in nanoseconds, or <code>-1</code> if the
+     *                  JVM cannot measure it
+     */
+    public synchronized long getCpuTime()
+    {
+        if (!threads.isThreadCpuTimeSupported())
+            return -1;
+        if (running && usage == null && thread != null)
+        {
+            long cpu = threads.getThreadCpuTime(thread.getId());
+            if (cpu > cpuStart)
+                return cpuTime + cpu - cpuStart;
+        }
+        return cpuTime;
+    }
+
+    /**
+     * Gets the resources the checkers player used in its last calculation,
+     * counting only the computation thread.
+     * @return          the usage, or <code>null</code> if the calculation
+     *                  has not ended
+     */
+    public synchronized ResourceUsage getUsage()
+    {
+        return usage;
     }
 
     /**
@@ -100,6 +321,34 @@ public class TurnAgent
             return true;
     }
 
+    /**
+     * Waits for the checkers player to select a move, for at most the given
+     * time. Unlike polling {@link #hasMove hasMove}, this returns as soon as
+     * the calculation ends.
+     * @param millis    the longest time to wait, in milliseconds, or 
+     *                  <code>0</code> to wait until the player selects a move
+     * @return          true if the checkers player has selected a move,
+     *                  false otherwise
+     * @throws InterruptedException if the waiting thread is interrupted
+     */
+    public synchronized boolean awaitMove(long millis) throws InterruptedException
+    {
+        long deadline = System.currentTimeMillis() + millis;
+        while (running)
+        {
+            if (millis == 0)
+                wait();
+            else
+            {
+                long wait = deadline - System.currentTimeMillis();
+                if (wait <= 0)
+                    break;
+                wait(wait);
+            }
+        }
+        return !running;
+    }
+
     /**
      * Retrieves the move chosen by the checkers player. This method throws 
      * {@link IllegalStateException InvalidStateException} if the player has 
@@ -0,0 +1,44 @@
+package cs540.checkers;
+
+/**
+ * UsageEvent notifies interested parties of the resources a player used to
+ * select its move. The action is <code>"USAGE"</code>, and the details are
+ * the side followed by the usage formatted by
+ * {@link ResourceUsage#toString ResourceUsage.toString}.
+ */
+public class UsageEvent extends GameEvent
+{
+    protected int side;
+    protected ResourceUsage usage;
+
+    /**
+     * Constructs a UsageEvent for the usage of the specified side.
+     * @param source        the object on which the event occurred
+     * @param side          the side which used the resources
+     * @param usage         the resource usage
+     */
+    public UsageEvent(Object source, int side, ResourceUsage usage)
+    {
+        super(source, "USAGE", Utils.reprSide(side) + " " + usage);
+        this.side = side;
+        this.usage = usage;
+    }
+
+    /**
+     * Gets the side which used the resources.
+     * @return the side
+     */
+    public int getSide()
+    {
+        return side;
+    }
+
+    /**
+     * Gets the resource usage.
+     * @return the resource usage
+     */
+    public ResourceUsage getUsage()
+    {
+        return usage;
+    }
+}
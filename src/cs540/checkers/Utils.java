@@ -12,6 +12,7 @@ import java.io.*;
  * <li>{@link #isValidMove isValidMove} tests whether a move is legal;
  * <li>{@link #getAllPossibleMoves getAllPossibleMoves} finds all legal moves
  * on a given board state;
+ * <li>{@link #hasAnyMove hasAnyMove} tests whether a side has any legal move;
  * <li>{@link #reprBoardState reprBoardState} and 
  * {@link #parseBoardState parseBoardState} converts a boardstate to/from a 
  * <code>String</code> representation;
@@ -178,7 +179,99 @@ public class Utils
      * to a location <code>a</code> are <code>a - 9, a-7, a + 7, a+9</code>.
      */
     public static final int[] DIAG = new int[] {-9, -7, 7, 9};
- 
+
+    /**
+     * The locations played on, in increasing order. Move generation visits
+     * these 32 squares only, since no move can bring a checkers piece onto
+     * any other square.
+     */
+    static final int[] SQUARES;
+
+    /**
+     * The walk targets of each checkers piece from each location, by
+     * <code>WALKS[piece][loc]</code>: the adjacent locations on the board
+     * in the directions the piece moves, in the order of {@link #DIAG DIAG}.
+     * There are none for <code>BLANK</code>.
+     */
+    static final int[][][] WALKS = new int[PIECES_MAX][H * W][];
+
+    /**
+     * The walk moves to the targets of {@link #WALKS WALKS}, built once and
+     * shared, since moves are immutable.
+     */
+    static final Move[][][] WALK_MOVES = new Move[PIECES_MAX][H * W][];
+
+    /**
+     * The jumps of each checkers piece from each location, by
+     * <code>JUMPS[piece][loc]</code>: pairs of the location jumped over and
+     * the landing location, in the order of {@link #DIAG DIAG}.
+     */
+    static final int[][][] JUMPS = new int[PIECES_MAX][H * W][];
+
+    /**
+     * The locations on which pawns of each side are crowned, by
+     * <code>CROWNING_ROW[side]</code>.
+     */
+    static final int[][] CROWNING_ROW = new int[2][W / 2];
+
+    static
+    {
+        int n = 0;
+        SQUARES = new int[H * W / 2];
+        for (int loc = 0; loc < H * W; loc++)
+            if ((loc / W + loc % W) % 2 == 1)
+                SQUARES[n++] = loc;
+
+        for (int i = 0; i < W / 2; i++)
+        {
+            CROWNING_ROW[RED][i] = 0 * W + 2 * i + 1;
+            CROWNING_ROW[BLK][i] = 7 * W + 2 * i;
+        }
+
+        int[] dr = {-1, -1, 1, 1}, dc = {-1, 1, -1, 1};
+        for (int piece = 0; piece < PIECES_MAX; piece++)
+            for (int loc = 0; loc < H * W; loc++)
+            {
+                int r = loc / W, c = loc % W;
+                int[] walks = new int[4], jumps = new int[8];
+                int nw = 0, nj = 0;
+
+                for (int d = 0; d < 4; d++)
+                {
+                    /* Blanks do not move, and pawns only move forward */
+                    if ( piece == BLANK ||
+                         (piece == RED_PAWN && dr[d] > 0) ||
+                         (piece == BLK_PAWN && dr[d] < 0) )
+                        continue;
+
+                    if (r + dr[d] >= 0 && r + dr[d] < H && c + dc[d] >= 0 && c + dc[d] < W)
+                        walks[nw++] = loc + DIAG[d];
+
+                    if (r + 2 * dr[d] >= 0 && r + 2 * dr[d] < H && c + 2 * dc[d] >= 0 && c + 2 * dc[d] < W)
+                    {
+                        jumps[nj++] = loc + DIAG[d];
+                        jumps[nj++] = loc + 2 * DIAG[d];
+                    }
+                }
+
+                WALKS[piece][loc] = Arrays.copyOf(walks, nw);
+                WALK_MOVES[piece][loc] = new Move[nw];
+                for (int i = 0; i < nw; i++)
+                    WALK_MOVES[piece][loc][i] = new Move( Arrays.asList(loc, walks[i]) );
+                JUMPS[piece][loc] = Arrays.copyOf(jumps, nj);
+            }
+    }
+
+    /**
+     * Returns whether a checkers piece may capture another: that is,
+     * whether <code>other</code> belongs to the opponent of the owner of
+     * <code>piece</code>.
+     */
+    private static boolean isOpponent(int piece, int other)
+    {
+        return other != BLANK && ((piece ^ other) & 1) != 0;
+    }
+
     /**
      * Scores the specified board state using a evaluation function that
      * assigns points for material. Each remaining pawn contributes one point, 
@@ -249,31 +342,24 @@ public class Utils
      */
     public static boolean isValidMove(int[] bs, int side, Move move)
     {
-        /* The move cannot be null */
-        if (move == null)
-            return false;
-
-        List<int[]> ops = Utils.convertMoveToPairwise(move);
-
         /* The move must have two or more locations */
-        if (ops.size() == 0)
+        if (move == null || move.size() < 2)
             return false;
 
         /* The checkers piece at source location must belong to side */
-        if (bs[move.get(0)] % 4 != side)
+        int src = move.get(0);
+        if (src < 0 || src >= H * W || bs[src] % 4 != side)
             return false;
 
         if (Utils.isWalk(move))
         {
-            /* The move is a walk move */
-
-            /* Cannot perform walk move if jump moves exist */
-            if (Utils.isForcedJump(bs, side))
+            /* The move is a walk move. Test the walk itself first, since it
+             * is cheaper than looking for jumps on the whole board. */
+            if ( !Utils.canWalk(bs, src, move.get(1)) )
                 return false;
 
-            /* Call Utils.canWalk helper */
-            int[] op = ops.get(0);
-            return Utils.canWalk(bs, op[0], op[1]);
+            /* Cannot perform walk move if jump moves exist */
+            return !Utils.isForcedJump(bs, side);
         }
         else
         {
@@ -284,16 +370,19 @@ public class Utils
 
             /* Attempt to perform each jump in the sequence of jumps. If any jumps
              * fail, return false. */
-            for (int[] op : ops)
+            int a = src;
+            for (int i = 1; i < move.size(); i++)
             {
-                if ( Utils.canJump(pbs, op[0], op[1]) )
-                    Utils.jump(pbs, op[0], op[1]);
+                int b = move.get(i);
+                if ( Utils.canJump(pbs, a, b) )
+                    Utils.jump(pbs, a, b);
                 else
                     return false;
+                a = b;
             }
 
             /* Must capture all available pieces in jump sequence */
-            if ( Utils.hasJump(pbs, side, move.get(move.size() - 1)) )
+            if ( Utils.hasJump(pbs, side, a) )
                 return false;
 
             return true;
@@ -311,7 +400,39 @@ public class Utils
     public static boolean isLoser(int[] bs, int side)
     {
         /* Player loses if no legal moves may be performed */
-        return Utils.getAllPossibleMoves(bs, side).size() == 0;
+        return !Utils.hasAnyMove(bs, side);
+    }
+
+    /**
+     * Returns whether the specified side has at least one legal move.
+     * Unlike {@link #getAllPossibleMoves getAllPossibleMoves}, this method
+     * builds no moves, and returns at the first piece found which can walk
+     * or jump. A side which can jump has a legal move whether or not it can
+     * also walk, so walks need not be tested against forced jumps.
+     * @param bs        the board state on which a move would be made
+     * @param side      the side to make a move
+     * @return          true if <code>side</code> has a legal move;
+     *                  false otherwise
+     */
+    public static boolean hasAnyMove(int[] bs, int side)
+    {
+        for (int a : SQUARES)
+        {
+            int piece = bs[a];
+            if (piece % 4 != side)
+                continue;
+
+            for (int b : WALKS[piece][a])
+                if (bs[b] == BLANK)
+                    return true;
+
+            int[] jumps = JUMPS[piece][a];
+            for (int i = 0; i < jumps.length; i += 2)
+                if ( bs[jumps[i + 1]] == BLANK && isOpponent(piece, bs[jumps[i]]) )
+                    return true;
+        }
+
+        return false;
     }
 
     /**
@@ -325,7 +446,7 @@ public class Utils
      */
     public static boolean isForcedJump(int[] bs, int side)
     {
-        for (int a = 0; a < H * W; a++)
+        for (int a : SQUARES)
             if (hasJump(bs, side, a))
                 return true;
 
@@ -369,19 +490,16 @@ public class Utils
     {
         List<Move> moveList = new ArrayList<Move>();
 
-        for (int a = 0; a < H * W; a++)
+        for (int a : SQUARES)
         {
-            if (bs[a] % 4 != side)
+            int piece = bs[a];
+            if (piece % 4 != side)
                 continue;
 
-            for (int d : Utils.DIAG)
-            {
-                int b = a + d;
-                if ( !Utils.canWalk(bs, a, b) )
-                    continue;
-
-                moveList.add(new Move( Arrays.asList(a, b) ));
-            }
+            int[] walks = WALKS[piece][a];
+            for (int i = 0; i < walks.length; i++)
+                if (bs[walks[i]] == BLANK)
+                    moveList.add(WALK_MOVES[piece][a][i]);
         }
 
         return moveList;
@@ -401,7 +519,7 @@ public class Utils
     public static List<Move> findJumpMoves(int[] bs, int side)
     {
         List<Move> moveList = new ArrayList<Move>();
-        for (int a = 0; a < H * W; a++)
+        for (int a : SQUARES)
         {
             if (bs[a] % 4 != side)
                 continue;
@@ -419,7 +537,8 @@ public class Utils
      * partial move <code>pmove</code>. 
      * This helper method recursively calls itself while updating 
      * <code>pbs</code> as the partial board state resulting from performing
-     * <code>pmove</code> on the original board state. 
+     * <code>pmove</code> on the original board state, and restores
+     * <code>pbs</code> before returning.
      * @param pbs       the partial board state resulting from performing
      *                  <code>pmove</code> on the original board state
      * @param pmove     the partial move to search from
@@ -430,21 +549,26 @@ public class Utils
             MutableMove pmove, List<Move> moveList)
     {
         int a = pmove.get(pmove.size() - 1);
+        int piece = pbs[a];
         boolean canJumpAgain = false;
 
-        for (int d : Utils.DIAG)
+        /* Pawns are not crowned until the end of the move, so the same
+         * piece jumps in the same directions throughout */
+        int[] jumps = JUMPS[piece][a];
+        for (int i = 0; i < jumps.length; i += 2)
         {
-            int b = a + 2 * d;
-            if ( !Utils.canJump(pbs, a, b) )
+            int c = jumps[i], b = jumps[i + 1];
+            int captured = pbs[c];
+            if ( pbs[b] != BLANK || !isOpponent(piece, captured) )
                 continue;
 
             canJumpAgain = true;
 
             pmove.add(b);
 
-            Stack<Integer> rv = Utils.jump(pbs, a, b);
+            pbs[b] = piece;   pbs[a] = BLANK;   pbs[c] = BLANK;
             Utils.findJumpMovesHelper(pbs, pmove, moveList);
-            Utils.revert(pbs, rv);
+            pbs[c] = captured;   pbs[a] = piece;   pbs[b] = BLANK;
 
             pmove.remove(pmove.size() - 1);
         }
@@ -564,12 +688,14 @@ public class Utils
         int a = src;
 
         /* The checkers piece at source location must belong to side */
-        if (pbs[a] % 4 != side)
+        int piece = pbs[a];
+        if (piece % 4 != side)
             return false;
 
-        /* Test jumps along each of four diagonals */
-        for (int d : Utils.DIAG)
-            if (Utils.canJump(pbs, a, a + 2 * d))
+        /* Test jumps along each diagonal the piece moves on */
+        int[] jumps = JUMPS[piece][a];
+        for (int i = 0; i < jumps.length; i += 2)
+            if ( pbs[jumps[i + 1]] == BLANK && isOpponent(piece, pbs[jumps[i]]) )
                 return true;
 
         return false;
@@ -691,7 +817,7 @@ public class Utils
         Stack<Integer> rv = new Stack<Integer>();
 
         /* Crown red pawns on top row */
-        for (int j = 0 * W + 1; j < 1 * W; j += 2)
+        for (int j : CROWNING_ROW[RED])
             if (pbs[j] == RED_PAWN)
             {
                 rv.push(j);   rv.push(pbs[j]);
@@ -699,7 +825,7 @@ public class Utils
             }
 
         /* Crown black pawns on bottom row */
-        for (int j = 7 * W; j < H * W; j += 2)
+        for (int j : CROWNING_ROW[BLK])
             if (pbs[j] == BLK_PAWN)
             {
                 rv.push(j);   rv.push(pbs[j]);
@@ -773,11 +899,15 @@ public class Utils
         throws IOException, FormatException
     {
         BufferedReader in = new BufferedReader(new FileReader(filename));
-        String s = "";
-        String t;
-        while ((t = in.readLine()) != null)
-            s += t;
-        return parseBoardState(s);
+        StringBuilder s = new StringBuilder();
+        try {
+            String t;
+            while ((t = in.readLine()) != null)
+                s.append(t);
+        } finally {
+            in.close();
+        }
+        return parseBoardState(s.toString());
     }
 
     /**
@@ -810,6 +940,11 @@ public class Utils
             if (Character.isWhitespace(c))
                 continue;
 
+            if (i == H * W)
+                throw new FormatException(
+                        "More than " + (H * W) + " pieces found"
+                        );
+
             switch (c)
             {
                 case '-':
@@ -994,7 +1129,7 @@ public class Utils
             int loc = parseLocation(str.substring(i, i + 2));
             move.add(loc);
 
-            if (str.charAt(i + 2) != '-')
+            if (i + 2 < str.length() && str.charAt(i + 2) != '-')
                 throw new FormatException(str + " is not a valid move");
         }
 
@@ -0,0 +1,23 @@
+package cs540.checkers;
+
+import cs540.checkers.variant.*;
+
+/**
+ * This interface is implemented by checkers players which can play
+ * {@link Variant variants} of checkers other than the standard game. Other
+ * players play only the standard game, with the methods of {@link Utils
+ * Utils}.
+ * <p>
+ * {@link Checkers Checkers} calls {@link #setVariant setVariant} once,
+ * before the game starts, whichever variant is played.
+ */
+public interface VariantAwareCheckersPlayer
+{
+    /**
+     * Tells this player which variant it plays. The board states passed to
+     * {@link CheckersPlayer#calculateMove calculateMove} are on the board of
+     * the variant.
+     * @param variant   the variant
+     */
+    public void setVariant(Variant variant);
+}
@@ -0,0 +1,81 @@
+package cs540.checkers;
+import static cs540.checkers.CheckersConsts.*;
+
+/**
+ * This class computes 64-bit Zobrist hashes of positions, the exclusive or
+ * of a random key for each piece on its location, and of a key for the side
+ * to move if it is <code>BLK</code>.
+ * <p>
+ * The keys are generated from a fixed seed, so hashes are the same in every
+ * run and may be stored in files. Since exclusive or is its own inverse, a
+ * hash can be updated incrementally as pieces change:
+ * <pre><code>h ^= Zobrist.key(loc, oldPiece) ^ Zobrist.key(loc, newPiece);</code></pre>
+ * Boards larger than the standard one, of up to {@link #MAX_SQUARES
+ * MAX_SQUARES} locations, are hashed with further keys, generated after
+ * those of the standard board so that its hashes do not change.
+ */
+public class Zobrist
+{
+    /** The greatest number of locations of a board which can be hashed. */
+    public static final int MAX_SQUARES = 12 * 12;
+
+    /** The key of each piece on each location; the key of <code>BLANK</code> is <code>0</code>. */
+    private static final long[][] KEYS = new long[PIECES_MAX][MAX_SQUARES];
+
+    /** The key of <code>BLK</code> to move. */
+    public static final long SIDE;
+
+    static
+    {
+        /* SplitMix64, so the keys do not depend on the JDK */
+        long state = 0x636865636B657273L;
+        for (int piece : new int[] {RED_PAWN, BLK_PAWN, RED_KING, BLK_KING})
+            for (int loc = 0; loc < W * H; loc++)
+            {
+                state += 0x9E3779B97F4A7C15L;
+                KEYS[piece][loc] = mix(state);
+            }
+        state += 0x9E3779B97F4A7C15L;
+        SIDE = mix(state);
+        for (int piece : new int[] {RED_PAWN, BLK_PAWN, RED_KING, BLK_KING})
+            for (int loc = W * H; loc < MAX_SQUARES; loc++)
+            {
+                state += 0x9E3779B97F4A7C15L;
+                KEYS[piece][loc] = mix(state);
+            }
+    }
+
+    private Zobrist() {}
+
+    private static long mix(long z)
+    {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Gets the key of a piece on a location.
+     * @param loc       the location
+     * @param piece     the checkers piece
+     * @return          the key, or <code>0</code> for <code>BLANK</code>
+     */
+    public static long key(int loc, int piece)
+    {
+        return KEYS[piece][loc];
+    }
+
+    /**
+     * Computes the hash of a position.
+     * @param bs        the board state, of any size up to <code>MAX_SQUARES</code>
+     * @param side      the side to move
+     * @return          the hash of the position
+     */
+    public static long hash(int[] bs, int side)
+    {
+        long h = side == BLK ? SIDE : 0;
+        for (int loc = 0; loc < bs.length; loc++)
+            h ^= KEYS[bs[loc]][loc];
+        return h;
+    }
+}
@@ -0,0 +1,114 @@
+package cs540.checkers.analysis;
+import cs540.checkers.*;
+
+import java.io.*;
+
+/**
+ * This class writes and reads binary analysis reports.
+ * <p>
+ * A report begins with the magic number <code>CKAR</code> and a version
+ * byte, followed by one record per {@link PositionAnalysis PositionAnalysis}:
+ * the game, ply, side, played move, best move, best score, played score,
+ * and depth as varints, with moves as {@link MoveCodec MoveCodec} move codes
+ * and scores zigzag encoded, then a flags byte holding the blunder and cached
+ * bits.
+ */
+public class AnalysisReport
+{
+    public static final byte[] MAGIC = { 'C', 'K', 'A', 'R' };
+    public static final int VERSION = 1;
+
+    protected static final int FLAG_BLUNDER = 1;
+    protected static final int FLAG_CACHED = 2;
+
+    private AnalysisReport() {}
+
+    /**
+     * Writes the header of a report.
+     * @param out       the stream to write to
+     * @throws IOException      if an I/O error occurs
+     */
+    public static void writeHeader(OutputStream out) throws IOException
+    {
+        out.write(MAGIC);
+        out.write(VERSION);
+    }
+
+    /**
+     * Reads and checks the header of a report.
+     * @param in        the stream to read from
+     * @throws IOException      if an I/O error occurs or the stream is not a report
+     */
+    public static void readHeader(InputStream in) throws IOException
+    {
+        for (byte b : MAGIC)
+            if (in.read() != b)
+                throw new IOException("Not a binary analysis report");
+        int version = in.read();
+        if (version != VERSION)
+            throw new IOException("Unsupported analysis report version " + version);
+    }
+
+    /**
+     * Writes a record.
+     * @param out       the stream to write to
+     * @param a         the analysis to write
+     * @throws IOException      if an I/O error occurs
+     */
+    public static void write(OutputStream out, PositionAnalysis a) throws IOException
+    {
+        MoveCodec.writeVarLong(out, a.game);
+        MoveCodec.writeVarLong(out, a.ply);
+        MoveCodec.writeVarLong(out, a.side);
+        MoveCodec.writeVarLong(out, MoveCodec.encode(a.played));
+        MoveCodec.writeVarLong(out, MoveCodec.encode(a.best));
+        MoveCodec.writeVarLong(out, zigzag(a.bestScore));
+        MoveCodec.writeVarLong(out, zigzag(a.playedScore));
+        MoveCodec.writeVarLong(out, a.depth);
+        out.write((a.blunder ? FLAG_BLUNDER : 0) | (a.cached ? FLAG_CACHED : 0));
+    }
+
+    /**
+     * Reads a record.
+     * @param in        the stream to read from, positioned after the header
+     * @return          the analysis, or <code>null</code> at the end of the report
+     * @throws IOException      if an I/O error occurs or the record is malformed
+     */
+    public static PositionAnalysis read(InputStream in) throws IOException
+    {
+        in.mark(1);
+        if (in.read() < 0)
+            return null;
+        in.reset();
+
+        PositionAnalysis a = new PositionAnalysis();
+        try {
+            a.game = (int)MoveCodec.readVarLong(in);
+            a.ply = (int)MoveCodec.readVarLong(in);
+            a.side = (int)MoveCodec.readVarLong(in);
+            a.played = MoveCodec.decode(MoveCodec.readVarLong(in));
+            a.best = MoveCodec.decode(MoveCodec.readVarLong(in));
+            a.bestScore = unzigzag(MoveCodec.readVarLong(in));
+            a.playedScore = unzigzag(MoveCodec.readVarLong(in));
+            a.depth = (int)MoveCodec.readVarLong(in);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Malformed analysis record: " + e.getMessage());
+        }
+        int flags = in.read();
+        if (flags < 0)
+            throw new EOFException();
+        a.blunder = (flags & FLAG_BLUNDER) != 0;
+        a.cached = (flags & FLAG_CACHED) != 0;
+        return a;
+    }
+
+    private static long zigzag(int v)
+    {
+        return ((long)v << 1) ^ (v >> 31);
+    }
+
+    private static int unzigzag(long v)
+    {
+        return (int)(v >>> 1) ^ -(int)(v & 1);
+    }
+}
@@ -0,0 +1,656 @@
+package cs540.checkers.analysis;
+import cs540.checkers.*;
+import cs540.checkers.pdn.*;
+import cs540.checkers.store.*;
+import static cs540.checkers.CheckersConsts.*;
+
+import java.io.*;
+import java.nio.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * This program replays logged games and analyzes every move, flagging
+ * blunders: moves which score at least a threshold below the best move.
+ * <p>
+ * Usage: <code>java cs540.checkers.analysis.GameAnalyzer [options]
+ * &lt;log&gt;...</code>, where each log is a text or binary log, or a PDN
+ * file, read by {@link GameLogs GameLogs}. The options are
+ * <ul>
+ * <li><code>--depth &lt;plies&gt;</code>, the search depth, by default
+ * <code>6</code>;
+ * <li><code>--time &lt;ms&gt;</code>, a time limit per position, with which
+ * the depth is only limited by <code>--depth</code> if it is also given;
+ * <li><code>--threads &lt;n&gt;</code>, the number of games analyzed at
+ * once, by default the number of processors;
+ * <li><code>--threshold &lt;score&gt;</code>, the smallest loss which is a
+ * blunder, by default <code>1</code>;
+ * <li><code>--eval &lt;class&gt;</code>, the {@link Evaluator Evaluator}
+ * class, by default {@link SimpleEvaluator SimpleEvaluator}, whose units
+ * the scores and threshold are in;
+ * <li><code>--csv &lt;file&gt;</code> or <code>--binary &lt;file&gt;</code>,
+ * the report to write, by default CSV on standard output. Binary reports
+ * are written by {@link AnalysisReport AnalysisReport};
+ * <li><code>--dump &lt;file&gt;</code>, which prints a binary report as CSV
+ * instead of analyzing games;
+ * <li><code>--fen &lt;fen&gt;</code>, which prints the best lines of a
+ * position given in PDN FEN instead of analyzing games, with
+ * <code>--lines &lt;n&gt;</code> giving their number, by default
+ * <code>3</code>;
+ * <li><code>--nosymmetry</code>, which caches positions by their own hash
+ * rather than their canonical hash;
+ * <li><code>--offheap &lt;positions&gt;</code>, which caches up to the given
+ * number of positions in a {@link PositionTable PositionTable} outside the
+ * heap, rather than up to {@link #CACHE_LIMIT CACHE_LIMIT} on the heap;
+ * <li><code>--cachefile &lt;file&gt;</code>, which keeps that table in a
+ * file, created if it does not exist, so that a later run reuses the
+ * positions searched. The file is stamped with the <code>--depth</code>,
+ * <code>--time</code> and <code>--eval</code> it was searched with, and a
+ * run with other options refuses it.
+ * </ul>
+ * <p>
+ * Positions are cached by their {@link Symmetry canonical} hash and shared
+ * by all threads, so a position reached in several games, such as the
+ * openings, is searched once, and so is a position whose mirror, with the
+ * colors swapped, was reached. The mirror is searched in place of the
+ * position when its hash is the canonical one. Reports list the games in
+ * the order they were read.
+ */
+public class GameAnalyzer
+{
+    private static final String USAGE =
+        "Usage: java cs540.checkers.analysis.GameAnalyzer [options] <log>...\n" +
+        "\n" +
+        "--depth <plies>        Search depth (default 6)\n" +
+        "--time <ms>            Time limit per position\n" +
+        "--threads <n>          Number of games analyzed at once\n" +
+        "--threshold <score>    Smallest loss which is a blunder (default 1)\n" +
+        "--eval <class>         Evaluator class (default cs540.checkers.SimpleEvaluator)\n" +
+        "--csv <file>           Write a CSV report\n" +
+        "--binary <file>        Write a binary report\n" +
+        "--dump <file>          Print a binary report as CSV\n" +
+        "--fen <fen>            Print the best lines of a position\n" +
+        "--lines <n>            Number of lines printed for --fen (default 3)\n" +
+        "--nosymmetry           Do not share the analysis of mirrored positions\n" +
+        "--offheap <positions>  Cache up to this many positions outside the heap\n" +
+        "--cachefile <file>     Keep the off-heap cache in a file\n";
+
+    /** The default search depth. */
+    public static final int DEFAULT_DEPTH = 6;
+
+    /** The maximum number of positions in the cache. */
+    public static final int CACHE_LIMIT = 1 << 20;
+
+    /* The record of a position in the off-heap cache: flags, the search of
+     * the position (its depth, score, and move code, or 0 for no move), and
+     * the score of the move which reached it, from the side which made it,
+     * to the depth of the search of the position before the move */
+    protected static final int RECORD = 28;
+    protected static final int SEARCHED = 1, SCORED = 2;
+
+    /** The search of a position, shared by the games reaching it. */
+    protected static class CacheEntry
+    {
+        final Searcher.Result result;
+        /** The scores of moves other than the best, by move code. */
+        final ConcurrentMap<Long, Integer> scores = new ConcurrentHashMap<Long, Integer>();
+        /** Whether the search was read from the off-heap table. */
+        boolean stored;
+
+        CacheEntry(Searcher.Result result)
+        {
+            this.result = result;
+        }
+    }
+
+    protected final int depthLimit;
+    protected final long timeLimit;
+    protected final int threshold;
+    protected final Class<? extends Evaluator> evaluatorClass;
+    /** Whether a position and its mirror share a cache entry. */
+    protected boolean symmetric = true;
+
+    /** The cache, or with an off-heap table, the searches in progress. */
+    protected final ConcurrentMap<Long, FutureTask<CacheEntry>> cache =
+        new ConcurrentHashMap<Long, FutureTask<CacheEntry>>();
+    /** The off-heap cache, or <code>null</code> to cache on the heap. */
+    protected PositionTable table;
+    protected final AtomicLong nodeCount = new AtomicLong();
+
+    /* Totals of the games written to reports */
+    protected int gameCount;
+    protected long positionCount, cachedCount;
+    protected final long[] blunderCount = new long[2];
+    protected long elapsedTime;
+
+    protected final ThreadLocal<Searcher> searcher = new ThreadLocal<Searcher>() {
+        protected Searcher initialValue()
+        {
+            try {
+                return new Searcher(evaluatorClass.getConstructor().newInstance());
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException("Cannot create evaluator " + evaluatorClass.getName(), e);
+            }
+        }
+    };
+
+    /**
+     * Constructs an analyzer.
+     * @param depthLimit    the search depth, in plies
+     * @param timeLimit the time limit per position in milliseconds, or
+     *                  <code>0</code> for none
+     * @param threshold the smallest loss which is a blunder
+     * @param evaluatorClass    the evaluator class, which must have a
+     *                  public constructor taking no arguments
+     */
+    public GameAnalyzer(int depthLimit, long timeLimit, int threshold,
+            Class<? extends Evaluator> evaluatorClass)
+    {
+        this.depthLimit = depthLimit;
+        this.timeLimit = timeLimit;
+        this.threshold = threshold;
+        this.evaluatorClass = evaluatorClass;
+    }
+
+    /**
+     * Gets the number of nodes searched so far by all threads.
+     * @return          the number of nodes
+     */
+    public long getNodeCount() { return nodeCount.get(); }
+
+    /**
+     * Gets the number of positions in the cache.
+     * @return          the number of cached positions
+     */
+    public int getCacheSize() { return table != null ? (int)table.size() : cache.size(); }
+
+    /**
+     * Sets whether a position and its mirror share a cache entry. This must
+     * be set before any games are analyzed.
+     * @param symmetric true to cache positions by their canonical hash
+     */
+    public void setSymmetric(boolean symmetric) { this.symmetric = symmetric; }
+
+    /**
+     * Sets an off-heap table to cache positions in, instead of the heap.
+     * This must be set before any games are analyzed. Positions are only
+     * added while the table has room.
+     * @param table     a table with records of {@link #RECORD RECORD}
+     *                  bytes, or <code>null</code> to cache on the heap
+     * @throws IllegalArgumentException     if the records are of another size
+     */
+    public void setTable(PositionTable table)
+    {
+        if (table != null && table.getRecordSize() != RECORD)
+            throw new IllegalArgumentException("Position table records are not " + RECORD + " bytes");
+        this.table = table;
+    }
+
+    /**
+     * Gets the stamp of a position table in a file which caches the searches
+     * of this analyzer. Searches with another depth, time limit or evaluator
+     * give another stamp.
+     * @return          the stamp
+     */
+    public int getTableStamp()
+    {
+        return (depthLimit + " " + timeLimit + " " + evaluatorClass.getName()).hashCode();
+    }
+
+    /**
+     * Replays a game and analyzes each of its moves. This method may be
+     * called by several threads at once.
+     * @param id        the number of the game in the report
+     * @param game      the game
+     * @return          the analyses of the moves, in order
+     */
+    public List<PositionAnalysis> analyze(int id, GameRecord game)
+    {
+        Searcher s = searcher.get();
+        long nodes = s.getNodeCount();
+
+        CanonicalBoardState bs = new CanonicalBoardState(game.getInitialBoardState(),
+                game.getInitialSide());
+        List<PositionAnalysis> results = new ArrayList<PositionAnalysis>();
+        for (Move move : game.getMoves())
+        {
+            PositionAnalysis a = analyzePosition(s, bs, move);
+            a.game = id;
+            a.ply = results.size();
+            results.add(a);
+
+            bs.execute(move);
+        }
+
+        nodeCount.addAndGet(s.getNodeCount() - nodes);
+        return results;
+    }
+
+    protected PositionAnalysis analyzePosition(final Searcher s, CanonicalBoardState bs, Move move)
+    {
+        /* A position stored as its mirror is searched as its mirror, and
+         * its moves are mirrored to and from the cache */
+        boolean flipped = symmetric && bs.isFlipped();
+        final int[] D = flipped ? Symmetry.flip(bs.D) : bs.D.clone();
+        final int side = flipped ? Utils.otherSide(bs.side) : bs.side;
+        Move searchMove = flipped ? Symmetry.flip(move) : move;
+
+        PositionAnalysis a = new PositionAnalysis();
+        final PackedBoard board = table != null ? new PackedBoard(D) : null;
+        CacheEntry entry = table != null ? lookup(board, side) : null;
+        a.cached = entry != null;
+        if (entry == null)
+        {
+            /* The first thread to reach a position searches it, and any
+             * others reaching it meanwhile wait for that search. With an
+             * off-heap table, the search is stored there, and only searches
+             * in progress are kept on the heap. */
+            FutureTask<CacheEntry> task = new FutureTask<CacheEntry>(new Callable<CacheEntry>() {
+                public CacheEntry call()
+                {
+                    /* A search stored since the lookup is not repeated */
+                    CacheEntry e = table != null ? lookup(board, side) : null;
+                    if (e == null)
+                    {
+                        e = new CacheEntry(s.search(D, side, depthLimit, timeLimit));
+                        if (table != null)
+                            storeSearch(board, side, e.result);
+                    }
+                    return e;
+                }
+            });
+            long key = symmetric ? bs.canonicalHash() : bs.hash();
+            FutureTask<CacheEntry> shared = table != null || cache.size() < CACHE_LIMIT
+                ? cache.putIfAbsent(key, task) : cache.get(key);
+
+            a.cached = shared != null;
+            if (shared == null)
+            {
+                task.run();
+                shared = task;
+                if (table != null)
+                    cache.remove(key, task);
+            }
+
+            try {
+                entry = shared.get();
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException(e.getCause());
+            }
+            a.cached |= entry.stored;
+        }
+
+        a.side = bs.side;
+        a.played = move;
+        a.best = flipped ? Symmetry.flip(entry.result.move) : entry.result.move;
+        a.bestScore = entry.result.score;
+        a.depth = entry.result.depth;
+        if (searchMove.equals(entry.result.move))
+            a.playedScore = entry.result.score;
+        else if (table != null)
+            a.playedScore = scoreMove(s, D, side, searchMove, entry.result.depth);
+        else
+        {
+            Long code = MoveCodec.encode(searchMove);
+            Integer score = entry.scores.get(code);
+            if (score == null)
+            {
+                score = s.scoreMove(D, side, searchMove, entry.result.depth);
+                entry.scores.putIfAbsent(code, score);
+            }
+            a.playedScore = score;
+        }
+        a.blunder = a.getLoss() >= threshold;
+        return a;
+    }
+
+    /**
+     * Gets the search of a position from the off-heap table.
+     * @return          the search, or <code>null</code> if it is not stored
+     */
+    protected CacheEntry lookup(PackedBoard board, int side)
+    {
+        byte[] record = new byte[RECORD];
+        if (!table.get(board, side, record))
+            return null;
+        ByteBuffer r = ByteBuffer.wrap(record);
+        if ((r.getInt(0) & SEARCHED) == 0)
+            return null;
+
+        long code = r.getLong(12);
+        Move move = code == 0 ? null : MoveCodec.decode(code);
+        List<Move> pv = move == null ? Collections.<Move>emptyList()
+            : Collections.singletonList(move);
+        CacheEntry entry = new CacheEntry(new Searcher.Result(move, r.getInt(8), r.getInt(4), pv));
+        entry.stored = true;
+        return entry;
+    }
+
+    /**
+     * Stores the search of a position in the off-heap table, if it is
+     * already there or the table has room.
+     */
+    protected void storeSearch(PackedBoard board, int side, Searcher.Result result)
+    {
+        synchronized (table)
+        {
+            byte[] record = new byte[RECORD];
+            if (!table.get(board, side, record) && table.size() >= table.getCapacity())
+                return;
+            ByteBuffer r = ByteBuffer.wrap(record);
+            r.putInt(0, r.getInt(0) | SEARCHED);
+            r.putInt(4, result.depth);
+            r.putInt(8, result.score);
+            r.putLong(12, result.move == null ? 0 : MoveCodec.encode(result.move));
+            table.put(board, side, record);
+        }
+    }
+
+    /**
+     * Scores a move which is not the best, with the off-heap table. The
+     * score depends only on the position the move reaches and the depth,
+     * so it is stored under that position.
+     */
+    protected int scoreMove(Searcher s, int[] D, int side, Move move, int depth)
+    {
+        int[] C = D.clone();
+        Utils.execute(C, move);
+        PackedBoard child = new PackedBoard(C);
+        int other = Utils.otherSide(side);
+
+        byte[] record = new byte[RECORD];
+        ByteBuffer r = ByteBuffer.wrap(record);
+        if (table.get(child, other, record) && (r.getInt(0) & SCORED) != 0 && r.getInt(20) == depth)
+            return r.getInt(24);
+
+        int score = s.scoreMove(D, side, move, depth);
+        synchronized (table)
+        {
+            Arrays.fill(record, (byte)0);
+            if (table.get(child, other, record) || table.size() < table.getCapacity())
+            {
+                r.putInt(0, r.getInt(0) | SCORED);
+                r.putInt(20, depth);
+                r.putInt(24, score);
+                table.put(child, other, record);
+            }
+        }
+        return score;
+    }
+
+    public static void main(String[] args)
+    {
+        int depth = -1;
+        long time = 0;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int threshold = 1;
+        String evalName = SimpleEvaluator.class.getName();
+        String csvName = null, binaryName = null, dumpName = null, fen = null;
+        int lines = 3;
+        boolean symmetric = true;
+        long offheap = -1;
+        String cacheName = null;
+        List<File> logs = new ArrayList<File>();
+
+        try {
+            for (int i = 0; i < args.length; i++)
+            {
+                if (args[i].equals("--depth"))
+                    depth = Integer.parseInt(args[++i]);
+                else if (args[i].equals("--time"))
+                    time = Long.parseLong(args[++i]);
+                else if (args[i].equals("--threads"))
+                    threads = Integer.parseInt(args[++i]);
+                else if (args[i].equals("--threshold"))
+                    threshold = Integer.parseInt(args[++i]);
+                else if (args[i].equals("--eval"))
+                    evalName = args[++i];
+                else if (args[i].equals("--csv"))
+                    csvName = args[++i];
+                else if (args[i].equals("--binary"))
+                    binaryName = args[++i];
+                else if (args[i].equals("--dump"))
+                    dumpName = args[++i];
+                else if (args[i].equals("--fen"))
+                    fen = args[++i];
+                else if (args[i].equals("--lines"))
+                    lines = Integer.parseInt(args[++i]);
+                else if (args[i].equals("--nosymmetry"))
+                    symmetric = false;
+                else if (args[i].equals("--offheap"))
+                    offheap = Long.parseLong(args[++i]);
+                else if (args[i].equals("--cachefile"))
+                    cacheName = args[++i];
+                else if (args[i].startsWith("--"))
+                    throw new IllegalArgumentException("Unrecognized option " + args[i]);
+                else
+                    logs.add(new File(args[i]));
+            }
+            if (depth == 0 || threads < 1 || lines < 1 || offheap == 0 || offheap < -1
+                    || (csvName != null && binaryName != null))
+                throw new IllegalArgumentException("Invalid options");
+        } catch (RuntimeException e) {
+            System.out.println(e);
+            logs.clear();
+            dumpName = null;
+            fen = null;
+        }
+
+        if (logs.isEmpty() && dumpName == null && fen == null)
+        {
+            System.out.println(USAGE);
+            System.exit(1);
+        }
+
+        try {
+            if (dumpName != null)
+            {
+                dump(new File(dumpName), System.out);
+                return;
+            }
+
+            Class<? extends Evaluator> evaluatorClass =
+                Class.forName(evalName).asSubclass(Evaluator.class);
+            if (depth < 0)
+                depth = time > 0 ? Searcher.MAX_DEPTH : DEFAULT_DEPTH;
+
+            if (fen != null)
+            {
+                int[] bs = new int[W * H];
+                int side = Pdn.parseFen(fen, bs);
+                Searcher searcher = new Searcher(evaluatorClass.getConstructor().newInstance());
+                for (Searcher.Result line : searcher.analyze(bs, side, lines, depth, time))
+                    System.out.println(line);
+                return;
+            }
+            GameAnalyzer analyzer = new GameAnalyzer(depth, time, threshold, evaluatorClass);
+            analyzer.setSymmetric(symmetric);
+            PositionTable table = null;
+            if (cacheName != null)
+            {
+                File file = new File(cacheName);
+                table = file.exists() ? PositionTable.open(file)
+                    : PositionTable.create(file, RECORD, offheap > 0 ? offheap : CACHE_LIMIT,
+                            analyzer.getTableStamp());
+                if (table.getRecordSize() != RECORD)
+                {
+                    table.close();
+                    throw new IOException(file + " is not an analysis cache");
+                }
+                if (table.getStamp() != analyzer.getTableStamp())
+                {
+                    table.close();
+                    throw new IOException(file + " was searched with another --depth, --time or --eval");
+                }
+            }
+            else if (offheap > 0)
+                table = new PositionTable(RECORD, offheap);
+            analyzer.setTable(table);
+
+            OutputStream out = csvName != null ? new FileOutputStream(csvName)
+                : binaryName != null ? new FileOutputStream(binaryName) : System.out;
+            out = new BufferedOutputStream(out);
+            try {
+                analyzer.run(logs, threads, out, binaryName != null);
+            } finally {
+                out.flush();
+                if (csvName != null || binaryName != null)
+                    out.close();
+                if (table != null)
+                    table.close();
+            }
+            analyzer.printSummary(csvName != null || binaryName != null ? System.out : System.err);
+        } catch (IOException e) {
+            System.out.println(e);
+            System.exit(1);
+        } catch (ClassNotFoundException e) {
+            System.out.println(e);
+            System.exit(1);
+        } catch (ClassCastException e) {
+            System.out.println(evalName + " is not an Evaluator");
+            System.exit(1);
+        } catch (ReflectiveOperationException e) {
+            System.out.println(e);
+            System.exit(1);
+        } catch (FormatException e) {
+            System.out.println(e);
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Analyzes the games of logs on several threads and writes a report.
+     * @param logs      the logs to read games from
+     * @param threads   the number of games to analyze at once
+     * @param out       the stream to write the report to, which is flushed
+     *                  but not closed
+     * @param binary    whether to write a binary report rather than CSV
+     * @throws IOException      if an I/O error occurs
+     */
+    public void run(List<File> logs, int threads, OutputStream out, boolean binary) throws IOException
+    {
+        final Report report = new Report(out, binary);
+        final ExecutorService pool = Executors.newFixedThreadPool(threads);
+        final Deque<Future<List<PositionAnalysis>>> pending =
+            new ArrayDeque<Future<List<PositionAnalysis>>>();
+        /* Bound the games held in memory while keeping every thread busy */
+        final int window = 4 * threads;
+        long start = System.nanoTime();
+
+        try {
+            for (File log : logs)
+            {
+                GameLogs.read(log, new GameLogs.Handler() {
+                    public void game(final GameRecord game) throws IOException
+                    {
+                        final int id = gameCount++;
+                        pending.add(pool.submit(new Callable<List<PositionAnalysis>>() {
+                            public List<PositionAnalysis> call()
+                            {
+                                return analyze(id, game);
+                            }
+                        }));
+                        if (pending.size() >= window)
+                            report.write(pending.remove());
+                    }
+                });
+            }
+            while (!pending.isEmpty())
+                report.write(pending.remove());
+        } finally {
+            pool.shutdownNow();
+            report.flush();
+            elapsedTime += System.nanoTime() - start;
+        }
+    }
+
+    /**
+     * Prints the totals of the games analyzed by {@link #run run}.
+     * @param out       the stream to print to
+     */
+    public void printSummary(PrintStream out)
+    {
+        double secs = elapsedTime / 1e9;
+        out.printf("%d games, %d positions (%d cached, %d entries) in %.2f s, %.0f positions/s, %d nodes%n",
+                gameCount, positionCount, cachedCount, getCacheSize(), secs,
+                positionCount / secs, getNodeCount());
+        out.printf("Blunders: %d RED, %d BLK%n", blunderCount[RED], blunderCount[BLK]);
+    }
+
+    /**
+     * Prints a binary report as CSV.
+     * @param file      the binary report
+     * @param out       the stream to print to
+     * @throws IOException      if an I/O error occurs or the report is malformed
+     */
+    public static void dump(File file, PrintStream out) throws IOException
+    {
+        InputStream in = new BufferedInputStream(new FileInputStream(file));
+        try {
+            AnalysisReport.readHeader(in);
+            out.println(PositionAnalysis.CSV_HEADER);
+            PositionAnalysis a;
+            while ((a = AnalysisReport.read(in)) != null)
+                out.println(a.toCsv());
+        } finally {
+            in.close();
+        }
+    }
+
+    /** A report being written. */
+    protected class Report
+    {
+        final OutputStream out;
+        final PrintWriter csv;
+
+        Report(OutputStream out, boolean binary) throws IOException
+        {
+            this.out = out;
+            if (binary)
+            {
+                csv = null;
+                AnalysisReport.writeHeader(out);
+            }
+            else
+            {
+                csv = new PrintWriter(new OutputStreamWriter(out));
+                csv.println(PositionAnalysis.CSV_HEADER);
+            }
+        }
+
+        void write(Future<List<PositionAnalysis>> game) throws IOException
+        {
+            List<PositionAnalysis> results;
+            try {
+                results = game.get();
+            } catch (InterruptedException e) {
+                throw new InterruptedIOException();
+            } catch (ExecutionException e) {
+                throw new IOException("Analysis failed", e.getCause());
+            }
+
+            for (PositionAnalysis a : results)
+            {
+                if (csv != null)
+                    csv.println(a.toCsv());
+                else
+                    AnalysisReport.write(out, a);
+                positionCount++;
+                if (a.cached)
+                    cachedCount++;
+                if (a.blunder)
+                    blunderCount[a.side]++;
+            }
+        }
+
+        void flush() throws IOException
+        {
+            if (csv != null)
+                csv.flush();
+            out.flush();
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package cs540.checkers.analysis;
+import cs540.checkers.*;
+
+/**
+ * This class is the analysis of one move of a game: the move played, the
+ * best move found by a {@link Searcher Searcher}, and their scores from the
+ * point of view of the side which moved.
+ */
+public class PositionAnalysis
+{
+    /** The header line of CSV reports. */
+    public static final String CSV_HEADER =
+        "game,ply,side,played,best,best_score,played_score,loss,blunder,depth,cached";
+
+    /** The game, counting from <code>0</code> in the order games were read. */
+    public int game;
+    /** The ply of the move, counting from <code>0</code>. */
+    public int ply;
+    /** The side which moved. */
+    public int side;
+    public Move played;
+    public Move best;
+    public int bestScore;
+    public int playedScore;
+    /** The depth both moves were searched to. */
+    public int depth;
+    /** Whether the move loses at least the blunder threshold. */
+    public boolean blunder;
+    /** Whether the search of the position was shared with an earlier one. */
+    public boolean cached;
+
+    /**
+     * Gets how much worse the played move scores than the best move.
+     * @return          the difference of the scores, which is not negative
+     */
+    public int getLoss()
+    {
+        return bestScore - playedScore;
+    }
+
+    /**
+     * Returns this analysis as a line of a CSV report, without the line
+     * separator.
+     * @return          the CSV line
+     */
+    public String toCsv()
+    {
+        return game + "," + ply + "," + Utils.reprSide(side) + ","
+            + Utils.reprMove(played) + "," + Utils.reprMove(best) + ","
+            + bestScore + "," + playedScore + "," + getLoss() + ","
+            + (blunder ? 1 : 0) + "," + depth + "," + (cached ? 1 : 0);
+    }
+
+    public String toString()
+    {
+        return toCsv();
+    }
+}
@@ -0,0 +1,252 @@
+package cs540.checkers.analysis;
+import cs540.checkers.*;
+import static cs540.checkers.CheckersConsts.*;
+
+import java.util.*;
+
+/**
+ * This class is an iterative deepening alpha-beta search for analyzing
+ * positions, limited by depth, time, or both.
+ * <p>
+ * Scores are from the point of view of the side to move, in the units of the
+ * {@link Evaluator Evaluator}. A side with no moves loses, and a position
+ * which is lost in <code>n</code> plies scores <code>-(MATE - n)</code>.
+ * Leaves where a jump is pending are searched until the jumps are played
+ * out, so the score of a position does not depend on a capture just past
+ * the depth limit.
+ * <p>
+ * {@link #analyze analyze} finds several of the best moves with their
+ * principal variations. The moves are searched with a window bounded by the
+ * score of the last of the lines kept so far, so moves which cannot enter
+ * the list fail low as cheaply as in a search for the best move alone.
+ * <p>
+ * A searcher is not thread safe; each thread should use its own.
+ */
+public class Searcher
+{
+    /** The score of a won position, less the plies needed to win it. */
+    public static final int MATE = 1000000;
+
+    /** The maximum depth of a search limited only by time. */
+    public static final int MAX_DEPTH = 64;
+
+    /** A bound above every score. */
+    protected static final int INFINITY = MATE + 1;
+
+    /** The number of nodes visited between checks of the deadline. */
+    protected static final int CHECK_INTERVAL = 1024;
+
+    /** The greatest ply from the root, including jumps played out past the depth. */
+    protected static final int MAX_PLY = 128;
+
+    /** The result of a search: a move, its score, and its principal variation. */
+    public static class Result
+    {
+        /** The move, or <code>null</code> if the side to move has none. */
+        public final Move move;
+        /** The score of the move. */
+        public final int score;
+        /** The depth of the last completed iteration. */
+        public final int depth;
+        /** The expected moves of both sides, starting with <code>move</code>. */
+        public final List<Move> pv;
+
+        public Result(Move move, int score, int depth, List<Move> pv)
+        {
+            this.move = move;
+            this.score = score;
+            this.depth = depth;
+            this.pv = Collections.unmodifiableList(new ArrayList<Move>(pv));
+        }
+
+        public String toString()
+        {
+            StringBuilder s = new StringBuilder();
+            s.append(score).append(" (depth ").append(depth).append(")");
+            for (Move move : pv)
+                s.append(' ').append(Utils.reprMove(move));
+            return s.toString();
+        }
+    }
+
+    /** Thrown to abandon an iteration when the deadline passes. */
+    private static class Timeout extends RuntimeException
+    {
+        public Throwable fillInStackTrace() { return this; }
+    }
+
+    protected final Evaluator sbe;
+    protected long nodeCount;
+    protected long deadline;
+
+    /** The triangular principal variation table, indexed by ply. */
+    protected final Move[][] pvTable = new Move[MAX_PLY + 1][MAX_PLY + 1];
+    protected final int[] pvLength = new int[MAX_PLY + 1];
+    /** The best line of the last iteration, whose moves are tried first. */
+    protected Move[] lastPv = new Move[0];
+
+    /**
+     * Constructs a searcher.
+     * @param sbe       the evaluator to score leaves with
+     */
+    public Searcher(Evaluator sbe)
+    {
+        this.sbe = sbe;
+    }
+
+    /**
+     * Gets the number of nodes this searcher has visited.
+     * @return          the number of nodes visited by all searches so far
+     */
+    public long getNodeCount() { return nodeCount; }
+
+    /**
+     * Finds the best move of a position. The first iteration always
+     * completes, so a result is returned however short the time limit.
+     * @param D         the board state
+     * @param side      the side to move
+     * @param depthLimit    the maximum depth, in plies
+     * @param timeLimit the time limit in milliseconds, or <code>0</code> for none
+     * @return          the result of the deepest completed iteration
+     */
+    public Result search(int[] D, int side, int depthLimit, long timeLimit)
+    {
+        return analyze(D, side, 1, depthLimit, timeLimit).get(0);
+    }
+
+    /**
+     * Finds the best moves of a position, with their scores and principal
+     * variations. The scores are exact; the first iteration always
+     * completes, so lines are returned however short the time limit.
+     * @param D         the board state
+     * @param side      the side to move
+     * @param lines     the number of moves to find
+     * @param depthLimit    the maximum depth, in plies
+     * @param timeLimit the time limit in milliseconds, or <code>0</code> for none
+     * @return          the best moves of the deepest completed iteration,
+     *                  best first, or a single result with a <code>null</code>
+     *                  move if the side to move has none
+     * @throws IllegalArgumentException     if <code>lines</code> is less than <code>1</code>
+     */
+    public List<Result> analyze(int[] D, int side, int lines, int depthLimit, long timeLimit)
+    {
+        if (lines < 1)
+            throw new IllegalArgumentException("lines must be positive");
+
+        BoardState bs = new BoardState(D, side);
+        List<Move> moves = bs.getAllPossibleMoves();
+        if (moves.isEmpty())
+            return Collections.singletonList(new Result(null, -MATE, 0, Collections.<Move>emptyList()));
+        lines = Math.min(lines, moves.size());
+
+        long limit = timeLimit > 0 ? System.nanoTime() + timeLimit * 1000000L : Long.MAX_VALUE;
+        deadline = Long.MAX_VALUE;
+        lastPv = new Move[0];
+        List<Result> result = null;
+        try {
+            for (int depth = 1; depth <= Math.min(depthLimit, MAX_PLY); depth++)
+            {
+                /* Search the lines of the last iteration first, in order */
+                if (result != null)
+                    for (int i = result.size() - 1; i >= 0; i--)
+                    {
+                        moves.remove(result.get(i).move);
+                        moves.add(0, result.get(i).move);
+                    }
+
+                List<Result> best = new ArrayList<Result>();
+                for (Move move : moves)
+                {
+                    /* A move must beat the last line kept to enter the list */
+                    int bound = best.size() < lines ? -INFINITY : best.get(lines - 1).score;
+                    pvLength[1] = 1;
+                    bs.execute(move);
+                    int score = -negamax(bs, depth - 1, -INFINITY, -bound, 1);
+                    bs.revert();
+                    if (score <= bound)
+                        continue;
+
+                    List<Move> pv = new ArrayList<Move>();
+                    pv.add(move);
+                    for (int j = 1; j < pvLength[1]; j++)
+                        pv.add(pvTable[1][j]);
+
+                    int i = best.size();
+                    while (i > 0 && best.get(i - 1).score < score)
+                        i--;
+                    best.add(i, new Result(move, score, depth, pv));
+                    if (best.size() > lines)
+                        best.remove(lines);
+                }
+                result = best;
+                lastPv = best.get(0).pv.toArray(new Move[0]);
+                deadline = limit;
+
+                /* Deeper iterations cannot change a forced win or loss */
+                if (moves.size() == 1 || Math.abs(best.get(0).score) >= MATE - MAX_PLY)
+                    break;
+            }
+        } catch (Timeout e) {
+            /* The last completed iteration stands */
+        }
+        return result;
+    }
+
+    /**
+     * Scores a move to the same depth as {@link #search search}, with no
+     * time limit. This gives the exact score of a move which is not the best.
+     * @param D         the board state
+     * @param side      the side to move
+     * @param move      a legal move
+     * @param depth     the depth, in plies, including the move itself
+     * @return          the score of the move
+     */
+    public int scoreMove(int[] D, int side, Move move, int depth)
+    {
+        BoardState bs = new BoardState(D, side);
+        deadline = Long.MAX_VALUE;
+        bs.execute(move);
+        return -negamax(bs, depth - 1, -INFINITY, INFINITY, 1);
+    }
+
+    protected int negamax(BoardState bs, int depth, int alpha, int beta, int ply)
+    {
+        if (++nodeCount % CHECK_INTERVAL == 0 && System.nanoTime() > deadline)
+            throw new Timeout();
+
+        pvLength[ply] = ply;
+        List<Move> moves = bs.getAllPossibleMoves();
+        if (moves.isEmpty())
+            return -(MATE - ply);
+
+        /* Pending jumps are forced, so playing them out costs little */
+        if ((depth <= 0 && !bs.isForcedJump()) || ply >= MAX_PLY)
+        {
+            int score = sbe.eval(bs.D);
+            return bs.side == RED ? score : -score;
+        }
+
+        /* Try the move of the last best line at this ply first */
+        if (ply < lastPv.length && moves.remove(lastPv[ply]))
+            moves.add(0, lastPv[ply]);
+
+        for (Move move : moves)
+        {
+            bs.execute(move);
+            int score = -negamax(bs, depth - 1, -beta, -alpha, ply + 1);
+            bs.revert();
+            if (score > alpha)
+            {
+                alpha = score;
+                if (alpha >= beta)
+                    break;
+
+                pvTable[ply][ply] = move;
+                for (int j = ply + 1; j < pvLength[ply + 1]; j++)
+                    pvTable[ply][j] = pvTable[ply + 1][j];
+                pvLength[ply] = Math.max(pvLength[ply + 1], ply + 1);
+            }
+        }
+        return alpha;
+    }
+}
@@ -3,6 +3,7 @@
 package cs540.checkers.bpayne;
 
 import cs540.checkers.*;
+import cs540.checkers.jfr.SearchIterationEvent;
 import static cs540.checkers.CheckersConsts.*;
 
 import java.util.*;
@@ -19,6 +20,8 @@ public class AlphaBetaPlayer extends CheckersPlayer implements GradedCheckersPla
 {
 	/** The number of pruned subtrees for the most recent deepening iteration. */
 	protected int pruneCount;
+	/** The number of nodes visited by the most recent deepening iteration. */
+	protected long nodeCount;
 	protected Evaluator sbe;
 
 
@@ -45,7 +48,11 @@ public class AlphaBetaPlayer extends CheckersPlayer implements GradedCheckersPla
 
 		for(int curDepth = 1; curDepth < this.depthLimit; curDepth+=2){
 			
+			SearchIterationEvent event = new SearchIterationEvent();
+			event.begin();
+
 			pruneCount = 0;
+			nodeCount = 1;
 			bestScore= Integer.MIN_VALUE;
 			bestMove=null;
 			/* Find best board state among those reachable from one move */
@@ -72,6 +79,15 @@ public class AlphaBetaPlayer extends CheckersPlayer implements GradedCheckersPla
 				System.out.println("PruneCount: " + this.pruneCount + "\t Depth: " + curDepth);
 			}
 			setMove(bestMove);
+
+			if (event.shouldCommit()) {
+				event.player = name;
+				event.depth = curDepth;
+				event.nodes = nodeCount;
+				event.score = bestScore;
+				event.move = Utils.reprMove(bestMove);
+				event.commit();
+			}
 			
 			/* Set the best move as the chosen move */
 		}
@@ -81,6 +97,7 @@ public class AlphaBetaPlayer extends CheckersPlayer implements GradedCheckersPla
 
 	private int maxValue(int alpha, int beta, int depth, BoardState bs){
 	
+		nodeCount++;
 		List<Move> possibleMoves = bs.getAllPossibleMoves(); 
 
 		if (possibleMoves.size() == 0 || depth == 0){
@@ -114,6 +131,7 @@ public class AlphaBetaPlayer extends CheckersPlayer implements GradedCheckersPla
 
 	private int minValue(int alpha, int beta, int depth, BoardState bs){
 
+		nodeCount++;
 		List<Move> possibleMoves = bs.getAllPossibleMoves(); 
 		
 		
@@ -1,15 +1,21 @@
 package cs540.checkers.bpayne;
 import static cs540.checkers.CheckersConsts.*;
 
-import cs540.checkers.Evaluator;
+import cs540.checkers.BatchEvaluator;
 
 /**
  * This simplistic static board evaluator assigns points for material.  Each 
  * pawn remaining on the board contributes one point, and each remaining king 
  * remaining on the board contributes two points. 
  */
-public class BetterEvaluator implements Evaluator
+public class BetterEvaluator implements BatchEvaluator
 {
+	public void evalBatch(int[][] bss, int count, int[] scores)
+	{
+		for (int i = 0; i < count; i++)
+			scores[i] = eval(bss[i]);
+	}
+
 	public int eval(int[] bs)
 	{	
 		int kingValue = 0;
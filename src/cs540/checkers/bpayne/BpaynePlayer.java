@@ -3,9 +3,11 @@
 package cs540.checkers.bpayne;
 
 import cs540.checkers.*;
+import cs540.checkers.jfr.SearchIterationEvent;
 import static cs540.checkers.CheckersConsts.*;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 /*
  * This is a skeleton for an alpha beta checkers player. Please copy this file
@@ -15,25 +17,107 @@ import java.util.*;
  * , where <username> is your cs department login.
  */
 /** This is a skeleton for an alpha beta checkers player. */
-public class BpaynePlayer extends CheckersPlayer implements GradedCheckersPlayer
+public class BpaynePlayer extends CheckersPlayer 
+	implements GradedCheckersPlayer, InstrumentedCheckersPlayer, PonderingCheckersPlayer,
+		RepetitionAwareCheckersPlayer
 {
 	/** The number of pruned subtrees for the most recent deepening iteration. */
 	protected int pruneCount;
 	protected Evaluator sbe;
 
+	/** The counters of the current search, touched only by the search thread. */
+	protected SearchStats stats = new SearchStats();
+	/** The report of the most recently completed iteration. */
+	protected volatile SearchReport report;
+
+	/** The depth of the current iteration, used to find the ply of a node. */
+	private int iterDepth;
+	/** The triangular principal variation table, indexed by ply. */
+	private Move[][] pvTable;
+	private int[] pvLength;
+	/** The score of the best move of the last iteration. */
+	private int rootScore;
+	private final Random generator = new Random();
+
+	/** The system property giving the size of the transposition table in megabytes. */
+	public static final String TT_PROPERTY = "cs540.checkers.ttmb";
+	/** The default size of the transposition table in megabytes. */
+	public static final int DEFAULT_TT_MEGABYTES = 16;
+	/** The number of plies from the root which have killer moves. */
+	protected static final int MAX_PLY = 128;
+	private static final Move[] NO_KILLERS = new Move[2];
+
+	/*
+	 * The search state kept from turn to turn: the transposition table, two
+	 * killer moves per ply from the root, and history scores of the quiet
+	 * moves which caused cutoffs, by side, source and destination.
+	 */
+	protected final TranspositionTable tt;
+	protected Move[][] killers = new Move[MAX_PLY][2];
+	protected final int[][][] history = new int[2][W * H][W * H];
+	/** Whether the killers were moved to the next turn's root by pondering. */
+	private boolean killersAdvanced;
+
+	/** The positions of the game given for the next turn, or <code>null</code>. */
+	private volatile PositionHistory gameHistory;
+	/** The positions of the game and of the line being searched, which are
+	 * scored as draws when repeated. */
+	private PositionHistory positions = new PositionHistory();
+
+	/** The result of pondering the position after one of the opponent's replies. */
+	protected static class PonderResult
+	{
+		final Move move;
+		final int score;
+		final int depth;
+		final List<Move> pv;
+
+		PonderResult(Move move, int score, int depth, List<Move> pv)
+		{
+			this.move = move;
+			this.score = score;
+			this.depth = depth;
+			this.pv = pv;
+		}
+	}
+
+	/** The deepest results of pondering, by the hash of each position pondered. */
+	protected final Map<Long, PonderResult> ponderResults = new ConcurrentHashMap<Long, PonderResult>();
+	protected int ponderHits;
+	/** Whether the search runs on the pondering thread, which may be asked to stop. */
+	private boolean pondering;
+	private volatile boolean ponderStop;
+
+	/** Thrown to unwind the search when pondering is stopped. */
+	private static class PonderStopped extends RuntimeException
+	{
+		public Throwable fillInStackTrace() { return this; }
+	}
+
 	public BpaynePlayer(String name, int side)
 	{ 
 		super(name, side);
-		// Use BetterEvaluator to score terminal nodes
-		sbe = new BetterEvaluator();
+		// Use BetterEvaluator to score terminal nodes (vectorized if available)
+		sbe = VectorSupport.createEvaluator();
+		tt = new TranspositionTable(Integer.getInteger(TT_PROPERTY, DEFAULT_TT_MEGABYTES));
 	}
 
 	public void calculateMove(int[] bs)
 	{
-
-		Random generator = new Random();
-
-		BoardState boardState = new BoardState(bs, side);
+		ponderStop = false;
+		report = null;
+		stats.start();
+
+		/* Keep the search state of earlier turns, but let it age */
+		tt.age();
+		if (!killersAdvanced)
+			advanceKillers();
+		killersAdvanced = false;
+		ageHistory();
+
+		HashedBoardState boardState = createBoardState(bs);
+		setRoot(gameHistory, boardState);
+		gameHistory = null;
 		/* Get all the possible moves for this player on the provided board state */
 		List<Move> possibleMoves = boardState.getAllPossibleMoves();
 
@@ -41,117 +125,515 @@ public class BpaynePlayer extends CheckersPlayer implements GradedCheckersPlayer
 		if (possibleMoves.size() == 0)
 			return;
 
-		Move bestMove = null;
-		int bestScore = Integer.MIN_VALUE;
+		/* If this position was pondered, play its move until a deeper
+		 * iteration completes, and skip the iterations already searched */
+		int startDepth = 1;
+		PonderResult pondered = ponderResults.get(Zobrist.hash(bs, side));
+		ponderResults.clear();
+		if (pondered != null)
+		{
+			ponderHits++;
+			setMove(pondered.move);
+			stats.iterationDone(pondered.depth, pondered.score, pondered.pv);
+			report = stats.toReport();
+			startDepth = pondered.depth + 2;
+			if(Utils.verbose == true)
+				System.out.println("Ponder hit: " + pondered.move + "\tDepth: " + pondered.depth);
+		}
 		
-		for(int curDepth = 1; curDepth < this.depthLimit; curDepth+=2){
-			/* Find best board state among those reachable from one move */
-			bestScore = Integer.MIN_VALUE;
-			bestMove = null;
-			pruneCount = 0;
+		for(int curDepth = startDepth; curDepth < this.depthLimit; curDepth+=2){
+			SearchIterationEvent event = new SearchIterationEvent();
+			event.begin();
+			long startNodes = stats.nodes;
+
+			Move bestMove = searchRoot(boardState, possibleMoves, curDepth);
+
+			setMove(bestMove);
+
+			stats.iterationDone(curDepth, rootScore, rootPv());
+			report = stats.toReport();
+
+			if (event.shouldCommit()) {
+				event.player = name;
+				event.depth = curDepth;
+				event.nodes = stats.nodes - startNodes;
+				event.score = rootScore;
+				event.move = Utils.reprMove(bestMove);
+				event.commit();
+			}
 			
-			for (Move move : possibleMoves)
+			if(Utils.verbose == true)
+				System.out.println("Best Move: " + bestMove + "\t" + report);
+			/* Set the best move as the chosen move */
+		}
+	}
+
+	/**
+	 * Searches every reply of the opponent, deepening the searches of all
+	 * replies together, with the reply predicted by the last principal
+	 * variation first. The results are kept for {@link #calculateMove
+	 * calculateMove} until the next turn. If the positions of the game were
+	 * given for <code>bs</code>, the search of each reply recognizes the
+	 * repetitions of positions before it, as the search of the turn does.
+	 */
+	public void ponder(int[] bs)
+	{
+		pondering = true;
+		try {
+			int other = Utils.otherSide(side);
+			List<Move> replies = Utils.getAllPossibleMoves(bs, other);
+			SearchReport last = report;
+			if (last != null && last.getPrincipalVariation().size() > 1)
 			{
-				/* Execute the move so we can score the board state resulting from 
-				 * the move */
-				
-				boardState.execute(move);
+				Move predicted = last.getPrincipalVariation().get(1);
+				if (replies.remove(predicted))
+					replies.add(0, predicted);
+			}
 
-				int score = minValue(Integer.MIN_VALUE, Integer.MAX_VALUE, curDepth - 1, boardState);
+			advanceKillers();
+			killersAdvanced = true;
 
-				/* Update bestMove if score > bestScore */
-				if (score > bestScore)
+			/* The positions of the game, if they were given for this
+			 * position and not yet for the next turn */
+			PositionHistory game = gameHistory;
+			if (game != null && game.size() > 0 && game.top() == Zobrist.hash(bs, other))
+				gameHistory = null;
+			else
+				game = null;
+
+			/* The positions after each reply at which this player has a
+			 * move, each with the positions of the game which led to it */
+			List<HashedBoardState> roots = new ArrayList<HashedBoardState>();
+			List<PositionHistory> histories = new ArrayList<PositionHistory>();
+			List<List<Move>> moves = new ArrayList<List<Move>>();
+			List<Long> keys = new ArrayList<Long>();
+			for (Move reply : replies)
+			{
+				int[] D = bs.clone();
+				Utils.execute(D, reply);
+				HashedBoardState boardState = createBoardState(D);
+				List<Move> possibleMoves = boardState.getAllPossibleMoves();
+				if (possibleMoves.size() == 0)
+					continue;
+				PositionHistory history = null;
+				if (game != null)
 				{
-					bestMove = move;
-					bestScore = score;
-
+					history = new PositionHistory(game);
+					history.push(boardState.hash(), PositionHistory.isIrreversible(bs, reply));
 				}
-				else if(score == bestScore && generator.nextDouble() > .7){
-					bestMove = move;
-					bestScore = score;
+				roots.add(boardState);
+				histories.add(history);
+				moves.add(possibleMoves);
+				keys.add(Zobrist.hash(D, side));
+			}
+
+			for(int curDepth = 1; curDepth < this.depthLimit; curDepth+=2)
+				for (int i = 0; i < roots.size(); i++)
+				{
+					if (ponderStop)
+						return;
+					setRoot(histories.get(i), roots.get(i));
+					Move bestMove = searchRoot(roots.get(i), moves.get(i), curDepth);
+					ponderResults.put(keys.get(i),
+							new PonderResult(bestMove, rootScore, curDepth, rootPv()));
 				}
+		} catch (PonderStopped e) {
+			/* The results of completed iterations are kept */
+		} finally {
+			pondering = false;
+		}
+	}
 
-				/* Revert the move so we can score additional board states. */
-				boardState.revert();
-			}
+	public void stopPondering()
+	{
+		ponderStop = true;
+	}
 
-			setMove(bestMove);
+	public void setPositionHistory(PositionHistory history)
+	{
+		gameHistory = history;
+	}
+
+	/**
+	 * Starts the positions of a search from the positions of the game, or
+	 * from the root alone if they are unknown or do not lead to it.
+	 */
+	private void setRoot(PositionHistory game, HashedBoardState boardState)
+	{
+		if (game != null && game.size() > 0 && game.top() == boardState.hash())
+			positions = game;
+		else
+		{
+			positions.clear();
+			positions.push(boardState.hash(), true);
+		}
+	}
+
+	/**
+	 * Gets the number of turns on which the position had been pondered.
+	 * @return		the number of ponder hits
+	 */
+	public int getPonderHits()
+	{
+		return ponderHits;
+	}
+
+	/**
+	 * Runs one deepening iteration from the root. The score of the best move
+	 * is left in <code>rootScore</code>, and its principal variation in the
+	 * principal variation table.
+	 * @param boardState	the root, with this player to move
+	 * @param possibleMoves	the moves of this player at the root
+	 * @param curDepth	the depth of the iteration
+	 * @return			the best move
+	 */
+	protected Move searchRoot(HashedBoardState boardState, List<Move> possibleMoves, int curDepth)
+	{
+		/* Find best board state among those reachable from one move */
+		int bestScore = Integer.MIN_VALUE;
+		Move bestMove = null;
+		pruneCount = 0;
+
+		iterDepth = curDepth;
+		pvTable = new Move[curDepth + 1][curDepth + 1];
+		pvLength = new int[curDepth + 1];
+		stats.nodes++;
+		
+		for (Move move : possibleMoves)
+		{
+			/* Execute the move so we can score the board state resulting from 
+			 * the move */
 			
-			if(Utils.verbose == true)
-				System.out.println("Best Move: " + bestMove + "\tScore: " + bestScore);
-			/* Set the best move as the chosen move */
+			boolean irreversible = PositionHistory.isIrreversible(boardState.D, move);
+			boardState.execute(move);
+			positions.push(boardState.hash(), irreversible);
+
+			int score = minValue(Integer.MIN_VALUE, Integer.MAX_VALUE, curDepth - 1, boardState);
+
+			/* Update bestMove if score > bestScore */
+			if (score > bestScore)
+			{
+				bestMove = move;
+				bestScore = score;
+				updatePv(0, move);
+			}
+			else if(score == bestScore && generator.nextDouble() > .7){
+				bestMove = move;
+				bestScore = score;
+				updatePv(0, move);
+			}
+
+			/* Revert the move so we can score additional board states. */
+			positions.pop();
+			boardState.revert();
 		}
+
+		rootScore = bestScore;
+		return bestMove;
+	}
+
+	/** Returns the principal variation of the last iteration. */
+	private List<Move> rootPv()
+	{
+		return new ArrayList<Move>(Arrays.asList(pvTable[0]).subList(0, pvLength[0]));
+	}
+
+	/**
+	 * Creates the board state the search operates on. Subclasses may return 
+	 * a <code>HashedBoardState</code> subclass that maintains further 
+	 * incremental data.
+	 * @param bs	the board state to search from
+	 * @return		a new board state object with this player as the active side
+	 */
+	protected HashedBoardState createBoardState(int[] bs)
+	{
+		return new HashedBoardState(bs, side);
 	}
 
+	/**
+	 * Forgets the transposition table, killer moves, and history scores, so
+	 * that the next search starts cold.
+	 */
+	public void clearSearchState()
+	{
+		tt.clear();
+		killers = new Move[MAX_PLY][2];
+		for (int[][] h : history)
+			for (int[] row : h)
+				Arrays.fill(row, 0);
+	}
 
+	/** Moves the killers two plies up, to where they are from the next root. */
+	private void advanceKillers()
+	{
+		Move[][] next = new Move[MAX_PLY][];
+		for (int ply = 0; ply < MAX_PLY; ply++)
+			next[ply] = ply + 2 < MAX_PLY ? killers[ply + 2] : new Move[2];
+		killers = next;
+	}
 
-	private int maxValue(int alpha, int beta, int depth, BoardState bs){
+	/** Halves the history scores, so those of earlier turns fade. */
+	private void ageHistory()
+	{
+		for (int[][] h : history)
+			for (int[] row : h)
+				for (int j = 0; j < row.length; j++)
+					row[j] >>= 1;
+	}
+
+	/**
+	 * Orders moves for the search: the move stored in the transposition 
+	 * table first, then the killers of the ply, then the rest by history.
+	 */
+	private void orderMoves(List<Move> moves, Move ttMove, int ply, int mover)
+	{
+		int n = moves.size();
+		if (n < 2)
+			return;
+
+		Move[] killer = ply < MAX_PLY ? killers[ply] : NO_KILLERS;
+		int[] keys = new int[n];
+		for (int i = 0; i < n; i++)
+		{
+			Move move = moves.get(i);
+			if (move.equals(ttMove))
+				keys[i] = Integer.MAX_VALUE;
+			else if (move.equals(killer[0]))
+				keys[i] = Integer.MAX_VALUE - 1;
+			else if (move.equals(killer[1]))
+				keys[i] = Integer.MAX_VALUE - 2;
+			else
+				keys[i] = history[mover][move.get(0)][move.get(1)];
+		}
+
+		/* Insertion sort, stable so that ties keep the generator's order */
+		for (int i = 1; i < n; i++)
+		{
+			int key = keys[i];
+			Move move = moves.get(i);
+			int j = i - 1;
+			for (; j >= 0 && keys[j] < key; j--)
+			{
+				keys[j + 1] = keys[j];
+				moves.set(j + 1, moves.get(j));
+			}
+			keys[j + 1] = key;
+			moves.set(j + 1, move);
+		}
+	}
+
+	/** Remembers a quiet move which caused a cutoff as a killer and in the history. */
+	private void recordCutoff(Move move, int ply, int depth, int mover)
+	{
+		if (!Utils.isWalk(move))
+			return;
+
+		if (ply < MAX_PLY && !move.equals(killers[ply][0]))
+		{
+			killers[ply][1] = killers[ply][0];
+			killers[ply][0] = move;
+		}
+		history[mover][move.get(0)][move.get(1)] += depth * depth;
+	}
+
+	/**
+	 * Scores a leaf of the search from RED's position.
+	 * @param bs	a board state created by {@link #createBoardState createBoardState}
+	 * @return		the value of the board state
+	 */
+	protected int evaluate(BoardState bs)
+	{
+		return sbe.eval(bs.D);
+	}
+
+	private int maxValue(int alpha, int beta, int depth, HashedBoardState bs){
+
+		if (pondering && ponderStop)
+			throw new PonderStopped();
 
 		int maxSide = side;
+		int ply = iterDepth - depth;
+		pvLength[ply] = ply;
+		stats.nodes++;
+
+		/* A repeated position is a draw, since either side may repeat it again */
+		if (positions.isRepetition())
+			return 0;
 
 		List<Move> possibleMoves = bs.getAllPossibleMoves(); 
 
 		if (possibleMoves.size() == 0 || depth == 0){
-			int score = sbe.eval(bs.D);
+			stats.leafEvals++;
+			int score = evaluate(bs);
 			if(maxSide == BLK)
 				return -score;
 			else
 				return score;
 		}
 
-		for (Move move : possibleMoves)
+		/* Use the stored result of this position if it was searched deep enough */
+		long key = bs.hash();
+		Move ttMove = null;
+		stats.ttProbes++;
+		if (tt.probe(key))
 		{
+			stats.ttHits++;
+			ttMove = tt.getMove();
+			int score = tt.getScore(), bound = tt.getBound();
+			if (tt.getDepth() >= depth)
+			{
+				if (bound == TranspositionTable.LOWER && score >= beta)
+					return beta;
+				if (bound == TranspositionTable.UPPER && score <= alpha)
+					return alpha;
+				if (bound == TranspositionTable.EXACT)
+					return Math.max(alpha, Math.min(beta, score));
+			}
+		}
+		orderMoves(possibleMoves, ttMove, ply, maxSide);
+
+		Move bestMove = null;
+		for (int i = 0; i < possibleMoves.size(); i++)
+		{
+			Move move = possibleMoves.get(i);
 			/* Execute the move so we can score the board state resulting from 
 			 * the move */
 
+			boolean irreversible = PositionHistory.isIrreversible(bs.D, move);
 			bs.execute(move);
-			alpha = Math.max(alpha, (minValue(alpha, beta, (depth-1), bs)));
+			positions.push(bs.hash(), irreversible);
+			int score = minValue(alpha, beta, (depth-1), bs);
+			positions.pop();
 			bs.revert();
 
+			if(score > alpha){
+				alpha = score;
+				bestMove = move;
+				updatePv(ply, move);
+			}
+
 			if(alpha >= beta){
 				pruneCount++;
+				stats.cutoff(i);
+				recordCutoff(move, ply, depth, maxSide);
+				tt.store(key, beta, depth, TranspositionTable.LOWER, move);
 				return beta;
 			}
 		}
 
 		/* Revert the move so we can score additional board states. */
 
+		if (bestMove != null)
+			tt.store(key, alpha, depth, TranspositionTable.EXACT, bestMove);
+		else
+			tt.store(key, alpha, depth, TranspositionTable.UPPER, ttMove);
 		return alpha;
 	}
 
 
-	private int minValue(int alpha, int beta, int depth, BoardState bs){
+	private int minValue(int alpha, int beta, int depth, HashedBoardState bs){
+
+		if (pondering && ponderStop)
+			throw new PonderStopped();
+
+		int minSide = Utils.otherSide(side);
+		int ply = iterDepth - depth;
+		pvLength[ply] = ply;
+		stats.nodes++;
+
+		/* A repeated position is a draw, since either side may repeat it again */
+		if (positions.isRepetition())
+			return 0;
 
 		List<Move> possibleMoves = bs.getAllPossibleMoves(); 
 
 		if (possibleMoves.size() == 0 || depth == 0){
-			int score = sbe.eval(bs.D);
+			stats.leafEvals++;
+			int score = evaluate(bs);
 			if(side == BLK)
 				return -score;
 			else
 				return score;
 		}
 
-		for (Move move : possibleMoves)
+		/* Use the stored result of this position if it was searched deep enough */
+		long key = bs.hash();
+		Move ttMove = null;
+		stats.ttProbes++;
+		if (tt.probe(key))
 		{
+			stats.ttHits++;
+			ttMove = tt.getMove();
+			int score = tt.getScore(), bound = tt.getBound();
+			if (tt.getDepth() >= depth)
+			{
+				if (bound == TranspositionTable.UPPER && score <= alpha)
+					return alpha;
+				if (bound == TranspositionTable.LOWER && score >= beta)
+					return beta;
+				if (bound == TranspositionTable.EXACT)
+					return Math.max(alpha, Math.min(beta, score));
+			}
+		}
+		orderMoves(possibleMoves, ttMove, ply, minSide);
+
+		Move bestMove = null;
+		for (int i = 0; i < possibleMoves.size(); i++)
+		{
+			Move move = possibleMoves.get(i);
 			/* Execute the move so we can score the board state resulting from 
 			 * the move */
 
+			boolean irreversible = PositionHistory.isIrreversible(bs.D, move);
 			bs.execute(move);
-			beta = Math.min(beta, (maxValue(alpha, beta, (depth-1), bs)));
+			positions.push(bs.hash(), irreversible);
+			int score = maxValue(alpha, beta, (depth-1), bs);
+			positions.pop();
 			bs.revert();
 			/* Revert the move so we can score additional board states. */
 
+			if(score < beta){
+				beta = score;
+				bestMove = move;
+				updatePv(ply, move);
+			}
+
 			if(alpha >= beta){
 				pruneCount++;
+				stats.cutoff(i);
+				recordCutoff(move, ply, depth, minSide);
+				tt.store(key, alpha, depth, TranspositionTable.UPPER, move);
 				return alpha;
 			}
 		}
+
+		if (bestMove != null)
+			tt.store(key, beta, depth, TranspositionTable.EXACT, bestMove);
+		else
+			tt.store(key, beta, depth, TranspositionTable.LOWER, ttMove);
 		return beta;
 	}
 
+	/**
+	 * Makes <code>move</code> followed by the principal variation of the next
+	 * ply the principal variation at <code>ply</code>.
+	 */
+	private void updatePv(int ply, Move move)
+	{
+		pvTable[ply][ply] = move;
+		int n = pvLength[ply + 1];
+		for (int j = ply + 1; j < n; j++)
+			pvTable[ply][j] = pvTable[ply + 1][j];
+		pvLength[ply] = n;
+	}
+
 	public int getPruneCount()
 	{
 		return pruneCount;
 	}
+
+	public SearchReport getSearchReport()
+	{
+		return report;
+	}
 }
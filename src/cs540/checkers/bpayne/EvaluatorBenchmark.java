@@ -0,0 +1,98 @@
+package cs540.checkers.bpayne;
+
+import cs540.checkers.*;
+
+import java.util.*;
+
+/**
+ * This program compares {@link BetterEvaluator BetterEvaluator} against the
+ * evaluator returned by {@link VectorSupport#createVectorEvaluator
+ * VectorSupport.createVectorEvaluator}. It collects board states from random
+ * games, checks that both evaluators agree on every one, and reports the cost
+ * per board state of single and batched evaluation.
+ * <p>
+ * Usage: <code>java --add-modules jdk.incubator.vector
+ * cs540.checkers.bpayne.EvaluatorBenchmark [boards] [batch]</code>
+ */
+public class EvaluatorBenchmark
+{
+	public static void main(String[] args)
+	{
+		int boards = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+		int batch = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+
+		int[][] bss = randomBoardStates(boards, new Random(540));
+
+		BatchEvaluator scalar = new BetterEvaluator();
+		BatchEvaluator vector = VectorSupport.createVectorEvaluator();
+		if (vector == null)
+		{
+			System.out.println("Vector API not available; run with --add-modules jdk.incubator.vector");
+			return;
+		}
+
+		for (int[] bs : bss)
+			if (scalar.eval(bs) != vector.eval(bs))
+				throw new IllegalStateException("Mismatch on\n" + Utils.reprBoardState(bs));
+
+		for (int round = 0; round < 5; round++)
+		{
+			System.out.printf("round %d: scalar %.1f ns, vector %.1f ns, " +
+					"scalar batch %.1f ns, vector batch %.1f ns (per board)%n",
+					round,
+					timeSingle(scalar, bss), timeSingle(vector, bss),
+					timeBatch(scalar, bss, batch), timeBatch(vector, bss, batch));
+		}
+	}
+
+	/** Plays random games and collects every board state reached. */
+	static int[][] randomBoardStates(int n, Random random)
+	{
+		int[][] bss = new int[n][];
+		int i = 0;
+		while (i < n)
+		{
+			int[] bs = Utils.INITIAL_BOARDSTATE.clone();
+			int side = Utils.INITIAL_SIDE;
+			for (int ply = 0; ply < 150 && i < n; ply++)
+			{
+				List<Move> moves = Utils.getAllPossibleMoves(bs, side);
+				if (moves.isEmpty())
+					break;
+				Utils.execute(bs, moves.get(random.nextInt(moves.size())));
+				side = Utils.otherSide(side);
+				bss[i++] = bs.clone();
+			}
+		}
+		return bss;
+	}
+
+	static int sink;
+
+	static double timeSingle(Evaluator sbe, int[][] bss)
+	{
+		long start = System.nanoTime();
+		int s = 0;
+		for (int[] bs : bss)
+			s += sbe.eval(bs);
+		sink += s;
+		return (double)(System.nanoTime() - start) / bss.length;
+	}
+
+	static double timeBatch(BatchEvaluator sbe, int[][] bss, int batch)
+	{
+		int[][] window = new int[batch][];
+		int[] scores = new int[batch];
+		long start = System.nanoTime();
+		int s = 0;
+		for (int b = 0; b < bss.length; b += batch)
+		{
+			int n = Math.min(batch, bss.length - b);
+			System.arraycopy(bss, b, window, 0, n);
+			sbe.evalBatch(window, n, scores);
+			s += scores[0];
+		}
+		sink += s;
+		return (double)(System.nanoTime() - start) / bss.length;
+	}
+}
@@ -0,0 +1,43 @@
+package cs540.checkers.bpayne;
+import static cs540.checkers.CheckersConsts.*;
+
+import cs540.checkers.BoardState;
+import cs540.checkers.Zobrist;
+
+/**
+ * This board state keeps the {@link Zobrist Zobrist} hash of its pieces up to
+ * date as moves are executed and reverted, so that looking up a position in a
+ * {@link TranspositionTable TranspositionTable} costs nothing beyond the
+ * probe itself.
+ */
+public class HashedBoardState extends BoardState
+{
+	/** The hash of the pieces, without the key of the side to move. */
+	protected long pieceHash;
+
+	/**
+	 * Constructs a <code>HashedBoardState</code> given a board state as an
+	 * array and an integer specifying the active side.
+	 * @param D		an array representing a board state
+	 * @param side	an integer signifying the active side
+	 */
+	public HashedBoardState(int[] D, int side)
+	{
+		super(D, side);
+		pieceHash = Zobrist.hash(this.D, RED);
+	}
+
+	/**
+	 * Gets the hash of this position, including the side to move.
+	 * @return		the hash, equal to <code>Zobrist.hash(D, side)</code>
+	 */
+	public long hash()
+	{
+		return side == BLK ? pieceHash ^ Zobrist.SIDE : pieceHash;
+	}
+
+	protected void squareChanged(int loc, int oldPiece, int newPiece)
+	{
+		pieceHash ^= Zobrist.key(loc, oldPiece) ^ Zobrist.key(loc, newPiece);
+	}
+}
@@ -0,0 +1,37 @@
+package cs540.checkers.bpayne;
+import static cs540.checkers.CheckersConsts.*;
+
+/**
+ * This board state keeps the first layer of a {@link NeuralEvaluator
+ * NeuralEvaluator} up to date as moves are executed and reverted, so that
+ * evaluating a leaf only costs the upper layers of the network.
+ */
+public class NeuralBoardState extends HashedBoardState
+{
+	/** The first layer of the network for this board state. */
+	public final NeuralEvaluator.Accumulator acc;
+
+	/**
+	 * Constructs a <code>NeuralBoardState</code> given a board state as an 
+	 * array, an integer specifying the active side, and the evaluator whose 
+	 * first layer should be maintained.
+	 * @param D		an array representing a board state
+	 * @param side	an integer signifying the active side
+	 * @param net	the evaluator to maintain an accumulator for
+	 */
+	public NeuralBoardState(int[] D, int side, NeuralEvaluator net)
+	{
+		super(D, side);
+		acc = net.new Accumulator();
+		acc.refresh(this.D);
+	}
+
+	protected void squareChanged(int loc, int oldPiece, int newPiece)
+	{
+		super.squareChanged(loc, oldPiece, newPiece);
+		if (oldPiece != BLANK)
+			acc.remove(loc, oldPiece);
+		if (newPiece != BLANK)
+			acc.add(loc, newPiece);
+	}
+}
@@ -0,0 +1,276 @@
+package cs540.checkers.bpayne;
+import static cs540.checkers.CheckersConsts.*;
+
+import cs540.checkers.Evaluator;
+
+import java.io.*;
+
+/**
+ * This evaluator scores board states with a small quantized multilayer
+ * perceptron over the 32 playable squares.
+ * <p>
+ * The input layer has one feature for each (square, piece) pair,
+ * 32 * 4 = 128 features in all. Because a board state activates at most 24
+ * features, the first layer is kept as an {@link Accumulator Accumulator} of
+ * <code>short</code> sums which is updated incrementally as pieces move, in
+ * the style of NNUE. The remaining layers use <code>byte</code> weights and
+ * <code>int</code> arithmetic with clipped ReLU activations, so an evaluation
+ * costs roughly <code>n1 * n2</code> multiply-adds and allocates nothing.
+ * <p>
+ * Networks are stored in a binary file written by {@link #save save} and
+ * read by {@link #load load}. All values are big-endian:
+ * <pre>
+ * int      MAGIC
+ * int      VERSION
+ * int      n1, n2, outScale
+ * short    l1Bias[n1]
+ * short    l1Weight[128][n1]
+ * int      l2Bias[n2]
+ * byte     l2Weight[n2][n1]
+ * int      l3Bias
+ * byte     l3Weight[n2]
+ * </pre>
+ * The no-argument constructor builds a material-only network, which is
+ * useful when no trained weights are available.
+ * <p>
+ * Instances keep scratch buffers between calls and are not thread-safe;
+ * each search thread should use its own evaluator.
+ */
+public class NeuralEvaluator implements Evaluator
+{
+	/** The first int of a network file. */
+	public static final int MAGIC = 0x434B4E4E;
+	/** The network file version understood by this class. */
+	public static final int VERSION = 1;
+
+	/** The number of input features. */
+	public static final int FEATURES = 32 * 4;
+
+	/** Activations of every layer are clipped to [0, QMAX]. */
+	protected static final int QMAX = 127;
+	/** Right shift applied to the second layer's sums. */
+	protected static final int L2_SHIFT = 6;
+
+	protected int n1, n2, outScale;
+	protected short[] l1Bias;
+	protected short[] l1Weight;
+	protected int[] l2Bias;
+	protected byte[] l2Weight;
+	protected int l3Bias;
+	protected byte[] l3Weight;
+
+	/** Scratch accumulator used by {@link #eval(int[]) eval(int[])}. */
+	private Accumulator scratch;
+
+	/**
+	 * Constructs an evaluator with a material-only network. Each pawn is
+	 * worth 100 points and each king 150 points.
+	 */
+	public NeuralEvaluator()
+	{
+		allocate(2, 2, 1);
+
+		/* Hidden unit 0 sums red material, unit 1 sums black material */
+		for (int sq = 0; sq < 32; sq++)
+		{
+			l1Weight[feature(sq, RED_PAWN) * n1 + 0] = 4;
+			l1Weight[feature(sq, RED_KING) * n1 + 0] = 6;
+			l1Weight[feature(sq, BLK_PAWN) * n1 + 1] = 4;
+			l1Weight[feature(sq, BLK_KING) * n1 + 1] = 6;
+		}
+
+		/* Second layer passes both units through unchanged */
+		l2Weight[0 * n1 + 0] = 1 << L2_SHIFT;
+		l2Weight[1 * n1 + 1] = 1 << L2_SHIFT;
+
+		l3Weight[0] = 25;
+		l3Weight[1] = -25;
+	}
+
+	/**
+	 * Constructs an evaluator with the network stored in the specified file.
+	 * @param filename	the network file to read
+	 * @throws IOException	if the file cannot be read or is malformed
+	 */
+	public NeuralEvaluator(String filename) throws IOException
+	{
+		DataInputStream in = new DataInputStream(
+				new BufferedInputStream(new FileInputStream(filename)));
+		try {
+			load(in);
+		} finally {
+			in.close();
+		}
+	}
+
+	private void allocate(int n1, int n2, int outScale)
+	{
+		this.n1 = n1;
+		this.n2 = n2;
+		this.outScale = outScale;
+		l1Bias = new short[n1];
+		l1Weight = new short[FEATURES * n1];
+		l2Bias = new int[n2];
+		l2Weight = new byte[n2 * n1];
+		l3Weight = new byte[n2];
+		scratch = new Accumulator();
+	}
+
+	/**
+	 * Reads a network in the format described above.
+	 * @param in	the stream to read from
+	 * @throws IOException	if the stream cannot be read or is malformed
+	 */
+	protected void load(DataInputStream in) throws IOException
+	{
+		if (in.readInt() != MAGIC)
+			throw new IOException("Not a network file");
+		if (in.readInt() != VERSION)
+			throw new IOException("Unsupported network version");
+
+		int n1 = in.readInt(), n2 = in.readInt(), outScale = in.readInt();
+		if (n1 <= 0 || n2 <= 0 || outScale <= 0 || n1 > 4096 || n2 > 4096)
+			throw new IOException("Bad network dimensions");
+		allocate(n1, n2, outScale);
+
+		for (int i = 0; i < l1Bias.length; i++)
+			l1Bias[i] = in.readShort();
+		for (int i = 0; i < l1Weight.length; i++)
+			l1Weight[i] = in.readShort();
+		for (int i = 0; i < l2Bias.length; i++)
+			l2Bias[i] = in.readInt();
+		in.readFully(l2Weight);
+		l3Bias = in.readInt();
+		in.readFully(l3Weight);
+	}
+
+	/**
+	 * Writes this network to the specified file.
+	 * @param filename	the file to write
+	 * @throws IOException	if an IO error occurred
+	 */
+	public void save(String filename) throws IOException
+	{
+		DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream(new FileOutputStream(filename)));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(n1);
+			out.writeInt(n2);
+			out.writeInt(outScale);
+			for (short w : l1Bias)
+				out.writeShort(w);
+			for (short w : l1Weight)
+				out.writeShort(w);
+			for (int w : l2Bias)
+				out.writeInt(w);
+			out.write(l2Weight);
+			out.writeInt(l3Bias);
+			out.write(l3Weight);
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Returns the input feature of a piece on one of the 32 playable squares.
+	 * @param sq	the playable square, <code>loc / 2</code>
+	 * @param piece	a checkers piece other than <code>BLANK</code>
+	 * @return		the feature index
+	 */
+	protected static int feature(int sq, int piece)
+	{
+		/* RED_PAWN, BLK_PAWN, RED_KING, BLK_KING map to 0, 1, 2, 3 */
+		return sq * 4 + ((piece & 1) | ((piece >> 1) & 2));
+	}
+
+	public int eval(int[] bs)
+	{
+		scratch.refresh(bs);
+		return eval(scratch);
+	}
+
+	/**
+	 * Evaluates the board state summarized by <code>acc</code> from RED's
+	 * position.
+	 * @param acc	an accumulator created by this evaluator
+	 * @return		the value of the board state
+	 */
+	public int eval(Accumulator acc)
+	{
+		short[] h1 = acc.h1;
+		int out = l3Bias;
+
+		for (int j = 0; j < n2; j++)
+		{
+			int sum = l2Bias[j];
+			int base = j * n1;
+			for (int i = 0; i < n1; i++)
+			{
+				int x = h1[i];
+				if (x <= 0)
+					continue;
+				if (x > QMAX)
+					x = QMAX;
+				sum += x * l2Weight[base + i];
+			}
+
+			sum >>= L2_SHIFT;
+			if (sum <= 0)
+				continue;
+			if (sum > QMAX)
+				sum = QMAX;
+			out += sum * l3Weight[j];
+		}
+
+		return out / outScale;
+	}
+
+	/**
+	 * The first layer of the network for one board state. The sums are
+	 * updated in place by {@link #add add} and {@link #remove remove} as
+	 * pieces move, rather than being recomputed from all 128 inputs.
+	 */
+	public class Accumulator
+	{
+		/** The pre-activation sums of the first layer. */
+		protected final short[] h1 = new short[n1];
+
+		/**
+		 * Recomputes the sums from scratch for the specified board state.
+		 * @param bs	the board state
+		 */
+		public void refresh(int[] bs)
+		{
+			System.arraycopy(l1Bias, 0, h1, 0, n1);
+			for (int a = 1; a < H * W; a += 2 + (a%16==7?-1:0) + (a%16==14?1:0) )
+				if (bs[a] != BLANK)
+					add(a, bs[a]);
+		}
+
+		/**
+		 * Activates the feature for <code>piece</code> on location <code>loc</code>.
+		 * @param loc	the board location
+		 * @param piece	the checkers piece
+		 */
+		public void add(int loc, int piece)
+		{
+			int base = feature(loc >> 1, piece) * n1;
+			for (int i = 0; i < n1; i++)
+				h1[i] += l1Weight[base + i];
+		}
+
+		/**
+		 * Deactivates the feature for <code>piece</code> on location <code>loc</code>.
+		 * @param loc	the board location
+		 * @param piece	the checkers piece
+		 */
+		public void remove(int loc, int piece)
+		{
+			int base = feature(loc >> 1, piece) * n1;
+			for (int i = 0; i < n1; i++)
+				h1[i] -= l1Weight[base + i];
+		}
+	}
+}
@@ -0,0 +1,51 @@
+package cs540.checkers.bpayne;
+
+import cs540.checkers.*;
+
+import java.io.IOException;
+
+/**
+ * This player uses the search of {@link BpaynePlayer BpaynePlayer} with a
+ * {@link NeuralEvaluator NeuralEvaluator} in place of 
+ * {@link BetterEvaluator BetterEvaluator}. The first layer of the network is
+ * updated incrementally as the search executes and reverts moves.
+ * <p>
+ * The network is read from the file named by the system property
+ * <code>cs540.checkers.nnue</code>. If the property is not set, the
+ * material-only default network is used.
+ */
+public class NeuralPlayer extends BpaynePlayer
+{
+	/** The system property naming the network file. */
+	public static final String NETWORK_PROPERTY = "cs540.checkers.nnue";
+
+	protected NeuralEvaluator net;
+
+	public NeuralPlayer(String name, int side)
+	{
+		super(name, side);
+
+		String filename = System.getProperty(NETWORK_PROPERTY);
+		if (filename == null)
+			net = new NeuralEvaluator();
+		else
+		{
+			try {
+				net = new NeuralEvaluator(filename);
+			} catch (IOException e) {
+				throw new IllegalArgumentException("Cannot load network " + filename, e);
+			}
+		}
+		sbe = net;
+	}
+
+	protected HashedBoardState createBoardState(int[] bs)
+	{
+		return new NeuralBoardState(bs, side, net);
+	}
+
+	protected int evaluate(BoardState bs)
+	{
+		return net.eval(((NeuralBoardState)bs).acc);
+	}
+}
@@ -0,0 +1,106 @@
+package cs540.checkers.bpayne;
+
+import cs540.checkers.*;
+
+import java.util.*;
+
+/**
+ * This program measures how much {@link BpaynePlayer BpaynePlayer} gains from
+ * keeping its search state from turn to turn. Two players which keep their
+ * state play a game; on every turn, the same position is also given to a
+ * player whose state is cleared first, with the same time limit. The depth
+ * each reaches, and the time each took to complete the deepest iteration
+ * both completed, are printed by turn, and the averages at the end.
+ * <p>
+ * Usage: <code>java cs540.checkers.bpayne.SearchStateBenchmark [turn ms]
+ * [max turns]</code>
+ */
+public class SearchStateBenchmark
+{
+	public static void main(String[] args) throws InterruptedException
+	{
+		long turnTime = args.length > 0 ? Long.parseLong(args[0]) : 500;
+		int maxTurns = args.length > 1 ? Integer.parseInt(args[1]) : 60;
+
+		BpaynePlayer[] warm = {
+			new BpaynePlayer("warm", CheckersConsts.RED),
+			new BpaynePlayer("warm", CheckersConsts.BLK),
+		};
+		BpaynePlayer[] cold = {
+			new BpaynePlayer("cold", CheckersConsts.RED),
+			new BpaynePlayer("cold", CheckersConsts.BLK),
+		};
+
+		int[] bs = Utils.INITIAL_BOARDSTATE.clone();
+		int side = Utils.INITIAL_SIDE;
+		long warmDepth = 0, coldDepth = 0;
+		double warmTime = 0, coldTime = 0;
+		int turns = 0;
+
+		System.out.println("turn side warm_depth cold_depth depth warm_ms cold_ms warm_tt_hits");
+		for (int turn = 0; turn < maxTurns; turn++)
+		{
+			if (Utils.getAllPossibleMoves(bs, side).isEmpty())
+				break;
+
+			SearchReport w = think(warm[side], bs, turnTime);
+			cold[side].clearSearchState();
+			SearchReport c = think(cold[side], bs, turnTime);
+			if (w == null || c == null)
+				break;
+
+			int depth = Math.min(w.getDepth(), c.getDepth());
+			double wt = timeToDepth(w, depth), ct = timeToDepth(c, depth);
+			System.out.printf("%4d %s %10d %10d %5d %7.1f %7.1f %11.1f%%%n", turn, Utils.reprSide(side),
+					w.getDepth(), c.getDepth(), depth, wt, ct, 100 * w.getTTHitRate());
+			warmDepth += w.getDepth();
+			coldDepth += c.getDepth();
+			warmTime += wt;
+			coldTime += ct;
+			turns++;
+
+			Utils.execute(bs, warm[side].getMove());
+			side = Utils.otherSide(side);
+		}
+
+		if (turns > 0)
+		{
+			System.out.printf("mean depth over %d turns: warm %.2f, cold %.2f%n",
+					turns, (double)warmDepth / turns, (double)coldDepth / turns);
+			System.out.printf("mean ms to the common depth: warm %.1f, cold %.1f%n",
+					warmTime / turns, coldTime / turns);
+		}
+	}
+
+	/** Returns the milliseconds a search took to complete an iteration of the given depth. */
+	static double timeToDepth(SearchReport report, int depth)
+	{
+		int[] depths = report.getIterationDepths();
+		long[] times = report.getIterationTimes();
+		long t = 0;
+		for (int i = 0; i < depths.length; i++)
+		{
+			t += times[i];
+			if (depths[i] >= depth)
+				break;
+		}
+		return t / 1e6;
+	}
+
+	/** Lets a player think for the turn time, as the controller would. */
+	static SearchReport think(BpaynePlayer player, int[] bs, long turnTime)
+		throws InterruptedException
+	{
+		TurnAgent agent = new TurnAgent();
+		agent.startCalculate(player, bs);
+		long deadline = System.currentTimeMillis() + turnTime;
+		while (!agent.hasMove() && System.currentTimeMillis() < deadline)
+			Thread.sleep(1);
+		if (!agent.hasMove())
+			agent.stopCalculate();
+
+		/* Wait for the stopped thread to release the player */
+		synchronized (player) { }
+		return player.getSearchReport();
+	}
+}
@@ -0,0 +1,158 @@
+package cs540.checkers.bpayne;
+
+import cs540.checkers.Move;
+import cs540.checkers.MoveCodec;
+
+import java.util.Arrays;
+
+/**
+ * This class is a fixed-size transposition table which lives as long as its
+ * player, so that the searches of one turn are reused on the next.
+ * <p>
+ * Entries are kept in buckets of two: the first slot keeps the deepest
+ * search of the current turn, and the second takes whatever does not fit in
+ * the first. Each entry records the generation, a counter the player
+ * advances every turn, in which it was stored. Entries of earlier turns are
+ * still found but are the first to be replaced, and entries more than
+ * {@link #MAX_AGE MAX_AGE} generations old are ignored, so the table fills
+ * with the positions of the current game rather than of its opening.
+ * <p>
+ * The table is stored in three parallel <code>long</code> arrays, so its
+ * memory use is fixed when it is created. It is not thread safe.
+ */
+public class TranspositionTable
+{
+	/** The bound types of a stored score. */
+	public static final int EXACT = 0, LOWER = 1, UPPER = 2;
+
+	/** The number of generations after which an entry is ignored. */
+	public static final int MAX_AGE = 4;
+
+	/** The number of bytes used by each entry. */
+	public static final int ENTRY_BYTES = 24;
+
+	protected final long[] keys;
+	/** The score, depth, bound type, and generation of each entry. */
+	protected final long[] data;
+	/** The {@link MoveCodec MoveCodec} code of the best move of each entry, or <code>0</code>. */
+	protected final long[] moves;
+	protected final int mask;
+	protected int generation;
+
+	/* The fields of the last entry found by probe */
+	protected int score, depth, bound;
+	protected long move;
+
+	/**
+	 * Constructs a table which uses at most the given memory.
+	 * @param megabytes	the size of the table, in megabytes, at least <code>1</code>
+	 */
+	public TranspositionTable(int megabytes)
+	{
+		long bytes = (long)Math.max(megabytes, 1) << 20;
+		int entries = Integer.highestOneBit((int)Math.min(bytes / ENTRY_BYTES, 1 << 30));
+		keys = new long[entries];
+		data = new long[entries];
+		moves = new long[entries];
+		mask = entries - 2;
+	}
+
+	/**
+	 * Gets the number of entries this table holds.
+	 * @return		the capacity
+	 */
+	public int capacity()
+	{
+		return keys.length;
+	}
+
+	/**
+	 * Starts a new generation. Players call this at the start of each turn.
+	 */
+	public void age()
+	{
+		generation = (generation + 1) & 0xFF;
+	}
+
+	/**
+	 * Removes all entries.
+	 */
+	public void clear()
+	{
+		Arrays.fill(keys, 0);
+		Arrays.fill(data, 0);
+		Arrays.fill(moves, 0);
+	}
+
+	/**
+	 * Looks up a position. If it is found, its entry can be read with
+	 * {@link #getScore getScore}, {@link #getDepth getDepth},
+	 * {@link #getBound getBound}, and {@link #getMove getMove}.
+	 * @param key	the hash of the position
+	 * @return		true if an entry which is not too old was found
+	 */
+	public boolean probe(long key)
+	{
+		int i = (int)key & mask;
+		for (int j = i; j < i + 2; j++)
+		{
+			long d = data[j];
+			if (keys[j] != key || d == 0 || ageOf(d) > MAX_AGE)
+				continue;
+			score = (int)d;
+			depth = (int)(d >>> 32) & 0xFF;
+			bound = (int)(d >>> 40) & 3;
+			move = moves[j];
+			return true;
+		}
+		return false;
+	}
+
+	/** Gets the score of the entry found by the last successful probe. */
+	public int getScore() { return score; }
+
+	/** Gets the depth of the entry found by the last successful probe. */
+	public int getDepth() { return depth; }
+
+	/** Gets the bound type of the entry found by the last successful probe. */
+	public int getBound() { return bound; }
+
+	/**
+	 * Gets the best move of the entry found by the last successful probe.
+	 * @return		the move, or <code>null</code> if none was stored
+	 */
+	public Move getMove() { return move == 0 ? null : MoveCodec.decode(move); }
+
+	/**
+	 * Stores the result of a search.
+	 * @param key	the hash of the position
+	 * @param score	the score
+	 * @param depth	the depth searched, from <code>1</code> to <code>255</code>
+	 * @param bound	<code>EXACT</code>, <code>LOWER</code>, or <code>UPPER</code>
+	 * @param best	the best move, or <code>null</code>
+	 */
+	public void store(long key, int score, int depth, int bound, Move best)
+	{
+		int i = (int)key & mask;
+
+		/* The first slot keeps the deepest entry unless it is stale */
+		long d = data[i];
+		if (d != 0 && keys[i] != key && ageOf(d) == 0 && depth < ((int)(d >>> 32) & 0xFF))
+			i++;
+
+		/* Write the key last, so an entry left half written by a stopped
+		 * search thread is never found */
+		long code = best == null ? 0 : MoveCodec.encode(best);
+		keys[i] = 0;
+		data[i] = (score & 0xFFFFFFFFL) | (long)Math.min(depth, 255) << 32
+			| (long)bound << 40 | (long)(generation + 1) << 48;
+		moves[i] = code;
+		keys[i] = key;
+	}
+
+	/** Returns how many generations ago an entry was stored. */
+	private int ageOf(long d)
+	{
+		return (generation + 1 - (int)(d >>> 48)) & 0xFF;
+	}
+}
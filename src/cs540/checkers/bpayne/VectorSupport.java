@@ -0,0 +1,61 @@
+package cs540.checkers.bpayne;
+
+import cs540.checkers.BatchEvaluator;
+
+/**
+ * This class detects whether the incubating Vector API can be used, and
+ * creates the fastest available implementation of {@link BetterEvaluator
+ * BetterEvaluator}'s scoring function.
+ * <p>
+ * The vector implementation is only used when the JVM was started with
+ * <code>--add-modules jdk.incubator.vector</code> and the
+ * <code>cs540.checkers.bpayne.vector</code> package was compiled, and its
+ * tables reproduce the scores of <code>BetterEvaluator</code>. Otherwise the
+ * scalar <code>BetterEvaluator</code> is used.
+ */
+public class VectorSupport
+{
+	/** The class name of the vector implementation. */
+	protected static final String VECTOR_EVALUATOR =
+		"cs540.checkers.bpayne.vector.VectorEvaluator";
+
+	/**
+	 * Returns whether the vector implementation can be loaded.
+	 * @return		true if the Vector API and the vector evaluator are available
+	 */
+	public static boolean isAvailable()
+	{
+		return createVectorEvaluator() != null;
+	}
+
+	/**
+	 * Creates the vector implementation, or returns <code>null</code> if it
+	 * is not available.
+	 * @return		a new vector evaluator, or <code>null</code>
+	 */
+	public static BatchEvaluator createVectorEvaluator()
+	{
+		if (!ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent())
+			return null;
+
+		try {
+			return (BatchEvaluator)Class.forName(VECTOR_EVALUATOR)
+				.getConstructor().newInstance();
+		} catch (ReflectiveOperationException e) {
+			return null;
+		} catch (LinkageError e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Creates the vector implementation if it is available, or a
+	 * <code>BetterEvaluator</code> otherwise. Both return identical scores.
+	 * @return		a new evaluator
+	 */
+	public static BatchEvaluator createEvaluator()
+	{
+		BatchEvaluator sbe = createVectorEvaluator();
+		return sbe != null ? sbe : new BetterEvaluator();
+	}
+}
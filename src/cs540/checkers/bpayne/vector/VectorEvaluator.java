@@ -0,0 +1,158 @@
+package cs540.checkers.bpayne.vector;
+import static cs540.checkers.CheckersConsts.*;
+
+import cs540.checkers.BatchEvaluator;
+import cs540.checkers.Utils;
+import cs540.checkers.bpayne.BetterEvaluator;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * This evaluator computes the same scores as {@link BetterEvaluator
+ * BetterEvaluator} using the incubating Vector API.
+ * <p>
+ * <code>BetterEvaluator</code> reduces to a sum of per-piece, per-square
+ * terms, so its scores are tabulated once for the 32 playable squares. A board
+ * state is then gathered into 32 lanes of piece codes and each table is added
+ * under the mask of lanes holding the matching piece.
+ * <p>
+ * This holds only because <code>BetterEvaluator</code> counts every
+ * location, empty or not, in <code>totalPiecesLeft</code>, so that its
+ * count is always 64 and the branches on the number of pieces left never
+ * change. If it counted pieces, its scores would no longer be a sum of
+ * per-square terms, so the constructor checks the tables against it on a
+ * few full boards.
+ * <p>
+ * This class requires <code>--add-modules jdk.incubator.vector</code> at both
+ * compile and run time. Use {@link cs540.checkers.bpayne.VectorSupport
+ * VectorSupport} to obtain an instance, which falls back to
+ * <code>BetterEvaluator</code> when the module is not available.
+ * <p>
+ * Instances keep scratch buffers between calls and are not thread-safe.
+ */
+public class VectorEvaluator implements BatchEvaluator
+{
+	private static final VectorSpecies<Integer> S = IntVector.SPECIES_PREFERRED;
+
+	/** The board location of each of the 32 playable squares. */
+	private static final int[] LOC = new int[32];
+
+	/** Per-square scores of each piece, indexed by playable square. */
+	private final int[] redPawn = new int[32], redKing = new int[32],
+			blkPawn = new int[32], blkKing = new int[32];
+
+	/** Scratch buffer holding one piece code per playable square. */
+	private final int[] packed = new int[32];
+
+	/**
+	 * Scratch buffer for {@link #evalBatch evalBatch}, holding the piece codes
+	 * of <code>S.length()</code> board states, square-major.
+	 */
+	private final int[] lanes = new int[32 * S.length()];
+	private final int[] laneScores = new int[S.length()];
+
+	static
+	{
+		for (int sq = 0; sq < 32; sq++)
+			LOC[sq] = 2 * sq + ((sq / 4) % 2 == 0 ? 1 : 0);
+	}
+
+	/**
+	 * Constructs a <code>VectorEvaluator</code>, tabulating the scores of
+	 * <code>BetterEvaluator</code> by evaluating each piece alone on each
+	 * square.
+	 * @throws IllegalStateException	if the tables do not reproduce the
+	 *					scores of <code>BetterEvaluator</code>
+	 */
+	public VectorEvaluator()
+	{
+		BetterEvaluator sbe = new BetterEvaluator();
+		int[] bs = new int[H * W];
+		java.util.Arrays.fill(bs, BLANK);
+
+		for (int sq = 0; sq < 32; sq++)
+		{
+			int a = LOC[sq];
+			bs[a] = RED_PAWN; redPawn[sq] = sbe.eval(bs);
+			bs[a] = RED_KING; redKing[sq] = sbe.eval(bs);
+			bs[a] = BLK_PAWN; blkPawn[sq] = sbe.eval(bs);
+			bs[a] = BLK_KING; blkKing[sq] = sbe.eval(bs);
+			bs[a] = BLANK;
+		}
+
+		/* Check the tables on the initial board, on it with every piece
+		 * crowned, and on a board filled with all four pieces */
+		int[][] checks = { Utils.INITIAL_BOARDSTATE.clone(),
+				Utils.INITIAL_BOARDSTATE.clone(), bs };
+		for (int sq = 0; sq < 32; sq++)
+		{
+			int a = LOC[sq];
+			if (checks[1][a] != BLANK)
+				checks[1][a] += RED_KING;
+			bs[a] = new int[] { RED_PAWN, BLK_KING, RED_KING, BLK_PAWN }[sq % 4];
+		}
+		for (int[] check : checks)
+			if (eval(check) != sbe.eval(check))
+				throw new IllegalStateException(
+						"BetterEvaluator is not a sum of per-square terms");
+	}
+
+	public int eval(int[] bs)
+	{
+		for (int sq = 0; sq < 32; sq++)
+			packed[sq] = bs[LOC[sq]];
+		return evalPacked(packed, 0);
+	}
+
+	/**
+	 * Evaluates board states <code>S.length()</code> at a time, one board
+	 * state per lane, so that no horizontal reduction is needed per board.
+	 */
+	public void evalBatch(int[][] bss, int count, int[] scores)
+	{
+		int L = S.length();
+		for (int b = 0; b < count; b += L)
+		{
+			int n = Math.min(L, count - b);
+
+			/* Transpose the playable squares of n board states into lanes */
+			for (int k = 0; k < L; k++)
+			{
+				int[] bs = k < n ? bss[b + k] : null;
+				for (int sq = 0; sq < 32; sq++)
+					lanes[sq * L + k] = bs != null ? bs[LOC[sq]] : BLANK;
+			}
+
+			IntVector sum = IntVector.zero(S);
+			for (int sq = 0; sq < 32; sq++)
+			{
+				IntVector v = IntVector.fromArray(S, lanes, sq * L);
+				sum = sum.add(redPawn[sq], v.eq(RED_PAWN))
+				         .add(redKing[sq], v.eq(RED_KING))
+				         .add(blkPawn[sq], v.eq(BLK_PAWN))
+				         .add(blkKing[sq], v.eq(BLK_KING));
+			}
+			sum.intoArray(laneScores, 0);
+			System.arraycopy(laneScores, 0, scores, b, n);
+		}
+	}
+
+	/**
+	 * Sums the piece-square terms of 32 piece codes starting at
+	 * <code>p[offset]</code>.
+	 */
+	private int evalPacked(int[] p, int offset)
+	{
+		IntVector sum = IntVector.zero(S);
+		for (int i = 0; i < 32; i += S.length())
+		{
+			IntVector v = IntVector.fromArray(S, p, offset + i);
+			sum = sum.add(IntVector.fromArray(S, redPawn, i), v.eq(RED_PAWN))
+			         .add(IntVector.fromArray(S, redKing, i), v.eq(RED_KING))
+			         .add(IntVector.fromArray(S, blkPawn, i), v.eq(BLK_PAWN))
+			         .add(IntVector.fromArray(S, blkKing, i), v.eq(BLK_KING));
+		}
+		return sum.reduceLanes(jdk.incubator.vector.VectorOperators.ADD);
+	}
+}
@@ -0,0 +1,265 @@
+package cs540.checkers.cli;
+import cs540.checkers.*;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * This logger records the game events of any number of
+ * {@link CheckersModel CheckersModel}s without blocking the threads that
+ * fire them. Events are placed in a bounded ring buffer and formatted and
+ * written by a single writer thread, which drains the buffer in batches
+ * into a buffered stream.
+ * <p>
+ * The stream is flushed when a game ends, when the writer has been idle for
+ * a short interval, when {@link #flush flush} is called, and on shutdown.
+ * A thread firing an event only blocks if the buffer is full.
+ * <p>
+ * Logs are written either as text, in the same lines as
+ * {@link CheckersLogger CheckersLogger}, or in the binary format of
+ * {@link BinaryLogWriter BinaryLogWriter}, which can be converted back to
+ * text with {@link LogConverter LogConverter}.
+ */
+public class AsyncCheckersLogger
+{
+    public enum Format { TEXT, BINARY }
+
+    /** The number of events the buffer holds. */
+    public static final int DEFAULT_CAPACITY = 4096;
+
+    /** The time, in milliseconds, the writer waits before flushing an idle stream. */
+    public static final long FLUSH_INTERVAL = 100;
+
+    /** The largest number of events written between checks of the buffer. */
+    protected static final int MAX_BATCH = 256;
+
+    /** A buffered event, or a request to flush when <code>event</code> is <code>null</code>. */
+    protected static class Entry
+    {
+        final int game;
+        final long time;
+        final GameEvent event;
+        final CountDownLatch flushed;
+
+        Entry(int game, long time, GameEvent event, CountDownLatch flushed)
+        {
+            this.game = game;
+            this.time = time;
+            this.event = event;
+            this.flushed = flushed;
+        }
+    }
+
+    protected final BlockingQueue<Entry> buffer;
+    protected final OutputStream out;
+    protected final Format format;
+    protected final Thread writer;
+
+    protected PrintStream text;
+    protected BinaryLogWriter binary;
+    protected boolean dirty;
+    protected boolean failed;
+
+    protected volatile boolean closed;
+    private int nextGame;
+
+    /**
+     * Constructs a logger writing to the specified stream with the default
+     * capacity, and starts its writer thread.
+     * @param log       the stream to log to
+     * @param format    the format of the log
+     */
+    public AsyncCheckersLogger(OutputStream log, Format format)
+    {
+        this(log, format, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructs a logger writing to the specified stream, and starts its
+     * writer thread. The stream is flushed on shutdown.
+     * @param log       the stream to log to
+     * @param format    the format of the log
+     * @param capacity  the number of events the buffer holds
+     */
+    public AsyncCheckersLogger(OutputStream log, Format format, int capacity)
+    {
+        this.buffer = new ArrayBlockingQueue<Entry>(capacity);
+        this.out = new BufferedOutputStream(log, 1 << 16);
+        this.format = format;
+
+        writer = new Thread("CheckersLogger") {
+            public void run() { writeLoop(); }
+        };
+        writer.setDaemon(true);
+        writer.start();
+
+        Runtime.getRuntime().addShutdownHook(new Thread() {
+            public void run() { flush(); }
+        });
+    }
+
+    /**
+     * Logs the game events of the specified model.
+     * @param cm        the model whose events to log
+     */
+    public void attach(CheckersModel cm)
+    {
+        final int game;
+        synchronized (this)
+        {
+            game = nextGame++;
+        }
+
+        cm.addGameListener(new GameListener() {
+            public void gameChanged(GameEvent e) { log(game, e); }
+        });
+    }
+
+    /**
+     * Places an event in the buffer, waiting for space if it is full.
+     * Events logged after the logger is closed are discarded.
+     * @param game      the game the event belongs to
+     * @param e         the event
+     */
+    protected void log(int game, GameEvent e)
+    {
+        if (closed)
+            return;
+        try {
+            buffer.put(new Entry(game, System.nanoTime(), e, null));
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Waits, for at most a second, until all events logged so far are
+     * written and the stream is flushed.
+     */
+    public void flush()
+    {
+        if (closed || !writer.isAlive())
+            return;
+
+        CountDownLatch latch = new CountDownLatch(1);
+        try {
+            if (buffer.offer(new Entry(0, 0, null, latch), 1, TimeUnit.SECONDS))
+                latch.await(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Writes all events logged so far, stops the writer thread, and closes
+     * the stream.
+     */
+    public void close()
+    {
+        flush();
+        closed = true;
+        writer.interrupt();
+        try {
+            writer.join(1000);
+            out.close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            System.out.println(e);
+        }
+    }
+
+    protected void writeLoop()
+    {
+        List<Entry> batch = new ArrayList<Entry>(MAX_BATCH);
+        try {
+            while (!closed)
+            {
+                Entry first = buffer.poll(FLUSH_INTERVAL, TimeUnit.MILLISECONDS);
+                if (first == null)
+                {
+                    if (dirty)
+                        flushStream();
+                    continue;
+                }
+
+                batch.add(first);
+                buffer.drainTo(batch, MAX_BATCH - 1);
+                for (Entry entry : batch)
+                {
+                    if (entry.event == null)
+                    {
+                        flushStream();
+                        entry.flushed.countDown();
+                    }
+                    else
+                    {
+                        write(entry);
+                        if (isGameEnd(entry.event))
+                            flushStream();
+                    }
+                }
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            /* Closed */
+        }
+    }
+
+    protected void write(Entry entry)
+    {
+        if (failed)
+            return;
+
+        GameEvent e = entry.event;
+        try {
+            if (format == Format.TEXT)
+            {
+                if (text == null)
+                    text = new PrintStream(out);
+                text.printf("%s %s\n", e.getAction(), e.getDetails());
+            }
+            else
+            {
+                if (binary == null)
+                    binary = new BinaryLogWriter(out);
+                binary.write(entry.game, entry.time, e);
+            }
+            dirty = true;
+        } catch (IOException ex) {
+            fail(ex);
+        }
+    }
+
+    protected void flushStream()
+    {
+        if (failed)
+            return;
+        try {
+            if (text != null)
+            {
+                /* PrintStream reports errors only through checkError */
+                if (text.checkError())
+                    throw new IOException("Error writing log");
+            }
+            else
+                out.flush();
+            dirty = false;
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    protected void fail(IOException e)
+    {
+        System.out.println(e);
+        failed = true;
+    }
+
+    protected static boolean isGameEnd(GameEvent e)
+    {
+        String action = e.getAction();
+        return action.equals("WIN") || action.equals("DRAW") || action.equals("CRASH");
+    }
+}
@@ -0,0 +1,185 @@
+package cs540.checkers.cli;
+import cs540.checkers.*;
+import static cs540.checkers.cli.BinaryLogWriter.*;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * This class reads logs written by {@link BinaryLogWriter BinaryLogWriter},
+ * one record at a time.
+ */
+public class BinaryLogReader implements Closeable
+{
+    /**
+     * A decoded log record. The text form of a record, returned by
+     * {@link #toString toString}, is the line {@link CheckersLogger
+     * CheckersLogger} writes for the event, without the line separator.
+     */
+    public static class Record
+    {
+        /** The session of the record, counting from <code>0</code>. */
+        public int session;
+        /** The game of the record within its session. */
+        public int game;
+        /** The time of the record, in microseconds since its session began. */
+        public long time;
+        /** The record type, one of the <code>BinaryLogWriter.TYPE_</code> constants. */
+        public int type;
+        public String action;
+        public String details;
+        /** The side of the record, or <code>NEITHER</code> if it has none. */
+        public int side = CheckersConsts.NEITHER;
+        /** The move of a <code>MOVE</code> record. */
+        public Move move;
+        /** The turn time, in milliseconds, of a <code>MOVE</code> record. */
+        public long turnTime;
+
+        public String toString()
+        {
+            return action + " " + details;
+        }
+    }
+
+    protected InputStream in;
+    protected int session = -1;
+    protected long sessionStart;
+    protected long time;
+
+    /**
+     * Constructs a reader which reads from the specified stream.
+     * @param in        the stream to read from, which should be buffered
+     */
+    public BinaryLogReader(InputStream in)
+    {
+        this.in = in;
+    }
+
+    /**
+     * Reads the next record.
+     * @return          the record, or <code>null</code> at the end of the log
+     * @throws IOException      if an I/O error occurs or the log is malformed
+     */
+    public Record next() throws IOException
+    {
+        int type = in.read();
+        if (type < 0)
+            return null;
+
+        /* Session headers may appear between any two records */
+        while (type == MAGIC[0])
+        {
+            readSessionHeader();
+            type = in.read();
+            if (type < 0)
+                return null;
+        }
+        if (session < 0)
+            throw new IOException("Not a binary checkers log");
+
+        Record r = new Record();
+        r.session = session;
+        r.type = type;
+        r.game = (int)MoveCodec.readVarLong(in);
+        time += MoveCodec.readVarLong(in);
+        r.time = time;
+
+        switch (type)
+        {
+            case TYPE_OTHER:
+                r.action = readString();
+                r.details = readString();
+                break;
+            case TYPE_START:
+                r.action = "START";
+                r.details = readString();
+                break;
+            case TYPE_CRASH:
+                r.action = "CRASH";
+                r.details = readString();
+                break;
+            case TYPE_WAIT:
+            case TYPE_TIMEOUT:
+            case TYPE_WIN:
+                r.action = type == TYPE_WAIT ? "WAIT" : type == TYPE_WIN ? "WIN" : "TIMEOUT";
+                r.side = readSide();
+                r.details = Utils.reprSide(r.side);
+                break;
+            case TYPE_MOVE:
+                r.action = "MOVE";
+                r.side = readSide();
+                r.turnTime = MoveCodec.readVarLong(in);
+                try {
+                    r.move = MoveCodec.decode(MoveCodec.readVarLong(in));
+                } catch (IllegalArgumentException e) {
+                    throw new IOException(e.getMessage());
+                }
+                r.details = String.format("%s %s (%d ms)",
+                        Utils.reprSide(r.side), r.move, r.turnTime);
+                break;
+            case TYPE_SEARCH:
+            case TYPE_FORFEIT:
+                r.action = type == TYPE_SEARCH ? "SEARCH" : "FORFEIT";
+                r.side = readSide();
+                r.details = Utils.reprSide(r.side) + " " + readString();
+                break;
+            case TYPE_DRAW:
+                r.action = "DRAW";
+                r.details = "";
+                break;
+            default:
+                throw new IOException("Unknown record type " + type);
+        }
+        return r;
+    }
+
+    /**
+     * Gets the wall clock time, in milliseconds, at which the current
+     * session began.
+     * @return          the start time of the current session
+     */
+    public long getSessionStart() { return sessionStart; }
+
+    public void close() throws IOException
+    {
+        in.close();
+    }
+
+    protected void readSessionHeader() throws IOException
+    {
+        for (int i = 1; i < MAGIC.length; i++)
+            if (in.read() != MAGIC[i])
+                throw new IOException("Bad session header");
+        int version = in.read();
+        if (version != VERSION)
+            throw new IOException("Unsupported log version " + version);
+        sessionStart = MoveCodec.readVarLong(in);
+        session++;
+        time = 0;
+    }
+
+    protected int readSide() throws IOException
+    {
+        int side = in.read();
+        if (side < 0)
+            throw new EOFException();
+        return side;
+    }
+
+    protected String readString() throws IOException
+    {
+        long n = MoveCodec.readVarLong(in);
+        if (n > Integer.MAX_VALUE)
+            throw new IOException("Malformed string");
+        byte[] b = new byte[(int)n];
+        int off = 0;
+        while (off < b.length)
+        {
+            int k = in.read(b, off, b.length - off);
+            if (k < 0)
+                throw new EOFException();
+            off += k;
+        }
+        return new String(b, StandardCharsets.UTF_8);
+    }
+}
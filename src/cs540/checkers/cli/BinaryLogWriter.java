@@ -0,0 +1,198 @@
+package cs540.checkers.cli;
+import cs540.checkers.*;
+import static cs540.checkers.CheckersConsts.*;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * This class encodes game events in the compact binary log format read by
+ * {@link BinaryLogReader BinaryLogReader}.
+ * <p>
+ * A log consists of sessions, so that a file may be appended to. A session
+ * begins with the four bytes <code>"CKLG"</code>, a version byte, and the
+ * wall clock time in milliseconds. Each event follows as a record:
+ * <ul>
+ * <li>a type byte, one of the <code>TYPE_</code> constants;
+ * <li>the game the event belongs to, numbered from <code>0</code> within
+ * the session;
+ * <li>the time, in microseconds, since the previous record;
+ * <li>a payload depending on the type. Moves are stored as the side, the
+ * turn time in milliseconds, and a {@link MoveCodec MoveCodec} move code.
+ * Events whose details do not follow the usual format are stored as
+ * strings in a <code>TYPE_OTHER</code> record.
+ * </ul>
+ * All integers except the type and side bytes are varints, and strings are
+ * a varint length followed by UTF-8 bytes.
+ * <p>
+ * This class is not thread safe.
+ */
+public class BinaryLogWriter
+{
+    /** The bytes beginning a session. */
+    public static final byte[] MAGIC = { 'C', 'K', 'L', 'G' };
+    public static final int VERSION = 1;
+
+    public static final int TYPE_OTHER   = 0;
+    public static final int TYPE_START   = 1;
+    public static final int TYPE_WAIT    = 2;
+    public static final int TYPE_MOVE    = 3;
+    public static final int TYPE_TIMEOUT = 4;
+    public static final int TYPE_SEARCH  = 5;
+    public static final int TYPE_FORFEIT = 6;
+    public static final int TYPE_WIN     = 7;
+    public static final int TYPE_DRAW    = 8;
+    public static final int TYPE_CRASH   = 9;
+
+    protected OutputStream out;
+
+    /** The time of the previous record, from {@link System#nanoTime System.nanoTime}. */
+    protected long lastTime;
+
+    /**
+     * Constructs a writer which writes to the specified stream. A session
+     * header is written immediately.
+     * @param out       the stream to write to
+     * @throws IOException      if an I/O error occurs
+     */
+    public BinaryLogWriter(OutputStream out) throws IOException
+    {
+        this.out = out;
+        out.write(MAGIC);
+        out.write(VERSION);
+        MoveCodec.writeVarLong(out, System.currentTimeMillis());
+        lastTime = System.nanoTime();
+    }
+
+    /**
+     * Writes a record for a game event.
+     * @param game      the game the event belongs to
+     * @param time      the time of the event, from {@link System#nanoTime System.nanoTime}
+     * @param e         the event
+     * @throws IOException      if an I/O error occurs
+     */
+    public void write(int game, long time, GameEvent e) throws IOException
+    {
+        String action = e.getAction();
+        String details = e.getDetails();
+        int side = NEITHER;
+        String text = null;
+
+        int type = typeOf(action);
+        switch (type)
+        {
+            case TYPE_START:
+                text = details;
+                break;
+            case TYPE_WAIT:
+            case TYPE_TIMEOUT:
+            case TYPE_WIN:
+                side = sideOf(details);
+                if (!details.equals(Utils.reprSide(side)))
+                    type = TYPE_OTHER;
+                break;
+            case TYPE_MOVE:
+                if (e instanceof MoveMadeEvent && ((MoveMadeEvent)e).getTurnTime() >= 0)
+                    side = ((MoveMadeEvent)e).getSide();
+                else
+                    type = TYPE_OTHER;
+                break;
+            case TYPE_SEARCH:
+            case TYPE_FORFEIT:
+                side = sideOf(details);
+                text = detailsAfterSide(details, side);
+                if (text == null)
+                    type = TYPE_OTHER;
+                break;
+            case TYPE_DRAW:
+                if (!details.equals(""))
+                    type = TYPE_OTHER;
+                break;
+            case TYPE_CRASH:
+                text = details;
+                break;
+        }
+
+        out.write(type);
+        MoveCodec.writeVarLong(out, game);
+        MoveCodec.writeVarLong(out, Math.max(0, (time - lastTime) / 1000));
+        lastTime = Math.max(lastTime, time);
+
+        switch (type)
+        {
+            case TYPE_OTHER:
+                writeString(action);
+                writeString(details);
+                break;
+            case TYPE_START:
+            case TYPE_CRASH:
+                writeString(text);
+                break;
+            case TYPE_WAIT:
+            case TYPE_TIMEOUT:
+            case TYPE_WIN:
+                out.write(side);
+                break;
+            case TYPE_MOVE:
+                MoveMadeEvent me = (MoveMadeEvent)e;
+                out.write(side);
+                MoveCodec.writeVarLong(out, me.getTurnTime());
+                MoveCodec.writeVarLong(out, MoveCodec.encode(me.getMove()));
+                break;
+            case TYPE_SEARCH:
+            case TYPE_FORFEIT:
+                out.write(side);
+                writeString(text);
+                break;
+            case TYPE_DRAW:
+                break;
+        }
+    }
+
+    /**
+     * Gets the record type for an event action.
+     */
+    protected static int typeOf(String action)
+    {
+        if (action.equals("START"))   return TYPE_START;
+        if (action.equals("WAIT"))    return TYPE_WAIT;
+        if (action.equals("MOVE"))    return TYPE_MOVE;
+        if (action.equals("TIMEOUT")) return TYPE_TIMEOUT;
+        if (action.equals("SEARCH"))  return TYPE_SEARCH;
+        if (action.equals("FORFEIT")) return TYPE_FORFEIT;
+        if (action.equals("WIN"))     return TYPE_WIN;
+        if (action.equals("DRAW"))    return TYPE_DRAW;
+        if (action.equals("CRASH"))   return TYPE_CRASH;
+        return TYPE_OTHER;
+    }
+
+    /**
+     * Parses the side at the beginning of event details, or returns
+     * <code>NEITHER</code> if there is none.
+     */
+    protected static int sideOf(String details)
+    {
+        if (details.startsWith("RED")) return RED;
+        if (details.startsWith("BLK")) return BLK;
+        return NEITHER;
+    }
+
+    /**
+     * Returns the details following the side and a space, or
+     * <code>null</code> if the details do not begin with the side.
+     */
+    protected static String detailsAfterSide(String details, int side)
+    {
+        String prefix = Utils.reprSide(side) + " ";
+        if (side == NEITHER || !details.startsWith(prefix))
+            return null;
+        return details.substring(prefix.length());
+    }
+
+    protected void writeString(String s) throws IOException
+    {
+        byte[] b = s.getBytes(StandardCharsets.UTF_8);
+        MoveCodec.writeVarLong(out, b.length);
+        out.write(b);
+    }
+}
@@ -0,0 +1,99 @@
+package cs540.checkers.cli;
+
+import java.io.*;
+
+/**
+ * This program converts binary logs written by {@link AsyncCheckersLogger
+ * AsyncCheckersLogger} to the text lines written by {@link CheckersLogger
+ * CheckersLogger}.
+ * <p>
+ * Usage: <code>java cs540.checkers.cli.LogConverter [--game &lt;n&gt;]
+ * [--timestamps] &lt;binary log&gt; [&lt;text log&gt;]</code>
+ * <p>
+ * With <code>--game</code>, only the events of the <code>n</code>th game of
+ * each session are written. With <code>--timestamps</code>, each line is
+ * prefixed with the milliseconds since its session began. The text is
+ * written to standard output if no text log is given.
+ */
+public class LogConverter
+{
+    private static final String USAGE =
+        "Usage: java cs540.checkers.cli.LogConverter [--game <n>] [--timestamps] <binary log> [<text log>]";
+
+    public static void main(String[] args)
+    {
+        int game = -1;
+        boolean timestamps = false;
+        String inName = null, outName = null;
+
+        try {
+            for (int i = 0; i < args.length; i++)
+            {
+                if (args[i].equals("--game"))
+                    game = Integer.parseInt(args[++i]);
+                else if (args[i].equals("--timestamps"))
+                    timestamps = true;
+                else if (inName == null)
+                    inName = args[i];
+                else if (outName == null)
+                    outName = args[i];
+                else
+                    throw new IllegalArgumentException("Unrecognized option " + args[i]);
+            }
+        } catch (RuntimeException e) {
+            System.out.println(e);
+            inName = null;
+        }
+
+        if (inName == null)
+        {
+            System.out.println(USAGE);
+            System.exit(1);
+        }
+
+        try {
+            InputStream in = new BufferedInputStream(new FileInputStream(inName));
+            OutputStream out = outName == null ? System.out : new FileOutputStream(outName);
+            long n = convert(in, out, game, timestamps);
+            in.close();
+            if (outName != null)
+            {
+                out.close();
+                System.out.println("Converted " + n + " records");
+            }
+        } catch (IOException e) {
+            System.out.println(e);
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Converts a binary log to text.
+     * @param in            the binary log
+     * @param out           the stream to write text lines to
+     * @param game          the game to convert, or <code>-1</code> for all games
+     * @param timestamps    whether to prefix lines with the time of the record
+     * @return              the number of records converted
+     * @throws IOException  if an I/O error occurs or the log is malformed
+     */
+    public static long convert(InputStream in, OutputStream out, int game,
+            boolean timestamps) throws IOException
+    {
+        BinaryLogReader reader = new BinaryLogReader(in);
+        PrintStream text = new PrintStream(new BufferedOutputStream(out));
+        long n = 0;
+
+        BinaryLogReader.Record r;
+        while ((r = reader.next()) != null)
+        {
+            if (game != -1 && r.game != game)
+                continue;
+            if (timestamps)
+                text.printf("%d.%03d ", r.time / 1000, r.time % 1000);
+            text.printf("%s %s\n", r.action, r.details);
+            n++;
+        }
+        text.flush();
+        return n;
+    }
+}
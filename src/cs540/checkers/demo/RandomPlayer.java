@@ -1,15 +1,19 @@
 package cs540.checkers.demo;
 import cs540.checkers.*;
+import cs540.checkers.variant.*;
 
 import java.util.*;
 
 /**
  * This checkers player selects moves uniformly at random from its legal moves. 
+ * It plays any {@link Variant variant} of checkers.
  * @author Justin Tritz
  * @author David He
  */
-public class RandomPlayer extends CheckersPlayer
+public class RandomPlayer extends CheckersPlayer implements VariantAwareCheckersPlayer
 {
+    protected Variant variant = Variant.AMERICAN;
+
     /**
      * Constructs a RandomPlayer on the specified side with the given name.
      * @param name      the name of this player
@@ -17,6 +21,8 @@ public class RandomPlayer extends CheckersPlayer
      */
     public RandomPlayer(String name, int side) { super(name, side); }
 
+    public void setVariant(Variant variant) { this.variant = variant; }
+
     /**
      * Selects a move uniformly at random from all legal moves on the given 
      * board state.
@@ -25,7 +31,7 @@ public class RandomPlayer extends CheckersPlayer
     public void calculateMove(int[] bs)
     {
         /* Get all the possible moves for this player on the provided board state */
-        List<Move> possibleMoves = Utils.getAllPossibleMoves(bs, side);
+        List<Move> possibleMoves = variant.getAllPossibleMoves(bs, side);
 
         /* If this player has no moves, return out */
         if (possibleMoves.size() == 0)
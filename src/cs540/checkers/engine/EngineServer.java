@@ -0,0 +1,444 @@
+package cs540.checkers.engine;
+
+import cs540.checkers.*;
+
+import java.io.*;
+import java.net.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * This program is an engine server: a long-running process which answers
+ * requests to search positions from many clients over local sockets, so
+ * that a game need not pay for starting a JVM and compiling its players.
+ * The players of the server, with whatever they have loaded, are kept in a
+ * {@link PlayerPool PlayerPool} between clients.
+ * <p>
+ * Clients speak the line protocol of {@link EngineSession EngineSession}.
+ * A single thread multiplexes every connection with a {@link Selector
+ * Selector}, and searches run on a fixed pool of worker threads; searches
+ * beyond the number of workers wait for one to become free, so the server
+ * should have no more workers than the processors it may use.
+ * <p>
+ * Usage: <code>java cs540.checkers.engine.EngineServer [--port &lt;port&gt; |
+ * --unix &lt;path&gt; | --stdio] [--threads &lt;n&gt;] [--player &lt;player&gt;]
+ * [--preload &lt;player&gt;]... [--warmup &lt;ms&gt;]</code>
+ */
+public class EngineServer
+{
+    /** The TCP port the server listens on by default. */
+    public static final int DEFAULT_PORT = 5400;
+
+    /** The longest line accepted from a client, in bytes. */
+    public static final int MAX_LINE = 1 << 16;
+
+    protected final Selector selector;
+    protected final ServerSocketChannel server;
+    protected final PlayerPool pool;
+    protected final String playerClass;
+    protected final ExecutorService workers;
+
+    /** The tasks posted to the selector thread by other threads. */
+    protected final Queue<Runnable> tasks = new ConcurrentLinkedQueue<Runnable>();
+    protected final Executor events = new Executor() {
+        public void execute(Runnable task)
+        {
+            tasks.add(task);
+            selector.wakeup();
+        }
+    };
+
+    protected volatile boolean running = true;
+
+    /**
+     * Constructs a server listening on the given address, which may be an
+     * {@link InetSocketAddress InetSocketAddress} or a
+     * {@link UnixDomainSocketAddress UnixDomainSocketAddress}.
+     * @param address   the local address to listen on
+     * @param pool      the pool of players to serve
+     * @param playerClass   the fully qualified class name of the players
+     *                  clients use until they choose others
+     * @param threads   the number of searches to run at once
+     * @throws IOException  if the address cannot be bound
+     */
+    public EngineServer(SocketAddress address, PlayerPool pool, String playerClass, int threads)
+        throws IOException
+    {
+        this.pool = pool;
+        this.playerClass = playerClass;
+
+        selector = Selector.open();
+        if (address instanceof UnixDomainSocketAddress)
+            server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        else
+            server = ServerSocketChannel.open();
+        server.bind(address);
+        server.configureBlocking(false);
+        server.register(selector, SelectionKey.OP_ACCEPT);
+
+        workers = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            public Thread newThread(Runnable r)
+            {
+                Thread t = new Thread(r, "engine-worker");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+    }
+
+    /**
+     * Gets the address this server listens on.
+     * @return          the local address
+     * @throws IOException  if the server is closed
+     */
+    public SocketAddress getAddress() throws IOException
+    {
+        return server.getLocalAddress();
+    }
+
+    /**
+     * Serves clients on the calling thread until {@link #stop stop} is called.
+     * @throws IOException  if the selector fails
+     */
+    public void run() throws IOException
+    {
+        while (running)
+        {
+            selector.select();
+
+            Runnable task;
+            while ((task = tasks.poll()) != null)
+                task.run();
+
+            Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+            while (it.hasNext())
+            {
+                SelectionKey key = it.next();
+                it.remove();
+                if (!key.isValid())
+                    continue;
+
+                if (key.isAcceptable())
+                {
+                    accept();
+                    continue;
+                }
+
+                Connection c = (Connection)key.attachment();
+                try {
+                    if (key.isReadable())
+                        c.read();
+                    if (key.isValid() && key.isWritable())
+                        c.write();
+                } catch (IOException e) {
+                    c.disconnect();
+                }
+            }
+        }
+
+        for (SelectionKey key : selector.keys())
+            if (key.attachment() instanceof Connection)
+                ((Connection)key.attachment()).disconnect();
+        server.close();
+        selector.close();
+        workers.shutdownNow();
+    }
+
+    /**
+     * Stops the server. It may be called from any thread.
+     */
+    public void stop()
+    {
+        running = false;
+        selector.wakeup();
+    }
+
+    protected void accept() throws IOException
+    {
+        SocketChannel ch = server.accept();
+        if (ch == null)
+            return;
+        ch.configureBlocking(false);
+        if (ch.getLocalAddress() instanceof InetSocketAddress)
+            ch.setOption(StandardSocketOptions.TCP_NODELAY, true);
+
+        Connection c = new Connection(ch);
+        c.key = ch.register(selector, SelectionKey.OP_READ, c);
+    }
+
+    /**
+     * This class is the connection of a client, and the output of its
+     * session. It is only used on the selector thread.
+     */
+    protected class Connection implements EngineSession.Output
+    {
+        protected final SocketChannel ch;
+        protected final EngineSession session;
+        protected SelectionKey key;
+
+        protected ByteBuffer in = ByteBuffer.allocate(1024);
+        protected ByteBuffer out = ByteBuffer.allocate(1024);
+        protected boolean closing;
+
+        public Connection(SocketChannel ch)
+        {
+            this.ch = ch;
+            session = new EngineSession(pool, playerClass, workers, events, this);
+        }
+
+        protected void read() throws IOException
+        {
+            if (!in.hasRemaining())
+            {
+                if (in.capacity() >= MAX_LINE)
+                {
+                    reply("error line too long");
+                    close();
+                    return;
+                }
+                ByteBuffer b = ByteBuffer.allocate(in.capacity() * 2);
+                in.flip();
+                b.put(in);
+                in = b;
+            }
+
+            if (ch.read(in) < 0)
+            {
+                disconnect();
+                return;
+            }
+
+            /* Hand each complete line to the session */
+            in.flip();
+            int start = 0;
+            for (int i = 0; i < in.limit(); i++)
+            {
+                if (in.get(i) != '\n')
+                    continue;
+                int end = i > start && in.get(i - 1) == '\r' ? i - 1 : i;
+                String line = new String(in.array(), start, end - start, StandardCharsets.US_ASCII);
+                start = i + 1;
+                session.receive(line);
+                if (closing || !ch.isOpen())
+                    return;
+            }
+            in.position(start);
+            in.compact();
+        }
+
+        public void reply(String line)
+        {
+            if (!ch.isOpen())
+                return;
+
+            byte[] b = (line + "\n").getBytes(StandardCharsets.US_ASCII);
+            if (out.remaining() < b.length)
+            {
+                ByteBuffer o = ByteBuffer.allocate(Math.max(out.capacity() * 2, out.position() + b.length));
+                out.flip();
+                o.put(out);
+                out = o;
+            }
+            out.put(b);
+
+            /* Most replies fit in the socket buffer; write them at once */
+            try {
+                write();
+            } catch (IOException e) {
+                disconnect();
+            }
+        }
+
+        protected void write() throws IOException
+        {
+            out.flip();
+            ch.write(out);
+            out.compact();
+
+            if (out.position() > 0)
+                key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+            else if (closing)
+                disconnect();
+            else if (key.isValid())
+                key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+        }
+
+        public void close()
+        {
+            closing = true;
+            key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+            if (out.position() == 0)
+                disconnect();
+        }
+
+        protected void disconnect()
+        {
+            if (!ch.isOpen())
+                return;
+            key.cancel();
+            try {
+                ch.close();
+            } catch (IOException e) {
+                System.out.println(e);
+            }
+            session.closed();
+        }
+    }
+
+    /**
+     * Serves a single client on standard input and output, until the input
+     * ends and the commands sent before it are carried out, or the client
+     * quits. This lets a client run the engine as a
+     * child process; anything else the program prints goes to standard
+     * error, so it cannot be mistaken for a reply.
+     * @param pool      the pool of players to serve
+     * @param playerClass   the fully qualified class name of the players
+     *                  the client uses until it chooses others
+     * @param threads   the number of searches to run at once
+     * @throws IOException  if standard input cannot be read
+     */
+    public static void serveStdio(PlayerPool pool, String playerClass, int threads)
+        throws IOException
+    {
+        final PrintStream stdout = new PrintStream(new FileOutputStream(FileDescriptor.out), false, "US-ASCII");
+        System.setOut(System.err);
+
+        /* The session's event thread */
+        final ExecutorService events = Executors.newSingleThreadExecutor();
+        final ExecutorService workers = Executors.newFixedThreadPool(threads);
+        final EngineSession session = new EngineSession(pool, playerClass, workers, events,
+                new EngineSession.Output() {
+                    public void reply(String line)
+                    {
+                        stdout.print(line);
+                        stdout.print('\n');
+                        stdout.flush();
+                    }
+
+                    public void close()
+                    {
+                        stdout.flush();
+                        System.exit(0);
+                    }
+                });
+
+        BufferedReader in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.US_ASCII));
+        String line;
+        while ((line = in.readLine()) != null)
+        {
+            final String l = line;
+            events.execute(new Runnable() {
+                public void run() { session.receive(l); }
+            });
+        }
+        /* Carry out every command sent before the input ended, then stop */
+        events.execute(new Runnable() {
+            public void run()
+            {
+                session.inputEnded(new Runnable() {
+                    public void run()
+                    {
+                        workers.shutdown();
+                        events.shutdown();
+                    }
+                });
+            }
+        });
+    }
+
+    private static String help_str =
+            "Usage: java cs540.checkers.engine.EngineServer [OPTION]...\n" +
+            "\n" +
+            "--port <port>       Listen on localhost:<port> (default " + DEFAULT_PORT + ")\n" +
+            "--unix <path>       Listen on the Unix domain socket <path> instead\n" +
+            "--stdio             Serve a single client on standard input and output instead\n" +
+            "--threads <n>       Run at most <n> searches at once (default: the number of processors)\n" +
+            "--player <player>   The player of new clients (default bpayne.Bpayne)\n" +
+            "--preload <player>  Create and warm up <player> before listening; may be repeated\n" +
+            "--warmup <ms>       How long each preloaded player thinks while warming up (default 2000)\n";
+
+    public static void main(String[] args)
+    {
+        int port = DEFAULT_PORT;
+        String unix = null;
+        boolean stdio = false;
+        int threads = Runtime.getRuntime().availableProcessors();
+        String player = "bpayne.Bpayne";
+        List<String> preload = new ArrayList<String>();
+        long warmup = 2000;
+
+        try {
+            for (int i = 0; i < args.length; i++)
+            {
+                if (args[i].equals("--port"))
+                    port = Integer.parseInt(args[++i]);
+                else if (args[i].equals("--unix"))
+                    unix = args[++i];
+                else if (args[i].equals("--stdio"))
+                    stdio = true;
+                else if (args[i].equals("--threads"))
+                    threads = Integer.parseInt(args[++i]);
+                else if (args[i].equals("--player"))
+                    player = args[++i];
+                else if (args[i].equals("--preload"))
+                    preload.add(args[++i]);
+                else if (args[i].equals("--warmup"))
+                    warmup = Long.parseLong(args[++i]);
+                else
+                    throw new IllegalArgumentException("Unrecognized option " + args[i]);
+            }
+        } catch (RuntimeException e) {
+            if (!(e instanceof ArrayIndexOutOfBoundsException))
+                System.out.println(e);
+            System.out.println(help_str);
+            System.exit(1);
+        }
+
+        /* Keep standard output for replies */
+        PrintStream log = stdio ? System.err : System.out;
+
+        PlayerPool pool = new PlayerPool();
+        try {
+            for (String name : preload)
+            {
+                long start = System.currentTimeMillis();
+                pool.warmUp(Checkers.playerClassName(name), warmup);
+                log.println("Warmed up " + name + " in "
+                        + (System.currentTimeMillis() - start) + " ms");
+            }
+        } catch (IllegalArgumentException e) {
+            log.println(e);
+            System.exit(1);
+        }
+
+        try {
+            if (stdio)
+            {
+                serveStdio(pool, Checkers.playerClassName(player), threads);
+                return;
+            }
+
+            SocketAddress address;
+            if (unix != null)
+            {
+                Path path = Paths.get(unix);
+                Files.deleteIfExists(path);
+                address = UnixDomainSocketAddress.of(path);
+            }
+            else
+                address = new InetSocketAddress(InetAddress.getLoopbackAddress(), port);
+
+            EngineServer server = new EngineServer(address, pool,
+                    Checkers.playerClassName(player), threads);
+            System.out.println("Listening on " + server.getAddress());
+            server.run();
+        } catch (IOException e) {
+            System.out.println(e);
+            System.exit(1);
+        }
+    }
+}
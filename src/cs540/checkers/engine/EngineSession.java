@@ -0,0 +1,470 @@
+package cs540.checkers.engine;
+import static cs540.checkers.CheckersConsts.*;
+
+import cs540.checkers.*;
+import cs540.checkers.pdn.*;
+
+import java.lang.management.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * This class carries out the commands of one client of an engine. It keeps
+ * the client's position and players, and answers each command with exactly
+ * one line, in the order the commands were received, so a client may send
+ * several commands without waiting for their replies.
+ * <p>
+ * The commands are:
+ * <pre>
+ * hello                           ok &lt;server name&gt;
+ * isready                         readyok
+ * player &lt;player&gt;                 ok
+ * position startpos [moves &lt;move&gt;...]
+ * position fen &lt;fen&gt; [moves &lt;move&gt;...]
+ *                                 ok
+ * go [movetime &lt;ms&gt;] [depth &lt;n&gt;] bestmove &lt;move&gt; time &lt;ms&gt; [&lt;key&gt; &lt;value&gt;]...
+ * stop                            ok
+ * quit                            bye
+ * </pre>
+ * Players are named as on the command line of {@link Checkers Checkers},
+ * e.g. <code>bpayne.Bpayne</code>. Positions are PDN FEN strings and moves
+ * are in PDN, e.g. <code>B:W21-32:B1-12</code> and <code>11-15</code>.
+ * <code>go</code> searches the position with the player of the side to
+ * move until the move time, by default {@link #DEFAULT_MOVE_TIME
+ * DEFAULT_MOVE_TIME} milliseconds, passes, or the player finishes its
+ * search to the given depth in plies, which it must reach but not pass;
+ * if both are given, whichever comes first ends the search. Players which
+ * deepen by two plies at a time, such as <code>bpayne.Bpayne</code>,
+ * search to the deepest depth they reach which is not past it. Its reply gives the time the search took on the server, and
+ * is <code>bestmove none</code> if the side to move has no moves. The time
+ * may be followed by the resources the search used, where the JVM can
+ * measure them: <code>cpu</code>, the CPU milliseconds of the thread which
+ * searched; <code>alloc</code>, the bytes that thread allocated;
+ * <code>pcpu</code>, the CPU milliseconds of the whole server during the
+ * search; and <code>offcpu</code>, the CPU milliseconds of the server since
+ * the session's last search ended. The last two count every thread of the
+ * server, including threads a player starts, and so describe one player
+ * only when the server has a single client.
+ * <code>stop</code> ends a search in progress at once. A command which
+ * fails is answered with <code>error</code> and a message.
+ * <p>
+ * Sessions are driven by a single event thread: {@link #receive receive},
+ * {@link #inputEnded inputEnded} and {@link #closed closed} must be called
+ * on it, and sessions post their
+ * own events, such as the end of a search, to it. Searches run on a shared
+ * pool of worker threads.
+ */
+public class EngineSession
+{
+    /** The name given in reply to <code>hello</code>. */
+    public static final String SERVER_NAME = "cs540-checkers-engine 1";
+
+    /** The move time of <code>go</code> when none is given, in milliseconds. */
+    public static final long DEFAULT_MOVE_TIME = 3000;
+
+    /**
+     * This interface is the connection of a session to its client.
+     */
+    public interface Output
+    {
+        /**
+         * Sends a line to the client.
+         * @param line  the line, without a line terminator
+         */
+        void reply(String line);
+
+        /**
+         * Closes the connection once every line sent has been delivered.
+         */
+        void close();
+    }
+
+    protected final PlayerPool pool;
+    protected final ExecutorService workers;
+    protected final Executor events;
+    protected final Output out;
+
+    /** The class name of the players of this session. */
+    protected String playerClass;
+    /** The players lent to this session by the pool, indexed by side. */
+    protected final CheckersPlayer[] players = new CheckersPlayer[2];
+
+    protected int[] bs = Utils.INITIAL_BOARDSTATE.clone();
+    protected int side = Utils.INITIAL_SIDE;
+    /** The positions of the game which led to the current position. */
+    protected PositionHistory history = new PositionHistory();
+
+    /** The search in progress, or <code>null</code> if there is none. */
+    protected Search search;
+    /** The commands received during the search, to be carried out after it. */
+    protected final Queue<String> pending = new ArrayDeque<String>();
+    protected boolean closed;
+    /** What to run once the commands received are carried out, after the
+     * input has ended, or <code>null</code>. */
+    protected Runnable onInputEnded;
+
+    /** The agent the searches of this session run under, which keeps its thread between them. */
+    protected final TurnAgent agent = new TurnAgent();
+
+    /** The CPU time of the process when the last search ended, or <code>-1</code>. */
+    protected volatile long lastCpuTime = -1;
+
+    /**
+     * Gets the depth limit of a player which searches to a depth. The
+     * players of this program stop deepening before they reach their
+     * {@link CheckersPlayer#setDepthLimit depth limit}, so it is one more
+     * than the depth of their deepest search.
+     * @param depth     the depth of the search, in plies
+     * @return          the depth limit
+     */
+    public static int depthLimitOf(int depth)
+    {
+        return depth + 1;
+    }
+
+    /**
+     * Gets the depth a player searches to with a depth limit, the inverse of
+     * {@link #depthLimitOf depthLimitOf}.
+     * @param depthLimit    the depth limit
+     * @return          the depth of the deepest search, in plies
+     */
+    public static int depthOf(int depthLimit)
+    {
+        return depthLimit - 1;
+    }
+
+    /**
+     * Constructs a session.
+     * @param pool      the pool to borrow players from
+     * @param playerClass   the fully qualified class name of the players to
+     *                  use until the client chooses others
+     * @param workers   the threads to search on
+     * @param events    the event thread of the session
+     * @param out       the connection to the client
+     */
+    public EngineSession(PlayerPool pool, String playerClass, ExecutorService workers,
+            Executor events, Output out)
+    {
+        this.pool = pool;
+        this.playerClass = playerClass;
+        this.workers = workers;
+        this.events = events;
+        this.out = out;
+        history.push(Zobrist.hash(bs, side), true);
+    }
+
+    /**
+     * Handles a line received from the client.
+     * @param line      the line, without its line terminator
+     */
+    public void receive(String line)
+    {
+        line = line.trim();
+        if (closed || line.length() == 0)
+            return;
+
+        if (search != null)
+        {
+            /* Stop at once, but reply after the search's reply */
+            if (line.equals("stop") || line.equals("quit"))
+                search.stop();
+            pending.add(line);
+            return;
+        }
+        execute(line);
+    }
+
+    /**
+     * Tells this session that the client will send no more commands. The
+     * commands received are carried out, and then the session is closed as
+     * by {@link #closed closed}, and <code>done</code> is run on the event
+     * thread.
+     * @param done      what to run once the session is closed
+     */
+    public void inputEnded(Runnable done)
+    {
+        onInputEnded = done;
+        if (search == null)
+            endInput();
+    }
+
+    protected void endInput()
+    {
+        Runnable done = onInputEnded;
+        onInputEnded = null;
+        closed();
+        done.run();
+    }
+
+    /**
+     * Tells this session that the client has gone. Any search in progress is
+     * stopped, and the session's players are returned to the pool.
+     */
+    public void closed()
+    {
+        closed = true;
+        pending.clear();
+        if (search != null)
+            search.stop();
+        else
+            releasePlayers();
+    }
+
+    protected void execute(String line)
+    {
+        String[] args = line.split("\\s+");
+        String cmd = args[0];
+        try {
+            if (cmd.equals("hello"))
+                out.reply("ok " + SERVER_NAME);
+            else if (cmd.equals("isready"))
+                out.reply("readyok");
+            else if (cmd.equals("player"))
+                player(args);
+            else if (cmd.equals("position"))
+                position(args);
+            else if (cmd.equals("go"))
+                go(args);
+            else if (cmd.equals("stop"))
+                out.reply("ok");
+            else if (cmd.equals("quit"))
+            {
+                out.reply("bye");
+                out.close();
+            }
+            else
+                out.reply("error unknown command " + cmd);
+        } catch (FormatException e) {
+            out.reply("error " + e.getMessage());
+        } catch (IllegalArgumentException e) {
+            out.reply("error " + e.getMessage());
+        }
+    }
+
+    protected void player(String[] args) throws FormatException
+    {
+        if (args.length != 2)
+            throw new FormatException("usage: player <player>");
+
+        String className = Checkers.playerClassName(args[1]);
+        if (!className.equals(playerClass))
+        {
+            /* Fail before giving up the current players */
+            pool.release(className, side, pool.borrow(className, side));
+            releasePlayers();
+            playerClass = className;
+        }
+        out.reply("ok");
+    }
+
+    protected void position(String[] args) throws FormatException
+    {
+        int[] D = new int[W * H];
+        int s, i;
+        if (args.length >= 2 && args[1].equals("startpos"))
+        {
+            System.arraycopy(Utils.INITIAL_BOARDSTATE, 0, D, 0, D.length);
+            s = Utils.INITIAL_SIDE;
+            i = 2;
+        }
+        else if (args.length >= 3 && args[1].equals("fen"))
+        {
+            s = Pdn.parseFen(args[2], D);
+            i = 3;
+        }
+        else
+            throw new FormatException("usage: position startpos|fen <fen> [moves <move>...]");
+
+        PositionHistory h = new PositionHistory();
+        h.push(Zobrist.hash(D, s), true);
+        if (i < args.length)
+        {
+            if (!args[i].equals("moves"))
+                throw new FormatException("expected moves, found " + args[i]);
+            for (i++; i < args.length; i++)
+            {
+                Move move = Pdn.parseMove(args[i], D, s);
+                boolean irreversible = PositionHistory.isIrreversible(D, move);
+                Utils.execute(D, move);
+                s = Utils.otherSide(s);
+                h.push(Zobrist.hash(D, s), irreversible);
+            }
+        }
+
+        bs = D;
+        side = s;
+        history = h;
+        out.reply("ok");
+    }
+
+    protected void go(String[] args) throws FormatException
+    {
+        long moveTime = -1;
+        int depth = -1;
+        try {
+            for (int i = 1; i < args.length; i += 2)
+            {
+                if (i + 1 >= args.length)
+                    throw new FormatException("missing value of " + args[i]);
+                if (args[i].equals("movetime"))
+                    moveTime = Long.parseLong(args[i + 1]);
+                else if (args[i].equals("depth"))
+                    depth = Integer.parseInt(args[i + 1]);
+                else
+                    throw new FormatException("unknown option " + args[i]);
+            }
+        } catch (NumberFormatException e) {
+            throw new FormatException("bad number " + e.getMessage());
+        }
+        if (moveTime < 0)
+            moveTime = depth > 0 ? 0 : DEFAULT_MOVE_TIME;
+
+        if (!Utils.hasAnyMove(bs, side))
+        {
+            out.reply("bestmove none");
+            return;
+        }
+
+        if (players[side] == null)
+            players[side] = pool.borrow(playerClass, side);
+        players[side].setDepthLimit(depth > 0 ? depthLimitOf(depth) : 1000);
+        if (players[side] instanceof RepetitionAwareCheckersPlayer)
+            ((RepetitionAwareCheckersPlayer)players[side]).setPositionHistory(
+                    new PositionHistory(history));
+
+        search = new Search(players[side], bs.clone(), side, moveTime);
+        workers.execute(search);
+    }
+
+    /** Called on the event thread when the search in progress has ended. */
+    protected void finished(String reply)
+    {
+        search = null;
+        if (closed)
+        {
+            releasePlayers();
+            return;
+        }
+
+        out.reply(reply);
+        while (search == null && !closed && !pending.isEmpty())
+            execute(pending.poll());
+        if (search == null && !closed && onInputEnded != null)
+            endInput();
+    }
+
+    protected void releasePlayers()
+    {
+        for (int i : new int[] {RED, BLK})
+            if (players[i] != null)
+            {
+                pool.release(playerClass, i, players[i]);
+                players[i] = null;
+            }
+    }
+
+    /**
+     * Gets the CPU time used by every thread of this process.
+     * @return          the CPU time, in nanoseconds, or <code>-1</code> if the
+     *                  JVM cannot measure it
+     */
+    public static long processCpuTime()
+    {
+        OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        if (os instanceof com.sun.management.OperatingSystemMXBean)
+            return ((com.sun.management.OperatingSystemMXBean)os).getProcessCpuTime();
+        return -1;
+    }
+
+    /**
+     * This class lets a player calculate its move on a worker thread, under
+     * the control of a {@link TurnAgent TurnAgent}, as the controller of a
+     * game would.
+     */
+    protected class Search implements Runnable
+    {
+        protected final CheckersPlayer cp;
+        protected final int[] bs;
+        protected final int side;
+        protected final long moveTime;
+
+        protected boolean started;
+        protected boolean stopped;
+
+        public Search(CheckersPlayer cp, int[] bs, int side, long moveTime)
+        {
+            this.cp = cp;
+            this.bs = bs;
+            this.side = side;
+            this.moveTime = moveTime;
+        }
+
+        public void run()
+        {
+            String reply;
+            try {
+                reply = calculate();
+            } catch (InterruptedException e) {
+                reply = "error interrupted";
+            } catch (RuntimeException e) {
+                reply = "error " + e;
+            }
+
+            final String r = reply;
+            events.execute(new Runnable() {
+                public void run() { finished(r); }
+            });
+        }
+
+        protected String calculate() throws InterruptedException
+        {
+            long start = System.nanoTime();
+            long cpuStart = processCpuTime();
+            synchronized (this)
+            {
+                agent.startCalculate(cp, bs.clone());
+                started = true;
+                if (stopped)
+                    agent.stopCalculate();
+            }
+            if (!agent.awaitMove(moveTime))
+                stop();
+
+            /* Wait for the stopped thread to release the player */
+            synchronized (cp) { }
+            long millis = (System.nanoTime() - start) / 1000000;
+            long cpuEnd = processCpuTime();
+
+            Move move = agent.getForcedMove();
+            if (move == null || !Utils.isValidMove(bs, side, move))
+                return "error no move";
+
+            StringBuilder r = new StringBuilder();
+            r.append("bestmove ").append(Pdn.reprMove(move)).append(" time ").append(millis);
+            ResourceUsage usage = agent.getUsage();
+            if (usage != null && usage.getCpuTime() >= 0)
+                r.append(" cpu ").append(usage.getCpuTime() / 1000000);
+            if (usage != null && usage.getAllocatedBytes() >= 0)
+                r.append(" alloc ").append(usage.getAllocatedBytes());
+            if (cpuStart >= 0)
+            {
+                r.append(" pcpu ").append((cpuEnd - cpuStart) / 1000000);
+                if (lastCpuTime >= 0)
+                    r.append(" offcpu ").append((cpuStart - lastCpuTime) / 1000000);
+            }
+            lastCpuTime = cpuEnd;
+            return r.toString();
+        }
+
+        /**
+         * Stops this search, if it has not already ended. It may be called
+         * from any thread.
+         */
+        public synchronized void stop()
+        {
+            stopped = true;
+            if (started && !agent.hasMove())
+                agent.stopCalculate();
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package cs540.checkers.engine;
+import static cs540.checkers.CheckersConsts.*;
+
+import cs540.checkers.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * This class keeps the checkers players of an {@link EngineServer
+ * EngineServer} alive between the sessions which use them, so that a
+ * player's loaded data and search state, and the code the JIT compiled for
+ * it, outlive a single game.
+ * <p>
+ * Players are kept by class and side. A player is lent to one session at a
+ * time, since players are not thread safe; when every player of a class
+ * and side is in use, another is created.
+ */
+public class PlayerPool
+{
+    /** The idle players, keyed by class name and side. */
+    protected final ConcurrentMap<String, Queue<CheckersPlayer>> idle =
+        new ConcurrentHashMap<String, Queue<CheckersPlayer>>();
+
+    /**
+     * Constructs an empty pool.
+     */
+    public PlayerPool() { }
+
+    /**
+     * Lends a player to the caller, creating one if none is idle.
+     * @param className the fully qualified class name of the player
+     * @param side      the side the player is on
+     * @return          the player
+     * @throws IllegalArgumentException     if the player cannot be created
+     */
+    public CheckersPlayer borrow(String className, int side)
+    {
+        CheckersPlayer cp = queue(className, side).poll();
+        if (cp != null)
+            return cp;
+
+        String name = className.substring(className.lastIndexOf('.') + 1);
+        return Checkers.createCheckersPlayer(className, name, side);
+    }
+
+    /**
+     * Returns a player lent by {@link #borrow borrow} to the pool. The
+     * player must not be calculating a move.
+     * @param className the class name the player was borrowed by
+     * @param side      the side the player is on
+     * @param cp        the player
+     */
+    public void release(String className, int side, CheckersPlayer cp)
+    {
+        queue(className, side).add(cp);
+    }
+
+    /**
+     * Creates a player for each side and lets both think about the initial
+     * position, so that the first session to use them is not slowed by
+     * class loading and compilation.
+     * @param className the fully qualified class name of the player
+     * @param millis    how long each player thinks, in milliseconds
+     * @throws IllegalArgumentException     if the player cannot be created
+     */
+    public void warmUp(String className, long millis)
+    {
+        int[] bs = Utils.INITIAL_BOARDSTATE.clone();
+        int side = Utils.INITIAL_SIDE;
+        TurnAgent agent = new TurnAgent();
+        for (int i = 0; i < 2; i++)
+        {
+            CheckersPlayer cp = borrow(className, side);
+            agent.startCalculate(cp, bs.clone());
+            try {
+                if (!agent.awaitMove(millis))
+                    agent.stopCalculate();
+            } catch (InterruptedException e) {
+                agent.stopCalculate();
+                Thread.currentThread().interrupt();
+            }
+
+            /* Wait for the stopped thread to release the player */
+            synchronized (cp) { }
+            release(className, side, cp);
+
+            Move move = cp.getMove();
+            if (move == null || !Utils.isValidMove(bs, side, move))
+                break;
+            Utils.execute(bs, move);
+            side = Utils.otherSide(side);
+        }
+    }
+
+    protected Queue<CheckersPlayer> queue(String className, int side)
+    {
+        String key = className + (side == RED ? ":red" : ":blk");
+        Queue<CheckersPlayer> q = idle.get(key);
+        if (q == null)
+        {
+            idle.putIfAbsent(key, new ConcurrentLinkedQueue<CheckersPlayer>());
+            q = idle.get(key);
+        }
+        return q;
+    }
+}
@@ -0,0 +1,561 @@
+package cs540.checkers.engine;
+import static cs540.checkers.CheckersConsts.*;
+
+import cs540.checkers.*;
+import cs540.checkers.pdn.*;
+
+import java.io.*;
+import java.net.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * This checkers player forwards each move to an engine in another process,
+ * which speaks the protocol of {@link EngineSession EngineSession}. The
+ * engine is either started as a child process which serves the protocol on
+ * its standard input and output, or reached at the address of an
+ * {@link EngineServer EngineServer}.
+ * <p>
+ * The engine is given the turn time, less a margin for the round trip, as
+ * its move time, and this player stops waiting for it when the margin is
+ * half used, so it returns before the controller's turn clock runs out and
+ * its thread is never stopped. Until the engine answers, the move of this
+ * player is its first legal move. An engine which misses its time is told
+ * to stop; if it has still not answered when the next turn starts, it is
+ * killed and started again.
+ * <p>
+ * Each turn's commands are written at once, without waiting for the reply
+ * to each, and replies are read on a separate thread. The round trip
+ * overhead of each move, the time it took less the time the engine reports
+ * it searched, is measured.
+ * <p>
+ * The engine is chosen with system properties, which may be qualified by
+ * side, e.g. <code>cs540.checkers.remote.engine.red</code>:
+ * <ul>
+ * <li><code>cs540.checkers.remote.engine</code>: <code>tcp:&lt;host&gt;:&lt;port&gt;</code>,
+ * <code>unix:&lt;path&gt;</code>, or a command line to start the engine
+ * with; by default, an <code>EngineServer --stdio</code> on the classpath
+ * of this program;
+ * <li><code>cs540.checkers.remote.player</code>: the player the engine
+ * should use, as on the command line of {@link Checkers Checkers}, e.g.
+ * <code>.cs540.checkers.dhe.DhePlayer</code>;
+ * <li><code>cs540.checkers.remote.margin</code>: the margin, in
+ * milliseconds, by default <code>100</code>;
+ * <li><code>cs540.checkers.remote.heap</code>: the most heap, in megabytes,
+ * of an engine this player starts; an engine which needs more exits, and
+ * is started again on the next turn.
+ * </ul>
+ * The resources the engine reports it used for each move are passed on as
+ * this player's {@link ResourceUsage ResourceUsage}. An engine this player
+ * starts serves only this player, so the CPU time of its process counts
+ * every thread the engine's player starts, and its CPU time between turns
+ * shows whether it kept working during its opponent's turns.
+ */
+public class RemoteEnginePlayer extends CheckersPlayer
+    implements TimedCheckersPlayer, MeteredCheckersPlayer
+{
+    /** The prefix of the system properties which configure this player. */
+    public static final String PROPERTY = "cs540.checkers.remote.";
+
+    /** The time kept back from the engine for the round trip by default, in milliseconds. */
+    public static final long DEFAULT_MARGIN = 100;
+
+    /**
+     * How long the player of an engine this player starts thinks about the
+     * opening to warm up, in milliseconds.
+     */
+    public static final long WARMUP_TIME = 300;
+
+    /** The move time given to the engine when there is no turn limit. */
+    public static final long DEFAULT_MOVE_TIME = EngineSession.DEFAULT_MOVE_TIME;
+
+    protected final String engine;
+    protected final String player;
+    protected final long margin;
+    protected final int heapLimit;
+
+    protected volatile long turnTime = -1;
+    protected volatile ResourceUsage usage;
+
+    /* The connection to the engine, or null if it must be started */
+    protected final Object connectLock = new Object();
+    /** Whether the engine has been started once, and whether it is being restarted. */
+    protected volatile boolean started, restarting;
+    protected Process process;
+    protected Closeable channel;
+    protected Writer out;
+    protected Thread reader;
+
+    /** Guards the reply state below, which the reader thread updates. */
+    protected final Object lock = new Object();
+    /** The number of commands sent, and of replies received. */
+    protected long sent, received;
+    /** The sequence number of the first command of this turn. */
+    protected long turnStart;
+    /** The replies to the commands of this turn. */
+    protected final List<String> turnReplies = new ArrayList<String>();
+    /** True if the reader thread has seen the connection end. */
+    protected boolean eof;
+
+    /* The round trip statistics */
+    protected long moveCount;
+    protected long overheadTotal, overheadMax;
+    protected long lastOverhead;
+
+    /**
+     * Constructs a player which forwards its moves to the engine named by
+     * the system properties. The engine is started or connected to on the
+     * first move.
+     * @param name      the name of this player
+     * @param side      the side this player is on
+     */
+    public RemoteEnginePlayer(String name, int side)
+    {
+        this(name, side, property("engine", side), property("player", side),
+                Long.parseLong(property("margin", side, String.valueOf(DEFAULT_MARGIN))),
+                Integer.parseInt(property("heap", side, "0")));
+    }
+
+    /**
+     * Constructs a player which forwards its moves to the given engine.
+     * @param name      the name of this player
+     * @param side      the side this player is on
+     * @param engine    <code>tcp:&lt;host&gt;:&lt;port&gt;</code>,
+     *                  <code>unix:&lt;path&gt;</code>, a command line, or
+     *                  <code>null</code> to start an <code>EngineServer</code>
+     * @param player    the player the engine should use, or <code>null</code>
+     *                  for its default
+     * @param margin    the time, in milliseconds, kept back from the engine
+     *                  for the round trip
+     * @param heapLimit the most heap, in megabytes, of an engine this player
+     *                  starts, or <code>0</code> for the JVM's default
+     */
+    public RemoteEnginePlayer(String name, int side, String engine, String player,
+            long margin, int heapLimit)
+    {
+        super(name, side);
+        this.engine = engine;
+        this.player = player;
+        this.margin = margin;
+        this.heapLimit = heapLimit;
+    }
+
+    private static String property(String key, int side)
+    {
+        return property(key, side, null);
+    }
+
+    /** Gets a property qualified by side, or else the unqualified property. */
+    private static String property(String key, int side, String def)
+    {
+        String s = side == RED ? ".red" : ".blk";
+        return System.getProperty(PROPERTY + key + s, System.getProperty(PROPERTY + key, def));
+    }
+
+    /**
+     * Starts or connects to the engine now rather than on the first move, so
+     * that the first move does not pay for starting it.
+     */
+    public void start()
+    {
+        synchronized (connectLock)
+        {
+            started = true;
+            if (out != null)
+                return;
+            try {
+                connect();
+            } catch (IOException e) {
+                System.out.println(e);
+                disconnect();
+            }
+        }
+    }
+
+    public ResourceUsage getResourceUsage()
+    {
+        return usage;
+    }
+
+    public void setTurnTime(long millis)
+    {
+        turnTime = millis;
+    }
+
+    public void calculateMove(int[] bs)
+    {
+        List<Move> moves = Utils.getAllPossibleMoves(bs, side);
+        setMove(moves.get(0));
+
+        long start = System.nanoTime();
+        usage = null;
+        long limit = turnTime;
+        long moveTime = limit < 0 ? DEFAULT_MOVE_TIME : Math.max(limit - margin, 1);
+        long waitTime = limit < 0 ? 0 : Math.max(limit - margin / 2, 1);
+
+        /* A depth limit alone bounds the search if there is no turn limit */
+        if (depthLimit < 1000 && limit < 0)
+            moveTime = 0;
+
+        try {
+            /* Give a late reply of the last turn a little longer; an engine
+             * which still has not answered is killed, and started again
+             * while the opponent thinks, rather than on this turn's time */
+            if (out != null && !awaitAnswered(start, margin / 2))
+            {
+                System.out.println(name + ": engine has not answered since the last turn; killing it");
+                disconnect();
+                restartLater();
+                return;
+            }
+
+            /* The engine is started on the first move if it was not started
+             * before; later, it is started again in the background */
+            if (restarting)
+                return;
+            if (out == null && started)
+            {
+                restartLater();
+                return;
+            }
+            start();
+            if (out == null)
+                return;
+
+            /* Send the turn's commands at once */
+            StringBuilder cmds = new StringBuilder();
+            cmds.append("position fen ").append(Pdn.reprFen(bs, side)).append('\n');
+            cmds.append("go");
+            if (moveTime > 0)
+                cmds.append(" movetime ").append(moveTime);
+            if (depthLimit < 1000)
+                cmds.append(" depth ").append(Math.max(1, EngineSession.depthOf(depthLimit)));
+            cmds.append('\n');
+
+            long sendTime = System.nanoTime();
+            send(cmds.toString(), 2, true);
+
+            String reply = await(2, start, waitTime);
+            if (reply == null)
+            {
+                System.out.println(name + ": engine did not answer in time");
+                send("stop\n", 1, false);
+                return;
+            }
+
+            String[] f = reply.split("\\s+");
+            if (!f[0].equals("bestmove") || f.length < 2)
+            {
+                System.out.println(name + ": engine replied " + reply);
+                return;
+            }
+            if (f[1].equals("none"))
+                return;
+            setMove(Pdn.parseMove(f[1], bs, side));
+
+            Map<String, Long> stats = new HashMap<String, Long>();
+            for (int i = 2; i + 1 < f.length; i += 2)
+                stats.put(f[i], Long.parseLong(f[i + 1]));
+            usage = new ResourceUsage(System.nanoTime() - start, stat(stats, "cpu", 1000000),
+                    stat(stats, "alloc", 1), stat(stats, "pcpu", 1000000), stat(stats, "offcpu", 1000000));
+
+            /* The engine's own time is its search; the rest is overhead */
+            long searched = stat(stats, "time", 1000000);
+            lastOverhead = Math.max(System.nanoTime() - sendTime - Math.max(searched, 0), 0);
+            overheadTotal += lastOverhead;
+            overheadMax = Math.max(overheadMax, lastOverhead);
+            moveCount++;
+            if (Utils.verbose)
+                System.out.printf("%s: %s, round trip overhead %.2f ms%n", name, reply, lastOverhead / 1e6);
+        } catch (NumberFormatException e) {
+            System.out.println(name + ": cannot parse the engine's reply: " + e.getMessage());
+        } catch (IOException e) {
+            System.out.println(e);
+            disconnect();
+            restartLater();
+        } catch (FormatException e) {
+            System.out.println(name + ": engine chose an illegal move: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (usage == null)
+                usage = new ResourceUsage(System.nanoTime() - start, -1, -1, -1, -1);
+        }
+    }
+
+    /** Gets a statistic of a reply, scaled, or <code>-1</code> if it is missing. */
+    private static long stat(Map<String, Long> stats, String key, long scale)
+    {
+        Long v = stats.get(key);
+        return v == null ? -1 : v * scale;
+    }
+
+    /**
+     * Sends commands to the engine.
+     * @param cmds      the commands, each terminated by a newline
+     * @param count     the number of commands
+     * @param turn      whether the commands start this turn, so that only
+     *                  their replies are kept
+     */
+    protected void send(String cmds, int count, boolean turn) throws IOException
+    {
+        synchronized (lock)
+        {
+            if (turn)
+            {
+                turnStart = sent + 1;
+                turnReplies.clear();
+            }
+            sent += count;
+        }
+        out.write(cmds);
+        out.flush();
+    }
+
+    /** Starts the engine again on another thread. */
+    protected void restartLater()
+    {
+        restarting = true;
+        Thread t = new Thread(name + "-restart") {
+            public void run()
+            {
+                RemoteEnginePlayer.this.start();
+                restarting = false;
+            }
+        };
+        t.setDaemon(true);
+        t.start();
+    }
+
+    /**
+     * Waits for the engine to answer every command sent.
+     * @param start     when the turn started, from <code>System.nanoTime</code>
+     * @param waitTime  how long after the start to wait, in milliseconds
+     * @return          true if every command was answered in time
+     */
+    protected boolean awaitAnswered(long start, long waitTime) throws InterruptedException
+    {
+        long deadline = start + waitTime * 1000000;
+        synchronized (lock)
+        {
+            while (received < sent && !eof)
+            {
+                long wait = (deadline - System.nanoTime()) / 1000000;
+                if (wait <= 0)
+                    return false;
+                lock.wait(wait);
+            }
+            return received >= sent;
+        }
+    }
+
+    /**
+     * Waits for the replies to this turn's commands.
+     * @param count     the number of commands sent this turn
+     * @param start     when the turn started, from <code>System.nanoTime</code>
+     * @param waitTime  how long after the start to wait, in milliseconds, or
+     *                  <code>0</code> for no limit
+     * @return          the reply to the last command, the first error, or
+     *                  <code>null</code> if the replies did not come in time
+     */
+    protected String await(int count, long start, long waitTime)
+        throws InterruptedException, IOException
+    {
+        long deadline = start + waitTime * 1000000;
+        synchronized (lock)
+        {
+            while (turnReplies.size() < count)
+            {
+                if (!turnReplies.isEmpty() && turnReplies.get(0).startsWith("error"))
+                    return turnReplies.get(0);
+                if (eof)
+                    throw new EOFException("engine closed the connection");
+
+                long wait = waitTime == 0 ? 0 : (deadline - System.nanoTime()) / 1000000;
+                if (waitTime != 0 && wait <= 0)
+                    return null;
+                lock.wait(wait);
+            }
+            return turnReplies.get(count - 1);
+        }
+    }
+
+    /**
+     * Starts or connects to the engine, and starts the thread which reads
+     * its replies.
+     */
+    protected void connect() throws IOException
+    {
+        InputStream in;
+        OutputStream os;
+        if (engine != null && engine.startsWith("tcp:"))
+        {
+            String[] hp = engine.substring(4).split(":");
+            Socket s = new Socket(hp[0], Integer.parseInt(hp[1]));
+            s.setTcpNoDelay(true);
+            channel = s;
+            in = s.getInputStream();
+            os = s.getOutputStream();
+        }
+        else if (engine != null && engine.startsWith("unix:"))
+        {
+            final SocketChannel ch = SocketChannel.open(UnixDomainSocketAddress.of(engine.substring(5)));
+            channel = ch;
+
+            /* The streams of Channels share a lock, so a blocked read
+             * would block writes; use the channel directly */
+            in = new InputStream() {
+                public int read() throws IOException
+                {
+                    byte[] b = new byte[1];
+                    return read(b, 0, 1) < 0 ? -1 : b[0] & 0xFF;
+                }
+
+                public int read(byte[] b, int off, int len) throws IOException
+                {
+                    return ch.read(ByteBuffer.wrap(b, off, len));
+                }
+            };
+            os = new OutputStream() {
+                public void write(int b) throws IOException
+                {
+                    write(new byte[] {(byte)b}, 0, 1);
+                }
+
+                public void write(byte[] b, int off, int len) throws IOException
+                {
+                    ByteBuffer buf = ByteBuffer.wrap(b, off, len);
+                    while (buf.hasRemaining())
+                        ch.write(buf);
+                }
+            };
+        }
+        else
+        {
+            List<String> command = new ArrayList<String>();
+            if (engine != null)
+                command.addAll(Arrays.asList(engine.trim().split("\\s+")));
+            else
+            {
+                command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+                command.add("-cp");
+                command.add(System.getProperty("java.class.path"));
+                if (heapLimit > 0)
+                {
+                    command.add("-Xmx" + heapLimit + "m");
+                    command.add("-XX:+ExitOnOutOfMemoryError");
+                }
+                command.add(EngineServer.class.getName());
+                command.add("--stdio");
+                command.add("--threads");
+                command.add("1");
+                if (player != null)
+                {
+                    command.add("--preload");
+                    command.add(player);
+                    command.add("--warmup");
+                    command.add(String.valueOf(WARMUP_TIME));
+                }
+            }
+            process = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+            in = process.getInputStream();
+            os = process.getOutputStream();
+        }
+
+        out = new BufferedWriter(new OutputStreamWriter(os, StandardCharsets.US_ASCII));
+
+        /* The reader of an earlier connection may still be running, but
+         * changes nothing once it is replaced */
+        final BufferedReader br = new BufferedReader(new InputStreamReader(in, StandardCharsets.US_ASCII));
+        Thread t = new Thread(name + "-reader") {
+            public void run()
+            {
+                try {
+                    String line;
+                    while ((line = br.readLine()) != null)
+                        synchronized (lock)
+                        {
+                            if (reader != this)
+                                return;
+                            if (++received >= turnStart)
+                                turnReplies.add(line);
+                            lock.notifyAll();
+                        }
+                } catch (IOException e) {
+                    /* The connection was closed */
+                }
+                synchronized (lock)
+                {
+                    if (reader == this)
+                        eof = true;
+                    lock.notifyAll();
+                }
+            }
+        };
+        t.setDaemon(true);
+        synchronized (lock)
+        {
+            reader = t;
+            sent = received = 0;
+            turnStart = 1;
+            turnReplies.clear();
+            eof = false;
+        }
+        t.start();
+
+        if (player != null)
+        {
+            send("player " + player + "\n", 1, true);
+            try {
+                String reply = await(1, System.nanoTime(), 0);
+                if (!reply.equals("ok"))
+                    throw new IOException("engine cannot load " + player + ": " + reply);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Closes the connection to the engine, killing it if this player started
+     * it. The engine is started or connected to again on the next move.
+     */
+    public void disconnect()
+    {
+        if (process != null)
+            process.destroyForcibly();
+        try {
+            if (channel != null)
+                channel.close();
+            else if (out != null)
+                out.close();
+        } catch (IOException e) {
+            /* Already closed */
+        }
+        process = null;
+        channel = null;
+        out = null;
+    }
+
+    /**
+     * Gets the number of moves the engine has answered.
+     * @return          the number of moves
+     */
+    public long getMoveCount() { return moveCount; }
+
+    /**
+     * Gets the mean round trip overhead of a move: the time from sending the
+     * position to receiving the move, less the time the engine reports it
+     * searched.
+     * @return          the mean overhead, in nanoseconds
+     */
+    public long getMeanOverhead() { return moveCount == 0 ? 0 : overheadTotal / moveCount; }
+
+    /**
+     * Gets the greatest round trip overhead of a move.
+     * @return          the greatest overhead, in nanoseconds
+     */
+    public long getMaxOverhead() { return overheadMax; }
+}
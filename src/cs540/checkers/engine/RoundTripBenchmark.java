@@ -0,0 +1,108 @@
+package cs540.checkers.engine;
+
+import cs540.checkers.*;
+
+import java.util.*;
+
+/**
+ * This program measures the round trip overhead per move of a
+ * {@link RemoteEnginePlayer RemoteEnginePlayer}: the time from sending a
+ * position to receiving the engine's move, less the time the engine
+ * searched. The engine plays with {@link cs540.checkers.demo.RandomPlayer
+ * RandomPlayer}, which answers at once, so nearly all the time measured is
+ * overhead. For comparison, the time to get a move from the same player in
+ * this process, on its own thread as the controller does, is measured
+ * first.
+ * <p>
+ * Usage: <code>java cs540.checkers.engine.RoundTripBenchmark [moves]
+ * [engine]...</code>, where each engine is <code>child</code>, for a child
+ * process started by <code>RemoteEnginePlayer</code>, or is given as its
+ * <code>cs540.checkers.remote.engine</code> property, e.g.
+ * <code>tcp:localhost:5400</code>. By default, a child process is used.
+ */
+public class RoundTripBenchmark
+{
+    public static void main(String[] args) throws InterruptedException
+    {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        List<String> engines = new ArrayList<String>();
+        for (int i = 1; i < args.length; i++)
+            engines.add(args[i]);
+        if (engines.isEmpty())
+            engines.add("child");
+
+        List<int[]> positions = positions(n);
+
+        /* In process, on the computation thread of a TurnAgent */
+        CheckersPlayer local = Checkers.createCheckersPlayer(
+                Checkers.playerClassName("demo.Random"), "local", CheckersConsts.RED);
+        long[] times = new long[n];
+        TurnAgent agent = new TurnAgent();
+        for (int pass = 0; pass < 2; pass++)
+            for (int i = 0; i < n; i++)
+            {
+                long start = System.nanoTime();
+                agent.startCalculate(local, positions.get(i));
+                agent.awaitMove(0);
+                times[i] = System.nanoTime() - start;
+            }
+        print("in process", times);
+
+        System.setProperty(RemoteEnginePlayer.PROPERTY + "player", "demo.Random");
+        for (String engine : engines)
+        {
+            if (engine.equals("child"))
+                System.clearProperty(RemoteEnginePlayer.PROPERTY + "engine");
+            else
+                System.setProperty(RemoteEnginePlayer.PROPERTY + "engine", engine);
+            RemoteEnginePlayer remote = new RemoteEnginePlayer("remote", CheckersConsts.RED);
+            remote.setTurnTime(1000);
+
+            /* The first pass warms up both processes */
+            for (int pass = 0; pass < 2; pass++)
+                for (int i = 0; i < n; i++)
+                {
+                    remote.calculateMove(positions.get(i));
+                    times[i] = remote.lastOverhead;
+                }
+            remote.disconnect();
+            print(engine, times);
+        }
+    }
+
+    /** Returns positions with red to move, from random games. */
+    static List<int[]> positions(int n)
+    {
+        Random random = new Random(1);
+        List<int[]> positions = new ArrayList<int[]>();
+        int[] bs = Utils.INITIAL_BOARDSTATE.clone();
+        int side = Utils.INITIAL_SIDE;
+        while (positions.size() < n)
+        {
+            List<Move> moves = Utils.getAllPossibleMoves(bs, side);
+            if (moves.isEmpty())
+            {
+                bs = Utils.INITIAL_BOARDSTATE.clone();
+                side = Utils.INITIAL_SIDE;
+                continue;
+            }
+            if (side == CheckersConsts.RED)
+                positions.add(bs.clone());
+            Utils.execute(bs, moves.get(random.nextInt(moves.size())));
+            side = Utils.otherSide(side);
+        }
+        return positions;
+    }
+
+    static void print(String name, long[] times)
+    {
+        long[] sorted = times.clone();
+        Arrays.sort(sorted);
+        long total = 0;
+        for (long t : sorted)
+            total += t;
+        System.out.printf("%-24s mean %7.3f ms  median %7.3f ms  p99 %7.3f ms  max %7.3f ms%n", name,
+                total / 1e6 / sorted.length, sorted[sorted.length / 2] / 1e6,
+                sorted[sorted.length * 99 / 100] / 1e6, sorted[sorted.length - 1] / 1e6);
+    }
+}
@@ -0,0 +1,35 @@
+package cs540.checkers.jfr;
+
+import jdk.jfr.*;
+
+/**
+ * This Flight Recorder event records one call to 
+ * {@link cs540.checkers.CheckersController#step CheckersController.step},
+ * including the model state it acted on and the state it left behind.
+ */
+@Name("cs540.checkers.ControllerStep")
+@Label("Controller Step")
+@Category({"Checkers", "Controller"})
+@Description("A step of the checkers controller through the model's state transition table")
+@StackTrace(false)
+public class ControllerStepEvent extends Event
+{
+    @Label("State")
+    @Description("The model state before the step")
+    public String state;
+
+    @Label("Next State")
+    @Description("The model state after the step")
+    public String nextState;
+
+    @Label("Side")
+    public String side;
+
+    @Label("Result")
+    @Description("Nanoseconds until the next step, 0 to continue, or -1 to break the loop")
+    public long result;
+
+    @Label("Forced Move")
+    @Description("Whether the turn clock expired and a move was forcefully obtained")
+    public boolean forced;
+}
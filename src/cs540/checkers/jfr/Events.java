@@ -0,0 +1,32 @@
+package cs540.checkers.jfr;
+
+/**
+ * This class initializes the Flight Recorder event classes of this package.
+ * <p>
+ * Initializing an event class is slow, since Flight Recorder instruments it
+ * when it is loaded. A computation or pondering thread stopped at the turn
+ * limit while an event class it first used was initializing would leave the
+ * class unusable, and the player without moves, for the rest of the game.
+ * {@link cs540.checkers.TurnAgent TurnAgent} therefore calls
+ * {@link #initialize initialize} before it starts any such thread.
+ */
+public class Events
+{
+    private static boolean initialized;
+
+    private Events() { }
+
+    /**
+     * Initializes every event class of this package, if it has not been done.
+     */
+    public static synchronized void initialize()
+    {
+        if (initialized)
+            return;
+        new ControllerStepEvent();
+        new MakeMoveEvent();
+        new SearchIterationEvent();
+        new TurnCalculationEvent();
+        initialized = true;
+    }
+}
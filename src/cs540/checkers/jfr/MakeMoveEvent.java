@@ -0,0 +1,35 @@
+package cs540.checkers.jfr;
+
+import jdk.jfr.*;
+
+/**
+ * This Flight Recorder event spans a call to
+ * {@link cs540.checkers.CheckersModel#makeMove CheckersModel.makeMove},
+ * including validation, execution, and notification of listeners.
+ */
+@Name("cs540.checkers.MakeMove")
+@Label("Make Move")
+@Category({"Checkers", "Model"})
+@Description("A move made on the checkers model")
+@StackTrace(false)
+public class MakeMoveEvent extends Event
+{
+    @Label("Side")
+    public String side;
+
+    @Label("Move")
+    public String move;
+
+    @Label("Ply")
+    @Description("The number of moves made before this move")
+    public int ply;
+
+    @Label("Valid")
+    @Description("Whether the move was legal")
+    public boolean valid;
+
+    @Label("Turn Time")
+    @Description("Milliseconds the game clock charged for this turn")
+    @Timespan(Timespan.MILLISECONDS)
+    public long turnTime;
+}
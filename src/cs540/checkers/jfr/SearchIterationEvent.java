@@ -0,0 +1,32 @@
+package cs540.checkers.jfr;
+
+import jdk.jfr.*;
+
+/**
+ * This Flight Recorder event spans one iteration of a player's iterative 
+ * deepening search.
+ */
+@Name("cs540.checkers.SearchIteration")
+@Label("Search Iteration")
+@Category({"Checkers", "Search"})
+@Description("One iteration of an iterative deepening search")
+@StackTrace(false)
+public class SearchIterationEvent extends Event
+{
+    @Label("Player")
+    public String player;
+
+    @Label("Depth")
+    public int depth;
+
+    @Label("Nodes")
+    @Description("Nodes visited by this iteration")
+    public long nodes;
+
+    @Label("Score")
+    @Description("Score of the best move from the searching side's position")
+    public int score;
+
+    @Label("Best Move")
+    public String move;
+}
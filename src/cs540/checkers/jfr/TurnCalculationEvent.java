@@ -0,0 +1,37 @@
+package cs540.checkers.jfr;
+
+import jdk.jfr.*;
+
+/**
+ * This Flight Recorder event spans a player's move calculation on the
+ * computation thread of a {@link cs540.checkers.TurnAgent TurnAgent}, from
+ * <code>startCalculate</code> until the player returns or is stopped.
+ */
+@Name("cs540.checkers.TurnCalculation")
+@Label("Turn Calculation")
+@Category({"Checkers", "Turn"})
+@Description("A checkers player calculating its move")
+@StackTrace(false)
+public class TurnCalculationEvent extends Event
+{
+    /** The player returned from <code>calculateMove</code>. */
+    public static final String FINISHED = "FINISHED";
+    /** <code>calculateMove</code> threw an exception. */
+    public static final String FAILED = "FAILED";
+    /** The calculation was forcefully stopped, usually by the turn clock. */
+    public static final String STOPPED = "STOPPED";
+
+    @Label("Player")
+    public String player;
+
+    @Label("Side")
+    public String side;
+
+    @Label("Outcome")
+    @Description("FINISHED, FAILED, or STOPPED")
+    public String outcome;
+
+    @Label("Move")
+    @Description("The move chosen by the player when the calculation ended")
+    public String move;
+}
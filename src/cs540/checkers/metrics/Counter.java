@@ -0,0 +1,33 @@
+package cs540.checkers.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A metric which only increases, such as the number of moves made. Rates, 
+ * such as moves per second, are derived from counters by the monitoring 
+ * system.
+ */
+public class Counter extends Metric
+{
+    protected final LongAdder value = new LongAdder();
+
+    /** Increments this counter by one. */
+    public void inc() { value.increment(); }
+
+    /**
+     * Increments this counter.
+     * @param n         the non-negative amount to add
+     */
+    public void add(long n) { value.add(n); }
+
+    /**
+     * Gets the value of this counter.
+     * @return          the value of this counter
+     */
+    public long get() { return value.sum(); }
+
+    protected void write(StringBuilder out, String name, String labels)
+    {
+        sample(out, name, labels, Long.toString(get()));
+    }
+}
@@ -0,0 +1,210 @@
+package cs540.checkers.metrics;
+
+import cs540.checkers.*;
+
+import java.util.*;
+import javax.swing.event.*;
+
+/**
+ * This listener records game and engine metrics of one or more
+ * {@link CheckersModel CheckersModel}s in a {@link MetricsRegistry
+ * MetricsRegistry}. It is attached to models as a <code>GameListener</code>
+ * and a <code>ChangeListener</code>, so neither the players nor the
+ * controller need to be aware of it.
+ * <p>
+ * The following metrics are recorded:
+ * <ul>
+ * <li><code>checkers_games_started_total</code>, and
+ * <code>checkers_games_finished_total</code> by result;
+ * <li><code>checkers_games_in_progress</code>;
+ * <li><code>checkers_moves_total</code> by side, whose rate is the number
+ * of moves per second;
+ * <li><code>checkers_forfeits_total</code> by reason;
+ * <li><code>checkers_forced_moves_total</code> by side, counting moves taken
+ * because the turn clock expired;
+ * <li><code>checkers_search_nodes_total</code> and
+ * <code>checkers_search_nodes_per_second</code> by side, from the reports of
+ * {@link InstrumentedCheckersPlayer InstrumentedCheckersPlayer}s;
+ * <li><code>checkers_turn_seconds</code> by side, a histogram of the wall
+ * time between the start of a turn and its move;
+ * <li><code>checkers_cpu_milliseconds_total</code> and
+ * <code>checkers_allocated_bytes_total</code> by side, the CPU time and
+ * memory used to select moves, from {@link UsageEvent UsageEvent}s; for
+ * players in a process of their own, the CPU time of the whole process.
+ * </ul>
+ * A single <code>GameMetrics</code> may be attached to any number of models.
+ */
+public class GameMetrics implements GameListener, ChangeListener
+{
+    protected final MetricsRegistry registry;
+
+    protected final Counter gamesStarted;
+    protected final Gauge gamesInProgress;
+    protected final Counter[] moves = new Counter[2];
+    protected final Counter[] forcedMoves = new Counter[2];
+    protected final Counter[] searchNodes = new Counter[2];
+    protected final Gauge[] searchNps = new Gauge[2];
+    protected final Histogram[] turnSeconds = new Histogram[2];
+    protected final Counter[] cpuMillis = new Counter[2];
+    protected final Counter[] allocatedBytes = new Counter[2];
+
+    /** The start time of the current turn of each attached model. */
+    protected final Map<CheckersModel, Long> turnStart =
+        Collections.synchronizedMap(new WeakHashMap<CheckersModel, Long>());
+
+    /** The attached models whose games have not yet ended. */
+    protected final Set<CheckersModel> running =
+        Collections.synchronizedSet(
+                Collections.newSetFromMap(new WeakHashMap<CheckersModel, Boolean>()));
+
+    /**
+     * Constructs a <code>GameMetrics</code> which records to the specified
+     * registry.
+     * @param registry      the registry to record metrics in
+     */
+    public GameMetrics(MetricsRegistry registry)
+    {
+        this.registry = registry;
+
+        gamesStarted = registry.counter("checkers_games_started_total",
+                "Games started");
+        gamesInProgress = registry.gauge("checkers_games_in_progress",
+                "Games started but not yet finished");
+
+        for (int side : new int[] {CheckersConsts.RED, CheckersConsts.BLK})
+        {
+            String s = Utils.reprSide(side);
+            moves[side] = registry.counter("checkers_moves_total",
+                    "Moves made", "side", s);
+            forcedMoves[side] = registry.counter("checkers_forced_moves_total",
+                    "Moves taken because the turn clock expired", "side", s);
+            searchNodes[side] = registry.counter("checkers_search_nodes_total",
+                    "Nodes searched by instrumented players", "side", s);
+            searchNps[side] = registry.gauge("checkers_search_nodes_per_second",
+                    "Search speed of the most recent instrumented move", "side", s);
+            turnSeconds[side] = registry.histogram("checkers_turn_seconds",
+                    "Wall time from the start of a turn to its move",
+                    Histogram.LATENCY_BUCKETS, "side", s);
+            cpuMillis[side] = registry.counter("checkers_cpu_milliseconds_total",
+                    "CPU time used to select moves", "side", s);
+            allocatedBytes[side] = registry.counter("checkers_allocated_bytes_total",
+                    "Memory allocated to select moves", "side", s);
+        }
+    }
+
+    /**
+     * Attaches this listener to the specified model.
+     * @param model         the model to record metrics of
+     */
+    public void attach(CheckersModel model)
+    {
+        model.addGameListener(this);
+        model.addChangeListener(this);
+    }
+
+    /**
+     * Detaches this listener from the specified model.
+     * @param model         the model to stop recording metrics of
+     */
+    public void detach(CheckersModel model)
+    {
+        model.removeGameListener(this);
+        model.removeChangeListener(this);
+        if (running.remove(model))
+            gamesInProgress.dec();
+        turnStart.remove(model);
+    }
+
+    public void gameChanged(GameEvent e)
+    {
+        CheckersModel model = (CheckersModel)e.getSource();
+        String action = e.getAction();
+
+        if (action.equals("START"))
+        {
+            gamesStarted.inc();
+            if (running.add(model))
+                gamesInProgress.inc();
+        }
+        else if (action.equals("WAIT"))
+            turnStart.put(model, System.nanoTime());
+        else if (action.equals("MOVE"))
+        {
+            /* The model has already swapped sides */
+            int side = Utils.otherSide(model.getSide());
+            moves[side].inc();
+
+            Long start = turnStart.remove(model);
+            if (start != null)
+                turnSeconds[side].observe((System.nanoTime() - start) / 1e9);
+        }
+        else if (action.equals("TIMEOUT"))
+            forcedMoves[model.getSide()].inc();
+        else if (action.equals("FORFEIT"))
+            registry.counter("checkers_forfeits_total", "Games forfeited",
+                    "reason", forfeitReason(e.getDetails())).inc();
+        else if (action.equals("WIN") || action.equals("DRAW") ||
+                 action.equals("CRASH"))
+            registry.counter("checkers_games_finished_total", "Games finished",
+                    "result", action).inc();
+        else if (e instanceof SearchEvent)
+        {
+            SearchEvent se = (SearchEvent)e;
+            searchNodes[se.getSide()].add(se.getReport().getNodes());
+            searchNps[se.getSide()].set(se.getReport().getNodesPerSecond());
+        }
+        else if (e instanceof UsageEvent)
+        {
+            UsageEvent ue = (UsageEvent)e;
+            ResourceUsage u = ue.getUsage();
+            long cpu = Math.max(u.getCpuTime(), u.getProcessCpuTime());
+            if (cpu >= 0)
+                cpuMillis[ue.getSide()].add(cpu / 1000000);
+            if (u.getAllocatedBytes() >= 0)
+                allocatedBytes[ue.getSide()].add(u.getAllocatedBytes());
+        }
+    }
+
+    public void stateChanged(ChangeEvent e)
+    {
+        CheckersModel model = (CheckersModel)e.getSource();
+        switch (model.getState())
+        {
+            case FINISHED:
+            case INVALID:
+                if (running.remove(model))
+                    gamesInProgress.dec();
+                turnStart.remove(model);
+                break;
+            default:
+        }
+    }
+
+    /**
+     * Extracts the reason from the details of a <code>FORFEIT</code> event,
+     * e.g. <code>"RED (reason: invalid move e3-f4)"</code>. Words containing
+     * digits, such as moves, are dropped to keep the number of distinct
+     * reasons small.
+     */
+    protected static String forfeitReason(String details)
+    {
+        int i = details.indexOf("(reason: ");
+        if (i < 0)
+            return "unknown";
+
+        String reason = details.substring(i + 9);
+        if (reason.endsWith(")"))
+            reason = reason.substring(0, reason.length() - 1);
+
+        StringBuilder s = new StringBuilder();
+        for (String word : reason.split(" "))
+        {
+            if (word.matches(".*[0-9].*") || word.length() == 0)
+                continue;
+            if (s.length() > 0)
+                s.append(' ');
+            s.append(word);
+        }
+        return s.length() > 0 ? s.toString() : "unknown";
+    }
+}
@@ -0,0 +1,35 @@
+package cs540.checkers.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A metric whose value may go up and down, such as the number of games in 
+ * progress.
+ */
+public class Gauge extends Metric
+{
+    protected final AtomicLong value = new AtomicLong();
+
+    /** Increments this gauge by one. */
+    public void inc() { value.incrementAndGet(); }
+
+    /** Decrements this gauge by one. */
+    public void dec() { value.decrementAndGet(); }
+
+    /**
+     * Sets the value of this gauge.
+     * @param v         the new value
+     */
+    public void set(long v) { value.set(v); }
+
+    /**
+     * Gets the value of this gauge.
+     * @return          the value of this gauge
+     */
+    public long get() { return value.get(); }
+
+    protected void write(StringBuilder out, String name, String labels)
+    {
+        sample(out, name, labels, Long.toString(get()));
+    }
+}
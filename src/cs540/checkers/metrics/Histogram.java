@@ -0,0 +1,73 @@
+package cs540.checkers.metrics;
+
+import java.util.concurrent.atomic.*;
+
+/**
+ * A metric which counts observations, such as turn latencies, in buckets 
+ * with fixed upper bounds. Following Prometheus conventions, durations are
+ * observed in seconds.
+ */
+public class Histogram extends Metric
+{
+    /** The default bucket bounds, in seconds, suitable for turn latencies. */
+    public static final double[] LATENCY_BUCKETS = {
+        0.001, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10, 30
+    };
+
+    protected final double[] bounds;
+    protected final LongAdder[] counts;
+    protected final DoubleAdder sum = new DoubleAdder();
+
+    /**
+     * Constructs a histogram with the specified bucket bounds.
+     * @param bounds    the increasing upper bounds of the buckets; an 
+     *                  unbounded bucket is always added
+     */
+    public Histogram(double[] bounds)
+    {
+        this.bounds = bounds.clone();
+        counts = new LongAdder[bounds.length + 1];
+        for (int i = 0; i < counts.length; i++)
+            counts[i] = new LongAdder();
+    }
+
+    /**
+     * Records an observation.
+     * @param v         the observed value
+     */
+    public void observe(double v)
+    {
+        int i = 0;
+        while (i < bounds.length && v > bounds[i])
+            i++;
+        counts[i].increment();
+        sum.add(v);
+    }
+
+    /**
+     * Gets the number of observations.
+     * @return          the number of observations
+     */
+    public long getCount()
+    {
+        long n = 0;
+        for (LongAdder c : counts)
+            n += c.sum();
+        return n;
+    }
+
+    protected void write(StringBuilder out, String name, String labels)
+    {
+        String sep = labels.length() > 0 ? labels + "," : "";
+        long cumulative = 0;
+        for (int i = 0; i < counts.length; i++)
+        {
+            cumulative += counts[i].sum();
+            String le = i < bounds.length ? Double.toString(bounds[i]) : "+Inf";
+            sample(out, name + "_bucket", sep + "le=\"" + le + "\"", 
+                    Long.toString(cumulative));
+        }
+        sample(out, name + "_sum", labels, Double.toString(sum.sum()));
+        sample(out, name + "_count", labels, Long.toString(cumulative));
+    }
+}
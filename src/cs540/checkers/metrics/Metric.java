@@ -0,0 +1,29 @@
+package cs540.checkers.metrics;
+
+/**
+ * The base class of the values kept by a {@link MetricsRegistry 
+ * MetricsRegistry}. All metrics are safe to update from any thread.
+ */
+public abstract class Metric
+{
+    /**
+     * Appends this metric's samples in the Prometheus text exposition format.
+     * @param out       the buffer to append to
+     * @param name      the name of the metric family
+     * @param labels    the label set of this metric, e.g. 
+     *                  <code>side="RED"</code>, or the empty string
+     */
+    protected abstract void write(StringBuilder out, String name, String labels);
+
+    /**
+     * Appends one sample line.
+     */
+    protected static void sample(StringBuilder out, String name, String labels, 
+            String value)
+    {
+        out.append(name);
+        if (labels.length() > 0)
+            out.append('{').append(labels).append('}');
+        out.append(' ').append(value).append('\n');
+    }
+}
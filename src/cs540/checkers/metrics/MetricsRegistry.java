@@ -0,0 +1,170 @@
+package cs540.checkers.metrics;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * This class keeps named metrics and formats them in the Prometheus text 
+ * exposition format. Metrics with the same name but different label values 
+ * form one <i>family</i>; for example, forfeits are counted per reason.
+ * <p>
+ * Metrics are created on first use by {@link #counter counter}, 
+ * {@link #gauge gauge}, and {@link #histogram histogram}, and later calls 
+ * with the same name and labels return the same object. Callers on hot paths
+ * should keep references to the metrics rather than looking them up again.
+ * <p>
+ * The design of <code>MetricsRegistry</code> follows thread-safety guidelines. 
+ *
+ * @see MetricsServer MetricsServer
+ * @see GameMetrics GameMetrics
+ */
+public class MetricsRegistry
+{
+    /** A family of metrics sharing a name, help text, and type. */
+    protected static class Family
+    {
+        final String help;
+        final String type;
+        final ConcurrentMap<String, Metric> children = 
+            new ConcurrentSkipListMap<String, Metric>();
+
+        Family(String help, String type)
+        {
+            this.help = help;
+            this.type = type;
+        }
+    }
+
+    protected final Map<String, Family> families = 
+        Collections.synchronizedMap(new LinkedHashMap<String, Family>());
+
+    /**
+     * Gets or creates a counter.
+     * @param name      the name of the metric
+     * @param help      a description of the metric
+     * @param labels    alternating label names and values
+     * @return          the counter
+     */
+    public Counter counter(String name, String help, String... labels)
+    {
+        return (Counter)get(name, help, "counter", labels, null);
+    }
+
+    /**
+     * Gets or creates a gauge.
+     * @param name      the name of the metric
+     * @param help      a description of the metric
+     * @param labels    alternating label names and values
+     * @return          the gauge
+     */
+    public Gauge gauge(String name, String help, String... labels)
+    {
+        return (Gauge)get(name, help, "gauge", labels, null);
+    }
+
+    /**
+     * Gets or creates a histogram. The bucket bounds are only used when the
+     * histogram is created.
+     * @param name      the name of the metric
+     * @param help      a description of the metric
+     * @param bounds    the upper bounds of the buckets
+     * @param labels    alternating label names and values
+     * @return          the histogram
+     */
+    public Histogram histogram(String name, String help, double[] bounds, 
+            String... labels)
+    {
+        return (Histogram)get(name, help, "histogram", labels, bounds);
+    }
+
+    protected Metric get(String name, String help, String type, 
+            String[] labels, double[] bounds)
+    {
+        Family family;
+        synchronized (families)
+        {
+            family = families.get(name);
+            if (family == null)
+            {
+                family = new Family(help, type);
+                families.put(name, family);
+            }
+        }
+        if (!family.type.equals(type))
+            throw new IllegalArgumentException(name + " is a " + family.type);
+
+        String key = formatLabels(labels);
+        Metric metric = family.children.get(key);
+        if (metric == null)
+        {
+            if (type.equals("counter"))
+                metric = new Counter();
+            else if (type.equals("gauge"))
+                metric = new Gauge();
+            else
+                metric = new Histogram(bounds);
+
+            Metric prev = family.children.putIfAbsent(key, metric);
+            if (prev != null)
+                metric = prev;
+        }
+        return metric;
+    }
+
+    /**
+     * Formats alternating label names and values as a Prometheus label set.
+     */
+    protected static String formatLabels(String[] labels)
+    {
+        if (labels.length % 2 != 0)
+            throw new IllegalArgumentException("Labels must be name/value pairs");
+
+        StringBuilder s = new StringBuilder();
+        for (int i = 0; i < labels.length; i += 2)
+        {
+            if (i > 0)
+                s.append(',');
+            s.append(labels[i]).append("=\"");
+            String v = labels[i + 1];
+            for (int j = 0; j < v.length(); j++)
+            {
+                char c = v.charAt(j);
+                if (c == '\\' || c == '"')
+                    s.append('\\').append(c);
+                else if (c == '\n')
+                    s.append("\\n");
+                else
+                    s.append(c);
+            }
+            s.append('"');
+        }
+        return s.toString();
+    }
+
+    /**
+     * Returns all metrics in the Prometheus text exposition format.
+     * @return          the formatted metrics
+     */
+    public String toPrometheusText()
+    {
+        List<Map.Entry<String, Family>> entries;
+        synchronized (families)
+        {
+            entries = new ArrayList<Map.Entry<String, Family>>(families.entrySet());
+        }
+
+        StringBuilder out = new StringBuilder();
+        for (Map.Entry<String, Family> e : entries)
+        {
+            String name = e.getKey();
+            Family family = e.getValue();
+            out.append("# HELP ").append(name).append(' ')
+               .append(family.help).append('\n');
+            out.append("# TYPE ").append(name).append(' ')
+               .append(family.type).append('\n');
+            for (Map.Entry<String, Metric> c : family.children.entrySet())
+                c.getValue().write(out, name, c.getKey());
+        }
+        return out.toString();
+    }
+}
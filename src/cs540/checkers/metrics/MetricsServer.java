@@ -0,0 +1,75 @@
+package cs540.checkers.metrics;
+
+import com.sun.net.httpserver.*;
+
+import java.io.*;
+import java.net.*;
+
+/**
+ * This class serves the metrics of a {@link MetricsRegistry MetricsRegistry}
+ * over HTTP at <code>/metrics</code>, in the Prometheus text format. The 
+ * server binds to the loopback interface only and answers requests on a 
+ * single daemon thread, so it never keeps the program alive.
+ */
+public class MetricsServer
+{
+    protected final MetricsRegistry registry;
+    protected final HttpServer server;
+
+    /**
+     * Creates and starts a metrics server.
+     * @param registry      the metrics to serve
+     * @param port          the local port to listen on, or <code>0</code> 
+     *                      for any free port
+     * @throws IOException  if the port cannot be bound
+     */
+    public MetricsServer(MetricsRegistry registry, int port) throws IOException
+    {
+        this.registry = registry;
+
+        server = HttpServer.create(
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext("/metrics", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException
+            {
+                serve(exchange);
+            }
+        });
+        server.setExecutor(null);
+
+        /* HttpServer's dispatcher thread is not a daemon; start it from a 
+         * daemon thread so that it inherits daemon status */
+        Thread starter = new Thread() {
+            public void run() { server.start(); }
+        };
+        starter.setDaemon(true);
+        starter.start();
+        try {
+            starter.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    protected void serve(HttpExchange exchange) throws IOException
+    {
+        byte[] body = registry.toPrometheusText().getBytes("UTF-8");
+        exchange.getResponseHeaders().set("Content-Type", 
+                "text/plain; version=0.0.4; charset=utf-8");
+        exchange.sendResponseHeaders(200, body.length);
+        OutputStream out = exchange.getResponseBody();
+        out.write(body);
+        out.close();
+    }
+
+    /**
+     * Gets the port this server listens on.
+     * @return          the local port
+     */
+    public int getPort() { return server.getAddress().getPort(); }
+
+    /**
+     * Stops this server.
+     */
+    public void stop() { server.stop(0); }
+}
@@ -0,0 +1,231 @@
+package cs540.checkers.pdn;
+import cs540.checkers.*;
+import static cs540.checkers.CheckersConsts.*;
+
+import java.util.*;
+
+/**
+ * This class converts between board locations, moves, and positions and
+ * their Portable Draughts Notation (PDN) forms.
+ * <p>
+ * PDN numbers the dark squares from <code>1</code> to <code>32</code>,
+ * starting at the back rank of the side which moves first. That side is
+ * called Black in PDN and is <code>RED</code> here; PDN's White is
+ * <code>BLK</code>. Square <code>n</code> is therefore the location
+ * <code>63 - L(n)</code>, where <code>L(n)</code> is the location of
+ * playable square <code>n - 1</code> in {@link MoveCodec MoveCodec}
+ * numbering.
+ * <p>
+ * Walks are written <code>11-15</code>, and jumps list every square landed
+ * on, e.g. <code>15x24x31</code>. When parsing, a jump may also be given by
+ * its first and last squares only, and is matched against the legal moves.
+ * <p>
+ * Positions are written as FEN tags, e.g.
+ * <code>B:W21,22,23,K30:B1,2,3</code>: the side to move, then the squares
+ * of each side's pieces, with kings prefixed by <code>K</code>.
+ */
+public class Pdn
+{
+    /** The number of the square at each location, or <code>0</code> if it is not playable. */
+    private static final int[] SQUARE_OF = new int[W * H];
+    /** The location of each square, indexed from <code>1</code>. */
+    private static final int[] LOCATION_OF = new int[MoveCodec.SQUARES + 1];
+
+    static
+    {
+        for (int n = 1; n <= MoveCodec.SQUARES; n++)
+        {
+            int loc = W * H - 1 - MoveCodec.locationOf(n - 1);
+            LOCATION_OF[n] = loc;
+            SQUARE_OF[loc] = n;
+        }
+    }
+
+    private Pdn() {}
+
+    /**
+     * Gets the PDN square number of a location.
+     * @param loc       the location
+     * @return          the square number, or <code>0</code> if the location is
+     *                  not playable
+     */
+    public static int squareOf(int loc)
+    {
+        return loc < 0 || loc >= W * H ? 0 : SQUARE_OF[loc];
+    }
+
+    /**
+     * Gets the location of a PDN square number.
+     * @param n         the square number, from <code>1</code> to <code>32</code>
+     * @return          the location of the square
+     * @throws FormatException  if the number is out of range
+     */
+    public static int locationOf(int n) throws FormatException
+    {
+        if (n < 1 || n > MoveCodec.SQUARES)
+            throw new FormatException(n + " is not a square");
+        return LOCATION_OF[n];
+    }
+
+    /**
+     * Returns a move in PDN.
+     * @param move      the move
+     * @return          the move, e.g. <code>11-15</code> or <code>15x24x31</code>
+     */
+    public static String reprMove(List<Integer> move)
+    {
+        String sep = Utils.isWalk(move) ? "-" : "x";
+        StringBuilder s = new StringBuilder();
+        for (int i = 0; i < move.size(); i++)
+        {
+            if (i > 0)
+                s.append(sep);
+            s.append(squareOf(move.get(i)));
+        }
+        return s.toString();
+    }
+
+    /**
+     * Parses a move in PDN and finds the legal move it denotes.
+     * @param str       the move, without annotations such as <code>!</code>
+     * @param bs        the board state the move is made on
+     * @param side      the side making the move
+     * @return          the legal move
+     * @throws FormatException  if <code>str</code> is malformed, or does not
+     *                          denote exactly one legal move
+     */
+    public static Move parseMove(String str, int[] bs, int side) throws FormatException
+    {
+        List<Integer> path = new ArrayList<Integer>();
+        int n = 0;
+        boolean digits = false;
+        for (int i = 0; i <= str.length(); i++)
+        {
+            char c = i < str.length() ? str.charAt(i) : '-';
+            if (c >= '0' && c <= '9')
+            {
+                n = 10 * n + (c - '0');
+                digits = n <= MoveCodec.SQUARES;
+            }
+            else if ((c == '-' || c == 'x' || c == ':') && digits)
+            {
+                path.add(locationOf(n));
+                n = 0;
+                digits = false;
+            }
+            else
+                throw new FormatException(str + " is not a valid move");
+        }
+        if (path.size() < 2)
+            throw new FormatException(str + " is not a valid move");
+
+        /* Walks, single jumps, and jumps with every square given are
+         * complete; a path of two squares which is not may be a jump given
+         * by its ends, which needs a search */
+        Move move = new Move(path);
+        if (Utils.isValidMove(bs, side, move))
+            return move;
+        if (path.size() > 2)
+            throw new FormatException(str + " is not a legal move");
+
+        Move found = null;
+        for (Move m : Utils.getAllPossibleMoves(bs, side))
+        {
+            if (!m.get(0).equals(path.get(0)) || !m.get(m.size() - 1).equals(path.get(1)))
+                continue;
+            if (found != null)
+                throw new FormatException(str + " is ambiguous");
+            found = m;
+        }
+        if (found == null)
+            throw new FormatException(str + " is not a legal move");
+        return found;
+    }
+
+    /**
+     * Returns a position as a FEN string.
+     * @param bs        the board state
+     * @param side      the side to move
+     * @return          the position, e.g. <code>B:W21,22,K30:B1,2,3</code>
+     */
+    public static String reprFen(int[] bs, int side)
+    {
+        StringBuilder s = new StringBuilder();
+        s.append(side == RED ? 'B' : 'W');
+        for (int color : new int[] {BLK, RED})
+        {
+            s.append(':').append(color == RED ? 'B' : 'W');
+            boolean first = true;
+            for (int n = 1; n <= MoveCodec.SQUARES; n++)
+            {
+                int piece = bs[LOCATION_OF[n]];
+                if (piece == BLANK || (piece & 1) != color)
+                    continue;
+                if (!first)
+                    s.append(',');
+                if (piece == RED_KING || piece == BLK_KING)
+                    s.append('K');
+                s.append(n);
+                first = false;
+            }
+        }
+        return s.toString();
+    }
+
+    /**
+     * Parses a FEN string. Square ranges such as <code>1-12</code> and a
+     * trailing period are accepted.
+     * @param str       the position
+     * @param bs        an array of <code>64</code> ints to store the board state in
+     * @return          the side to move
+     * @throws FormatException  if <code>str</code> is malformed
+     */
+    public static int parseFen(String str, int[] bs) throws FormatException
+    {
+        String s = str.trim();
+        if (s.endsWith("."))
+            s = s.substring(0, s.length() - 1);
+        String[] fields = s.split(":");
+        if (fields.length < 1 || fields.length > 3 || fields[0].length() != 1)
+            throw new FormatException(str + " is not a valid FEN");
+
+        int side = parseColor(fields[0].charAt(0), str);
+        Arrays.fill(bs, BLANK);
+        for (int f = 1; f < fields.length; f++)
+        {
+            String field = fields[f].trim();
+            if (field.length() == 0)
+                throw new FormatException(str + " is not a valid FEN");
+            int color = parseColor(field.charAt(0), str);
+            if (field.length() == 1)
+                continue;
+
+            for (String tok : field.substring(1).split(","))
+            {
+                tok = tok.trim();
+                boolean king = tok.startsWith("K");
+                if (king)
+                    tok = tok.substring(1);
+                int piece = (king ? RED_KING : RED_PAWN) | color;
+
+                try {
+                    int dash = tok.indexOf('-');
+                    int lo = Integer.parseInt(dash < 0 ? tok : tok.substring(0, dash));
+                    int hi = dash < 0 ? lo : Integer.parseInt(tok.substring(dash + 1));
+                    for (int n = lo; n <= hi; n++)
+                        bs[locationOf(n)] = piece;
+                } catch (NumberFormatException e) {
+                    throw new FormatException(str + " is not a valid FEN");
+                }
+            }
+        }
+        return side;
+    }
+
+    private static int parseColor(char c, String str) throws FormatException
+    {
+        if (c == 'B') return RED;
+        if (c == 'W') return BLK;
+        throw new FormatException(str + " is not a valid FEN");
+    }
+}
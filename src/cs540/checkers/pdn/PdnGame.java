@@ -0,0 +1,148 @@
+package cs540.checkers.pdn;
+import cs540.checkers.*;
+import cs540.checkers.store.*;
+import static cs540.checkers.CheckersConsts.*;
+
+import java.util.*;
+
+/**
+ * This class is a game read from or to be written as PDN: its tags, initial
+ * position, moves, and result.
+ */
+public class PdnGame
+{
+    /** The result of a game which has not finished. */
+    public static final int UNKNOWN = -1;
+
+    protected final Map<String, String> tags = new LinkedHashMap<String, String>();
+    protected final PackedBoard initialBoard;
+    protected final int initialSide;
+    protected final List<Move> moves;
+    protected final int winner;
+
+    /**
+     * Constructs a game.
+     * @param tags      the tags, in order
+     * @param bs        the initial board state
+     * @param side      the side which moves first
+     * @param moves     the moves
+     * @param winner    the winning side, <code>NEITHER</code> for a draw, or
+     *                  <code>UNKNOWN</code>
+     */
+    public PdnGame(Map<String, String> tags, int[] bs, int side, List<Move> moves, int winner)
+    {
+        this.tags.putAll(tags);
+        this.initialBoard = new PackedBoard(bs);
+        this.initialSide = side;
+        this.moves = Collections.unmodifiableList(new ArrayList<Move>(moves));
+        this.winner = winner;
+    }
+
+    /**
+     * Constructs a PDN game from a stored game. The players become the
+     * <code>Black</code> and <code>White</code> tags.
+     * @param game      the stored game
+     */
+    public PdnGame(GameRecord game)
+    {
+        this(new LinkedHashMap<String, String>(), game.getInitialBoardState(),
+                game.getInitialSide(), game.getMoves(), game.getWinner());
+        tags.put("Black", game.getName(RED));
+        tags.put("White", game.getName(BLK));
+    }
+
+    /**
+     * Gets the tags of this game, in order. The <code>Result</code> and
+     * <code>FEN</code> tags are represented by the result and initial
+     * position instead.
+     * @return          the tags
+     */
+    public Map<String, String> getTags() { return tags; }
+
+    /**
+     * Gets the initial board state.
+     * @return          a new array of the initial board state
+     */
+    public int[] getInitialBoardState() { return initialBoard.toBoardState(); }
+
+    /**
+     * Gets the initial board state, packed.
+     * @return          the initial board state
+     */
+    public PackedBoard getInitialBoard() { return initialBoard; }
+
+    /**
+     * Gets the side which moves first.
+     * @return          the side which moves first
+     */
+    public int getInitialSide() { return initialSide; }
+
+    /**
+     * Gets the moves of this game.
+     * @return          an unmodifiable list of the moves
+     */
+    public List<Move> getMoves() { return moves; }
+
+    /**
+     * Gets the winner of this game.
+     * @return          the winning side, <code>NEITHER</code> for a draw, or
+     *                  <code>UNKNOWN</code>
+     */
+    public int getWinner() { return winner; }
+
+    /**
+     * Converts this game to a game record for a {@link GameStore GameStore}.
+     * @return          the game record
+     * @throws IllegalStateException    if the result is unknown
+     */
+    public GameRecord toGameRecord()
+    {
+        if (winner == UNKNOWN)
+            throw new IllegalStateException("Game has no result");
+        String red = tags.containsKey("Black") ? tags.get("Black") : "?";
+        String blk = tags.containsKey("White") ? tags.get("White") : "?";
+        return new GameRecord(red, blk, initialBoard, initialSide, moves, winner);
+    }
+
+    /**
+     * Returns the PDN result string of a winner.
+     * @param winner    the winning side, <code>NEITHER</code>, or <code>UNKNOWN</code>
+     * @return          <code>2-0</code>, <code>0-2</code>, <code>1-1</code>, or <code>*</code>
+     */
+    public static String reprResult(int winner)
+    {
+        switch (winner)
+        {
+            case RED: return "2-0";
+            case BLK: return "0-2";
+            case NEITHER: return "1-1";
+            default: return "*";
+        }
+    }
+
+    /**
+     * Parses a PDN result string, including the chess style results
+     * <code>1-0</code>, <code>0-1</code> and <code>1/2-1/2</code>.
+     * @param str       the result
+     * @return          the winner, or <code>UNKNOWN</code> if <code>str</code>
+     *                  is <code>*</code> or not a result
+     */
+    public static int parseResult(String str)
+    {
+        if (str.equals("2-0") || str.equals("1-0"))
+            return RED;
+        if (str.equals("0-2") || str.equals("0-1"))
+            return BLK;
+        if (str.equals("1-1") || str.equals("1/2-1/2"))
+            return NEITHER;
+        return UNKNOWN;
+    }
+
+    /**
+     * Tests whether a movetext token is a game result.
+     */
+    static boolean isResult(String tok)
+    {
+        return tok.equals("*") || parseResult(tok) != UNKNOWN;
+    }
+}
@@ -0,0 +1,43 @@
+package cs540.checkers.pdn;
+import cs540.checkers.*;
+
+/**
+ * A position of a game read by {@link PdnReader#positions PdnReader.positions},
+ * with the move played from it and the result of the game.
+ */
+public class PdnPosition
+{
+    /** The index of the game among the games read, counting from <code>0</code>. */
+    public final long game;
+    /** The ply of the position within its game. */
+    public final int ply;
+    /** The board state, packed, since positions are read in quantity. */
+    public final PackedBoard board;
+    /** The side to move. */
+    public final int side;
+    /** The move played, or <code>null</code> for the final position of a game. */
+    public final Move move;
+    /** The winner of the game, <code>NEITHER</code> for a draw, or {@link PdnGame#UNKNOWN UNKNOWN}. */
+    public final int winner;
+
+    public PdnPosition(long game, int ply, PackedBoard board, int side, Move move, int winner)
+    {
+        this.game = game;
+        this.ply = ply;
+        this.board = board;
+        this.side = side;
+        this.move = move;
+        this.winner = winner;
+    }
+
+    /**
+     * Gets the board state.
+     * @return          a new array of the board state
+     */
+    public int[] getBoardState() { return board.toBoardState(); }
+
+    public String toString()
+    {
+        return Pdn.reprFen(getBoardState(), side) + (move == null ? "" : " " + Pdn.reprMove(move));
+    }
+}
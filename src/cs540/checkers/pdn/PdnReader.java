@@ -0,0 +1,348 @@
+package cs540.checkers.pdn;
+import cs540.checkers.*;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * This class reads games from a PDN database one at a time. The input is
+ * scanned through a fixed size buffer and only the current game is held in
+ * memory, so databases of any size can be read in constant memory.
+ * <p>
+ * Comments, variations, move numbers, and annotations are skipped. Each
+ * move is checked against the legal moves of its position; a game with an
+ * illegal or unreadable move is skipped and counted by
+ * {@link #getSkippedCount getSkippedCount}.
+ * <p>
+ * {@link #positions positions} flattens the games into a stream of
+ * positions, suitable for building an opening book or tuning an evaluator.
+ */
+public class PdnReader implements Closeable
+{
+    /** The longest tag value or token kept; longer ones are truncated. */
+    protected static final int MAX_TOKEN = 4096;
+
+    protected final Reader in;
+    protected final char[] buf = new char[1 << 16];
+    protected int pos, limit;
+    protected final StringBuilder token = new StringBuilder();
+
+    protected long gameCount;
+    protected long skippedCount;
+    protected String lastError;
+
+    /**
+     * Constructs a reader which reads PDN from the specified stream.
+     * @param in        the stream to read from
+     */
+    public PdnReader(Reader in)
+    {
+        this.in = in;
+    }
+
+    /**
+     * Reads the next game, skipping games which cannot be read.
+     * @return          the game, or <code>null</code> at the end of the input
+     * @throws IOException      if an I/O error occurs
+     */
+    public PdnGame next() throws IOException
+    {
+        while (true)
+        {
+            Map<String, String> tags = new LinkedHashMap<String, String>();
+            List<String> moves = new ArrayList<String>();
+            String result = readGameText(tags, moves);
+            if (result == null)
+                return null;
+
+            try {
+                PdnGame game = buildGame(tags, moves, result);
+                gameCount++;
+                return game;
+            } catch (FormatException e) {
+                lastError = e.getMessage();
+                skippedCount++;
+            }
+        }
+    }
+
+    /**
+     * Gets the number of games returned so far.
+     * @return          the number of games read
+     */
+    public long getGameCount() { return gameCount; }
+
+    /**
+     * Gets the number of games skipped because they could not be read.
+     * @return          the number of games skipped
+     */
+    public long getSkippedCount() { return skippedCount; }
+
+    /**
+     * Gets the reason the most recently skipped game could not be read.
+     * @return          the error message, or <code>null</code>
+     */
+    public String getLastError() { return lastError; }
+
+    public void close() throws IOException
+    {
+        in.close();
+    }
+
+    /**
+     * Returns an iterator over the positions of the remaining games. Each
+     * game contributes the position before each of its moves, and its final
+     * position. An <code>IOException</code> while reading is rethrown as an
+     * <code>UncheckedIOException</code>.
+     * @return          an iterator of positions
+     */
+    public Iterator<PdnPosition> positions()
+    {
+        return new Iterator<PdnPosition>() {
+            PdnGame game;
+            int[] bs;
+            int side;
+            int ply;
+            PdnPosition nextPosition;
+
+            public boolean hasNext()
+            {
+                if (nextPosition == null)
+                    nextPosition = advance();
+                return nextPosition != null;
+            }
+
+            public PdnPosition next()
+            {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+                PdnPosition p = nextPosition;
+                nextPosition = null;
+                return p;
+            }
+
+            PdnPosition advance()
+            {
+                if (game != null && ply > game.getMoves().size())
+                    game = null;
+                if (game == null)
+                {
+                    try {
+                        game = PdnReader.this.next();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    if (game == null)
+                        return null;
+                    bs = game.getInitialBoardState();
+                    side = game.getInitialSide();
+                    ply = 0;
+                }
+
+                List<Move> moves = game.getMoves();
+                Move move = ply < moves.size() ? moves.get(ply) : null;
+                PdnPosition p = new PdnPosition(gameCount - 1, ply, new PackedBoard(bs),
+                        side, move, game.getWinner());
+                if (move != null)
+                {
+                    Utils.execute(bs, move);
+                    side = Utils.otherSide(side);
+                }
+                ply++;
+                return p;
+            }
+        };
+    }
+
+    protected PdnGame buildGame(Map<String, String> tags, List<String> moveText,
+            String result) throws FormatException
+    {
+        int[] bs = Utils.INITIAL_BOARDSTATE.clone();
+        int side = Utils.INITIAL_SIDE;
+        String fen = tags.remove("FEN");
+        if (fen != null)
+            side = Pdn.parseFen(fen, bs);
+
+        int winner = PdnGame.parseResult(result);
+        String tagResult = tags.remove("Result");
+        if (winner == PdnGame.UNKNOWN && tagResult != null)
+            winner = PdnGame.parseResult(tagResult);
+
+        int[] cur = bs.clone();
+        int curSide = side;
+        List<Move> moves = new ArrayList<Move>(moveText.size());
+        for (String str : moveText)
+        {
+            Move move = Pdn.parseMove(str, cur, curSide);
+            Utils.execute(cur, move);
+            curSide = Utils.otherSide(curSide);
+            moves.add(move);
+        }
+        return new PdnGame(tags, bs, side, moves, winner);
+    }
+
+    /**
+     * Reads the tags and move tokens of the next game.
+     * @return          the result token, <code>""</code> if the game has no
+     *                  result token, or <code>null</code> at the end of input
+     */
+    protected String readGameText(Map<String, String> tags, List<String> moves)
+        throws IOException
+    {
+        boolean empty = true;
+        while (true)
+        {
+            int c = skipWhitespace();
+            if (c < 0)
+                return empty ? null : "";
+
+            if (c == '[')
+            {
+                /* Tags after moves begin the next game */
+                if (!moves.isEmpty())
+                    return "";
+                pos++;
+                readTag(tags);
+                empty = false;
+            }
+            else if (c == '{')
+                skipUntil('}');
+            else if (c == ';')
+                skipUntil('\n');
+            else if (c == '(')
+                skipVariation();
+            else
+            {
+                String tok = readToken();
+                empty = false;
+                if (PdnGame.isResult(tok))
+                    return tok;
+                String move = moveOf(tok);
+                if (move != null)
+                    moves.add(move);
+            }
+        }
+    }
+
+    /**
+     * Strips move numbers and annotations from a movetext token.
+     * @return          the move, or <code>null</code> if the token is not a move
+     */
+    protected static String moveOf(String tok)
+    {
+        /* "12." or "12..." numbers, possibly attached to the move */
+        int dot = tok.lastIndexOf('.');
+        if (dot >= 0)
+            tok = tok.substring(dot + 1);
+
+        int end = tok.length();
+        while (end > 0 && "!?*+#".indexOf(tok.charAt(end - 1)) >= 0)
+            end--;
+        tok = tok.substring(0, end);
+
+        if (tok.length() == 0 || tok.charAt(0) == '$')
+            return null;
+        return tok;
+    }
+
+    protected void readTag(Map<String, String> tags) throws IOException
+    {
+        skipWhitespace();
+        token.setLength(0);
+        int c;
+        while ((c = peek()) >= 0 && !Character.isWhitespace(c) && c != '"' && c != ']')
+        {
+            append((char)c);
+            pos++;
+        }
+        String name = token.toString();
+
+        token.setLength(0);
+        if (skipWhitespace() == '"')
+        {
+            pos++;
+            while ((c = read()) >= 0 && c != '"')
+            {
+                if (c == '\\' && (c = read()) < 0)
+                    break;
+                append((char)c);
+            }
+        }
+        skipUntil(']');
+        if (name.length() > 0)
+            tags.put(name, token.toString());
+    }
+
+    protected String readToken() throws IOException
+    {
+        token.setLength(0);
+        int c;
+        while ((c = peek()) >= 0 && !Character.isWhitespace(c) && "{}()[];".indexOf(c) < 0)
+        {
+            append((char)c);
+            pos++;
+        }
+        if (token.length() == 0)
+            pos++;
+        return token.toString();
+    }
+
+    protected void skipVariation() throws IOException
+    {
+        int depth = 0;
+        int c;
+        while ((c = read()) >= 0)
+        {
+            if (c == '(')
+                depth++;
+            else if (c == ')' && --depth == 0)
+                return;
+            else if (c == '{')
+                skipUntil('}');
+        }
+    }
+
+    protected void skipUntil(char end) throws IOException
+    {
+        int c;
+        while ((c = read()) >= 0 && c != end)
+            ;
+    }
+
+    protected int skipWhitespace() throws IOException
+    {
+        int c;
+        while ((c = peek()) >= 0 && Character.isWhitespace(c))
+            pos++;
+        return c;
+    }
+
+    private void append(char c)
+    {
+        if (token.length() < MAX_TOKEN)
+            token.append(c);
+    }
+
+    protected int peek() throws IOException
+    {
+        if (pos == limit)
+        {
+            limit = in.read(buf, 0, buf.length);
+            pos = 0;
+            if (limit <= 0)
+            {
+                limit = 0;
+                return -1;
+            }
+        }
+        return buf[pos];
+    }
+
+    protected int read() throws IOException
+    {
+        int c = peek();
+        if (c >= 0)
+            pos++;
+        return c;
+    }
+}
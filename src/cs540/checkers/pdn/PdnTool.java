@@ -0,0 +1,119 @@
+package cs540.checkers.pdn;
+import cs540.checkers.*;
+import cs540.checkers.store.*;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * This program converts games and positions to and from PDN.
+ * <p>
+ * Usage: <code>java cs540.checkers.pdn.PdnTool &lt;command&gt; ...</code>,
+ * where the command is one of
+ * <ul>
+ * <li><code>export &lt;store dir&gt; &lt;pdn file&gt;</code>, which writes
+ * the games of a {@link GameStore GameStore} as PDN. Use
+ * <code>GameStoreTool import</code> to add a PDN file to a store;
+ * <li><code>scan &lt;pdn file&gt;</code>, which streams the positions of a
+ * PDN file and reports their number and the reading speed;
+ * <li><code>fen &lt;board file&gt; [&lt;side&gt;]</code>, which prints a
+ * board state file as FEN;
+ * <li><code>board &lt;fen&gt;</code>, which prints a FEN as a board state
+ * file.
+ * </ul>
+ */
+public class PdnTool
+{
+    private static final String USAGE =
+        "Usage: java cs540.checkers.pdn.PdnTool <command> ...\n" +
+        "\n" +
+        "export <store dir> <pdn file>    Write the games of a game store as PDN\n" +
+        "scan <pdn file>                  Count the games and positions of a PDN file\n" +
+        "fen <board file> [<side>]        Print a board state file as FEN\n" +
+        "board <fen>                      Print a FEN as a board state file\n";
+
+    public static void main(String[] args)
+    {
+        try {
+            if (args.length == 3 && args[0].equals("export"))
+                export(new File(args[1]), new File(args[2]));
+            else if (args.length == 2 && args[0].equals("scan"))
+                scan(new File(args[1]));
+            else if ((args.length == 2 || args.length == 3) && args[0].equals("fen"))
+            {
+                int[] bs = Utils.loadBoardState(args[1]);
+                int side = args.length > 2 ? Utils.parseSide(args[2]) : Utils.INITIAL_SIDE;
+                System.out.println(Pdn.reprFen(bs, side));
+            }
+            else if (args.length == 2 && args[0].equals("board"))
+            {
+                int[] bs = new int[CheckersConsts.W * CheckersConsts.H];
+                int side = Pdn.parseFen(args[1], bs);
+                System.out.print(Utils.reprBoardState(bs));
+                System.out.println(Utils.reprSide(side) + " to move");
+            }
+            else
+            {
+                System.out.println(USAGE);
+                System.exit(1);
+            }
+        } catch (IOException e) {
+            System.out.println(e);
+            System.exit(1);
+        } catch (FormatException e) {
+            System.out.println(e);
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Writes the games of a store as PDN.
+     * @param dir       the directory of the store
+     * @param file      the PDN file to write
+     * @throws IOException      if an I/O error occurs
+     */
+    public static void export(File dir, File file) throws IOException
+    {
+        GameStore store = new GameStore(dir);
+        PdnWriter out = new PdnWriter(new BufferedWriter(new FileWriter(file)));
+        try {
+            int n = store.getGameCount();
+            for (int id = 0; id < n; id++)
+                out.write(new PdnGame(store.readGame(id)));
+            System.out.println(n + " games exported");
+        } finally {
+            out.close();
+            store.close();
+        }
+    }
+
+    /**
+     * Streams the positions of a PDN file and reports the reading speed.
+     * @param file      the PDN file to read
+     * @throws IOException      if an I/O error occurs
+     */
+    public static void scan(File file) throws IOException
+    {
+        PdnReader in = new PdnReader(new InputStreamReader(new FileInputStream(file)));
+        long start = System.nanoTime();
+        long positions = 0;
+        try {
+            Iterator<PdnPosition> it = in.positions();
+            while (it.hasNext())
+            {
+                it.next();
+                positions++;
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            in.close();
+        }
+
+        double secs = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%d games, %d positions, %d skipped in %.2f s (%.0f positions/s)%n",
+                in.getGameCount(), positions, in.getSkippedCount(), secs, positions / secs);
+        if (in.getLastError() != null)
+            System.out.println("Last error: " + in.getLastError());
+    }
+}
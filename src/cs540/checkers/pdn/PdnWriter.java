@@ -0,0 +1,98 @@
+package cs540.checkers.pdn;
+import cs540.checkers.*;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * This class writes games as PDN. Tags are written first, followed by the
+ * <code>Result</code> tag, a <code>FEN</code> tag if the game does not
+ * start from the usual position, and the numbered moves wrapped at
+ * {@link #LINE_WIDTH LINE_WIDTH} characters.
+ */
+public class PdnWriter implements Closeable, Flushable
+{
+    /** The maximum width of movetext lines. */
+    public static final int LINE_WIDTH = 79;
+
+    protected final Writer out;
+    protected final StringBuilder line = new StringBuilder();
+
+    /**
+     * Constructs a writer which writes PDN to the specified stream.
+     * @param out       the stream to write to
+     */
+    public PdnWriter(Writer out)
+    {
+        this.out = out;
+    }
+
+    /**
+     * Writes a game followed by a blank line.
+     * @param game      the game to write
+     * @throws IOException      if an I/O error occurs
+     */
+    public void write(PdnGame game) throws IOException
+    {
+        for (Map.Entry<String, String> tag : game.getTags().entrySet())
+            writeTag(tag.getKey(), tag.getValue());
+        String result = PdnGame.reprResult(game.getWinner());
+        writeTag("Result", result);
+
+        int[] bs = game.getInitialBoardState();
+        int side = game.getInitialSide();
+        if (side != Utils.INITIAL_SIDE || !Utils.equalsBoardState(bs, Utils.INITIAL_BOARDSTATE))
+            writeTag("FEN", Pdn.reprFen(bs, side));
+
+        /* Moves are numbered in pairs starting with the side which moves first in PDN */
+        int number = 1;
+        boolean first = side == Utils.INITIAL_SIDE;
+        if (!first)
+            word("1...");
+        for (Move move : game.getMoves())
+        {
+            if (first)
+                word(number + ".");
+            else
+                number++;
+            word(Pdn.reprMove(move));
+            first = !first;
+        }
+        word(result);
+        out.write(line.toString());
+        out.write("\n\n");
+        line.setLength(0);
+    }
+
+    public void flush() throws IOException
+    {
+        out.flush();
+    }
+
+    public void close() throws IOException
+    {
+        out.close();
+    }
+
+    protected void writeTag(String name, String value) throws IOException
+    {
+        out.write('[');
+        out.write(name);
+        out.write(" \"");
+        out.write(value.replace("\\", "\\\\").replace("\"", "\\\""));
+        out.write("\"]\n");
+    }
+
+    private void word(String w) throws IOException
+    {
+        if (line.length() > 0 && line.length() + 1 + w.length() > LINE_WIDTH)
+        {
+            out.write(line.toString());
+            out.write('\n');
+            line.setLength(0);
+        }
+        if (line.length() > 0)
+            line.append(' ');
+        line.append(w);
+    }
+}
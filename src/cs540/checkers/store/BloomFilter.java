@@ -0,0 +1,136 @@
+package cs540.checkers.store;
+
+import java.io.*;
+
+/**
+ * This class is a Bloom filter of 64-bit keys, such as {@link
+ * cs540.checkers.Zobrist Zobrist} hashes: a set which may answer that it
+ * contains a key which was never added, but never that it lacks one which
+ * was. It is kept in memory in front of a database whose lookups cost more,
+ * so that most lookups of keys which are not there cost a few memory reads.
+ * <p>
+ * The filter has {@link #BITS_PER_KEY BITS_PER_KEY} bits or more for each
+ * key it is built for, rounded up to a power of two, and sets
+ * {@link #HASHES HASHES} bits for each key, which gives a false positive
+ * rate below one percent when it holds as many keys as it was built for.
+ * The bits of a key are derived from the key by double hashing, after
+ * mixing, so keys need not be random.
+ */
+public class BloomFilter
+{
+    /** The number of bits for each key. */
+    public static final int BITS_PER_KEY = 10;
+
+    /** The number of bits set for each key. */
+    public static final int HASHES = 7;
+
+    protected static final int MAGIC = 0x434B4246;     /* "CKBF" */
+    protected static final int VERSION = 1;
+
+    protected final long[] bits;
+    protected final long mask;
+
+    /**
+     * Creates an empty filter.
+     * @param keys      the number of keys the filter is to hold
+     */
+    public BloomFilter(long keys)
+    {
+        long n = Math.max(64, Long.highestOneBit(Math.max(1, keys) * BITS_PER_KEY - 1) << 1);
+        if (n / 64 > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Too many keys " + keys);
+        bits = new long[(int)(n / 64)];
+        mask = n - 1;
+    }
+
+    protected BloomFilter(long[] bits)
+    {
+        this.bits = bits;
+        this.mask = 64L * bits.length - 1;
+    }
+
+    /**
+     * Adds a key to the filter.
+     * @param key       the key
+     */
+    public void add(long key)
+    {
+        long h = mix(key);
+        long a = h, b = (h >>> 32) | 1;
+        for (int i = 0; i < HASHES; i++, a += b)
+        {
+            long bit = a & mask;
+            bits[(int)(bit >>> 6)] |= 1L << bit;
+        }
+    }
+
+    /**
+     * Returns whether the filter may contain a key.
+     * @param key       the key
+     * @return          false if the key was never added; true if it was,
+     *                  and occasionally if not
+     */
+    public boolean mightContain(long key)
+    {
+        long h = mix(key);
+        long a = h, b = (h >>> 32) | 1;
+        for (int i = 0; i < HASHES; i++, a += b)
+        {
+            long bit = a & mask;
+            if ((bits[(int)(bit >>> 6)] & (1L << bit)) == 0)
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Gets the size of the filter.
+     * @return          the number of bytes of its bits
+     */
+    public long getBytes() { return 8L * bits.length; }
+
+    /**
+     * Writes the filter.
+     * @param out       the output to write to
+     * @throws IOException      if an I/O error occurs
+     */
+    public void write(DataOutput out) throws IOException
+    {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(bits.length);
+        for (long w : bits)
+            out.writeLong(w);
+    }
+
+    /**
+     * Reads a filter written by {@link #write write}.
+     * @param in        the input to read from
+     * @return          the filter
+     * @throws IOException      if an I/O error occurs or the input is not
+     *                          a filter
+     */
+    public static BloomFilter read(DataInput in) throws IOException
+    {
+        if (in.readInt() != MAGIC || in.readInt() != VERSION)
+            throw new IOException("Not a Bloom filter");
+        int n = in.readInt();
+        if (n <= 0 || Integer.bitCount(n) != 1)
+            throw new IOException("Malformed Bloom filter");
+        long[] bits = new long[n];
+        for (int i = 0; i < n; i++)
+            bits[i] = in.readLong();
+        return new BloomFilter(bits);
+    }
+
+    /** Mixes the bits of a key, as in the finalizer of MurmurHash3. */
+    protected static long mix(long h)
+    {
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,200 @@
+package cs540.checkers.store;
+import cs540.checkers.*;
+import cs540.checkers.cli.*;
+import cs540.checkers.pdn.*;
+import static cs540.checkers.CheckersConsts.*;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * This class reads the finished games of text and binary logs written by
+ * {@link CheckersLogger CheckersLogger} and
+ * {@link AsyncCheckersLogger AsyncCheckersLogger}, and of PDN files.
+ * <p>
+ * Logs do not record the initial position, so their games are assumed to
+ * start from the usual one. Games which crashed, did not finish, or contain
+ * an invalid move are skipped.
+ */
+public class GameLogs
+{
+    /** A receiver of the games read from a log. */
+    public interface Handler
+    {
+        /**
+         * Invoked for each finished game, in the order the games finish.
+         * @param game      the game
+         * @throws IOException      if an I/O error occurs
+         */
+        public void game(GameRecord game) throws IOException;
+    }
+
+    private GameLogs() {}
+
+    /**
+     * Reads the finished games of a text, binary, or PDN log. PDN files
+     * are recognized by the extension <code>.pdn</code>, and binary logs by
+     * their magic number.
+     * @param file      the log
+     * @param handler   the receiver of the games
+     * @return          the number of games read
+     * @throws IOException      if an I/O error occurs
+     */
+    public static int read(File file, Handler handler) throws IOException
+    {
+        if (file.getName().endsWith(".pdn"))
+            return readPdn(file, handler);
+
+        InputStream in = new BufferedInputStream(new FileInputStream(file));
+        try {
+            in.mark(1);
+            boolean binary = in.read() == BinaryLogWriter.MAGIC[0];
+            in.reset();
+            return binary ? readBinaryLog(in, handler) : readTextLog(in, handler);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Reads the finished games of a PDN file, streaming the file.
+     * @param file      the PDN file
+     * @param handler   the receiver of the games
+     * @return          the number of games read
+     * @throws IOException      if an I/O error occurs
+     */
+    public static int readPdn(File file, Handler handler) throws IOException
+    {
+        PdnReader in = new PdnReader(new InputStreamReader(new FileInputStream(file)));
+        int n = 0;
+        try {
+            PdnGame game;
+            while ((game = in.next()) != null)
+            {
+                if (game.getWinner() == PdnGame.UNKNOWN)
+                    continue;
+                handler.game(game.toGameRecord());
+                n++;
+            }
+        } finally {
+            in.close();
+        }
+        if (in.getSkippedCount() > 0)
+            System.out.println(file + ": " + in.getSkippedCount()
+                    + " games skipped, last error: " + in.getLastError());
+        return n;
+    }
+
+    /**
+     * Reads the finished games of a binary log, in which the records of
+     * concurrent games may be interleaved.
+     * @param in        the stream to read the log from
+     * @param handler   the receiver of the games
+     * @return          the number of games read
+     * @throws IOException      if an I/O error occurs
+     */
+    public static int readBinaryLog(InputStream in, Handler handler) throws IOException
+    {
+        BinaryLogReader reader = new BinaryLogReader(in);
+        Map<Long, LogGame> games = new HashMap<Long, LogGame>();
+        int n = 0;
+
+        BinaryLogReader.Record r;
+        while ((r = reader.next()) != null)
+        {
+            Long key = (long)r.session << 32 | r.game;
+            if (r.action.equals("START"))
+                games.put(key, new LogGame(r.details));
+            else if (r.move != null && games.containsKey(key))
+                games.get(key).move(r.move);
+            else if (games.containsKey(key) && (r.action.equals("WIN") || r.action.equals("DRAW")))
+                n += games.remove(key).finish(handler, r.side);
+            else if (r.action.equals("CRASH"))
+                games.remove(key);
+        }
+        return n;
+    }
+
+    /**
+     * Reads the finished games of a text log.
+     * @param in        the stream to read the log from
+     * @param handler   the receiver of the games
+     * @return          the number of games read
+     * @throws IOException      if an I/O error occurs
+     */
+    public static int readTextLog(InputStream in, Handler handler) throws IOException
+    {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in));
+        LogGame game = null;
+        int n = 0;
+
+        String line;
+        while ((line = reader.readLine()) != null)
+        {
+            String[] tok = line.trim().split(" ", 2);
+            String details = tok.length > 1 ? tok[1] : "";
+            try {
+                if (tok[0].equals("START"))
+                    game = new LogGame(details);
+                else if (game == null)
+                    continue;
+                else if (tok[0].equals("MOVE"))
+                    game.move(Utils.parseMove(details.split(" ")[1]));
+                else if (tok[0].equals("WIN"))
+                {
+                    n += game.finish(handler, Utils.parseSide(details.trim()));
+                    game = null;
+                }
+                else if (tok[0].equals("DRAW"))
+                {
+                    n += game.finish(handler, NEITHER);
+                    game = null;
+                }
+                else if (tok[0].equals("CRASH"))
+                    game = null;
+            } catch (FormatException e) {
+                game = null;
+            } catch (ArrayIndexOutOfBoundsException e) {
+                game = null;
+            }
+        }
+        return n;
+    }
+
+    /** A game being read from a log, which is discarded if a move is invalid. */
+    protected static class LogGame
+    {
+        final String[] names;
+        final int[] bs = Utils.INITIAL_BOARDSTATE.clone();
+        int side = Utils.INITIAL_SIDE;
+        final List<Move> moves = new ArrayList<Move>();
+        boolean valid = true;
+
+        LogGame(String players)
+        {
+            String[] tok = players.split(" ", 2);
+            names = new String[] { tok[0], tok.length > 1 ? tok[1] : "" };
+        }
+
+        void move(Move move)
+        {
+            if (!valid || !Utils.isValidMove(bs, side, move))
+            {
+                valid = false;
+                return;
+            }
+            Utils.execute(bs, move);
+            side = Utils.otherSide(side);
+            moves.add(move);
+        }
+
+        int finish(Handler handler, int winner) throws IOException
+        {
+            if (!valid)
+                return 0;
+            handler.game(new GameRecord(names[RED], names[BLK],
+                        Utils.INITIAL_BOARDSTATE, Utils.INITIAL_SIDE, moves, winner));
+            return 1;
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package cs540.checkers.store;
+import cs540.checkers.*;
+import static cs540.checkers.CheckersConsts.*;
+
+import java.util.*;
+
+/**
+ * This class is the record of one finished game: the players, the initial
+ * position, the moves, and the result.
+ */
+public class GameRecord
+{
+    protected final String[] names;
+    protected final PackedBoard initialBoard;
+    protected final int initialSide;
+    protected final List<Move> moves;
+    protected final int winner;
+
+    /**
+     * Constructs a game record.
+     * @param redName       the name of the red player
+     * @param blkName       the name of the black player
+     * @param bs            the initial board state
+     * @param side          the side which moved first
+     * @param moves         the moves, in the order they were made
+     * @param winner        the winning side, or <code>NEITHER</code> for a draw
+     */
+    public GameRecord(String redName, String blkName, int[] bs, int side,
+            List<Move> moves, int winner)
+    {
+        this(redName, blkName, new PackedBoard(bs), side, moves, winner);
+    }
+
+    /**
+     * Constructs a game record with a packed initial position.
+     * @param redName       the name of the red player
+     * @param blkName       the name of the black player
+     * @param board         the initial board state
+     * @param side          the side which moved first
+     * @param moves         the moves, in the order they were made
+     * @param winner        the winning side, or <code>NEITHER</code> for a draw
+     */
+    public GameRecord(String redName, String blkName, PackedBoard board, int side,
+            List<Move> moves, int winner)
+    {
+        this.names = new String[] {redName, blkName};
+        this.initialBoard = board;
+        this.initialSide = side;
+        this.moves = Collections.unmodifiableList(new ArrayList<Move>(moves));
+        this.winner = winner;
+    }
+
+    /**
+     * Gets the name of the player of the specified side.
+     * @param side      the side of the player
+     * @return          the name of the player
+     */
+    public String getName(int side) { return names[side]; }
+
+    /**
+     * Gets the initial board state.
+     * @return          a new array of the initial board state
+     */
+    public int[] getInitialBoardState() { return initialBoard.toBoardState(); }
+
+    /**
+     * Gets the initial board state, packed.
+     * @return          the initial board state
+     */
+    public PackedBoard getInitialBoard() { return initialBoard; }
+
+    /**
+     * Gets the side which moved first.
+     * @return          the side which moved first
+     */
+    public int getInitialSide() { return initialSide; }
+
+    /**
+     * Gets the moves of the game.
+     * @return          an unmodifiable list of the moves
+     */
+    public List<Move> getMoves() { return moves; }
+
+    /**
+     * Gets the winner of the game.
+     * @return          the winning side, or <code>NEITHER</code> for a draw
+     */
+    public int getWinner() { return winner; }
+
+    /**
+     * Computes the Zobrist hash of the position before each move, and of the
+     * final position.
+     * @return          an array of <code>getMoves().size() + 1</code> hashes,
+     *                  indexed by ply
+     * @see Zobrist Zobrist
+     */
+    public long[] positionHashes()
+    {
+        long[] hashes = new long[moves.size() + 1];
+        int[] bs = initialBoard.toBoardState();
+        int side = initialSide;
+
+        for (int ply = 0; ply < moves.size(); ply++)
+        {
+            hashes[ply] = Zobrist.hash(bs, side);
+            Utils.execute(bs, moves.get(ply));
+            side = Utils.otherSide(side);
+        }
+        hashes[moves.size()] = Zobrist.hash(bs, side);
+        return hashes;
+    }
+
+    /**
+     * Returns this game formatted as a string of the players, the result,
+     * and the moves.
+     * @return          this game formatted as a string
+     */
+    public String toString()
+    {
+        StringBuilder s = new StringBuilder();
+        s.append(names[RED]).append(" vs ").append(names[BLK]).append(": ");
+        s.append(winner == NEITHER ? "DRAW" : Utils.reprSide(winner) + " wins");
+        for (Move move : moves)
+            s.append(' ').append(move);
+        return s.toString();
+    }
+}
@@ -0,0 +1,69 @@
+package cs540.checkers.store;
+import cs540.checkers.*;
+import static cs540.checkers.CheckersConsts.*;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * This listener records the games of one or more
+ * {@link CheckersModel CheckersModel}s and adds each to a
+ * {@link GameStore GameStore} when it finishes with a win or a draw.
+ * Crashed games are not stored.
+ */
+public class GameRecorder
+{
+    protected final GameStore store;
+
+    /**
+     * Constructs a recorder which adds games to the specified store.
+     * @param store     the store to add games to
+     */
+    public GameRecorder(GameStore store)
+    {
+        this.store = store;
+    }
+
+    /**
+     * Records the game of the specified model.
+     * @param cm        the model whose game to record
+     */
+    public void attach(final CheckersModel cm)
+    {
+        cm.addGameListener(new GameListener() {
+            int[] bs;
+            int side;
+            List<Move> moves = new ArrayList<Move>();
+
+            public void gameChanged(GameEvent e)
+            {
+                String action = e.getAction();
+                if (action.equals("START"))
+                {
+                    /* The model fires START before any move */
+                    bs = cm.getBoardState();
+                    side = cm.getSide();
+                    moves.clear();
+                }
+                else if (e instanceof MoveMadeEvent)
+                    moves.add(((MoveMadeEvent)e).getMove());
+                else if (bs != null && (action.equals("WIN") || action.equals("DRAW")))
+                {
+                    record(new GameRecord(
+                                cm.getPlayer(RED).getName(), cm.getPlayer(BLK).getName(),
+                                bs, side, moves, cm.getWinner()));
+                    bs = null;
+                }
+            }
+        });
+    }
+
+    protected void record(GameRecord game)
+    {
+        try {
+            store.addGame(game);
+        } catch (IOException e) {
+            System.out.println(e);
+        }
+    }
+}
@@ -0,0 +1,812 @@
+package cs540.checkers.store;
+import cs540.checkers.*;
+import static cs540.checkers.CheckersConsts.*;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * This class stores finished games in a directory and indexes every
+ * position they reached, so that the games reaching a position, and their
+ * results, can be found without reading all games.
+ * <p>
+ * The directory contains three kinds of files:
+ * <ul>
+ * <li><code>segment-NNNNN.dat</code>, append-only files of game records.
+ * Each move is stored as a {@link MoveCodec MoveCodec} move code, and an
+ * initial position other than the standard one as a
+ * {@link PackedBoard PackedBoard}. A new segment is started when the current one exceeds {@link #SEGMENT_SIZE
+ * SEGMENT_SIZE} bytes.
+ * <li><code>games.idx</code>, a table of fixed size entries giving the
+ * location, length, and result of each game, in order of game id. It is
+ * kept in memory while the store is open.
+ * <li><code>index-NNNNN.run</code>, immutable runs of the position index.
+ * A run maps the {@link Zobrist Zobrist} hash of each position to the
+ * (game, ply) pairs which reached it, in a key table sorted by hash.
+ * <li><code>index-NNNNN.flt</code>, a {@link BloomFilter BloomFilter} of the
+ * hashes of each run, which is built with the run, or when the store is
+ * opened if it is missing, and kept in memory. Most lookups of positions
+ * which no stored game reached skip the binary search of the run.
+ * </ul>
+ * Positions of newly added games are indexed in memory, and written as a
+ * new run when {@link #MEMTABLE_LIMIT MEMTABLE_LIMIT} entries have
+ * accumulated or the store is closed. When there are more than
+ * {@link #MAX_RUNS MAX_RUNS} runs, they are merged into one. A query
+ * therefore performs a binary search in a few memory mapped runs and a hash
+ * lookup in memory. Games added after the last run was written are indexed
+ * again when the store is opened.
+ * <p>
+ * Positions are identified by 64-bit hashes only; collisions are possible
+ * in principle but vanishingly rare. All methods are synchronized.
+ */
+public class GameStore implements Closeable
+{
+    /** The size, in bytes, after which a new segment is started. */
+    public static final long SEGMENT_SIZE = 64L << 20;
+
+    /** The number of index entries held in memory before a run is written. */
+    public static final int MEMTABLE_LIMIT = 1 << 20;
+
+    /** The number of runs above which all runs are merged. */
+    public static final int MAX_RUNS = 8;
+
+    protected static final int SEGMENT_MAGIC = 0x434B4753; /* "CKGS" */
+    protected static final int RUN_MAGIC = 0x434B4749;     /* "CKGI" */
+    protected static final int VERSION = 1;
+
+    protected static final int SEGMENT_HEADER = 8;
+    protected static final int GAME_ENTRY = 16;
+    protected static final int RUN_HEADER = 24;
+    protected static final int RUN_KEY = 16;
+
+    /* How the initial position of a game record is stored: not at all for
+     * the standard position, as a nibble per square in older records, or
+     * as a PackedBoard */
+    protected static final int BOARD_INITIAL = 0;
+    protected static final int BOARD_NIBBLES = 1;
+    protected static final int BOARD_PACKED = 2;
+
+    /** Plies beyond this are indexed as this ply. */
+    protected static final int MAX_PLY = 0xFFFF;
+
+    protected final File dir;
+
+    /* The game table: segment << 40 | offset, record length, and winner */
+    protected long[] gameLocation = new long[1024];
+    protected int[] gameLength = new int[1024];
+    protected byte[] gameWinner = new byte[1024];
+    protected int gameCount;
+    protected OutputStream gameIndexOut;
+
+    protected int segment;
+    protected long segmentSize;
+    protected OutputStream segmentOut;
+    protected final Map<Integer, RandomAccessFile> segmentReaders =
+        new HashMap<Integer, RandomAccessFile>();
+
+    protected final List<IndexRun> runs = new ArrayList<IndexRun>();
+    protected int nextRun;
+    /** The number of games whose positions are in the runs. */
+    protected int indexedGames;
+    protected final Memtable memtable = new Memtable();
+
+    /**
+     * Opens the store in the specified directory, creating it if necessary.
+     * @param dir       the directory of the store
+     * @throws IOException      if an I/O error occurs or the files are malformed
+     */
+    public GameStore(File dir) throws IOException
+    {
+        this.dir = dir;
+        if (!dir.isDirectory() && !dir.mkdirs())
+            throw new IOException("Cannot create " + dir);
+
+        loadGameIndex();
+        openSegment();
+        loadRuns();
+
+        /* Index games added after the last run was written */
+        for (int id = indexedGames; id < gameCount; id++)
+            indexPositions(id, readGame(id));
+    }
+
+    /**
+     * Adds a finished game to the store and indexes its positions.
+     * @param game      the game to add
+     * @return          the id of the game
+     * @throws IOException      if an I/O error occurs
+     */
+    public synchronized int addGame(GameRecord game) throws IOException
+    {
+        byte[] body = encode(game);
+        ByteArrayOutputStream record = new ByteArrayOutputStream(body.length + 5);
+        MoveCodec.writeVarLong(record, body.length);
+        record.write(body);
+
+        if (segmentSize + record.size() > SEGMENT_SIZE && segmentSize > SEGMENT_HEADER)
+            rollSegment();
+
+        int id = gameCount;
+        long location = (long)segment << 40 | segmentSize;
+        record.writeTo(segmentOut);
+        segmentOut.flush();
+        segmentSize += record.size();
+
+        DataOutputStream entry = new DataOutputStream(gameIndexOut);
+        entry.writeLong(location);
+        entry.writeInt(record.size());
+        entry.writeInt(game.getWinner());
+        entry.flush();
+        addGameEntry(location, record.size(), game.getWinner());
+
+        indexPositions(id, game);
+        if (memtable.size >= MEMTABLE_LIMIT)
+            writeRun();
+        return id;
+    }
+
+    /**
+     * Gets the number of games in the store.
+     * @return          the number of games
+     */
+    public synchronized int getGameCount() { return gameCount; }
+
+    /**
+     * Reads a game from the store.
+     * @param id        the id of the game
+     * @return          the game
+     * @throws IOException      if an I/O error occurs or the record is malformed
+     */
+    public synchronized GameRecord readGame(int id) throws IOException
+    {
+        if (id < 0 || id >= gameCount)
+            throw new IllegalArgumentException("No game " + id);
+
+        int seg = (int)(gameLocation[id] >>> 40);
+        long offset = gameLocation[id] & ((1L << 40) - 1);
+        RandomAccessFile f = segmentReaders.get(seg);
+        if (f == null)
+        {
+            f = new RandomAccessFile(segmentFile(seg), "r");
+            segmentReaders.put(seg, f);
+        }
+
+        byte[] b = new byte[gameLength[id]];
+        f.seek(offset);
+        f.readFully(b);
+
+        InputStream in = new ByteArrayInputStream(b);
+        MoveCodec.readVarLong(in);
+        return decode(in);
+    }
+
+    /**
+     * Finds the games which reached a position.
+     * @param bs        the board state of the position
+     * @param side      the side to move in the position
+     * @return          the games, in order of id, each with the first ply at
+     *                  which it reached the position
+     */
+    public synchronized List<GameRef> findGames(int[] bs, int side)
+    {
+        long[] postings = lookup(Zobrist.hash(bs, side));
+        List<GameRef> games = new ArrayList<GameRef>();
+        long last = -1;
+        for (long p : postings)
+        {
+            long game = p >>> 16;
+            if (game != last)
+                games.add(new GameRef((int)game, (int)(p & MAX_PLY)));
+            last = game;
+        }
+        return games;
+    }
+
+    /**
+     * Summarizes the results of the games which reached a position.
+     * @param bs        the board state of the position
+     * @param side      the side to move in the position
+     * @return          the results of the games
+     */
+    public synchronized PositionStats getStats(int[] bs, int side)
+    {
+        PositionStats stats = new PositionStats();
+        long[] postings = lookup(Zobrist.hash(bs, side));
+        long last = -1;
+        for (long p : postings)
+        {
+            long game = p >>> 16;
+            if (game != last)
+                stats.add(gameWinner[(int)game]);
+            last = game;
+        }
+        return stats;
+    }
+
+    /**
+     * Writes the in-memory index to a run and closes all files.
+     * @throws IOException      if an I/O error occurs
+     */
+    public synchronized void close() throws IOException
+    {
+        if (memtable.size > 0)
+            writeRun();
+        segmentOut.close();
+        gameIndexOut.close();
+        for (RandomAccessFile f : segmentReaders.values())
+            f.close();
+        segmentReaders.clear();
+        runs.clear();
+    }
+
+    /**
+     * Returns the sorted postings, <code>game &lt;&lt; 16 | ply</code>, of
+     * a position hash.
+     */
+    protected long[] lookup(long hash)
+    {
+        LongList postings = new LongList();
+        for (IndexRun run : runs)
+            run.collect(hash, postings);
+        memtable.collect(hash, postings);
+
+        long[] p = postings.toArray();
+        Arrays.sort(p);
+        return p;
+    }
+
+    protected void indexPositions(int id, GameRecord game)
+    {
+        long[] hashes = game.positionHashes();
+        for (int ply = 0; ply < hashes.length; ply++)
+            memtable.add(hashes[ply], (long)id << 16 | Math.min(ply, MAX_PLY));
+    }
+
+    /* ---- Game table and segments ---- */
+
+    protected File segmentFile(int n)
+    {
+        return new File(dir, String.format("segment-%05d.dat", n));
+    }
+
+    protected void loadGameIndex() throws IOException
+    {
+        File file = new File(dir, "games.idx");
+        if (file.exists())
+        {
+            /* Drop a partially written entry */
+            long n = file.length() / GAME_ENTRY;
+            RandomAccessFile raf = new RandomAccessFile(file, "rw");
+            raf.setLength(n * GAME_ENTRY);
+            raf.close();
+
+            DataInputStream in = new DataInputStream(
+                    new BufferedInputStream(new FileInputStream(file)));
+            for (long i = 0; i < n; i++)
+                addGameEntry(in.readLong(), in.readInt(), in.readInt());
+            in.close();
+        }
+        gameIndexOut = new BufferedOutputStream(new FileOutputStream(file, true));
+    }
+
+    protected void addGameEntry(long location, int length, int winner)
+    {
+        if (gameCount == gameLocation.length)
+        {
+            gameLocation = Arrays.copyOf(gameLocation, 2 * gameCount);
+            gameLength = Arrays.copyOf(gameLength, 2 * gameCount);
+            gameWinner = Arrays.copyOf(gameWinner, 2 * gameCount);
+        }
+        gameLocation[gameCount] = location;
+        gameLength[gameCount] = length;
+        gameWinner[gameCount] = (byte)winner;
+        gameCount++;
+    }
+
+    /**
+     * Opens the segment of the last game for appending, discarding anything
+     * written after the last game.
+     */
+    protected void openSegment() throws IOException
+    {
+        if (gameCount == 0)
+        {
+            segment = 0;
+            startSegment();
+            return;
+        }
+
+        int last = gameCount - 1;
+        segment = (int)(gameLocation[last] >>> 40);
+        segmentSize = (gameLocation[last] & ((1L << 40) - 1)) + gameLength[last];
+
+        RandomAccessFile raf = new RandomAccessFile(segmentFile(segment), "rw");
+        if (raf.length() < segmentSize)
+        {
+            raf.close();
+            throw new IOException(segmentFile(segment) + " is truncated");
+        }
+        raf.setLength(segmentSize);
+        raf.close();
+        segmentOut = new BufferedOutputStream(
+                new FileOutputStream(segmentFile(segment), true));
+    }
+
+    protected void rollSegment() throws IOException
+    {
+        segmentOut.close();
+        segment++;
+        startSegment();
+    }
+
+    protected void startSegment() throws IOException
+    {
+        segmentOut = new BufferedOutputStream(new FileOutputStream(segmentFile(segment)));
+        DataOutputStream header = new DataOutputStream(segmentOut);
+        header.writeInt(SEGMENT_MAGIC);
+        header.writeInt(VERSION);
+        header.flush();
+        segmentSize = SEGMENT_HEADER;
+    }
+
+    protected static byte[] encode(GameRecord game) throws IOException
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(game.getWinner());
+        out.write(game.getInitialSide());
+
+        PackedBoard board = game.getInitialBoard();
+        if (board.equals(PackedBoard.INITIAL))
+            out.write(BOARD_INITIAL);
+        else
+        {
+            out.write(BOARD_PACKED);
+            board.write(new DataOutputStream(out));
+        }
+
+        writeString(out, game.getName(RED));
+        writeString(out, game.getName(BLK));
+        MoveCodec.writeVarLong(out, game.getMoves().size());
+        for (Move move : game.getMoves())
+            MoveCodec.writeVarLong(out, MoveCodec.encode(move));
+        return out.toByteArray();
+    }
+
+    protected static GameRecord decode(InputStream in) throws IOException
+    {
+        int winner = in.read();
+        int side = in.read();
+        PackedBoard board = PackedBoard.INITIAL;
+        int format = in.read();
+        if (format == BOARD_PACKED)
+            board = PackedBoard.read(new DataInputStream(in));
+        else if (format == BOARD_NIBBLES)
+        {
+            int[] bs = new int[W * H];
+            Arrays.fill(bs, BLANK);
+            for (int sq = 0; sq < MoveCodec.SQUARES; sq += 2)
+            {
+                int b = in.read();
+                bs[MoveCodec.locationOf(sq)] = b & 15;
+                bs[MoveCodec.locationOf(sq + 1)] = b >> 4;
+            }
+            board = new PackedBoard(bs);
+        }
+        else if (format > BOARD_PACKED)
+            throw new IOException("Unknown board format " + format);
+
+        String red = readString(in);
+        String blk = readString(in);
+        int n = (int)MoveCodec.readVarLong(in);
+        List<Move> moves = new ArrayList<Move>(n);
+        try {
+            for (int i = 0; i < n; i++)
+                moves.add(MoveCodec.decode(MoveCodec.readVarLong(in)));
+        } catch (IllegalArgumentException e) {
+            throw new IOException(e.getMessage());
+        }
+        if (winner < 0 || side < 0)
+            throw new EOFException();
+        return new GameRecord(red, blk, board, side, moves, winner);
+    }
+
+    protected static void writeString(OutputStream out, String s) throws IOException
+    {
+        byte[] b = s.getBytes(StandardCharsets.UTF_8);
+        MoveCodec.writeVarLong(out, b.length);
+        out.write(b);
+    }
+
+    protected static String readString(InputStream in) throws IOException
+    {
+        int n = (int)MoveCodec.readVarLong(in);
+        byte[] b = new byte[n];
+        if (in.read(b) != n && n > 0)
+            throw new EOFException();
+        return new String(b, StandardCharsets.UTF_8);
+    }
+
+    /* ---- Position index ---- */
+
+    protected File runFile(int n)
+    {
+        return new File(dir, String.format("index-%05d.run", n));
+    }
+
+    protected void loadRuns() throws IOException
+    {
+        String[] names = dir.list();
+        Arrays.sort(names);
+        for (String name : names)
+        {
+            if (!name.startsWith("index-") || !name.endsWith(".run"))
+                continue;
+            int n = Integer.parseInt(name.substring(6, name.length() - 4));
+            IndexRun run = new IndexRun(new File(dir, name));
+            runs.add(run);
+            indexedGames = Math.max(indexedGames, run.games);
+            nextRun = Math.max(nextRun, n + 1);
+        }
+        if (indexedGames > gameCount)
+            throw new IOException("Index covers games missing from games.idx");
+    }
+
+    /** Writes the in-memory index as a new run, merging runs if there are too many. */
+    protected void writeRun() throws IOException
+    {
+        long[] keys = memtable.sortedKeys();
+        File file = runFile(nextRun++);
+        File tmp = new File(dir, file.getName() + ".tmp");
+
+        DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(tmp), 1 << 16));
+        writeRunHeader(out, gameCount, keys.length, memtable.size);
+
+        int start = 0;
+        for (long key : keys)
+        {
+            int count = memtable.count(key);
+            out.writeLong(key);
+            out.writeInt(start);
+            out.writeInt(count);
+            start += count;
+        }
+        LongList postings = new LongList();
+        for (long key : keys)
+        {
+            postings.size = 0;
+            memtable.collect(key, postings);
+            for (int i = 0; i < postings.size; i++)
+                out.writeLong(postings.data[i]);
+        }
+        out.close();
+        install(tmp, file);
+
+        runs.add(new IndexRun(file));
+        indexedGames = gameCount;
+        memtable.clear();
+
+        if (runs.size() > MAX_RUNS)
+            mergeRuns();
+    }
+
+    /** Merges all runs into one. */
+    protected void mergeRuns() throws IOException
+    {
+        long keys = 0, postings = 0;
+        for (IndexRun run : runs)
+        {
+            keys += run.keys;
+            postings += run.postings;
+        }
+        /* A run must fit in a single mapped buffer */
+        if (RUN_HEADER + keys * RUN_KEY + postings * 8 > Integer.MAX_VALUE)
+            return;
+
+        File file = runFile(nextRun++);
+        File tmp = new File(dir, file.getName() + ".tmp");
+        int k = runs.size();
+        int[] pos = new int[k];
+
+        /* First pass: count distinct keys */
+        int distinct = 0;
+        while (hasNext(pos))
+        {
+            advance(pos, nextKey(pos));
+            distinct++;
+        }
+
+        DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(tmp), 1 << 16));
+        writeRunHeader(out, indexedGames, distinct, postings);
+
+        /* Second pass: key table */
+        Arrays.fill(pos, 0);
+        int start = 0;
+        while (hasNext(pos))
+        {
+            long key = nextKey(pos);
+            int count = 0;
+            for (int r = 0; r < k; r++)
+                if (pos[r] < runs.get(r).keys && runs.get(r).key(pos[r]) == key)
+                    count += runs.get(r).count(pos[r]++);
+            out.writeLong(key);
+            out.writeInt(start);
+            out.writeInt(count);
+            start += count;
+        }
+
+        /* Third pass: postings, older runs first */
+        Arrays.fill(pos, 0);
+        while (hasNext(pos))
+        {
+            long key = nextKey(pos);
+            for (int r = 0; r < k; r++)
+            {
+                IndexRun run = runs.get(r);
+                if (pos[r] < run.keys && run.key(pos[r]) == key)
+                {
+                    int s = run.start(pos[r]), n = run.count(pos[r]);
+                    for (int i = 0; i < n; i++)
+                        out.writeLong(run.posting(s + i));
+                    pos[r]++;
+                }
+            }
+        }
+        out.close();
+        install(tmp, file);
+
+        List<IndexRun> old = new ArrayList<IndexRun>(runs);
+        runs.clear();
+        runs.add(new IndexRun(file));
+        for (IndexRun run : old)
+        {
+            if (!run.file.delete())
+                System.out.println("Could not delete " + run.file);
+            run.filterFile.delete();
+        }
+    }
+
+    private boolean hasNext(int[] pos)
+    {
+        for (int r = 0; r < pos.length; r++)
+            if (pos[r] < runs.get(r).keys)
+                return true;
+        return false;
+    }
+
+    /** Returns the smallest key at the current positions of the runs. */
+    private long nextKey(int[] pos)
+    {
+        long min = Long.MAX_VALUE;
+        boolean found = false;
+        for (int r = 0; r < pos.length; r++)
+        {
+            IndexRun run = runs.get(r);
+            if (pos[r] < run.keys && (!found || run.key(pos[r]) < min))
+            {
+                min = run.key(pos[r]);
+                found = true;
+            }
+        }
+        return min;
+    }
+
+    private void advance(int[] pos, long key)
+    {
+        for (int r = 0; r < pos.length; r++)
+            if (pos[r] < runs.get(r).keys && runs.get(r).key(pos[r]) == key)
+                pos[r]++;
+    }
+
+    private static void writeRunHeader(DataOutputStream out, int games, long keys,
+            long postings) throws IOException
+    {
+        out.writeInt(RUN_MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(games);
+        out.writeInt((int)keys);
+        out.writeLong(postings);
+    }
+
+    private static void install(File tmp, File file) throws IOException
+    {
+        if (!tmp.renameTo(file))
+            throw new IOException("Could not rename " + tmp + " to " + file);
+    }
+
+    /** A reference to a stored game and the ply at which it reached a position. */
+    public static class GameRef
+    {
+        public final int game;
+        public final int ply;
+
+        public GameRef(int game, int ply)
+        {
+            this.game = game;
+            this.ply = ply;
+        }
+
+        public String toString() { return game + "@" + ply; }
+    }
+
+    /** A memory mapped run of the position index, and its filter. */
+    protected static class IndexRun
+    {
+        final File file;
+        final File filterFile;
+        final BloomFilter filter;
+        final ByteBuffer buf;
+        final int games;
+        final int keys;
+        final long postings;
+        final int postingBase;
+
+        IndexRun(File file) throws IOException
+        {
+            this.file = file;
+            RandomAccessFile raf = new RandomAccessFile(file, "r");
+            FileChannel ch = raf.getChannel();
+            buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            raf.close();
+
+            if (buf.capacity() < RUN_HEADER || buf.getInt(0) != RUN_MAGIC
+                    || buf.getInt(4) != VERSION)
+                throw new IOException(file + " is not an index run");
+            games = buf.getInt(8);
+            keys = buf.getInt(12);
+            postings = buf.getLong(16);
+            postingBase = RUN_HEADER + keys * RUN_KEY;
+            if (buf.capacity() != postingBase + postings * 8)
+                throw new IOException(file + " is truncated");
+
+            String name = file.getName();
+            filterFile = new File(file.getParentFile(), name.substring(0, name.length() - 4) + ".flt");
+            filter = loadFilter();
+        }
+
+        /** Reads the filter of this run, or builds and writes it if it is missing. */
+        BloomFilter loadFilter() throws IOException
+        {
+            if (filterFile.exists())
+            {
+                DataInputStream in = new DataInputStream(
+                        new BufferedInputStream(new FileInputStream(filterFile)));
+                try {
+                    if (in.readInt() == keys)
+                        return BloomFilter.read(in);
+                } catch (IOException e) {
+                    /* Rebuild a damaged filter */
+                } finally {
+                    in.close();
+                }
+            }
+
+            BloomFilter f = new BloomFilter(keys);
+            for (int i = 0; i < keys; i++)
+                f.add(key(i));
+
+            File tmp = new File(filterFile.getPath() + ".tmp");
+            DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(tmp), 1 << 16));
+            out.writeInt(keys);
+            f.write(out);
+            out.close();
+            if (!tmp.renameTo(filterFile))
+            {
+                System.out.println("Could not rename " + tmp + " to " + filterFile);
+                tmp.delete();
+            }
+            return f;
+        }
+
+        long key(int i) { return buf.getLong(RUN_HEADER + i * RUN_KEY); }
+        int start(int i) { return buf.getInt(RUN_HEADER + i * RUN_KEY + 8); }
+        int count(int i) { return buf.getInt(RUN_HEADER + i * RUN_KEY + 12); }
+        long posting(int i) { return buf.getLong(postingBase + i * 8); }
+
+        void collect(long hash, LongList out)
+        {
+            if (!filter.mightContain(hash))
+                return;
+
+            int lo = 0, hi = keys - 1;
+            while (lo <= hi)
+            {
+                int mid = (lo + hi) >>> 1;
+                long k = key(mid);
+                if (k < hash)
+                    lo = mid + 1;
+                else if (k > hash)
+                    hi = mid - 1;
+                else
+                {
+                    int s = start(mid), n = count(mid);
+                    for (int i = 0; i < n; i++)
+                        out.add(posting(s + i));
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * The in-memory index. Entries with equal hashes are chained, newest
+     * first, from a map of the hash to its newest entry.
+     */
+    protected static class Memtable
+    {
+        final Map<Long, Integer> head = new HashMap<Long, Integer>();
+        long[] postings = new long[1024];
+        int[] next = new int[1024];
+        int size;
+
+        void add(long hash, long posting)
+        {
+            if (size == postings.length)
+            {
+                postings = Arrays.copyOf(postings, 2 * size);
+                next = Arrays.copyOf(next, 2 * size);
+            }
+            Integer prev = head.put(hash, size);
+            next[size] = prev == null ? -1 : prev;
+            postings[size++] = posting;
+        }
+
+        int count(long hash)
+        {
+            Integer i = head.get(hash);
+            int n = 0;
+            for (int j = i == null ? -1 : i; j >= 0; j = next[j])
+                n++;
+            return n;
+        }
+
+        /** Adds the postings of a hash to <code>out</code>, oldest first. */
+        void collect(long hash, LongList out)
+        {
+            int n = count(hash);
+            int base = out.size;
+            for (int i = 0; i < n; i++)
+                out.add(0);
+            Integer i = head.get(hash);
+            for (int j = i == null ? -1 : i, k = base + n - 1; j >= 0; j = next[j], k--)
+                out.data[k] = postings[j];
+        }
+
+        long[] sortedKeys()
+        {
+            long[] keys = new long[head.size()];
+            int i = 0;
+            for (long key : head.keySet())
+                keys[i++] = key;
+            Arrays.sort(keys);
+            return keys;
+        }
+
+        void clear()
+        {
+            head.clear();
+            size = 0;
+        }
+    }
+
+    /** A growable list of <code>long</code>s. */
+    protected static class LongList
+    {
+        long[] data = new long[16];
+        int size;
+
+        void add(long v)
+        {
+            if (size == data.length)
+                data = Arrays.copyOf(data, 2 * size);
+            data[size++] = v;
+        }
+
+        long[] toArray() { return Arrays.copyOf(data, size); }
+    }
+}
@@ -0,0 +1,108 @@
+package cs540.checkers.store;
+import cs540.checkers.*;
+
+import java.io.*;
+
+/**
+ * This program imports game logs into a {@link GameStore GameStore} and
+ * queries it.
+ * <p>
+ * Usage: <code>java cs540.checkers.store.GameStoreTool &lt;command&gt;
+ * &lt;store dir&gt; ...</code>, where the command is one of
+ * <ul>
+ * <li><code>import &lt;log&gt;...</code>, which adds the finished games of
+ * text or binary logs, or of PDN files ending in <code>.pdn</code>. Logs do
+ * not record the initial position, so their games are assumed to start
+ * from the usual one;
+ * <li><code>info</code>, which prints the number of games;
+ * <li><code>stats [&lt;board file&gt; [&lt;side&gt;]]</code>, which
+ * prints the results of the games reaching a position, by default the
+ * initial position;
+ * <li><code>games [&lt;board file&gt; [&lt;side&gt;]]</code>, which prints
+ * the games reaching a position;
+ * <li><code>show &lt;id&gt;</code>, which prints a game.
+ * </ul>
+ */
+public class GameStoreTool
+{
+    private static final String USAGE =
+        "Usage: java cs540.checkers.store.GameStoreTool <command> <store dir> ...\n" +
+        "\n" +
+        "import <log>...                  Add the games of text, binary, or PDN logs\n" +
+        "info                             Print the number of games\n" +
+        "stats [<board file> [<side>]]    Print the results of games reaching a position\n" +
+        "games [<board file> [<side>]]    Print the games reaching a position\n" +
+        "show <id>                        Print a game\n";
+
+    public static void main(String[] args)
+    {
+        if (args.length < 2)
+        {
+            System.out.println(USAGE);
+            System.exit(1);
+        }
+
+        String cmd = args[0];
+        try {
+            GameStore store = new GameStore(new File(args[1]));
+            try {
+                if (cmd.equals("import"))
+                {
+                    for (int i = 2; i < args.length; i++)
+                        System.out.printf("%s: %d games imported%n",
+                                args[i], importLog(store, new File(args[i])));
+                }
+                else if (cmd.equals("info"))
+                    System.out.println(store.getGameCount() + " games");
+                else if (cmd.equals("stats") || cmd.equals("games"))
+                {
+                    int[] bs = args.length > 2 ? Utils.loadBoardState(args[2])
+                        : Utils.INITIAL_BOARDSTATE;
+                    int side = args.length > 3 ? Utils.parseSide(args[3])
+                        : Utils.INITIAL_SIDE;
+
+                    long start = System.nanoTime();
+                    if (cmd.equals("stats"))
+                        System.out.println(store.getStats(bs, side));
+                    else
+                        for (GameStore.GameRef ref : store.findGames(bs, side))
+                            System.out.println(ref + " " + store.readGame(ref.game));
+                    System.out.printf("(%.3f ms)%n", (System.nanoTime() - start) / 1e6);
+                }
+                else if (cmd.equals("show"))
+                    System.out.println(store.readGame(Integer.parseInt(args[2])));
+                else
+                {
+                    System.out.println(USAGE);
+                    System.exit(1);
+                }
+            } finally {
+                store.close();
+            }
+        } catch (IOException e) {
+            System.out.println(e);
+            System.exit(1);
+        } catch (FormatException e) {
+            System.out.println(e);
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Adds the finished games of a text, binary, or PDN log to a store.
+     * @param store     the store to add games to
+     * @param file      the log
+     * @return          the number of games added
+     * @throws IOException      if an I/O error occurs
+     * @see GameLogs#read GameLogs.read
+     */
+    public static int importLog(final GameStore store, File file) throws IOException
+    {
+        return GameLogs.read(file, new GameLogs.Handler() {
+            public void game(GameRecord game) throws IOException
+            {
+                store.addGame(game);
+            }
+        });
+    }
+}
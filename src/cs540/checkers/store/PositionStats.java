@@ -0,0 +1,53 @@
+package cs540.checkers.store;
+import static cs540.checkers.CheckersConsts.*;
+
+/**
+ * This class summarizes the results of the stored games which reached a
+ * position. Each game is counted once, even if it reached the position
+ * several times.
+ */
+public class PositionStats
+{
+    protected final long[] wins = new long[3];
+
+    /**
+     * Counts a game with the specified result.
+     * @param winner    the winning side, or <code>NEITHER</code> for a draw
+     */
+    protected void add(int winner)
+    {
+        wins[winner]++;
+    }
+
+    /**
+     * Gets the number of games which reached the position.
+     * @return          the number of games
+     */
+    public long getGames() { return wins[RED] + wins[BLK] + wins[NEITHER]; }
+
+    /**
+     * Gets the number of games won by the specified side.
+     * @param side      the side, or <code>NEITHER</code> for draws
+     * @return          the number of games
+     */
+    public long getWins(int side) { return wins[side]; }
+
+    /**
+     * Gets the score of the specified side over the games, counting wins as
+     * <code>1</code> and draws as <code>0.5</code>.
+     * @param side      the side
+     * @return          the score from <code>0</code> to <code>1</code>, or
+     *                  <code>NaN</code> if no game reached the position
+     */
+    public double getWinRate(int side)
+    {
+        long n = getGames();
+        return n == 0 ? Double.NaN : (wins[side] + 0.5 * wins[NEITHER]) / n;
+    }
+
+    public String toString()
+    {
+        return String.format("games=%d red=%d blk=%d draw=%d red_score=%.3f",
+                getGames(), wins[RED], wins[BLK], wins[NEITHER], getWinRate(RED));
+    }
+}
@@ -0,0 +1,362 @@
+package cs540.checkers.store;
+import cs540.checkers.*;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.FileChannel;
+
+/**
+ * This class maps positions to records of a fixed number of bytes, and keeps
+ * them outside the Java heap, so that a table of tens of millions of
+ * positions neither grows the heap nor lengthens garbage collection. A
+ * position is a {@link PackedBoard PackedBoard} and the side to move, and is
+ * stored exactly, not by its hash.
+ * <p>
+ * The table is an open addressing hash table with linear probing, in
+ * buffers allocated by <code>ByteBuffer.allocateDirect</code> or, for a
+ * table created by {@link #create create} or {@link #open open}, mapped
+ * from a file, so that it persists from one run to the next. Each slot
+ * holds a tag, which is <code>0</code> for an empty slot and otherwise one
+ * more than the side to move, the three masks of the board, and the record.
+ * The number of slots is fixed when the table is created, as a power of two
+ * at least a third larger than the number of positions it is to hold;
+ * positions cannot be removed.
+ * <p>
+ * A table in a file carries a stamp, given when it is created, which
+ * identifies how its records were made, so that a program can refuse a file
+ * whose records it would misread.
+ * <p>
+ * All methods are synchronized.
+ */
+public class PositionTable implements Closeable
+{
+    protected static final int MAGIC = 0x434B5054;     /* "CKPT" */
+    protected static final int VERSION = 1;
+
+    /* The file header: magic, version, record size, stamp, slots, and size */
+    protected static final int HEADER = 32;
+
+    /** The largest record size. */
+    public static final int MAX_RECORD = 1024;
+
+    /** The number of slots of each buffer, which keeps buffers under 2 GB. */
+    protected static final int SLAB_SLOTS = 1 << 20;
+
+    /* The fewest slots, so that a full table has an empty slot to end probes */
+    protected static final long MIN_SLOTS = 4;
+
+    protected static final int KEY = 16;
+
+    protected final int recordSize;
+    protected final int stamp;
+    protected final int slotSize;
+    protected final long slots;
+    protected final int slabSlots;
+    protected final ByteBuffer[] slabs;
+    /** The file header, or <code>null</code> if the table is not mapped. */
+    protected final ByteBuffer header;
+    protected final RandomAccessFile file;
+    protected long size;
+
+    /**
+     * Creates a table outside the heap, which is discarded when it is no
+     * longer referenced.
+     * @param recordSize    the size of each record, in bytes
+     * @param positions     the number of positions the table is to hold
+     * @throws IllegalArgumentException     if the record size is negative or
+     *                  larger than <code>MAX_RECORD</code>, or the number of
+     *                  positions is not positive
+     */
+    public PositionTable(int recordSize, long positions)
+    {
+        this(recordSize, slotsFor(recordSize, positions), null, null);
+    }
+
+    protected PositionTable(int recordSize, long slots, RandomAccessFile file, FileChannel ch)
+    {
+        this.recordSize = recordSize;
+        this.slotSize = KEY + recordSize;
+        this.slots = slots;
+        this.slabSlots = (int)Math.min(slots, SLAB_SLOTS);
+        this.slabs = new ByteBuffer[(int)(slots / slabSlots)];
+        this.file = file;
+
+        try {
+            long slabBytes = (long)slabSlots * slotSize;
+            if (ch == null)
+            {
+                header = null;
+                stamp = 0;
+                for (int i = 0; i < slabs.length; i++)
+                    slabs[i] = ByteBuffer.allocateDirect((int)slabBytes);
+            }
+            else
+            {
+                header = ch.map(FileChannel.MapMode.READ_WRITE, 0, HEADER);
+                for (int i = 0; i < slabs.length; i++)
+                    slabs[i] = ch.map(FileChannel.MapMode.READ_WRITE,
+                            HEADER + i * slabBytes, slabBytes);
+                stamp = header.getInt(12);
+                size = header.getLong(24);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Creates a table in a file, replacing any existing file.
+     * @param f         the file
+     * @param recordSize    the size of each record, in bytes
+     * @param positions     the number of positions the table is to hold
+     * @param stamp     the stamp of the table
+     * @return          the table
+     * @throws IOException      if an I/O error occurs
+     * @throws IllegalArgumentException     if the record size or number of
+     *                  positions is invalid
+     */
+    public static PositionTable create(File f, int recordSize, long positions, int stamp)
+        throws IOException
+    {
+        long slots = slotsFor(recordSize, positions);
+        RandomAccessFile raf = new RandomAccessFile(f, "rw");
+        try {
+            raf.setLength(0);
+            raf.setLength(HEADER + slots * (KEY + recordSize));
+            raf.writeInt(MAGIC);
+            raf.writeInt(VERSION);
+            raf.writeInt(recordSize);
+            raf.writeInt(stamp);
+            raf.writeLong(slots);
+            raf.writeLong(0);
+            return map(raf, recordSize, slots);
+        } catch (IOException e) {
+            raf.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Opens a table created by {@link #create create}.
+     * @param f         the file
+     * @return          the table, with the positions stored in it
+     * @throws IOException      if an I/O error occurs or the file is not a
+     *                          position table
+     */
+    public static PositionTable open(File f) throws IOException
+    {
+        RandomAccessFile raf = new RandomAccessFile(f, "rw");
+        try {
+            if (raf.length() < HEADER || raf.readInt() != MAGIC || raf.readInt() != VERSION)
+                throw new IOException(f + " is not a position table");
+            int recordSize = raf.readInt();
+            raf.readInt();
+            long slots = raf.readLong();
+            if (recordSize < 0 || recordSize > MAX_RECORD || slots < MIN_SLOTS || Long.bitCount(slots) != 1
+                    || raf.length() != HEADER + slots * (KEY + recordSize))
+                throw new IOException(f + " is truncated");
+            return map(raf, recordSize, slots);
+        } catch (IOException e) {
+            raf.close();
+            throw e;
+        }
+    }
+
+    private static PositionTable map(RandomAccessFile raf, int recordSize, long slots) throws IOException
+    {
+        try {
+            return new PositionTable(recordSize, slots, raf, raf.getChannel());
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Gets the number of slots of a table holding a number of positions.
+     */
+    protected static long slotsFor(int recordSize, long positions)
+    {
+        if (recordSize < 0 || recordSize > MAX_RECORD)
+            throw new IllegalArgumentException("Invalid record size " + recordSize);
+        if (positions <= 0)
+            throw new IllegalArgumentException("Invalid number of positions " + positions);
+        long slots = Long.highestOneBit(positions + positions / 3);
+        if (slots < positions + positions / 3)
+            slots *= 2;
+        return Math.max(slots, MIN_SLOTS);
+    }
+
+    public int getRecordSize() { return recordSize; }
+
+    /**
+     * Gets the stamp of the table.
+     * @return          the stamp given to {@link #create create}, or
+     *                  <code>0</code> if the table is not in a file
+     */
+    public int getStamp() { return stamp; }
+
+    /**
+     * Gets the number of positions the table can hold.
+     * @return          three quarters of the number of slots
+     */
+    public long getCapacity() { return slots - slots / 4; }
+
+    /**
+     * Gets the number of positions in the table.
+     * @return          the number of positions
+     */
+    public synchronized long size() { return size; }
+
+    /**
+     * Gets the record of a position.
+     * @param board     the board state
+     * @param side      the side to move
+     * @param record    the array to copy the record into, of at least
+     *                  <code>getRecordSize()</code> bytes
+     * @return          true if the position is in the table; false, leaving
+     *                  <code>record</code> unchanged, otherwise
+     */
+    public synchronized boolean get(PackedBoard board, int side, byte[] record)
+    {
+        long slot = find(board, side);
+        if (tag(slot) == 0)
+            return false;
+        ByteBuffer b = slabs[(int)(slot / slabSlots)];
+        int at = (int)(slot % slabSlots) * slotSize + KEY;
+        for (int i = 0; i < recordSize; i++)
+            record[i] = b.get(at + i);
+        return true;
+    }
+
+    /**
+     * Returns whether a position is in the table.
+     * @param board     the board state
+     * @param side      the side to move
+     * @return          true if the position is in the table
+     */
+    public synchronized boolean contains(PackedBoard board, int side)
+    {
+        return tag(find(board, side)) != 0;
+    }
+
+    /**
+     * Stores the record of a position, replacing any record it had.
+     * @param board     the board state
+     * @param side      the side to move
+     * @param record    the record, of at least <code>getRecordSize()</code>
+     *                  bytes
+     * @return          true if the position was not in the table
+     * @throws IllegalStateException    if the position is new and the table
+     *                  holds <code>getCapacity()</code> positions
+     */
+    public synchronized boolean put(PackedBoard board, int side, byte[] record)
+    {
+        long slot = find(board, side);
+        ByteBuffer b = slabs[(int)(slot / slabSlots)];
+        int at = (int)(slot % slabSlots) * slotSize;
+        boolean added = b.getInt(at) == 0;
+        if (added)
+        {
+            if (size >= getCapacity())
+                throw new IllegalStateException("Position table is full");
+            b.putInt(at, side + 1);
+            b.putInt(at + 4, board.getRed());
+            b.putInt(at + 8, board.getBlack());
+            b.putInt(at + 12, board.getKings());
+            size++;
+            if (header != null)
+                header.putLong(24, size);
+        }
+        for (int i = 0; i < recordSize; i++)
+            b.put(at + KEY + i, record[i]);
+        return added;
+    }
+
+    /** Receives the positions of a table from {@link PositionTable#forEach forEach}. */
+    public interface Handler
+    {
+        /**
+         * Receives a position.
+         * @param board     the board state
+         * @param side      the side to move
+         * @param record    the record, in an array which is reused for the
+         *                  next position
+         */
+        void position(PackedBoard board, int side, byte[] record);
+    }
+
+    /**
+     * Passes every position in the table, with its record, to a handler, in
+     * no particular order. The handler must not modify the table.
+     * @param handler   the handler
+     */
+    public synchronized void forEach(Handler handler)
+    {
+        byte[] record = new byte[recordSize];
+        for (ByteBuffer b : slabs)
+            for (int at = 0; at < slabSlots * slotSize; at += slotSize)
+            {
+                int tag = b.getInt(at);
+                if (tag == 0)
+                    continue;
+                for (int i = 0; i < recordSize; i++)
+                    record[i] = b.get(at + KEY + i);
+                handler.position(new PackedBoard(b.getInt(at + 4), b.getInt(at + 8),
+                            b.getInt(at + 12)), tag - 1, record);
+            }
+    }
+
+    /**
+     * Writes the changes to a mapped table to its file. This method does
+     * nothing if the table is not mapped.
+     */
+    public synchronized void flush()
+    {
+        if (header == null)
+            return;
+        ((MappedByteBuffer)header).force();
+        for (ByteBuffer b : slabs)
+            ((MappedByteBuffer)b).force();
+    }
+
+    /**
+     * Writes the changes to a mapped table to its file and closes it. The
+     * table must not be used afterwards.
+     * @throws IOException      if an I/O error occurs
+     */
+    public synchronized void close() throws IOException
+    {
+        flush();
+        if (file != null)
+            file.close();
+    }
+
+    /**
+     * Finds the slot of a position, or the empty slot where it would be
+     * stored.
+     */
+    protected long find(PackedBoard board, int side)
+    {
+        int red = board.getRed(), black = board.getBlack(), kings = board.getKings();
+        long h = ((long)red << 32 | (black & 0xFFFFFFFFL)) * 0x9E3779B97F4A7C15L
+            + ((kings & 0xFFFFFFFFL) << 1 | side);
+        h ^= h >>> 31;
+        h *= 0xBF58476D1CE4E5B9L;
+        h ^= h >>> 29;
+
+        for (long slot = h & (slots - 1); ; slot = (slot + 1) & (slots - 1))
+        {
+            ByteBuffer b = slabs[(int)(slot / slabSlots)];
+            int at = (int)(slot % slabSlots) * slotSize;
+            int tag = b.getInt(at);
+            if (tag == 0 || (tag == side + 1 && b.getInt(at + 4) == red
+                        && b.getInt(at + 8) == black && b.getInt(at + 12) == kings))
+                return slot;
+        }
+    }
+
+    protected int tag(long slot)
+    {
+        return slabs[(int)(slot / slabSlots)].getInt((int)(slot % slabSlots) * slotSize);
+    }
+}
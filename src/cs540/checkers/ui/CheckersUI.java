@@ -272,7 +272,13 @@ public class CheckersUI extends JFrame implements ChangeListener, ActionListener
         /* update clockLabel */
         for (int i = 0; i < 2; i++)
         {
-            long turn_time_remain = model.getClock().getTurnTime(i);
+            /* Show the game time left, if limited, else the turn time */
+            GameClock clock = model.getClock();
+            long turn_time_remain;
+            if (clock instanceof NanoGameClock && ((NanoGameClock)clock).isLimited(i))
+                turn_time_remain = clock.getGameTimeRemain(i);
+            else
+                turn_time_remain = clock.getTurnTime(i);
             long quot = turn_time_remain / 1000;
             long rem = turn_time_remain % 1000;
 
@@ -30,7 +30,7 @@ public class CheckersUIController extends CheckersController implements ActionLi
      * which inserts a small pause between the transition from <code>READY</code> 
      * to <code>WAITING</code>.
      */
-    protected CountdownClock turnDelayClock;
+    protected NanoCountdownClock turnDelayClock;
 
     /**
      * Whether turn delay is enabled.
@@ -72,7 +72,7 @@ public class CheckersUIController extends CheckersController implements ActionLi
 
         /* Create the clock to enforce delays in between turns, which helps
          * bring clarity to the UI */
-        turnDelayClock = new DefaultCountdownClock(-1);
+        turnDelayClock = new NanoCountdownClock(-1);
         turnDelay = true;
         updateTurnDelay();
     }
@@ -106,7 +106,7 @@ public class CheckersUIController extends CheckersController implements ActionLi
     {
         long turnDelayTime = 0;
         for (int i = 0; i < 2; i++)
-            turnDelayTime += turnClock[i].getDelay();
+            turnDelayTime += turnLimit[i];
         turnDelayTime /= 10;
         turnDelayTime = Math.max(turnDelayTime,  250);
         turnDelayTime = Math.min(turnDelayTime, 1000);
@@ -125,12 +125,16 @@ public class CheckersUIController extends CheckersController implements ActionLi
         /* If a player has chosen a move, use it. */
         if (turnAgent.hasMove())
         {
+            reportSearch(player);
+            reportUsage(player);
+
             /* Execute the move, and continue loop */
             try {
                 model.makeMove(turnAgent.getMove());
             } catch (InvalidMoveException e) {
                 model.forfeit("invalid move " + turnAgent.getMove());
             }
+            moveMade(side);
 
             turnDelayClock.reset();
             turnDelayClock.resume();
@@ -145,19 +149,24 @@ public class CheckersUIController extends CheckersController implements ActionLi
         /* 
          * If the player has used up the allocalated per-turn time,
          * forcefully obtain a move from the player and execute it. 
-         * Otherwise sleep for timeRemain milliseconds and and check 
+         * Otherwise sleep for timeRemain nanoseconds and and check 
          * this condition again after waking up. 
          */
         if (turnClock[side].getState() == CountdownClock.FINISHED)
         {
             /* Stop calculation and forcefully obtain a move */
             turnAgent.stopCalculate();
+            forcedMove = true;
+            model.reportTimeout();
+            reportSearch(player);
+            reportUsage(player);
 
             try { 
                 model.makeMove(turnAgent.getForcedMove());
             } catch (InvalidMoveException e) {
                 model.forfeit("invalid move " + turnAgent.getMove());
             }
+            moveMade(side);
 
             turnDelayClock.reset();
             turnDelayClock.resume();
@@ -165,7 +174,7 @@ public class CheckersUIController extends CheckersController implements ActionLi
             return CONTINUE_LOOP;
         }
         else
-            return turnClock[side].getTimeRemain();
+            return turnClock[side].getTimeRemainNanos();
     }
 
     protected long stepReady()
@@ -182,15 +191,30 @@ public class CheckersUIController extends CheckersController implements ActionLi
 
             /* Otherwise, wait for turn delay */
             if (turnDelayClock.getState() == CountdownClock.RUNNING)
-                return turnDelayClock.getTimeRemain();
+                return turnDelayClock.getTimeRemainNanos();
         }
 
         /* Set model state to WAITING */
         model.startWaiting();
 
         /* Start the turn clock that enforces term limits */
-        turnClock[side].reset();
-        turnClock[side].resume();
+        if (!startTurnClock(side))
+        {
+            model.forfeit("out of time");
+            moveMade(side);
+            return CONTINUE_LOOP;
+        }
+
+        /* Stop pondering on the turn clock, so the player pays for a slow stop */
+        ponderAgent[side].stopPonder();
+
+        /* Tell the player how long it has, if it wants to know */
+        if (player instanceof TimedCheckersPlayer)
+            ((TimedCheckersPlayer)player).setTurnTime(turnClock[side].getDelay());
+
+        /* Tell the player which positions have occurred, if it wants to know */
+        if (player instanceof RepetitionAwareCheckersPlayer)
+            ((RepetitionAwareCheckersPlayer)player).setPositionHistory(model.getPositionHistory());
 
         /* Begin calculations with a TurnAgent and register callback */
         turnAgent.startCalculate(player, model.getBoardState());
@@ -0,0 +1,55 @@
+package cs540.checkers.variant;
+
+import cs540.checkers.*;
+
+import java.util.*;
+
+/**
+ * This variant is standard checkers on the 8x8 board, as the rest of the
+ * framework plays it. Its moves are generated and made by {@link Utils
+ * Utils}, whose board code is specialized for this board, rather than from
+ * the tables of its geometry, and are written as in the logs, e.g.
+ * <code>c3-d4</code>.
+ * @see Variant#AMERICAN Variant.AMERICAN
+ */
+public class AmericanVariant extends Variant
+{
+    AmericanVariant()
+    {
+        super("american", new Geometry(8, 8, 1), 3, false, false, true,
+                CaptureRule.FREE, Crowning.ENDS_CAPTURE);
+    }
+
+    public int[] getInitialBoardState() { return Utils.INITIAL_BOARDSTATE.clone(); }
+    public int getInitialSide() { return Utils.INITIAL_SIDE; }
+
+    public List<Move> getAllPossibleMoves(int[] bs, int side)
+    {
+        return Utils.getAllPossibleMoves(bs, side);
+    }
+
+    public boolean hasAnyMove(int[] bs, int side)
+    {
+        return Utils.hasAnyMove(bs, side);
+    }
+
+    public boolean isValidMove(int[] bs, int side, Move move)
+    {
+        return Utils.isValidMove(bs, side, move);
+    }
+
+    public void execute(int[] bs, Move move)
+    {
+        Utils.execute(bs, move);
+    }
+
+    public boolean isCapture(int[] bs, Move move)
+    {
+        return !Utils.isWalk(move);
+    }
+
+    public String reprMove(int[] bs, Move move)
+    {
+        return Utils.reprMove(move);
+    }
+}
@@ -0,0 +1,177 @@
+package cs540.checkers.variant;
+import static cs540.checkers.CheckersConsts.*;
+
+import cs540.checkers.Zobrist;
+
+/**
+ * This class describes the board of a {@link Variant Variant}: its size,
+ * which squares are played on, and how they are numbered. Board states of
+ * the variant are <code>int[]</code> arrays of
+ * <code>width&nbsp;*&nbsp;height</code> locations, in rows from the top, as
+ * on the standard board; <code>RED</code> starts at the bottom and its men
+ * move up.
+ * <p>
+ * The neighbors of each location along each diagonal, and the landing
+ * squares of jumps, are computed once when the geometry is created, so
+ * move generation looks them up rather than testing the edges of the
+ * board. The diagonals are numbered as in {@link cs540.checkers.Utils#DIAG
+ * Utils.DIAG}: up-left, up-right, down-left and down-right.
+ */
+public class Geometry
+{
+    /** The number of diagonal directions. */
+    public static final int DIRS = 4;
+
+    protected final int width, height;
+    /** The locations which are played on, in the order of their numbers. */
+    protected final int[] playable;
+    /** The number of each location, from <code>1</code>, or <code>0</code> if not played on. */
+    protected final int[] number;
+    /** The neighbor of each location in each direction, or <code>-1</code>, by <code>loc * DIRS + dir</code>. */
+    protected final int[] neighbor;
+    /** The landing square of a jump from each location in each direction, or <code>-1</code>. */
+    protected final int[] jump;
+
+    /**
+     * Creates a geometry.
+     * @param width     the number of columns
+     * @param height    the number of rows
+     * @param parity    <code>1</code> if the squares played on are those
+     *                  whose row and column add up to an odd number, as on
+     *                  the standard board, or <code>0</code> if even
+     * @throws IllegalArgumentException     if the board is too small, or has
+     *                  more squares than {@link Zobrist Zobrist} has keys for
+     */
+    public Geometry(int width, int height, int parity)
+    {
+        if (width < 4 || height < 4 || width * height > Zobrist.MAX_SQUARES)
+            throw new IllegalArgumentException("Unsupported board size " + width + "x" + height);
+
+        this.width = width;
+        this.height = height;
+        int squares = width * height;
+        number = new int[squares];
+        neighbor = new int[squares * DIRS];
+        jump = new int[squares * DIRS];
+
+        int n = 0;
+        for (int loc = 0; loc < squares; loc++)
+            if ((loc / width + loc % width) % 2 == parity)
+                number[loc] = ++n;
+        playable = new int[n];
+        for (int loc = 0; loc < squares; loc++)
+            if (number[loc] > 0)
+                playable[number[loc] - 1] = loc;
+
+        int[] dr = {-1, -1, 1, 1}, dc = {-1, 1, -1, 1};
+        for (int loc = 0; loc < squares; loc++)
+            for (int d = 0; d < DIRS; d++)
+            {
+                neighbor[loc * DIRS + d] = offset(loc, dr[d], dc[d]);
+                jump[loc * DIRS + d] = offset(loc, 2 * dr[d], 2 * dc[d]);
+            }
+    }
+
+    /** Returns the location at an offset from another, or <code>-1</code> if off the board. */
+    private int offset(int loc, int dr, int dc)
+    {
+        int r = loc / width + dr, c = loc % width + dc;
+        if (r < 0 || r >= height || c < 0 || c >= width)
+            return -1;
+        return r * width + c;
+    }
+
+    public int getWidth() { return width; }
+    public int getHeight() { return height; }
+
+    /**
+     * Gets the number of locations of a board state, including those not
+     * played on.
+     * @return          <code>width * height</code>
+     */
+    public int getSquares() { return width * height; }
+
+    /**
+     * Gets the locations which are played on.
+     * @return          a copy of the locations, in the order of their numbers
+     */
+    public int[] getPlayable() { return playable.clone(); }
+
+    /**
+     * Gets the neighbor of a location along a diagonal.
+     * @param loc       the location
+     * @param dir       the direction, from <code>0</code> to <code>3</code>
+     * @return          the neighbor, or <code>-1</code> if off the board
+     */
+    public int neighbor(int loc, int dir) { return neighbor[loc * DIRS + dir]; }
+
+    /**
+     * Gets the landing square of a jump from a location along a diagonal.
+     * @param loc       the location
+     * @param dir       the direction, from <code>0</code> to <code>3</code>
+     * @return          the location two squares away, or <code>-1</code> if
+     *                  off the board
+     */
+    public int jump(int loc, int dir) { return jump[loc * DIRS + dir]; }
+
+    /**
+     * Returns whether a direction is forward for a side: up for
+     * <code>RED</code>, down for <code>BLK</code>.
+     * @param dir       the direction
+     * @param side      the side
+     * @return          true if men of <code>side</code> move in <code>dir</code>
+     */
+    public static boolean isForward(int dir, int side)
+    {
+        return (dir < 2) == (side == RED);
+    }
+
+    /**
+     * Gets the direction from one location to another on the same diagonal.
+     * @param from      the first location
+     * @param to        the second location
+     * @return          the direction, or <code>-1</code> if the locations are
+     *                  not on a diagonal
+     */
+    public int direction(int from, int to)
+    {
+        int dr = to / width - from / width, dc = to % width - from % width;
+        if (dr == 0 || Math.abs(dr) != Math.abs(dc))
+            return -1;
+        return (dr < 0 ? 0 : 2) + (dc < 0 ? 0 : 1);
+    }
+
+    /**
+     * Returns whether a location is on the row where men of a side are
+     * crowned.
+     * @param loc       the location
+     * @param side      the side
+     * @return          true if <code>loc</code> is on the far row of <code>side</code>
+     */
+    public boolean isCrowningRow(int loc, int side)
+    {
+        return side == RED ? loc < width : loc >= (height - 1) * width;
+    }
+
+    /**
+     * Gets the number of a location in PDN, counting the squares played on
+     * from the top left.
+     * @param loc       the location
+     * @return          the number, or <code>0</code> if the location is not
+     *                  played on or off the board
+     */
+    public int numberOf(int loc)
+    {
+        return loc >= 0 && loc < number.length ? number[loc] : 0;
+    }
+
+    /**
+     * Gets the location of a square given by its number in PDN.
+     * @param n         the number
+     * @return          the location, or <code>-1</code> if there is no such square
+     */
+    public int locationOf(int n)
+    {
+        return n >= 1 && n <= playable.length ? playable[n - 1] : -1;
+    }
+}
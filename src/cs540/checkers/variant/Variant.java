@@ -0,0 +1,515 @@
+package cs540.checkers.variant;
+import static cs540.checkers.CheckersConsts.*;
+
+import cs540.checkers.*;
+
+import java.util.*;
+
+/**
+ * This class describes a variant of checkers, or draughts: the
+ * {@link Geometry Geometry} of its board and its rules, and generates and
+ * makes the moves of its board states. Board states use the pieces of
+ * {@link CheckersConsts CheckersConsts}, and moves are lists of locations
+ * as in {@link Utils Utils}: the start of the moving piece, then the square
+ * it lands on after each capture, or its destination if it captures
+ * nothing. A king which flies may move or land several squares along a
+ * diagonal, and the piece it captures is the one it passes over.
+ * <p>
+ * The rules which differ between the variants supported are
+ * <ul>
+ * <li>whether kings fly, moving any distance along a diagonal;
+ * <li>whether men capture backward;
+ * <li>whether men may capture kings;
+ * <li>which of several captures may be chosen, by the
+ * {@link CaptureRule CaptureRule};
+ * <li>what happens when a man reaches the far row during a capture, by the
+ * {@link Crowning Crowning}.
+ * </ul>
+ * In every variant captures are compulsory, a capture continues while the
+ * capturing piece can capture again, and captured pieces are removed when
+ * the move ends: a piece cannot be captured twice, and blocks the capturing
+ * piece until then.
+ * <p>
+ * Moves are generated from the tables of the geometry. The standard game,
+ * {@link #AMERICAN AMERICAN}, is played instead by the board code of
+ * <code>Utils</code>, which is specialized for the 8x8 board, so the
+ * standard game is no slower for the other variants being supported.
+ * Variants are immutable and may be used by several threads at once.
+ */
+public class Variant
+{
+    /** Which captures may be chosen when there are several. */
+    public static enum CaptureRule
+    {
+        /** Any capture may be chosen. */
+        FREE,
+        /** A capture of the most pieces must be chosen. */
+        MAJORITY,
+        /**
+         * A capture of the most pieces must be chosen; of those, a capture
+         * by a king; of those, a capture of the most kings; and of those, a
+         * capture which meets a king earliest.
+         */
+        ITALIAN
+    }
+
+    /** What happens when a man reaches the far row during a capture. */
+    public static enum Crowning
+    {
+        /** The man is crowned and the capture ends there. */
+        ENDS_CAPTURE,
+        /** The man is crowned only if the capture ends there. */
+        AT_END,
+        /** The man is crowned at once and continues the capture as a king. */
+        AT_ONCE
+    }
+
+    /** Standard checkers on the 8x8 board, played by <code>Utils</code>. */
+    public static final Variant AMERICAN = new AmericanVariant();
+
+    /** International draughts on the 10x10 board: flying kings, men capture backward, the majority rule. */
+    public static final Variant INTERNATIONAL = new Variant("international",
+            new Geometry(10, 10, 1), 4, true, true, true, CaptureRule.MAJORITY, Crowning.AT_END);
+
+    /** Russian draughts: flying kings, men capture backward and are crowned during a capture. */
+    public static final Variant RUSSIAN = new Variant("russian",
+            new Geometry(8, 8, 1), 3, true, true, true, CaptureRule.FREE, Crowning.AT_ONCE);
+
+    /** Italian draughts: the board turned, men do not capture kings, the Italian capture rule. */
+    public static final Variant ITALIAN = new Variant("italian",
+            new Geometry(8, 8, 0), 3, false, false, false, CaptureRule.ITALIAN, Crowning.ENDS_CAPTURE);
+
+    private static final Variant[] VARIANTS = { AMERICAN, INTERNATIONAL, RUSSIAN, ITALIAN };
+
+    protected final String name;
+    protected final Geometry geometry;
+    protected final int rows;
+    protected final boolean flyingKings;
+    protected final boolean menCaptureBackward;
+    protected final boolean menCaptureKings;
+    protected final CaptureRule captureRule;
+    protected final Crowning crowning;
+
+    /**
+     * Creates a variant.
+     * @param name      the name of the variant
+     * @param geometry  the board
+     * @param rows      the number of rows of men each side starts with
+     * @param flyingKings   whether kings move any distance along a diagonal
+     * @param menCaptureBackward    whether men capture backward
+     * @param menCaptureKings   whether men may capture kings
+     * @param captureRule   which captures may be chosen
+     * @param crowning  what happens when a man reaches the far row during a
+     *                  capture
+     */
+    public Variant(String name, Geometry geometry, int rows, boolean flyingKings,
+            boolean menCaptureBackward, boolean menCaptureKings,
+            CaptureRule captureRule, Crowning crowning)
+    {
+        this.name = name;
+        this.geometry = geometry;
+        this.rows = rows;
+        this.flyingKings = flyingKings;
+        this.menCaptureBackward = menCaptureBackward;
+        this.menCaptureKings = menCaptureKings;
+        this.captureRule = captureRule;
+        this.crowning = crowning;
+    }
+
+    /**
+     * Gets a variant by its name.
+     * @param name      the name, e.g. <code>international</code>
+     * @return          the variant
+     * @throws IllegalArgumentException     if there is no such variant
+     */
+    public static Variant forName(String name) throws IllegalArgumentException
+    {
+        for (Variant v : VARIANTS)
+            if (v.name.equalsIgnoreCase(name))
+                return v;
+        throw new IllegalArgumentException("Unknown variant " + name);
+    }
+
+    /**
+     * Gets the names of the variants which {@link #forName forName} knows.
+     * @return          the names, separated by commas
+     */
+    public static String names()
+    {
+        StringBuilder s = new StringBuilder();
+        for (Variant v : VARIANTS)
+            s.append(s.length() > 0 ? ", " : "").append(v.name);
+        return s.toString();
+    }
+
+    public String getName() { return name; }
+    public Geometry getGeometry() { return geometry; }
+    public String toString() { return name; }
+
+    /**
+     * Creates the board state of the starting position.
+     * @return          a new board state
+     */
+    public int[] getInitialBoardState()
+    {
+        int w = geometry.getWidth(), h = geometry.getHeight();
+        int[] D = new int[w * h];
+        Arrays.fill(D, BLANK);
+        for (int loc : geometry.playable)
+        {
+            if (loc / w < rows)
+                D[loc] = BLK_PAWN;
+            else if (loc / w >= h - rows)
+                D[loc] = RED_PAWN;
+        }
+        return D;
+    }
+
+    /**
+     * Gets the side which moves first.
+     * @return          the side to move in the starting position
+     */
+    public int getInitialSide() { return RED; }
+
+    /**
+     * Returns a list of all the moves that the specified side may perform on
+     * the specified board state. The ordering of moves in this list is not
+     * defined.
+     * @param bs        the board state on which the moves will be made
+     * @param side      the side to make the moves
+     * @return          a list of all the legal moves of <code>side</code>
+     */
+    public List<Move> getAllPossibleMoves(int[] bs, int side)
+    {
+        List<Move> moves = findCaptures(bs, side);
+        if (moves.isEmpty())
+            findWalks(bs, side, moves);
+        return moves;
+    }
+
+    /**
+     * Returns whether the specified side has at least one legal move,
+     * returning at the first piece found which can move or capture.
+     * @param bs        the board state
+     * @param side      the side to move
+     * @return          true if <code>side</code> has a legal move
+     */
+    public boolean hasAnyMove(int[] bs, int side)
+    {
+        for (int loc : geometry.playable)
+        {
+            int piece = bs[loc];
+            if (piece == BLANK || piece % 4 != side)
+                continue;
+
+            for (int d = 0; d < Geometry.DIRS; d++)
+            {
+                int to = geometry.neighbor(loc, d);
+                if (to >= 0 && bs[to] == BLANK && (piece >= RED_KING || Geometry.isForward(d, side)))
+                    return true;
+                if (findCapture(bs, loc, d, piece, null) >= 0)
+                    return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns whether <code>move</code> is legal for the given side.
+     * @param bs        the board state on which to make the move
+     * @param side      the side to make the move
+     * @param move      the move to test for legality
+     * @return          true if <code>move</code> is legal; false otherwise
+     */
+    public boolean isValidMove(int[] bs, int side, Move move)
+    {
+        if (move == null || move.size() < 2)
+            return false;
+        for (int loc : move)
+            if (geometry.numberOf(loc) == 0)
+                return false;
+        int piece = bs[move.get(0)];
+        if (piece == BLANK || piece % 4 != side)
+            return false;
+        return getAllPossibleMoves(bs, side).contains(move);
+    }
+
+    /**
+     * Executes a move on a board state, removing the pieces it captures and
+     * crowning the piece if it ends on, or under <code>AT_ONCE</code>
+     * passes, its far row. The move is not checked for legality.
+     * @param bs        the board state on which to perform the move
+     * @param move      the move to perform
+     */
+    public void execute(int[] bs, Move move)
+    {
+        int from = move.get(0), piece = bs[from], side = piece % 4;
+        boolean crown = false;
+        bs[from] = BLANK;
+        for (int i = 1; i < move.size(); i++)
+        {
+            int a = move.get(i - 1), b = move.get(i), d = geometry.direction(a, b);
+            for (int t = geometry.neighbor(a, d); t != b; t = geometry.neighbor(t, d))
+                bs[t] = BLANK;
+            if (crowning == Crowning.AT_ONCE && geometry.isCrowningRow(b, side))
+                crown = true;
+        }
+
+        int to = move.get(move.size() - 1);
+        if (geometry.isCrowningRow(to, side))
+            crown = true;
+        bs[to] = crown && piece < RED_KING ? piece + RED_KING : piece;
+    }
+
+    /**
+     * Returns whether a move captures, given the board state it is made on.
+     * @param bs        the board state before the move
+     * @param move      a legal move on <code>bs</code>
+     * @return          true if <code>move</code> captures a piece
+     */
+    public boolean isCapture(int[] bs, Move move)
+    {
+        if (move.size() > 2)
+            return true;
+        int a = move.get(0), b = move.get(1), d = geometry.direction(a, b);
+        if (d < 0)
+            return false;
+        for (int t = geometry.neighbor(a, d); t != b && t >= 0; t = geometry.neighbor(t, d))
+            if (bs[t] != BLANK)
+                return true;
+        return false;
+    }
+
+    /**
+     * Returns whether a move cannot be undone by later moves: a capture, or
+     * a move of a man.
+     * @param bs        the board state before the move
+     * @param move      a legal move on <code>bs</code>
+     * @return          true if no position before <code>move</code> can recur
+     * @see PositionHistory PositionHistory
+     */
+    public boolean isIrreversible(int[] bs, Move move)
+    {
+        return bs[move.get(0)] < BLANK || isCapture(bs, move);
+    }
+
+    /**
+     * Returns a move in PDN, with the numbers of the squares.
+     * @param bs        the board state before the move
+     * @param move      the move
+     * @return          the move, e.g. <code>32-28</code> or <code>19x30</code>
+     */
+    public String reprMove(int[] bs, Move move)
+    {
+        if (move == null)
+            return "null";
+        String sep = move.size() >= 2 && geometry.numberOf(move.get(0)) > 0
+            && isCapture(bs, move) ? "x" : "-";
+        StringBuilder s = new StringBuilder();
+        for (int i = 0; i < move.size(); i++)
+        {
+            if (i > 0)
+                s.append(sep);
+            int n = geometry.numberOf(move.get(i));
+            s.append(n > 0 ? String.valueOf(n) : "??");
+        }
+        return s.toString();
+    }
+
+    /** Adds the moves of the side which capture nothing. */
+    protected void findWalks(int[] bs, int side, List<Move> moves)
+    {
+        for (int loc : geometry.playable)
+        {
+            int piece = bs[loc];
+            if (piece == BLANK || piece % 4 != side)
+                continue;
+
+            boolean king = piece >= RED_KING;
+            for (int d = 0; d < Geometry.DIRS; d++)
+            {
+                if (!king && !Geometry.isForward(d, side))
+                    continue;
+                for (int to = geometry.neighbor(loc, d); to >= 0 && bs[to] == BLANK;
+                        to = geometry.neighbor(to, d))
+                {
+                    moves.add(new Move(Arrays.asList(loc, to)));
+                    if (!king || !flyingKings)
+                        break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Finds the piece which a piece could capture from a location along a
+     * diagonal: the first piece it meets, if that is an opponent's piece
+     * not yet captured with an empty square behind it.
+     * @param bs        the board state
+     * @param from      the location of the capturing piece
+     * @param dir       the direction
+     * @param piece     the capturing piece
+     * @param taken     the pieces captured so far by the move, or <code>null</code>
+     * @return          the location of the piece captured, or <code>-1</code>
+     */
+    protected int findCapture(int[] bs, int from, int dir, int piece, boolean[] taken)
+    {
+        int side = piece % 4;
+        boolean king = piece >= RED_KING;
+        if (!king && !menCaptureBackward && !Geometry.isForward(dir, side))
+            return -1;
+
+        int over = geometry.neighbor(from, dir);
+        if (king && flyingKings)
+            while (over >= 0 && bs[over] == BLANK)
+                over = geometry.neighbor(over, dir);
+        if (over < 0 || bs[over] == BLANK || bs[over] % 4 == side || (taken != null && taken[over]))
+            return -1;
+        if (!king && !menCaptureKings && bs[over] >= RED_KING)
+            return -1;
+
+        int land = geometry.neighbor(over, dir);
+        return land >= 0 && bs[land] == BLANK ? over : -1;
+    }
+
+    /** A capture found, with what the capture rule compares. */
+    protected static class Capture
+    {
+        final Move move;
+        final int count;
+        final boolean byKing;
+        final int kings;
+        /** The number of pieces captured before the first king, or the count if none. */
+        final int firstKing;
+
+        Capture(Move move, int count, boolean byKing, int kings, int firstKing)
+        {
+            this.move = move;
+            this.count = count;
+            this.byKing = byKing;
+            this.kings = kings;
+            this.firstKing = firstKing;
+        }
+
+        /** Compares by the Italian rule; a positive result means this capture takes precedence. */
+        int compareTo(Capture c)
+        {
+            if (count != c.count)
+                return count - c.count;
+            if (byKing != c.byKing)
+                return byKing ? 1 : -1;
+            if (kings != c.kings)
+                return kings - c.kings;
+            return c.firstKing - firstKing;
+        }
+    }
+
+    /** Finds the captures the side may choose from, after applying the capture rule. */
+    protected List<Move> findCaptures(int[] bs, int side)
+    {
+        /* The capturing piece is lifted from the board, so it may pass its
+         * own square, and captured pieces stay until the move ends */
+        int[] D = bs.clone();
+        boolean[] taken = new boolean[D.length];
+        MutableMove path = new MutableMove();
+        List<Capture> found = new ArrayList<Capture>();
+        for (int loc : geometry.playable)
+        {
+            int piece = D[loc];
+            if (piece == BLANK || piece % 4 != side)
+                continue;
+
+            D[loc] = BLANK;
+            path.add(loc);
+            capture(D, piece, piece >= RED_KING, taken, path, 0, -1, found);
+            path.remove(path.size() - 1);
+            D[loc] = piece;
+        }
+
+        List<Move> moves = new ArrayList<Move>(found.size());
+        Capture best = null;
+        for (Capture c : found)
+            if (best == null || compare(c, best) > 0)
+                best = c;
+        for (Capture c : found)
+            if (compare(c, best) == 0)
+                moves.add(c.move);
+        return moves;
+    }
+
+    /** Compares captures by the capture rule; captures comparing equal to the best may be chosen. */
+    private int compare(Capture a, Capture b)
+    {
+        switch (captureRule)
+        {
+            case MAJORITY:
+                return a.count - b.count;
+            case ITALIAN:
+                return a.compareTo(b);
+            case FREE:
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * Extends the capture <code>path</code>, whose piece has just landed on
+     * the last location of the path, by every capture it can continue with,
+     * adding each capture which ends to <code>found</code>.
+     * @return          true if the piece could capture again
+     */
+    private boolean capture(int[] D, int piece, boolean byKing, boolean[] taken,
+            MutableMove path, int kings, int firstKing, List<Capture> found)
+    {
+        int from = path.get(path.size() - 1), side = piece % 4;
+        boolean king = piece >= RED_KING, captured = false;
+        int count = path.size() - 1;
+
+        for (int d = 0; d < Geometry.DIRS; d++)
+        {
+            int over = findCapture(D, from, d, piece, taken);
+            if (over < 0)
+                continue;
+            captured = true;
+            taken[over] = true;
+            int k = D[over] >= RED_KING ? kings + 1 : kings;
+            int first = firstKing < 0 && D[over] >= RED_KING ? count : firstKing;
+
+            /* A flying king may land on any empty square past the piece,
+             * but must land where it can capture again if it can */
+            List<Integer> ends = new ArrayList<Integer>();
+            boolean continued = false;
+            for (int land = geometry.neighbor(over, d); land >= 0 && D[land] == BLANK;
+                    land = geometry.neighbor(land, d))
+            {
+                int p = piece;
+                boolean crowned = !king && geometry.isCrowningRow(land, side);
+                if (crowned && crowning == Crowning.AT_ONCE)
+                    p = piece + RED_KING;
+
+                path.add(land);
+                if (crowned && crowning == Crowning.ENDS_CAPTURE)
+                    ends.add(land);
+                else if (capture(D, p, byKing, taken, path, k, first, found))
+                    continued = true;
+                else
+                    ends.add(land);
+                path.remove(path.size() - 1);
+
+                if (!king || !flyingKings)
+                    break;
+            }
+
+            if (!continued)
+                for (int land : ends)
+                {
+                    path.add(land);
+                    found.add(new Capture(new Move(path), count + 1, byKing, k,
+                                first < 0 ? count + 1 : first));
+                    path.remove(path.size() - 1);
+                }
+            taken[over] = false;
+        }
+        return captured;
+    }
+}